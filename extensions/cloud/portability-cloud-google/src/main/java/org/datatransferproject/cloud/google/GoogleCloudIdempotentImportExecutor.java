@@ -6,25 +6,66 @@ import com.google.cloud.datastore.*;
 import com.google.cloud.datastore.StructuredQuery.CompositeFilter;
 import com.google.cloud.datastore.StructuredQuery.PropertyFilter;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.datatransferproject.api.launcher.Monitor;
+import org.datatransferproject.spi.transfer.idempotentexecutor.BatchImport;
+import org.datatransferproject.spi.transfer.idempotentexecutor.BatchImportFunction;
 import org.datatransferproject.spi.transfer.idempotentexecutor.IdempotentImportExecutor;
+import org.datatransferproject.spi.transfer.idempotentexecutor.InFlightExecutions;
+import org.datatransferproject.types.common.ImportableItem;
 import org.datatransferproject.types.transfer.errors.ErrorDetail;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static java.lang.String.format;
 
+/**
+ * A {@link IdempotentImportExecutor} that persists known values and errors to Datastore so a job
+ * can be resumed by another worker. It can be shared by importers that import items from several
+ * threads.
+ *
+ * <p>Writes are buffered and committed in transactions of up to {@code writeBatchSize} entities:
+ * when the buffer is full, when an item is recorded more than {@code writeDelayMillis} after the
+ * last commit, by a background flush once that delay has passed without new items, and whenever
+ * {@link #getErrors()} or {@link #setJobId} is called, which the copier does when a job starts and
+ * once it has finished. Commits run outside the buffer's lock, one at a time, so threads recording
+ * items do not wait for datastore.
+ *
+ * <p>If the worker crashes, buffered writes are lost. A resumed job then imports the items whose
+ * results were buffered again, so up to {@code writeBatchSize} items may be duplicated in the
+ * destination, and retries the items whose errors were buffered.
+ *
+ * <p>A failed commit is different: nothing is lost. A transaction is tried up to {@code
+ * COMMIT_ATTEMPTS} times, and writes that still fail go back to the buffer to be committed by the
+ * next flush. Flushes triggered by items only log the failure, so items are not reported as failed
+ * because of their bookkeeping. The flushes of {@link #getErrors()}, {@link #setJobId} and {@link
+ * #releaseJob} throw the {@link DatastoreException} instead, so a job whose results or errors could
+ * not be persisted fails rather than silently losing them.
+ */
 public class GoogleCloudIdempotentImportExecutor implements IdempotentImportExecutor {
 
   private static final String IDEMPOTENT_RESULTS_KIND = "IdempotentResults";
@@ -35,22 +76,77 @@ public class GoogleCloudIdempotentImportExecutor implements IdempotentImportExec
   private static final String IDEMPOTENT_ID_FIELD = "idempotent_id";
   private static final String ERROR_FIELD = "error_details";
 
+  // Datastore allows at most 500 entities to be written in a single commit
+  static final int MAX_WRITE_BATCH_SIZE = 500;
+  static final int DEFAULT_WRITE_BATCH_SIZE = 400;
+  static final long DEFAULT_WRITE_DELAY_MILLIS = 1000;
+  private static final int COMMIT_ATTEMPTS = 3;
+  private static final int KEY_PAGE_SIZE = 1000;
+
   private final Datastore datastore;
   private final Monitor monitor;
   private final ObjectMapper objectMapper;
+  private final InFlightExecutions inFlightExecutions = new InFlightExecutions(this);
+  private final int writeBatchSize;
+  private final long writeDelayMillis;
+  private final Clock clock;
+
+  // Held while buffered writes are committed, so that commits are applied in order
+  private final ReentrantLock commitLock = new ReentrantLock();
+  private final ScheduledExecutorService flushScheduler;
+  // Buffered writes, guarded by pendingWritesLock
+  private final Object pendingWritesLock = new Object();
+  private final Map<Key, Entity> pendingPuts = new LinkedHashMap<>();
+  private final Set<Key> pendingDeletes = new LinkedHashSet<>();
+  private long lastFlushMillis;
 
   // These are all variables corresponding to the job state. Only initialized when setJobId() is called
-  private Map<String, Serializable> knownValues;
-  private Map<String, ErrorDetail> errors;
-  private UUID jobId;
-  private String jobIdPrefix;
+  // Values recorded by this executor, or already read back from datastore
+  private volatile Map<String, Serializable> knownValues;
+  // Sorted hashes of the idempotent ids that datastore held results for when setJobId was called
+  private volatile long[] persistedIdHashes;
+  private volatile Map<String, ErrorDetail> errors;
+  private volatile UUID jobId;
+  private volatile String jobIdPrefix;
 
   public GoogleCloudIdempotentImportExecutor(Datastore datastore, Monitor monitor) {
+    this(
+        datastore,
+        monitor,
+        DEFAULT_WRITE_BATCH_SIZE,
+        DEFAULT_WRITE_DELAY_MILLIS,
+        Clock.systemUTC());
+  }
+
+  public GoogleCloudIdempotentImportExecutor(
+      Datastore datastore,
+      Monitor monitor,
+      int writeBatchSize,
+      long writeDelayMillis,
+      Clock clock) {
+    Preconditions.checkArgument(
+        writeBatchSize > 0 && writeBatchSize <= MAX_WRITE_BATCH_SIZE,
+        "writeBatchSize must be between 1 and %s",
+        MAX_WRITE_BATCH_SIZE);
     this.datastore = datastore;
     this.monitor = monitor;
+    this.writeBatchSize = writeBatchSize;
+    this.writeDelayMillis = writeDelayMillis;
+    this.clock = clock;
+    this.lastFlushMillis = clock.millis();
     this.objectMapper = new ObjectMapper();
     this.objectMapper.registerModule(new JavaTimeModule());
     this.objectMapper.registerSubtypes(ErrorDetail.class);
+    this.flushScheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("idempotent-executor-flush-%d")
+                .setDaemon(true)
+                .build());
+    if (writeDelayMillis > 0) {
+      flushScheduler.scheduleWithFixedDelay(
+          this::flushInBackground, writeDelayMillis, writeDelayMillis, TimeUnit.MILLISECONDS);
+    }
   }
 
   @Override
@@ -69,14 +165,19 @@ public class GoogleCloudIdempotentImportExecutor implements IdempotentImportExec
       String idempotentId, String itemName, Callable<T> callable) throws Exception {
     Preconditions.checkNotNull(jobId, "executing a callable before initialization of a job");
 
-    if (knownValues.containsKey(idempotentId)) {
+    if (isKeyCached(idempotentId)) {
       monitor.debug(
           () ->
               jobIdPrefix
                   + format("Using cached key %s from cache for %s", idempotentId, itemName));
       return (T) knownValues.get(idempotentId);
     }
+    return inFlightExecutions.execute(
+        idempotentId, () -> execute(idempotentId, itemName, callable));
+  }
 
+  private <T extends Serializable> T execute(
+      String idempotentId, String itemName, Callable<T> callable) throws Exception {
     try {
       T result = callable.call();
       monitor.debug(
@@ -96,56 +197,267 @@ public class GoogleCloudIdempotentImportExecutor implements IdempotentImportExec
     }
   }
 
+  @Override
+  public <T extends ImportableItem, R extends Serializable>
+      List<R> importBatchAndSwallowIOExceptions(List<T> items, BatchImportFunction<T, R> function)
+          throws Exception {
+    Preconditions.checkNotNull(jobId, "executing a batch before initialization of a job");
+
+    BatchImport batch = BatchImport.run(items, function, this::isKeyCached);
+    addBatch(batch);
+    batch
+        .getErrors()
+        .values()
+        .forEach(
+            errorDetail ->
+                monitor.severe(() -> jobIdPrefix + "Problem with importing item: " + errorDetail));
+    batch.rethrowUnlessIOException();
+
+    List<R> values = new ArrayList<>(items.size());
+    for (T item : items) {
+      values.add((R) knownValues.get(item.getIdempotentId()));
+    }
+    return values;
+  }
+
+  /** Records the results and errors of a batch with a single buffered write. */
+  private void addBatch(BatchImport batch) throws IOException {
+    if (batch.getResults().isEmpty() && batch.getErrors().isEmpty()) {
+      return;
+    }
+    knownValues.putAll(batch.getResults());
+    monitor.debug(
+        () ->
+            jobIdPrefix
+                + format("Storing %d keys in cache for a batch", batch.getResults().size()));
+
+    synchronized (pendingWritesLock) {
+      for (Map.Entry<String, Serializable> result : batch.getResults().entrySet()) {
+        bufferPut(createResultEntity(result.getKey(), result.getValue()));
+        if (errors.remove(result.getKey()) != null) {
+          bufferDelete(getErrorKey(result.getKey(), jobId));
+        }
+      }
+      for (Map.Entry<String, ErrorDetail> error : batch.getErrors().entrySet()) {
+        errors.put(error.getKey(), error.getValue());
+        bufferPut(createErrorEntity(error.getKey(), error.getValue()));
+      }
+    }
+    flushIfDue();
+  }
+
   private <T extends Serializable> void addResult(String idempotentId, T result)
       throws IOException {
     knownValues.put(idempotentId, result);
+    Entity resultEntity = createResultEntity(idempotentId, result);
 
-    try {
-      Transaction transaction = datastore.newTransaction();
-
-      transaction.put(createResultEntity(idempotentId, result));
-      if (errors.containsKey(idempotentId)) {
-        // if the errors contain this key, that means the ID
-        transaction.delete(getErrorKey(idempotentId, jobId));
-        errors.remove(idempotentId);
+    synchronized (pendingWritesLock) {
+      bufferPut(resultEntity);
+      if (errors.remove(idempotentId) != null) {
+        // if the errors contained this key, that means the ID previously failed
+        bufferDelete(getErrorKey(idempotentId, jobId));
       }
-      transaction.commit();
-    } catch (DatastoreException e) {
-      monitor.severe(() -> jobIdPrefix + "Error writing result to datastore: " + e);
     }
+    flushIfDue();
   }
 
   private void addError(String idempotentId, ErrorDetail errorDetail) throws IOException {
     errors.put(idempotentId, errorDetail);
+    Entity errorEntity = createErrorEntity(idempotentId, errorDetail);
+
+    synchronized (pendingWritesLock) {
+      bufferPut(errorEntity);
+    }
+    flushIfDue();
+  }
+
+  private void bufferPut(Entity entity) {
+    pendingDeletes.remove(entity.getKey());
+    pendingPuts.put(entity.getKey(), entity);
+  }
+
+  private void bufferDelete(Key key) {
+    pendingPuts.remove(key);
+    pendingDeletes.add(key);
+  }
+
+  /**
+   * Commits the buffered writes if the buffer is full or the delay has passed, unless another
+   * thread is already committing, which leaves them to the next item or the background flush.
+   */
+  private void flushIfDue() {
+    if (!commitLock.tryLock()) {
+      return;
+    }
     try {
-      Transaction transaction = datastore.newTransaction();
-      transaction.put(createErrorEntity(idempotentId, errorDetail));
-      transaction.commit();
+      boolean due;
+      synchronized (pendingWritesLock) {
+        due =
+            pendingPuts.size() + pendingDeletes.size() >= writeBatchSize
+                || clock.millis() - lastFlushMillis >= writeDelayMillis;
+      }
+      if (due) {
+        commitPendingWrites();
+      }
     } catch (DatastoreException e) {
-      monitor.severe(() -> jobIdPrefix + "Error writing ErrorDetails to datastore: " + e);
+      // Kept in the buffer, the writes are committed again by the next flush
+    } finally {
+      commitLock.unlock();
+    }
+  }
+
+  private void flushInBackground() {
+    try {
+      flushIfDue();
+    } catch (RuntimeException e) {
+      // Keeps the flush scheduled, the writes are committed by the next item or flush
+      monitor.severe(() -> jobIdPrefix + "Error flushing writes to datastore", e);
+    }
+  }
+
+  /** Commits all buffered writes, waiting for a commit in progress to finish first. */
+  private void flushPendingWrites() {
+    commitLock.lock();
+    try {
+      commitPendingWrites();
+    } finally {
+      commitLock.unlock();
+    }
+  }
+
+  /**
+   * Takes the buffered writes and commits them, in transactions of at most {@code writeBatchSize}
+   * entities. If a transaction keeps failing, its writes and those not tried yet are put back in
+   * the buffer and the failure is thrown. Must be called with {@code commitLock} held.
+   */
+  private void commitPendingWrites() {
+    List<Entity> puts;
+    List<Key> deletes;
+    synchronized (pendingWritesLock) {
+      lastFlushMillis = clock.millis();
+      if (pendingPuts.isEmpty() && pendingDeletes.isEmpty()) {
+        return;
+      }
+      puts = new ArrayList<>(pendingPuts.values());
+      deletes = new ArrayList<>(pendingDeletes);
+      pendingPuts.clear();
+      pendingDeletes.clear();
+    }
+
+    int putIndex = 0;
+    int deleteIndex = 0;
+    while (putIndex < puts.size() || deleteIndex < deletes.size()) {
+      int putCount = Math.min(writeBatchSize, puts.size() - putIndex);
+      int deleteCount = Math.min(writeBatchSize - putCount, deletes.size() - deleteIndex);
+      try {
+        commit(
+            puts.subList(putIndex, putIndex + putCount),
+            deletes.subList(deleteIndex, deleteIndex + deleteCount));
+      } catch (DatastoreException e) {
+        requeue(puts.subList(putIndex, puts.size()), deletes.subList(deleteIndex, deletes.size()));
+        int entityCount = puts.size() - putIndex + deletes.size() - deleteIndex;
+        monitor.severe(
+            () ->
+                jobIdPrefix
+                    + format(
+                        "Error writing to datastore, %d entities kept to write again: %s",
+                        entityCount, e));
+        throw e;
+      }
+      putIndex += putCount;
+      deleteIndex += deleteCount;
+    }
+  }
+
+  /** Commits one transaction, trying it up to {@code COMMIT_ATTEMPTS} times. */
+  private void commit(List<Entity> puts, List<Key> deletes) {
+    for (int attempt = 1; ; attempt++) {
+      try {
+        Transaction transaction = datastore.newTransaction();
+        if (!puts.isEmpty()) {
+          transaction.put(puts.toArray(new Entity[0]));
+        }
+        if (!deletes.isEmpty()) {
+          transaction.delete(deletes.toArray(new Key[0]));
+        }
+        transaction.commit();
+        return;
+      } catch (DatastoreException e) {
+        if (attempt >= COMMIT_ATTEMPTS) {
+          throw e;
+        }
+        int failedAttempt = attempt;
+        monitor.info(
+            () ->
+                jobIdPrefix
+                    + format(
+                        "Retrying a write to datastore after attempt %d: %s", failedAttempt, e));
+      }
+    }
+  }
+
+  /** Puts writes that were not committed back in the buffer, unless newer ones replaced them. */
+  private void requeue(List<Entity> puts, List<Key> deletes) {
+    synchronized (pendingWritesLock) {
+      for (Entity put : puts) {
+        if (!pendingPuts.containsKey(put.getKey()) && !pendingDeletes.contains(put.getKey())) {
+          pendingPuts.put(put.getKey(), put);
+        }
+      }
+      for (Key delete : deletes) {
+        if (!pendingPuts.containsKey(delete) && !pendingDeletes.contains(delete)) {
+          pendingDeletes.add(delete);
+        }
+      }
     }
   }
 
   @Override
   public <T extends Serializable> T getCachedValue(String idempotentId)
       throws IllegalArgumentException {
-    if (!knownValues.containsKey(idempotentId)) {
-      throw new IllegalArgumentException(
-          idempotentId
-              + " is not a known key, known keys: "
-              + Joiner.on(", ").join(knownValues.keySet()));
+    if (!isKeyCached(idempotentId)) {
+      throw new IllegalArgumentException(idempotentId + " is not a known key");
     }
     return (T) knownValues.get(idempotentId);
   }
 
   @Override
   public boolean isKeyCached(String idempotentId) {
-    return knownValues.containsKey(idempotentId);
+    return knownValues.containsKey(idempotentId) || loadPersistedValue(idempotentId);
+  }
+
+  /**
+   * Reads the result of {@code idempotentId} from datastore into {@code knownValues}, if the key
+   * was present when the job was loaded. Returns false when it was not, including when only the
+   * hash of another id matched.
+   */
+  private boolean loadPersistedValue(String idempotentId) {
+    if (Arrays.binarySearch(persistedIdHashes, hashIdempotentId(idempotentId)) < 0) {
+      return false;
+    }
+    Entity result = datastore.get(getResultsKey(idempotentId, jobId));
+    if (result == null) {
+      return false;
+    }
+    knownValues.put(idempotentId, result.getString(RESULTS_FIELD));
+    return true;
   }
 
   @Override
   public Collection<ErrorDetail> getErrors() {
-    return ImmutableList.copyOf(errors.values());
+    // Called once the job has finished, so this is the last chance to persist buffered writes
+    flushPendingWrites();
+    Map<String, ErrorDetail> errors = this.errors;
+    synchronized (errors) {
+      return ImmutableList.copyOf(errors.values());
+    }
+  }
+
+  /** Commits the remaining writes and stops the background flush. */
+  @Override
+  public void releaseJob(UUID jobId) {
+    flushScheduler.shutdown();
+    flushPendingWrites();
   }
 
   // In non-tests setJobId is only ever called once per executor, so the initialization of
@@ -153,28 +465,53 @@ public class GoogleCloudIdempotentImportExecutor implements IdempotentImportExec
   @Override
   public void setJobId(UUID jobId) {
     Preconditions.checkNotNull(jobId);
+    // Buffered writes must be visible to the queries below, and belong to the previous job
+    flushPendingWrites();
     this.jobId = jobId;
-    this.knownValues = getKnownValuesForJob(jobId);
+    this.knownValues = Collections.synchronizedMap(new HashMap<>());
+    this.persistedIdHashes = getPersistedIdHashesForJob(jobId);
     this.errors = getErrorDetailsForJob(jobId);
     jobIdPrefix = "Job " + jobId + ": ";
   }
 
-  private Map<String, Serializable> getKnownValuesForJob(UUID jobId) {
-    Map<String, Serializable> dataStoreKnownValues = new HashMap<>();
-    Query<Entity> query =
-        Query.newEntityQueryBuilder()
+  /**
+   * Loads the hashes of the idempotent ids that have a result for {@code jobId}. Only keys are
+   * read, a page at a time, and values are fetched when they are first needed, so resuming a large
+   * job neither waits for nor holds every stored result.
+   */
+  private long[] getPersistedIdHashesForJob(UUID jobId) {
+    String keyPrefix = jobId + "_";
+    long[] hashes = new long[KEY_PAGE_SIZE];
+    int count = 0;
+    KeyQuery query =
+        Query.newKeyQueryBuilder()
             .setKind(IDEMPOTENT_RESULTS_KIND)
             .setFilter(CompositeFilter.and(PropertyFilter.eq(JOB_ID_FIELD, String.valueOf(jobId))))
+            .setLimit(KEY_PAGE_SIZE)
             .build();
-    QueryResults<Entity> results = datastore.run(query);
-
-    while (results.hasNext()) {
-      Entity result = results.next();
-      dataStoreKnownValues.put(
-          result.getString(IDEMPOTENT_ID_FIELD), result.getString(RESULTS_FIELD));
+    while (true) {
+      QueryResults<Key> results = datastore.run(query);
+      int pageCount = 0;
+      while (results.hasNext()) {
+        String idempotentId = results.next().getName().substring(keyPrefix.length());
+        if (count == hashes.length) {
+          hashes = Arrays.copyOf(hashes, hashes.length * 2);
+        }
+        hashes[count++] = hashIdempotentId(idempotentId);
+        pageCount++;
+      }
+      if (pageCount < KEY_PAGE_SIZE) {
+        break;
+      }
+      query = query.toBuilder().setStartCursor(results.getCursorAfter()).build();
     }
+    long[] persistedIdHashes = Arrays.copyOf(hashes, count);
+    Arrays.sort(persistedIdHashes);
+    return persistedIdHashes;
+  }
 
-    return dataStoreKnownValues;
+  private static long hashIdempotentId(String idempotentId) {
+    return Hashing.murmur3_128().hashString(idempotentId, StandardCharsets.UTF_8).asLong();
   }
 
   private Map<String, ErrorDetail> getErrorDetailsForJob(UUID jobId) {
@@ -198,7 +535,7 @@ public class GoogleCloudIdempotentImportExecutor implements IdempotentImportExec
       }
     }
 
-    return datastoreKnownErrors;
+    return Collections.synchronizedMap(datastoreKnownErrors);
   }
 
 
@@ -4,6 +4,7 @@ import com.google.auth.oauth2.GoogleCredentials;
 import com.google.cloud.datastore.Datastore;
 import com.google.cloud.datastore.DatastoreOptions;
 import java.io.IOException;
+import java.time.Clock;
 import org.datatransferproject.api.launcher.ExtensionContext;
 import org.datatransferproject.api.launcher.Monitor;
 import org.datatransferproject.spi.transfer.idempotentexecutor.IdempotentImportExecutor;
@@ -18,7 +19,20 @@ public class GoogleCloudIdempotentImportExecutorExtension implements
   public IdempotentImportExecutor getIdempotentImportExecutor(ExtensionContext extensionContext) {
     Monitor monitor = extensionContext.getMonitor();
     try {
-      return new GoogleCloudIdempotentImportExecutor(getDatastore(), monitor);
+      int writeBatchSize =
+          extensionContext.getSetting(
+              "googleIdempotentWriteBatchSize",
+              GoogleCloudIdempotentImportExecutor.DEFAULT_WRITE_BATCH_SIZE);
+      int writeDelayMillis =
+          extensionContext.getSetting(
+              "googleIdempotentWriteDelayMillis",
+              (int) GoogleCloudIdempotentImportExecutor.DEFAULT_WRITE_DELAY_MILLIS);
+      return new GoogleCloudIdempotentImportExecutor(
+          getDatastore(),
+          monitor,
+          Math.min(writeBatchSize, GoogleCloudIdempotentImportExecutor.MAX_WRITE_BATCH_SIZE),
+          writeDelayMillis,
+          Clock.systemUTC());
     } catch (IOException e) {
       monitor.severe(() -> "Error initializing datastore: " + e);
       throw new IllegalStateException(e);
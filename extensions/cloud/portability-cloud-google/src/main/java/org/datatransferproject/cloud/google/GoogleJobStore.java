@@ -382,6 +382,11 @@ public final class GoogleJobStore extends JobStoreWithValidator {
     return googleTempFileStore.getStream(jobId, key);
   }
 
+  @Override
+  public boolean hasStream(UUID jobId, String key) {
+    return googleTempFileStore.exists(jobId, key);
+  }
+
   private Entity createNewEntity(UUID jobId, Map<String, Object> data) throws IOException {
     Timestamp createdTime = Timestamp.now();
 
@@ -49,6 +49,10 @@ public class GoogleTempFileStore {
     return new InputStreamWrapper(Channels.newInputStream(channel), blob.getSize());
   }
 
+  boolean exists(UUID jobId, String keyName) {
+    return bucket.get(getDataKeyName(jobId, keyName)) != null;
+  }
+
   @VisibleForTesting
   static String getDataKeyName(UUID jobId, String key) {
     return String.format("%s-%s", jobId, key);
@@ -1,6 +1,5 @@
 package org.datatransferproject.cloud.google;
 
-import static com.google.common.base.Preconditions.checkState;
 import static java.lang.String.format;
 
 import com.google.cloud.MonitoredResource;
@@ -21,7 +20,7 @@ class StackdriverMonitor implements JobAwareMonitor {
   private static final String LOG_NAME = "worker-instance-log";
   private final Logging logging;
   private final String projectId;
-  private String jobId;
+  private volatile Supplier<String> jobIdSupplier = () -> null;
 
   public StackdriverMonitor(Logging logging, String projectId) {
     this.logging = logging;
@@ -52,6 +51,7 @@ class StackdriverMonitor implements JobAwareMonitor {
             // GCP's job to line up with DTP's job.
             .addLabel("task_id", getHostName());
 
+    String jobId = jobIdSupplier.get();
     if (null != jobId) {
       resourceBuilder.addLabel("job", jobId);
     }
@@ -98,10 +98,8 @@ class StackdriverMonitor implements JobAwareMonitor {
   }
 
   @Override
-  public void setJobId(String jobId) {
-    checkState(this.jobId == null, "JobId can only be set once.");
-    this.jobId = jobId;
-    debug(() -> format("Set job id to: %s", jobId));
+  public void setJobIdSupplier(Supplier<String> jobIdSupplier) {
+    this.jobIdSupplier = jobIdSupplier;
   }
 
   @Override
@@ -2,19 +2,36 @@ package org.datatransferproject.cloud.google;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.google.cloud.datastore.Datastore;
+import com.google.cloud.datastore.DatastoreException;
 import com.google.cloud.datastore.Transaction;
 import com.google.cloud.datastore.testing.LocalDatastoreHelper;
+import com.google.common.collect.ImmutableList;
 import org.datatransferproject.api.launcher.Monitor;
+import org.datatransferproject.spi.transfer.idempotentexecutor.ItemImportResult;
+import org.datatransferproject.types.common.ImportableItem;
 import org.datatransferproject.types.transfer.errors.ErrorDetail;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
 import java.io.IOException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 
@@ -63,6 +80,22 @@ public class GoogleCloudIdempotentImportExecutorTest {
     assertFalse(googleExecutor.isKeyCached("id1_job2"));
   }
 
+  @Test
+  public void resumedJobDoesNotImportPersistedItemsAgain() throws Exception {
+    initializeDS();
+    googleExecutor.setJobId(JOB_ID);
+
+    String result =
+        googleExecutor.executeOrThrowException(
+            "id2",
+            ITEM_NAME,
+            () -> {
+              throw new IllegalStateException("id2 was already imported");
+            });
+    assertEquals("idempotentId2", result);
+    assertFalse(googleExecutor.isKeyCached("id5"));
+  }
+
   @Test
   public void removeErrorIfItemSucceeds() throws Exception {
     initializeDS();
@@ -80,6 +113,172 @@ public class GoogleCloudIdempotentImportExecutorTest {
     assertEquals(googleExecutor.getErrors().size(), 0);
   }
 
+  @Test
+  public void concurrentSubmissionsOfAnItemShareOneExecution() throws Exception {
+    googleExecutor.setJobId(JOB_ID);
+    ConcurrentMap<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService threads = Executors.newFixedThreadPool(8);
+    List<Future<String>> results = new ArrayList<>();
+    for (int i = 0; i < 80; i++) {
+      String id = "id" + (i % 10);
+      results.add(
+          threads.submit(
+              () -> {
+                start.await();
+                return googleExecutor.executeOrThrowException(
+                    id,
+                    ITEM_NAME,
+                    () -> {
+                      calls.computeIfAbsent(id, k -> new AtomicInteger()).incrementAndGet();
+                      return "idempotent-" + id;
+                    });
+              }));
+    }
+    start.countDown();
+    for (int i = 0; i < results.size(); i++) {
+      assertEquals("idempotent-id" + (i % 10), results.get(i).get());
+    }
+    threads.shutdown();
+
+    assertEquals(10, calls.size());
+    calls.values().forEach(count -> assertEquals(1, count.get()));
+
+    // every result was persisted exactly once and can be reloaded
+    googleExecutor.setJobId(JOB_ID);
+    for (int i = 0; i < 10; i++) {
+      assertEquals("idempotent-id" + i, googleExecutor.getCachedValue("id" + i));
+    }
+  }
+
+  @Test
+  public void importBatchPersistsResultsAndErrors() throws Exception {
+    initializeDS();
+    googleExecutor.setJobId(JOB_ID);
+
+    List<String> results =
+        googleExecutor.importBatchAndSwallowIOExceptions(
+            ImmutableList.of(item("id1"), item("id4"), item("id5")),
+            toImport -> {
+              // id1 is already cached and is not imported again
+              assertEquals(2, toImport.size());
+              return ImmutableList.of(
+                  ItemImportResult.success("idempotentId4"),
+                  ItemImportResult.error(new IOException("Test IO exception"), null));
+            });
+    assertEquals(Arrays.asList("idempotentId1", "idempotentId4", null), results);
+
+    // reset the jobId to trigger another read from datastore
+    googleExecutor.setJobId(JOB_ID);
+    assertEquals("idempotentId4", googleExecutor.getCachedValue("id4"));
+    assertFalse(googleExecutor.isKeyCached("id5"));
+    assertEquals(1, googleExecutor.getErrors().size());
+    assertEquals("id5", googleExecutor.getErrors().iterator().next().id());
+  }
+
+  @Test
+  public void writesAreBufferedUntilTheBatchIsFull() throws Exception {
+    GoogleCloudIdempotentImportExecutor bufferingExecutor =
+        new GoogleCloudIdempotentImportExecutor(
+            datastore, monitor, 3, Long.MAX_VALUE, Clock.systemUTC());
+    bufferingExecutor.setJobId(JOB_ID);
+    bufferingExecutor.executeAndSwallowIOExceptions("id1", ITEM_NAME, () -> "idempotentId1");
+    bufferingExecutor.executeAndSwallowIOExceptions("id2", ITEM_NAME, () -> "idempotentId2");
+
+    // googleExecutor only sees what has been committed to datastore
+    googleExecutor.setJobId(JOB_ID);
+    assertFalse(googleExecutor.isKeyCached("id1"));
+
+    bufferingExecutor.executeAndSwallowIOExceptions("id3", ITEM_NAME, () -> "idempotentId3");
+    googleExecutor.setJobId(JOB_ID);
+    assertEquals("idempotentId1", googleExecutor.getCachedValue("id1"));
+    assertEquals("idempotentId3", googleExecutor.getCachedValue("id3"));
+
+    bufferingExecutor.executeAndSwallowIOExceptions(
+        "id4",
+        ITEM_NAME,
+        () -> {
+          throw new IOException("error");
+        });
+    googleExecutor.setJobId(JOB_ID);
+    assertEquals(0, googleExecutor.getErrors().size());
+
+    // getErrors is called at the end of the job and flushes the buffer
+    assertEquals(1, bufferingExecutor.getErrors().size());
+    googleExecutor.setJobId(JOB_ID);
+    assertEquals(1, googleExecutor.getErrors().size());
+  }
+
+  @Test
+  public void writesAreFlushedOnceTheDelayHasPassed() throws Exception {
+    AtomicLong now = new AtomicLong();
+    Clock clock = Mockito.mock(Clock.class);
+    Mockito.when(clock.millis()).thenAnswer(invocation -> now.get());
+    GoogleCloudIdempotentImportExecutor bufferingExecutor =
+        new GoogleCloudIdempotentImportExecutor(datastore, monitor, 400, 1000, clock);
+    bufferingExecutor.setJobId(JOB_ID);
+
+    bufferingExecutor.executeAndSwallowIOExceptions("id1", ITEM_NAME, () -> "idempotentId1");
+    googleExecutor.setJobId(JOB_ID);
+    assertFalse(googleExecutor.isKeyCached("id1"));
+
+    now.set(1000);
+    bufferingExecutor.executeAndSwallowIOExceptions("id2", ITEM_NAME, () -> "idempotentId2");
+    googleExecutor.setJobId(JOB_ID);
+    assertTrue(googleExecutor.isKeyCached("id1"));
+    assertTrue(googleExecutor.isKeyCached("id2"));
+  }
+
+  @Test
+  public void writesAreFlushedInTheBackgroundWithoutNewItems() throws Exception {
+    AtomicLong now = new AtomicLong();
+    Clock clock = Mockito.mock(Clock.class);
+    Mockito.when(clock.millis()).thenAnswer(invocation -> now.get());
+    GoogleCloudIdempotentImportExecutor bufferingExecutor =
+        new GoogleCloudIdempotentImportExecutor(datastore, monitor, 400, 10, clock);
+    bufferingExecutor.setJobId(JOB_ID);
+
+    bufferingExecutor.executeAndSwallowIOExceptions("id1", ITEM_NAME, () -> "idempotentId1");
+    googleExecutor.setJobId(JOB_ID);
+    assertFalse(googleExecutor.isKeyCached("id1"));
+
+    now.set(10);
+    long deadline = System.currentTimeMillis() + 10_000;
+    googleExecutor.setJobId(JOB_ID);
+    while (!googleExecutor.isKeyCached("id1") && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+      googleExecutor.setJobId(JOB_ID);
+    }
+    assertTrue(googleExecutor.isKeyCached("id1"));
+    bufferingExecutor.releaseJob(JOB_ID);
+  }
+
+  @Test
+  public void failedWritesAreKeptForTheNextFlush() throws Exception {
+    Datastore failingDatastore = Mockito.spy(datastore);
+    Transaction failingTransaction = Mockito.mock(Transaction.class);
+    Mockito.when(failingTransaction.commit())
+        .thenThrow(new DatastoreException(14, "unavailable", "UNAVAILABLE"));
+    GoogleCloudIdempotentImportExecutor bufferingExecutor =
+        new GoogleCloudIdempotentImportExecutor(
+            failingDatastore, monitor, 400, Long.MAX_VALUE, Clock.systemUTC());
+    bufferingExecutor.setJobId(JOB_ID);
+    bufferingExecutor.executeAndSwallowIOExceptions("id1", ITEM_NAME, () -> "idempotentId1");
+
+    Mockito.doReturn(failingTransaction).when(failingDatastore).newTransaction();
+    // The end of the job cannot persist the result, and says so
+    assertThrows(DatastoreException.class, bufferingExecutor::getErrors);
+
+    Mockito.doCallRealMethod().when(failingDatastore).newTransaction();
+    assertEquals(0, bufferingExecutor.getErrors().size());
+    googleExecutor.setJobId(JOB_ID);
+    assertEquals("idempotentId1", googleExecutor.getCachedValue("id1"));
+  }
+
+  private static ImportableItem item(String idempotentId) {
+    return () -> idempotentId;
+  }
+
   private void initializeDS() throws IOException {
     Transaction t = datastore.newTransaction();
     t.put(googleExecutor.createResultEntity("id1", JOB_ID, "idempotentId1"));
@@ -15,6 +15,8 @@
  */
 package org.datatransferproject.cloud.local;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import org.datatransferproject.api.launcher.ExtensionContext;
 import org.datatransferproject.api.launcher.Monitor;
 import org.datatransferproject.spi.cloud.extension.CloudExtension;
@@ -25,10 +27,11 @@ import org.datatransferproject.spi.cloud.storage.JobStore;
 public class LocalCloudExtension implements CloudExtension {
 
   private Monitor monitor;
+  private Path tempDirectory = LocalTempFileStore.DEFAULT_DIRECTORY;
 
   @Override
   public JobStore getJobStore() {
-    return new LocalJobStore(monitor);
+    return new LocalJobStore(monitor, tempDirectory);
   }
 
   @Override
@@ -40,5 +43,9 @@ public class LocalCloudExtension implements CloudExtension {
   @Override
   public void initialize(ExtensionContext context) {
     monitor = context.getMonitor();
+    tempDirectory =
+        Paths.get(
+            context.getSetting(
+                "localTempFileDir", LocalTempFileStore.DEFAULT_DIRECTORY.toString()));
   }
 }
@@ -0,0 +1,619 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.datatransferproject.cloud.local;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.function.LongPredicate;
+import java.util.stream.LongStream;
+import org.datatransferproject.api.launcher.Monitor;
+import org.datatransferproject.spi.transfer.idempotentexecutor.BatchImport;
+import org.datatransferproject.spi.transfer.idempotentexecutor.BatchImportFunction;
+import org.datatransferproject.spi.transfer.idempotentexecutor.IdempotentImportExecutor;
+import org.datatransferproject.spi.transfer.idempotentexecutor.InFlightExecutions;
+import org.datatransferproject.types.common.ImportableItem;
+import org.datatransferproject.types.transfer.errors.ErrorDetail;
+
+/**
+ * A {@link IdempotentImportExecutor} that stores known values and errors in an append-only log
+ * file per job, so that its heap usage does not grow with the values and stack traces of a large
+ * job, and a restarted worker resumes a job without importing its items again.
+ *
+ * <p>Only the hash and file offset of each known key are kept in memory; values are read back
+ * from the log when they are requested. A record that was only partly written when the worker
+ * stopped is discarded when the job is resumed. The log is not synced to disk after every write,
+ * so a crash of the machine, rather than of the worker, may lose the latest results, which are
+ * then imported again.
+ *
+ * <p>The log is kept open for reading and writing until the executor switches to another job or
+ * the job is released. It is deleted once the job has succeeded, and kept after a job failed. The
+ * lock of the executor guards the index, and values and errors are read from the log after the
+ * lock is released, so that threads looking up keys do not wait on each other's disk reads.
+ */
+public class LocalIdempotentImportExecutor implements IdempotentImportExecutor {
+  private static final byte RESULT = 1;
+  private static final byte ERROR = 2;
+  private static final int NULL_PAYLOAD = -1;
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private final Path directory;
+  private final Monitor monitor;
+  private final InFlightExecutions inFlightExecutions = new InFlightExecutions(this);
+  // The fields below are guarded by this
+  private final OffsetIndex results = new OffsetIndex();
+  private final Map<String, Long> errors = new LinkedHashMap<>();
+  private final Map<String, Long> recentErrors = new LinkedHashMap<>();
+  private Path log;
+  private FileChannel channel;
+  private long logEnd;
+  private volatile UUID jobId;
+
+  public LocalIdempotentImportExecutor(Path directory, Monitor monitor) {
+    this.directory = directory;
+    this.monitor = monitor;
+  }
+
+  @Override
+  public <T extends Serializable> T executeAndSwallowIOExceptions(
+      String idempotentId, String itemName, Callable<T> callable) throws Exception {
+    try {
+      return executeOrThrowException(idempotentId, itemName, callable);
+    } catch (IOException e) {
+      // Note all errors are logged in executeOrThrowException so no need to re-log them here.
+      return null;
+    }
+  }
+
+  @Override
+  public <T extends Serializable> T executeOrThrowException(
+      String idempotentId, String itemName, Callable<T> callable) throws Exception {
+    if (isKeyCached(idempotentId)) {
+      monitor.debug(
+          () ->
+              jobIdPrefix()
+                  + format("Using cached key %s from cache for %s", idempotentId, itemName));
+      return getCachedValue(idempotentId);
+    }
+    return inFlightExecutions.execute(
+        idempotentId, () -> execute(idempotentId, itemName, callable));
+  }
+
+  private <T extends Serializable> T execute(
+      String idempotentId, String itemName, Callable<T> callable) throws Exception {
+    T result;
+    try {
+      result = callable.call();
+    } catch (Exception e) {
+      ErrorDetail errorDetail =
+          ErrorDetail.builder()
+              .setId(idempotentId)
+              .setTitle(itemName)
+              .setException(Throwables.getStackTraceAsString(e))
+              .build();
+      append(ImmutableList.of(errorRecord(errorDetail)));
+      monitor.severe(() -> jobIdPrefix() + "Problem with importing item: " + errorDetail);
+      throw e;
+    }
+    append(ImmutableList.of(resultRecord(idempotentId, result)));
+    monitor.debug(
+        () -> jobIdPrefix() + format("Storing key %s in cache for %s", idempotentId, itemName));
+    return result;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T extends ImportableItem, R extends Serializable>
+      List<R> importBatchAndSwallowIOExceptions(List<T> items, BatchImportFunction<T, R> function)
+          throws Exception {
+    BatchImport batch = BatchImport.run(items, function, this::isKeyCached);
+    List<Record> records = new ArrayList<>();
+    batch.getResults().forEach((id, value) -> records.add(resultRecord(id, value)));
+    batch.getErrors().values().forEach(errorDetail -> records.add(errorRecord(errorDetail)));
+    append(records);
+    monitor.debug(
+        () ->
+            jobIdPrefix()
+                + format("Storing %d keys in cache for a batch", batch.getResults().size()));
+    batch
+        .getErrors()
+        .values()
+        .forEach(
+            errorDetail ->
+                monitor.severe(
+                    () -> jobIdPrefix() + "Problem with importing item: " + errorDetail));
+    batch.rethrowUnlessIOException();
+
+    List<R> values = new ArrayList<>(items.size());
+    for (T item : items) {
+      String idempotentId = item.getIdempotentId();
+      if (batch.getResults().containsKey(idempotentId)) {
+        values.add((R) batch.getResults().get(idempotentId));
+      } else {
+        values.add(isKeyCached(idempotentId) ? this.<R>getCachedValue(idempotentId) : null);
+      }
+    }
+    return values;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T extends Serializable> T getCachedValue(String idempotentId) {
+    FileChannel channel = currentChannel();
+    long offset = findResult(channel, idempotentId);
+    if (offset == OffsetIndex.ABSENT) {
+      throw new IllegalArgumentException(idempotentId + " is not a known key");
+    }
+    return (T) deserialize(readPayload(channel, offset));
+  }
+
+  @Override
+  public boolean isKeyCached(String idempotentId) {
+    return findResult(currentChannel(), idempotentId) != OffsetIndex.ABSENT;
+  }
+
+  @Override
+  public Collection<ErrorDetail> getErrors() {
+    FileChannel channel;
+    List<Long> offsets;
+    synchronized (this) {
+      channel = this.channel;
+      offsets = new ArrayList<>(errors.values());
+    }
+    return readErrors(channel, offsets);
+  }
+
+  @Override
+  public Collection<ErrorDetail> getRecentErrors() {
+    FileChannel channel;
+    List<Long> offsets;
+    synchronized (this) {
+      channel = this.channel;
+      offsets = new ArrayList<>(recentErrors.values());
+    }
+    return readErrors(channel, offsets);
+  }
+
+  @Override
+  public synchronized void resetRecentErrors() {
+    recentErrors.clear();
+  }
+
+  /**
+   * Switches to the log of {@code jobId}, creating it if needed, and rebuilds the index of known
+   * keys and errors from the records already in it.
+   */
+  @Override
+  public synchronized void setJobId(UUID jobId) {
+    this.jobId = jobId;
+    results.clear();
+    errors.clear();
+    recentErrors.clear();
+    closeLog();
+    log = directory.resolve(jobId + ".log");
+    try {
+      Files.createDirectories(directory);
+      channel =
+          FileChannel.open(
+              log, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      long size = channel.size();
+      long offset = 0;
+      while (offset < size) {
+        Header header = readHeader(channel, offset);
+        if (header == null || header.end > size) {
+          monitor.info(
+              () -> jobIdPrefix() + "Discarding a partly written record at the end of " + log);
+          channel.truncate(offset);
+          break;
+        }
+        index(header.type, header.idempotentId, offset);
+        offset = header.end;
+      }
+      logEnd = offset;
+    } catch (IOException e) {
+      closeLog();
+      throw new UncheckedIOException("Unable to read the idempotent executor log " + log, e);
+    }
+    monitor.debug(
+        () ->
+            jobIdPrefix()
+                + format(
+                    "Loaded %d keys and %d errors from %s", results.size(), errors.size(), log));
+  }
+
+  /** Closes the log of {@code jobId} and forgets the keys and errors it held. */
+  @Override
+  public synchronized void releaseJob(UUID jobId) {
+    if (jobId.equals(this.jobId)) {
+      closeLog();
+      results.clear();
+      errors.clear();
+      recentErrors.clear();
+    }
+  }
+
+  /** Releases {@code jobId} and deletes its log. */
+  @Override
+  public synchronized void deleteJob(UUID jobId) {
+    releaseJob(jobId);
+    Path jobLog = directory.resolve(jobId + ".log");
+    try {
+      Files.deleteIfExists(jobLog);
+    } catch (IOException e) {
+      monitor.info(() -> "Unable to delete the idempotent executor log " + jobLog, e);
+    }
+  }
+
+  private void closeLog() {
+    if (channel == null) {
+      return;
+    }
+    try {
+      channel.close();
+    } catch (IOException e) {
+      monitor.info(() -> "Unable to close the idempotent executor log " + log, e);
+    }
+    channel = null;
+    log = null;
+  }
+
+  private String jobIdPrefix() {
+    return "Job " + jobId + ": ";
+  }
+
+  private synchronized void append(List<Record> records) {
+    Preconditions.checkState(log != null, "setJobId must be called before importing items");
+    if (records.isEmpty()) {
+      return;
+    }
+    int length = 0;
+    for (Record record : records) {
+      length += record.length();
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    long[] offsets = new long[records.size()];
+    for (int i = 0; i < records.size(); i++) {
+      offsets[i] = logEnd + buffer.position();
+      records.get(i).writeTo(buffer);
+    }
+    buffer.flip();
+    try {
+      long position = logEnd;
+      while (buffer.hasRemaining()) {
+        position += channel.write(buffer, position);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to write to the idempotent executor log " + log, e);
+    }
+    logEnd += length;
+    for (int i = 0; i < records.size(); i++) {
+      Record record = records.get(i);
+      index(record.type, record.idempotentId, offsets[i]);
+      if (record.type == ERROR) {
+        recentErrors.put(record.idempotentId, offsets[i]);
+      }
+    }
+  }
+
+  private void index(byte type, String idempotentId, long offset) {
+    if (type == RESULT) {
+      results.put(hash(idempotentId), offset, sameId(idempotentId));
+      errors.remove(idempotentId);
+      recentErrors.remove(idempotentId);
+    } else {
+      errors.put(idempotentId, offset);
+    }
+  }
+
+  private synchronized FileChannel currentChannel() {
+    return channel;
+  }
+
+  /**
+   * Returns the offset of the result of {@code idempotentId} in {@code channel}, or {@link
+   * OffsetIndex#ABSENT}. The ids of the records with the same hash are read after the lock is
+   * released, and none is found if the executor has switched to another log in the meantime.
+   */
+  private long findResult(FileChannel channel, String idempotentId) {
+    if (channel == null) {
+      return OffsetIndex.ABSENT;
+    }
+    long[] candidates;
+    synchronized (this) {
+      if (channel != this.channel) {
+        return OffsetIndex.ABSENT;
+      }
+      candidates = results.findAll(hash(idempotentId));
+    }
+    for (long offset : candidates) {
+      if (sameId(channel, idempotentId).test(offset)) {
+        return offset;
+      }
+    }
+    return OffsetIndex.ABSENT;
+  }
+
+  /** Checks the id of the record at an offset, as different ids may have the same hash. */
+  private LongPredicate sameId(String idempotentId) {
+    return sameId(channel, idempotentId);
+  }
+
+  private static LongPredicate sameId(FileChannel channel, String idempotentId) {
+    return offset -> {
+      try {
+        return idempotentId.equals(readHeader(channel, offset).idempotentId);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    };
+  }
+
+  private static Collection<ErrorDetail> readErrors(
+      FileChannel channel, Collection<Long> offsets) {
+    ImmutableList.Builder<ErrorDetail> builder = ImmutableList.builder();
+    for (long offset : offsets) {
+      try {
+        builder.add(OBJECT_MAPPER.readValue(readPayload(channel, offset), ErrorDetail.class));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return builder.build();
+  }
+
+  private static byte[] readPayload(FileChannel channel, long offset) {
+    try {
+      Header header = readHeader(channel, offset);
+      if (header.payloadLength == NULL_PAYLOAD) {
+        return null;
+      }
+      ByteBuffer payload = ByteBuffer.allocate(header.payloadLength);
+      readFully(channel, payload, header.payloadOffset);
+      return payload.array();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to read the idempotent executor log", e);
+    }
+  }
+
+  /** Reads the header of the record at {@code offset}, or returns null if it is truncated. */
+  private static Header readHeader(FileChannel channel, long offset) throws IOException {
+    try {
+      ByteBuffer fixed = ByteBuffer.allocate(Byte.BYTES + Integer.BYTES);
+      readFully(channel, fixed, offset);
+      byte type = fixed.get(0);
+      int idLength = fixed.getInt(1);
+      if (idLength < 0 || idLength > channel.size()) {
+        return null;
+      }
+      ByteBuffer id = ByteBuffer.allocate(idLength);
+      readFully(channel, id, offset + fixed.capacity());
+      ByteBuffer payloadLength = ByteBuffer.allocate(Integer.BYTES);
+      long payloadLengthOffset = offset + fixed.capacity() + id.capacity();
+      readFully(channel, payloadLength, payloadLengthOffset);
+      int length = payloadLength.getInt(0);
+      long payloadOffset = payloadLengthOffset + Integer.BYTES;
+      return new Header(
+          type,
+          new String(id.array(), UTF_8),
+          payloadOffset,
+          length,
+          payloadOffset + Math.max(length, 0));
+    } catch (EOFException e) {
+      return null;
+    }
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position + buffer.position());
+      if (read < 0) {
+        throw new EOFException();
+      }
+    }
+  }
+
+  private static long hash(String idempotentId) {
+    return Hashing.murmur3_128().hashString(idempotentId, UTF_8).asLong();
+  }
+
+  private static Record resultRecord(String idempotentId, Serializable value) {
+    if (value == null) {
+      return new Record(RESULT, idempotentId, null);
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(value);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to serialize the result of " + idempotentId, e);
+    }
+    return new Record(RESULT, idempotentId, bytes.toByteArray());
+  }
+
+  private static Record errorRecord(ErrorDetail errorDetail) {
+    try {
+      return new Record(ERROR, errorDetail.id(), OBJECT_MAPPER.writeValueAsBytes(errorDetail));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to serialize the error of " + errorDetail.id(), e);
+    }
+  }
+
+  private static Serializable deserialize(byte[] bytes) {
+    if (bytes == null) {
+      return null;
+    }
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+      return (Serializable) in.readObject();
+    } catch (IOException | ClassNotFoundException e) {
+      throw new IllegalStateException("Unable to read a cached value", e);
+    }
+  }
+
+  /**
+   * A record of the log: a type byte, the length and UTF-8 bytes of the idempotent id, and the
+   * length and bytes of the payload, with a length of -1 for a null value.
+   */
+  private static final class Record {
+    private final byte type;
+    private final String idempotentId;
+    private final byte[] id;
+    private final byte[] payload;
+
+    Record(byte type, String idempotentId, byte[] payload) {
+      this.type = type;
+      this.idempotentId = idempotentId;
+      this.id = idempotentId.getBytes(UTF_8);
+      this.payload = payload;
+    }
+
+    int length() {
+      return Byte.BYTES + Integer.BYTES + id.length + Integer.BYTES
+          + (payload == null ? 0 : payload.length);
+    }
+
+    void writeTo(ByteBuffer buffer) {
+      buffer.put(type).putInt(id.length).put(id);
+      if (payload == null) {
+        buffer.putInt(NULL_PAYLOAD);
+      } else {
+        buffer.putInt(payload.length).put(payload);
+      }
+    }
+  }
+
+  private static final class Header {
+    private final byte type;
+    private final String idempotentId;
+    private final long payloadOffset;
+    private final int payloadLength;
+    private final long end;
+
+    Header(byte type, String idempotentId, long payloadOffset, int payloadLength, long end) {
+      this.type = type;
+      this.idempotentId = idempotentId;
+      this.payloadOffset = payloadOffset;
+      this.payloadLength = payloadLength;
+      this.end = end;
+    }
+  }
+
+  /**
+   * An open addressing map from the hash of an idempotent id to the offset of its latest record,
+   * which takes two longs per key instead of the id and value themselves.
+   */
+  private static final class OffsetIndex {
+    static final long ABSENT = -1;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] hashes;
+    private long[] offsets;
+    private int size;
+
+    OffsetIndex() {
+      clear();
+    }
+
+    int size() {
+      return size;
+    }
+
+    void clear() {
+      hashes = new long[INITIAL_CAPACITY];
+      offsets = new long[INITIAL_CAPACITY];
+      Arrays.fill(offsets, ABSENT);
+      size = 0;
+    }
+
+    /** Returns the offsets stored for {@code hash}, which is almost always at most one. */
+    long[] findAll(long hash) {
+      LongStream.Builder found = LongStream.builder();
+      int mask = offsets.length - 1;
+      for (int slot = slot(hash, mask); offsets[slot] != ABSENT; slot = (slot + 1) & mask) {
+        if (hashes[slot] == hash) {
+          found.add(offsets[slot]);
+        }
+      }
+      return found.build().toArray();
+    }
+
+    /** Replaces the offset stored for {@code hash} that {@code matches}, or adds it. */
+    void put(long hash, long offset, LongPredicate matches) {
+      int mask = offsets.length - 1;
+      int slot = slot(hash, mask);
+      for (; offsets[slot] != ABSENT; slot = (slot + 1) & mask) {
+        if (hashes[slot] == hash && matches.test(offsets[slot])) {
+          offsets[slot] = offset;
+          return;
+        }
+      }
+      hashes[slot] = hash;
+      offsets[slot] = offset;
+      if (++size * 4 > offsets.length * 3) {
+        grow();
+      }
+    }
+
+    private void grow() {
+      long[] oldHashes = hashes;
+      long[] oldOffsets = offsets;
+      hashes = new long[oldHashes.length * 2];
+      offsets = new long[oldOffsets.length * 2];
+      Arrays.fill(offsets, ABSENT);
+      int mask = offsets.length - 1;
+      for (int i = 0; i < oldOffsets.length; i++) {
+        if (oldOffsets[i] != ABSENT) {
+          int slot = slot(oldHashes[i], mask);
+          while (offsets[slot] != ABSENT) {
+            slot = (slot + 1) & mask;
+          }
+          hashes[slot] = oldHashes[i];
+          offsets[slot] = oldOffsets[i];
+        }
+      }
+    }
+
+    private static int slot(long hash, int mask) {
+      return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+  }
+}
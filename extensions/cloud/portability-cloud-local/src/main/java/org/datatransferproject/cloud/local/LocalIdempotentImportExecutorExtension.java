@@ -0,0 +1,51 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.datatransferproject.cloud.local;
+
+import java.nio.file.Paths;
+import org.datatransferproject.api.launcher.ExtensionContext;
+import org.datatransferproject.spi.transfer.idempotentexecutor.IdempotentImportExecutor;
+import org.datatransferproject.spi.transfer.idempotentexecutor.IdempotentImportExecutorExtension;
+import org.datatransferproject.spi.transfer.idempotentexecutor.RetryingInMemoryIdempotentImportExecutor;
+
+/**
+ * Provides a {@link LocalIdempotentImportExecutor} that keeps its logs in the {@code
+ * localIdempotentExecutorDir} setting, by default a directory under {@code java.io.tmpdir}.
+ *
+ * <p>The retrying executor is still kept in memory. Like the disk-backed one, a new executor is
+ * returned for every job, so concurrent jobs never share their state.
+ */
+public class LocalIdempotentImportExecutorExtension implements IdempotentImportExecutorExtension {
+  private static final String DEFAULT_DIRECTORY =
+      Paths.get(System.getProperty("java.io.tmpdir"), "dtp-idempotent-executor").toString();
+
+  @Override
+  public IdempotentImportExecutor getIdempotentImportExecutor(ExtensionContext extensionContext) {
+    String directory = extensionContext.getSetting("localIdempotentExecutorDir", DEFAULT_DIRECTORY);
+    return new LocalIdempotentImportExecutor(Paths.get(directory), extensionContext.getMonitor());
+  }
+
+  @Override
+  public IdempotentImportExecutor getRetryingIdempotentImportExecutor(
+      ExtensionContext extensionContext) {
+    return new RetryingInMemoryIdempotentImportExecutor(
+        extensionContext.getMonitor(), extensionContext.getSetting("retryLibrary", null));
+  }
+
+  @Override
+  public void initialize() {}
+}
@@ -22,6 +22,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -42,10 +43,10 @@ public final class LocalJobStore extends JobStoreWithValidator {
   private static ConcurrentHashMap<UUID, Map<String, Object>> JOB_MAP = new ConcurrentHashMap<>();
   private static ConcurrentHashMap<String, Map<Class<? extends DataModel>, DataModel>> DATA_MAP =
       new ConcurrentHashMap<>();
-  private static LocalTempFileStore localTempFileStore = new LocalTempFileStore();
   private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
   private final Monitor monitor;
+  private final LocalTempFileStore localTempFileStore;
   private final ConcurrentHashMap<UUID, ConcurrentHashMap<String, Integer>> counts;
   private final ConcurrentHashMap<UUID, LongAdder> bytesMap = new ConcurrentHashMap<>();
 
@@ -55,7 +56,13 @@ public final class LocalJobStore extends JobStoreWithValidator {
   }
 
   public LocalJobStore(Monitor monitor) {
+    this(monitor, LocalTempFileStore.DEFAULT_DIRECTORY);
+  }
+
+  /** Stores the blobs of each job in a directory of the job under {@code tempDirectory}. */
+  public LocalJobStore(Monitor monitor, Path tempDirectory) {
     this.monitor = monitor;
+    this.localTempFileStore = new LocalTempFileStore(tempDirectory);
     counts = new ConcurrentHashMap<>();
   }
 
@@ -139,6 +146,7 @@ public final class LocalJobStore extends JobStoreWithValidator {
     if (previous == null) {
       throw new IOException("jobId: " + jobId + " didn't exist in the map");
     }
+    localTempFileStore.deleteJob(jobId);
   }
 
   /**
@@ -236,23 +244,37 @@ public final class LocalJobStore extends JobStoreWithValidator {
     return (T) DATA_MAP.get(createFullKey(jobId, key)).get(type);
   }
 
+  /** Removes the data model instances and the blob stored for the key. */
+  @Override
+  public void removeData(UUID jobId, String key) {
+    DATA_MAP.remove(createFullKey(jobId, key));
+    try {
+      localTempFileStore.delete(jobId, key);
+    } catch (IOException e) {
+      monitor.info(() -> format("Unable to delete the blob of %s for job %s", key, jobId), e);
+    }
+  }
+
   @Override
   public void create(UUID jobId, String key, InputStream stream) throws IOException {
-    localTempFileStore.writeInputStream(makeFileName(jobId, key), stream);
+    Preconditions.checkArgument(!Strings.isNullOrEmpty(key));
+    localTempFileStore.writeInputStream(jobId, key, stream);
   }
 
   @Override
   public InputStreamWrapper getStream(UUID jobId, String key) throws IOException {
-    return localTempFileStore.getInputStream(makeFileName(jobId, key));
+    Preconditions.checkArgument(!Strings.isNullOrEmpty(key));
+    return localTempFileStore.getInputStream(jobId, key);
   }
 
-  private static String createFullKey(UUID jobId, String key) {
+  @Override
+  public boolean hasStream(UUID jobId, String key) {
     Preconditions.checkArgument(!Strings.isNullOrEmpty(key));
-    return format("%s-%s", jobId.toString(), key);
+    return localTempFileStore.exists(jobId, key);
   }
 
-  private static String makeFileName(UUID jobId, String inputName) {
-    String replace = inputName.replace("/", "_");
-    return createFullKey(jobId, replace);
+  private static String createFullKey(UUID jobId, String key) {
+    Preconditions.checkArgument(!Strings.isNullOrEmpty(key));
+    return format("%s-%s", jobId.toString(), key);
   }
 }
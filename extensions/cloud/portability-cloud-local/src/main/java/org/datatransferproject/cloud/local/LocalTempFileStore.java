@@ -16,32 +16,147 @@
 
 package org.datatransferproject.cloud.local;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.Hashing;
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.stream.Stream;
 import org.datatransferproject.spi.cloud.storage.TemporaryPerJobDataStore.InputStreamWrapper;
 
+/**
+ * Stores the blobs of {@link LocalJobStore} as files, in a directory per job under a base
+ * directory.
+ */
 public class LocalTempFileStore {
+  static final Path DEFAULT_DIRECTORY =
+      Paths.get(System.getProperty("java.io.tmpdir"), "dtp-local-job-store");
+  private static final int BUFFER_SIZE = 256 * 1024;
+  // Keeps file names well under the 255 byte limit of most file systems
+  private static final int MAX_FILE_NAME_LENGTH = 128;
+  private static final String PARTIAL_SUFFIX = ".part";
+
+  private final Path directory;
+
+  public LocalTempFileStore() {
+    this(DEFAULT_DIRECTORY);
+  }
+
+  public LocalTempFileStore(Path directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * Writes the stream to the file of {@code key}. The file is written under a temporary name and
+   * then moved into place, so readers never see a partly written blob.
+   */
+  void writeInputStream(UUID jobId, String key, InputStream inputStream) throws IOException {
+    Path file = getPath(jobId, key);
+    Files.createDirectories(file.getParent());
+    Path partial =
+        Files.createTempFile(file.getParent(), file.getFileName().toString(), PARTIAL_SUFFIX);
+    try {
+      if (inputStream instanceof FileInputStream) {
+        copy(((FileInputStream) inputStream).getChannel(), partial);
+      } else {
+        copy(inputStream, partial);
+      }
+      Files.move(
+          partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(partial);
+    }
+  }
+
+  InputStreamWrapper getInputStream(UUID jobId, String key) throws IOException {
+    Path file = getPath(jobId, key);
+    InputStream inputStream = Files.newInputStream(file);
+    try {
+      return new InputStreamWrapper(
+          new BufferedInputStream(inputStream, BUFFER_SIZE), Files.size(file));
+    } catch (IOException e) {
+      inputStream.close();
+      throw e;
+    }
+  }
 
-  private String TEMP_DIR = "/tmp/";
+  boolean exists(UUID jobId, String key) {
+    return Files.exists(getPath(jobId, key));
+  }
+
+  /** Deletes the file of {@code key}, if there is one. */
+  void delete(UUID jobId, String key) throws IOException {
+    Files.deleteIfExists(getPath(jobId, key));
+  }
+
+  /** Deletes the directory of a job and every file in it. */
+  void deleteJob(UUID jobId) throws IOException {
+    Path jobDirectory = directory.resolve(jobId.toString());
+    if (!Files.exists(jobDirectory)) {
+      return;
+    }
+    try (Stream<Path> paths = Files.walk(jobDirectory)) {
+      paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+  }
 
-  void writeInputStream(String filename, InputStream inputStream) throws IOException {
-    File file = new File(TEMP_DIR + filename);
-    file.createNewFile();
-    try (OutputStream outputStream = new FileOutputStream(file)) {
-      byte[] buffer = new byte[1024];
-      int bytesRead;
-      while ((bytesRead = inputStream.read(buffer)) != -1) {
-        outputStream.write(buffer, 0, bytesRead);
+  @VisibleForTesting
+  Path getPath(UUID jobId, String key) {
+    return directory.resolve(jobId.toString()).resolve(toFileName(key));
+  }
+
+  /**
+   * Keys are often URLs, so anything that is not safe in a file name is replaced. As different keys
+   * may then have the same name, a hash of the whole key is appended to names that were changed,
+   * and long keys are shortened to make room for it.
+   */
+  private static String toFileName(String key) {
+    String fileName = key.replaceAll("[^A-Za-z0-9._-]", "_");
+    if (fileName.equals(key)
+        && fileName.length() <= MAX_FILE_NAME_LENGTH
+        && !fileName.matches("\\.+")) {
+      return fileName;
+    }
+    String hash = Hashing.sha256().hashString(key, UTF_8).toString();
+    int prefixLength = Math.min(fileName.length(), MAX_FILE_NAME_LENGTH - hash.length() - 1);
+    return fileName.substring(0, prefixLength).replace('.', '_') + "-" + hash;
+  }
+
+  private static void copy(FileChannel source, Path target) throws IOException {
+    try (FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE)) {
+      long position = source.position();
+      long size = source.size();
+      while (position < size) {
+        long transferred = source.transferTo(position, size - position, out);
+        if (transferred <= 0) {
+          break;
+        }
+        position += transferred;
       }
+      source.position(position);
     }
   }
 
-  InputStreamWrapper getInputStream(String filename) throws IOException {
-    File file = new File(TEMP_DIR + filename);
-    return new InputStreamWrapper(new FileInputStream(file), file.length());
+  private static void copy(InputStream inputStream, Path target) throws IOException {
+    try (OutputStream out = Files.newOutputStream(target)) {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int read;
+      while ((read = inputStream.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+    }
   }
 }
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.datatransferproject.cloud.local;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.datatransferproject.api.launcher.Monitor;
+import org.datatransferproject.spi.transfer.idempotentexecutor.ItemImportResult;
+import org.datatransferproject.types.common.ImportableItem;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class LocalIdempotentImportExecutorTest {
+
+  @TempDir Path directory;
+
+  private final UUID jobId = UUID.randomUUID();
+  private LocalIdempotentImportExecutor executor;
+
+  @BeforeEach
+  public void setUp() {
+    executor = newExecutor();
+  }
+
+  @Test
+  public void cachesResultsAndErrors() throws Exception {
+    assertThat(executor.executeOrThrowException("id1", "name1", () -> "result1"))
+        .isEqualTo("result1");
+    assertThat(executor.executeOrThrowException("id1", "name1", () -> "unexpected"))
+        .isEqualTo("result1");
+    assertThat(executor.executeOrThrowException("nullId", "nullName", () -> null)).isNull();
+    assertThat(executor.isKeyCached("nullId")).isTrue();
+
+    assertThat(
+            executor.executeAndSwallowIOExceptions(
+                "id2",
+                "name2",
+                () -> {
+                  throw new IOException("Test IO exception");
+                }))
+        .isNull();
+    assertThat(executor.isKeyCached("id2")).isFalse();
+    assertThat(executor.getErrors()).hasSize(1);
+    assertThat(executor.getErrors().iterator().next().title()).isEqualTo("name2");
+    assertThat(executor.getRecentErrors()).hasSize(1);
+    assertThrows(IllegalArgumentException.class, () -> executor.getCachedValue("id2"));
+
+    executor.executeOrThrowException("id2", "name2", () -> "result2");
+    assertThat(executor.getErrors()).isEmpty();
+    assertThat(executor.getRecentErrors()).isEmpty();
+  }
+
+  @Test
+  public void resumedJobDoesNotImportItemsAgain() throws Exception {
+    for (int i = 0; i < 5000; i++) {
+      String id = "id" + i;
+      executor.executeOrThrowException(id, id, () -> "result-" + id);
+    }
+    executor.executeAndSwallowIOExceptions(
+        "failed",
+        "failed",
+        () -> {
+          throw new IOException("Test IO exception");
+        });
+
+    LocalIdempotentImportExecutor resumed = newExecutor();
+    AtomicInteger calls = new AtomicInteger();
+    for (int i = 0; i < 5000; i++) {
+      String id = "id" + i;
+      assertThat(
+              resumed.executeOrThrowException(
+                  id,
+                  id,
+                  () -> {
+                    calls.incrementAndGet();
+                    return "unexpected";
+                  }))
+          .isEqualTo("result-" + id);
+    }
+    assertThat(calls.get()).isEqualTo(0);
+    assertThat(resumed.isKeyCached("failed")).isFalse();
+    assertThat(resumed.getErrors()).hasSize(1);
+    assertThat(resumed.getRecentErrors()).isEmpty();
+  }
+
+  @Test
+  public void resumeDiscardsPartlyWrittenRecord() throws Exception {
+    executor.executeOrThrowException("id1", "name1", () -> "result1");
+    executor.executeOrThrowException("id2", "name2", () -> "result2");
+    Path log = directory.resolve(jobId + ".log");
+    try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 3);
+    }
+
+    LocalIdempotentImportExecutor resumed = newExecutor();
+    assertThat(resumed.<String>getCachedValue("id1")).isEqualTo("result1");
+    assertThat(resumed.isKeyCached("id2")).isFalse();
+    assertThat(resumed.executeOrThrowException("id2", "name2", () -> "again")).isEqualTo("again");
+    assertThat(newExecutor().<String>getCachedValue("id2")).isEqualTo("again");
+  }
+
+  @Test
+  public void importBatchSkipsCachedItemsAndRecordsEachItem() throws Exception {
+    executor.executeOrThrowException("cached", "cached", () -> "cached-result");
+
+    List<String> results =
+        executor.importBatchAndSwallowIOExceptions(
+            ImmutableList.of(item("cached"), item("ok"), item("failed")),
+            toImport ->
+                ImmutableList.of(
+                    ItemImportResult.success("ok-result"),
+                    ItemImportResult.error(new IOException("Test IO exception"), null)));
+
+    assertThat(results).containsExactly("cached-result", "ok-result", null).inOrder();
+    LocalIdempotentImportExecutor resumed = newExecutor();
+    assertThat(resumed.<String>getCachedValue("ok")).isEqualTo("ok-result");
+    assertThat(resumed.isKeyCached("failed")).isFalse();
+    assertThat(resumed.getErrors()).hasSize(1);
+  }
+
+  @Test
+  public void releaseJobKeepsTheLog() throws Exception {
+    executor.executeOrThrowException("id1", "name1", () -> "result1");
+
+    executor.releaseJob(jobId);
+
+    assertThat(executor.isKeyCached("id1")).isFalse();
+    assertThrows(
+        IllegalStateException.class,
+        () -> executor.executeOrThrowException("id2", "name2", () -> "result2"));
+    assertThat(newExecutor().isKeyCached("id1")).isTrue();
+  }
+
+  @Test
+  public void deleteJobDeletesTheLog() throws Exception {
+    executor.executeOrThrowException("id1", "name1", () -> "result1");
+    Path log = directory.resolve(jobId + ".log");
+    assertThat(Files.exists(log)).isTrue();
+
+    executor.deleteJob(jobId);
+
+    assertThat(Files.exists(log)).isFalse();
+    assertThat(executor.isKeyCached("id1")).isFalse();
+    assertThat(newExecutor().isKeyCached("id1")).isFalse();
+  }
+
+  private LocalIdempotentImportExecutor newExecutor() {
+    LocalIdempotentImportExecutor newExecutor =
+        new LocalIdempotentImportExecutor(directory, new Monitor() {});
+    newExecutor.setJobId(jobId);
+    return newExecutor;
+  }
+
+  private static ImportableItem item(String idempotentId) {
+    return () -> idempotentId;
+  }
+}
@@ -16,13 +16,24 @@
 
 package org.datatransferproject.cloud.local;
 
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.truth.Truth;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Map;
+import java.util.Random;
 import java.util.UUID;
+import java.util.stream.Stream;
+import org.datatransferproject.api.launcher.Monitor;
+import org.datatransferproject.spi.cloud.storage.TemporaryPerJobDataStore.InputStreamWrapper;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 public class LocalJobStoreTest {
 
@@ -54,6 +65,50 @@ public class LocalJobStoreTest {
     Truth.assertThat(counts.get(ITEM_NAME)).isEqualTo(2);
   }
 
+  @Test
+  public void storesBlobsInADirectoryPerJob(@TempDir Path tempDir) throws Exception {
+    LocalJobStore store = new LocalJobStore(new Monitor() {}, tempDir);
+    byte[] data = new byte[1024 * 1024 + 7];
+    new Random(1).nextBytes(data);
+    String key = "https://example.com/photos/1.jpg?size=large";
+
+    store.create(jobId, key, new ByteArrayInputStream(data));
+
+    InputStreamWrapper wrapper = store.getStream(jobId, key);
+    Truth.assertThat(wrapper.getBytes()).isEqualTo((long) data.length);
+    try (InputStream stream = wrapper.getStream()) {
+      Truth.assertThat(stream.readAllBytes()).isEqualTo(data);
+    }
+    try (Stream<Path> files = Files.list(tempDir.resolve(jobId.toString()))) {
+      Truth.assertThat(files.count()).isEqualTo(1L);
+    }
+  }
+
+  @Test
+  public void longKeysAreKeptApart(@TempDir Path tempDir) throws Exception {
+    LocalJobStore store = new LocalJobStore(new Monitor() {}, tempDir);
+    String prefix = "https://example.com/" + "a".repeat(300);
+
+    store.create(jobId, prefix + "1", new ByteArrayInputStream(new byte[] {1}));
+    store.create(jobId, prefix + "2", new ByteArrayInputStream(new byte[] {2, 2}));
+
+    Truth.assertThat(store.getStream(jobId, prefix + "1").getBytes()).isEqualTo(1L);
+    Truth.assertThat(store.getStream(jobId, prefix + "2").getBytes()).isEqualTo(2L);
+  }
+
+  @Test
+  public void removeDataDeletesTheBlob(@TempDir Path tempDir) throws Exception {
+    LocalJobStore store = new LocalJobStore(new Monitor() {}, tempDir);
+    store.create(jobId, "key", new ByteArrayInputStream(new byte[] {1, 2, 3}));
+    Truth.assertThat(store.hasStream(jobId, "key")).isTrue();
+
+    store.removeData(jobId, "key");
+
+    Truth.assertThat(store.hasStream(jobId, "key")).isFalse();
+    assertThrows(IOException.class, () -> store.getStream(jobId, "key"));
+    Truth.assertThat(Files.exists(tempDir.resolve(jobId.toString()).resolve("key"))).isFalse();
+  }
+
   private void addItemToJobStoreCounts(final String itemName) {
     localJobStore.addCounts(
         jobId, new ImmutableMap.Builder<String, Integer>().put(itemName, 1).build());
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.datatransferproject.cloud.local;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.nio.file.Path;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class LocalTempFileStoreTest {
+
+  @TempDir Path directory;
+
+  private final UUID jobId = UUID.randomUUID();
+
+  @Test
+  public void keysThatAreSafeFileNamesAreKept() {
+    LocalTempFileStore store = new LocalTempFileStore(directory);
+
+    assertThat(store.getPath(jobId, "photo-1.jpg").getFileName().toString())
+        .isEqualTo("photo-1.jpg");
+  }
+
+  @Test
+  public void keysWithTheSameSanitizedNameGetDistinctFiles() {
+    LocalTempFileStore store = new LocalTempFileStore(directory);
+
+    Path slash = store.getPath(jobId, "a/b");
+    Path colon = store.getPath(jobId, "a:b");
+
+    assertThat(slash).isNotEqualTo(colon);
+    assertThat(slash).isNotEqualTo(store.getPath(jobId, "a_b"));
+    assertThat(slash.getParent()).isEqualTo(directory.resolve(jobId.toString()));
+  }
+}
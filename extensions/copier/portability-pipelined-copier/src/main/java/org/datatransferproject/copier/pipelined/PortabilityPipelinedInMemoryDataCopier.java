@@ -0,0 +1,294 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.datatransferproject.copier.pipelined;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Provider;
+import java.util.List;
+import java.util.Optional;
+import java.util.Stack;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.inject.Inject;
+import org.datatransferproject.api.launcher.DtpInternalMetricRecorder;
+import org.datatransferproject.api.launcher.ExtensionContext;
+import org.datatransferproject.api.launcher.Monitor;
+import org.datatransferproject.spi.cloud.storage.JobStore;
+import org.datatransferproject.spi.transfer.idempotentexecutor.IdempotentImportExecutor;
+import org.datatransferproject.spi.transfer.provider.ExportResult;
+import org.datatransferproject.spi.transfer.provider.Exporter;
+import org.datatransferproject.spi.transfer.provider.Importer;
+import org.datatransferproject.spi.transfer.types.ContinuationData;
+import org.datatransferproject.spi.transfer.types.CopyException;
+import org.datatransferproject.transfer.Annotations;
+import org.datatransferproject.transfer.JobMetadata;
+import org.datatransferproject.transfer.copier.InMemoryDataCopier;
+import org.datatransferproject.transfer.copier.PortabilityAbstractInMemoryDataCopier;
+import org.datatransferproject.types.common.ExportInformation;
+import org.datatransferproject.types.common.models.ContainerResource;
+import org.datatransferproject.types.transfer.auth.AuthData;
+import org.datatransferproject.types.transfer.retry.RetryStrategyLibrary;
+
+/**
+ * Implementation of {@link InMemoryDataCopier} that exports upcoming pages while the current page
+ * is being imported.
+ *
+ * <p>A single background thread walks the continuation data in the same order as the serial
+ * copiers (a page, then its next page, then its sub-resources) and hands every {@link
+ * ExportResult} to the importing thread through a bounded queue. Imports are therefore performed
+ * in exactly the same order as before, so parents are still imported before their children; only
+ * the exporter is allowed to run ahead, by at most {@code pipelinedCopierPrefetchSize} pages.
+ *
+ * <p>Because an export may now complete before the previous page has been imported, this copier
+ * should only be used with exporters that do not depend on state written by the importer.
+ *
+ * <p>Like {@code PortabilityStackInMemoryDataCopier}, the stack of pages left to copy is stored in
+ * the {@link JobStore} after each page is imported, so a restarted worker resumes the transfer.
+ * The stored stack is the one the exporter had when it queued the imported page, which lets a
+ * resumed job export again the pages that were exported ahead but never imported.
+ */
+public class PortabilityPipelinedInMemoryDataCopier extends PortabilityAbstractInMemoryDataCopier {
+
+  private static final AtomicInteger COPY_ITERATION_COUNTER = new AtomicInteger();
+  private static final int DEFAULT_PREFETCH_SIZE = 1;
+
+  private final int prefetchSize;
+
+  @Inject
+  public PortabilityPipelinedInMemoryDataCopier(
+      Provider<Exporter> exporterProvider,
+      Provider<Importer> importerProvider,
+      Provider<RetryStrategyLibrary> retryStrategyLibraryProvider,
+      Monitor monitor,
+      IdempotentImportExecutor idempotentImportExecutor,
+      @Annotations.RetryingExecutor IdempotentImportExecutor retryingIdempotentImportExecutor,
+      DtpInternalMetricRecorder dtpInternalMetricRecorder,
+      JobStore jobStore,
+      ExtensionContext context) {
+    super(
+        exporterProvider,
+        importerProvider,
+        retryStrategyLibraryProvider,
+        monitor,
+        idempotentImportExecutor,
+        retryingIdempotentImportExecutor,
+        dtpInternalMetricRecorder,
+        jobStore);
+    this.prefetchSize =
+        Math.max(1, context.getSetting("pipelinedCopierPrefetchSize", DEFAULT_PREFETCH_SIZE));
+  }
+
+  @Override
+  public void resetCopyIterationCounter() {
+    COPY_ITERATION_COUNTER.set(0);
+  }
+
+  /**
+   * Transfers data from the given {@code exporter} optionally starting at the point specified in
+   * the provided {@code exportInfo}. Exported pages are queued by a background thread and imported
+   * on the calling thread in the order in which they were exported.
+   *
+   * @param exportAuthData The auth data for the export
+   * @param importAuthData The auth data for the import
+   * @param exportInfo Any pagination or resource information to use for subsequent calls.
+   */
+  @Override
+  public void copy(
+      AuthData exportAuthData,
+      AuthData importAuthData,
+      UUID jobId,
+      Optional<ExportInformation> exportInfo)
+      throws CopyException {
+    setUpExecutors(jobId);
+    String jobIdPrefix = "Job " + jobId + ": ";
+    // Present when a worker is resuming a partially completed transfer
+    Optional<Stack<ExportInformation>> maybeLoadedStack = jobStore.loadJobStack(jobId);
+
+    BlockingQueue<ExportedPage> exportedPages = new ArrayBlockingQueue<>(prefetchSize);
+    ExecutorService exportExecutor =
+        Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("pipelined-exporter-" + jobId + "-%d")
+                .setDaemon(true)
+                .build());
+    try {
+      exportExecutor.execute(
+          JobMetadata.inCurrentScope(
+              () ->
+                  exportAll(
+                      exportAuthData,
+                      jobId,
+                      exportInfo,
+                      maybeLoadedStack,
+                      jobIdPrefix,
+                      exportedPages)));
+      while (true) {
+        ExportedPage page = exportedPages.take();
+        if (page.failure != null) {
+          throw page.failure;
+        }
+        if (page.exportResult == null) {
+          // All pages have been exported and imported
+          return;
+        }
+        importExportResult(
+            jobId, importAuthData, page.exportResult, jobIdPrefix, page.copyIteration);
+        jobStore.storeJobStack(jobId, page.remainingStack);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CopyException(jobIdPrefix + "Interrupted while waiting for an exported page", e);
+    } finally {
+      // Stops the exporter if the import failed part way through the transfer
+      exportExecutor.shutdownNow();
+    }
+  }
+
+  /**
+   * Exports every page reachable from {@code exportInfo}, or left on {@code loadedStack} by an
+   * earlier worker, and queues the results for import. The walk order mirrors {@code
+   * PortabilityStackInMemoryDataCopier}: the next page of a resource is exported before its
+   * sub-resources.
+   */
+  private void exportAll(
+      AuthData exportAuthData,
+      UUID jobId,
+      Optional<ExportInformation> exportInfo,
+      Optional<Stack<ExportInformation>> loadedStack,
+      String jobIdPrefix,
+      BlockingQueue<ExportedPage> exportedPages) {
+    Stack<ExportInformation> exportInfoStack = new Stack<>();
+    Optional<ExportInformation> currentExportInfo = exportInfo;
+    try {
+      if (loadedStack.isPresent()) {
+        exportInfoStack = loadedStack.get();
+        if (exportInfoStack.isEmpty()) {
+          exportedPages.put(new ExportedPage(0, null, null, null));
+          return;
+        }
+        currentExportInfo = Optional.of(exportInfoStack.pop());
+      }
+      while (true) {
+        int copyIteration = COPY_ITERATION_COUNTER.incrementAndGet();
+        monitor.debug(() -> jobIdPrefix + "Copy iteration: " + copyIteration);
+        ExportResult<?> exportResult =
+            exportIteration(jobId, exportAuthData, currentExportInfo, jobIdPrefix, copyIteration);
+
+        ContainerResource exportContainerResource =
+            currentExportInfo.map(ExportInformation::getContainerResource).orElse(null);
+        pushContinuation(
+            exportInfoStack,
+            jobIdPrefix,
+            exportContainerResource,
+            copyIteration,
+            exportResult.getContinuationData());
+        // Blocks once the importer has fallen prefetchSize pages behind
+        exportedPages.put(
+            new ExportedPage(
+                copyIteration,
+                exportResult,
+                (Stack<ExportInformation>) exportInfoStack.clone(),
+                null));
+        if (exportInfoStack.isEmpty()) {
+          break;
+        }
+        currentExportInfo = Optional.of(exportInfoStack.pop());
+      }
+      exportedPages.put(new ExportedPage(0, null, null, null));
+    } catch (CopyException e) {
+      putFailure(exportedPages, e);
+    } catch (InterruptedException e) {
+      // The importing thread gave up on this transfer, nothing is waiting for more pages
+      Thread.currentThread().interrupt();
+    } catch (Throwable e) {
+      // Errors too, as the importing thread would otherwise wait for the next page forever
+      putFailure(exportedPages, new CopyException(jobIdPrefix + "Error happened during export", e));
+    }
+  }
+
+  private void pushContinuation(
+      Stack<ExportInformation> exportInfoStack,
+      String jobIdPrefix,
+      ContainerResource exportContainerResource,
+      int copyIteration,
+      ContinuationData continuationData) {
+    if (null == continuationData) {
+      return;
+    }
+
+    // NOTE: order is important below: we process next page before sub-resources, so we push them
+    // on the stack in reverse order.
+    List<ContainerResource> subResources = continuationData.getContainerResources();
+    if (subResources != null && !subResources.isEmpty()) {
+      for (int i = subResources.size() - 1; i >= 0; i--) {
+        exportInfoStack.push(new ExportInformation(null, subResources.get(i)));
+      }
+      monitor.debug(
+          () ->
+              jobIdPrefix
+                  + "Queued "
+                  + subResources.size()
+                  + " container resource(s) for export, copy iteration: "
+                  + copyIteration);
+    }
+
+    if (null != continuationData.getPaginationData()) {
+      monitor.debug(
+          () ->
+              jobIdPrefix
+                  + "Queued next page for export with pagination info, copy iteration: "
+                  + copyIteration);
+      exportInfoStack.push(
+          new ExportInformation(continuationData.getPaginationData(), exportContainerResource));
+    }
+  }
+
+  private static void putFailure(BlockingQueue<ExportedPage> exportedPages, CopyException e) {
+    try {
+      exportedPages.put(new ExportedPage(0, null, null, e));
+    } catch (InterruptedException interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * An entry handed from the exporting thread to the importing thread. An entry without an export
+   * result and without a failure marks the end of the export.
+   */
+  private static final class ExportedPage {
+    private final int copyIteration;
+    private final ExportResult<?> exportResult;
+    // The pages left to copy once this one is imported
+    private final Stack<ExportInformation> remainingStack;
+    private final CopyException failure;
+
+    private ExportedPage(
+        int copyIteration,
+        ExportResult<?> exportResult,
+        Stack<ExportInformation> remainingStack,
+        CopyException failure) {
+      this.copyIteration = copyIteration;
+      this.exportResult = exportResult;
+      this.remainingStack = remainingStack;
+      this.failure = failure;
+    }
+  }
+}
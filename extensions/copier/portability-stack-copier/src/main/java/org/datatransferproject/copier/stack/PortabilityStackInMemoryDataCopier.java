@@ -16,14 +16,27 @@
 
 package org.datatransferproject.copier.stack;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Provider;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Stack;
 import java.util.UUID;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 import javax.inject.Inject;
 import org.datatransferproject.api.launcher.DtpInternalMetricRecorder;
+import org.datatransferproject.api.launcher.ExtensionContext;
 import org.datatransferproject.api.launcher.Monitor;
 import org.datatransferproject.spi.cloud.storage.JobStore;
 import org.datatransferproject.spi.transfer.idempotentexecutor.IdempotentImportExecutor;
@@ -33,6 +46,7 @@ import org.datatransferproject.spi.transfer.provider.Importer;
 import org.datatransferproject.spi.transfer.types.ContinuationData;
 import org.datatransferproject.spi.transfer.types.CopyException;
 import org.datatransferproject.transfer.Annotations;
+import org.datatransferproject.transfer.JobMetadata;
 import org.datatransferproject.transfer.copier.InMemoryDataCopier;
 import org.datatransferproject.transfer.copier.PortabilityAbstractInMemoryDataCopier;
 import org.datatransferproject.types.common.ExportInformation;
@@ -40,14 +54,52 @@ import org.datatransferproject.types.common.models.ContainerResource;
 import org.datatransferproject.types.transfer.auth.AuthData;
 import org.datatransferproject.types.transfer.retry.RetryStrategyLibrary;
 
-/** Implementation of {@link InMemoryDataCopier}. */
+/**
+ * Implementation of {@link InMemoryDataCopier}.
+ *
+ * <p>By default the job stack is drained on the calling thread. When the {@code
+ * stackCopierParallelism} setting is greater than one, up to that many entries of the stack are
+ * copied concurrently. Every entry on the stack was pushed after its parent page was imported, so
+ * only the order within a branch needs to be kept: the pages of a resource are drained before its
+ * sub-resources, and parents are copied before their children. The entries below a next page are
+ * therefore held back until the last page of that resource has been copied, exactly as the serial
+ * loop would reach them. The parallel mode requires an {@link Importer} and an {@link
+ * IdempotentImportExecutor} that are safe to call from several threads.
+ */
 public class PortabilityStackInMemoryDataCopier extends PortabilityAbstractInMemoryDataCopier {
 
   private static final AtomicInteger COPY_ITERATION_COUNTER = new AtomicInteger();
 
+  // Null when the parallelism is fixed at construction
+  private final ExtensionContext context;
+  private final int parallelism;
+
   private Stack<ExportInformation> exportInfoStack = new Stack<>();
 
   @Inject
+  public PortabilityStackInMemoryDataCopier(
+      Provider<Exporter> exporterProvider,
+      Provider<Importer> importerProvider,
+      Provider<RetryStrategyLibrary> retryStrategyLibraryProvider,
+      Monitor monitor,
+      IdempotentImportExecutor idempotentImportExecutor,
+      @Annotations.RetryingExecutor IdempotentImportExecutor retryingIdempotentImportExecutor,
+      DtpInternalMetricRecorder dtpInternalMetricRecorder,
+      JobStore jobStore,
+      ExtensionContext context) {
+    this(
+        exporterProvider,
+        importerProvider,
+        retryStrategyLibraryProvider,
+        monitor,
+        idempotentImportExecutor,
+        retryingIdempotentImportExecutor,
+        dtpInternalMetricRecorder,
+        jobStore,
+        context,
+        1);
+  }
+
   public PortabilityStackInMemoryDataCopier(
       Provider<Exporter> exporterProvider,
       Provider<Importer> importerProvider,
@@ -57,6 +109,53 @@ public class PortabilityStackInMemoryDataCopier extends PortabilityAbstractInMem
       @Annotations.RetryingExecutor IdempotentImportExecutor retryingIdempotentImportExecutor,
       DtpInternalMetricRecorder dtpInternalMetricRecorder,
       JobStore jobStore) {
+    this(
+        exporterProvider,
+        importerProvider,
+        retryStrategyLibraryProvider,
+        monitor,
+        idempotentImportExecutor,
+        retryingIdempotentImportExecutor,
+        dtpInternalMetricRecorder,
+        jobStore,
+        null,
+        1);
+  }
+
+  protected PortabilityStackInMemoryDataCopier(
+      Provider<Exporter> exporterProvider,
+      Provider<Importer> importerProvider,
+      Provider<RetryStrategyLibrary> retryStrategyLibraryProvider,
+      Monitor monitor,
+      IdempotentImportExecutor idempotentImportExecutor,
+      IdempotentImportExecutor retryingIdempotentImportExecutor,
+      DtpInternalMetricRecorder dtpInternalMetricRecorder,
+      JobStore jobStore,
+      int parallelism) {
+    this(
+        exporterProvider,
+        importerProvider,
+        retryStrategyLibraryProvider,
+        monitor,
+        idempotentImportExecutor,
+        retryingIdempotentImportExecutor,
+        dtpInternalMetricRecorder,
+        jobStore,
+        null,
+        parallelism);
+  }
+
+  private PortabilityStackInMemoryDataCopier(
+      Provider<Exporter> exporterProvider,
+      Provider<Importer> importerProvider,
+      Provider<RetryStrategyLibrary> retryStrategyLibraryProvider,
+      Monitor monitor,
+      IdempotentImportExecutor idempotentImportExecutor,
+      IdempotentImportExecutor retryingIdempotentImportExecutor,
+      DtpInternalMetricRecorder dtpInternalMetricRecorder,
+      JobStore jobStore,
+      ExtensionContext context,
+      int parallelism) {
     super(
         exporterProvider,
         importerProvider,
@@ -66,6 +165,8 @@ public class PortabilityStackInMemoryDataCopier extends PortabilityAbstractInMem
         retryingIdempotentImportExecutor,
         dtpInternalMetricRecorder,
         jobStore);
+    this.context = context;
+    this.parallelism = parallelism;
   }
 
   @Override
@@ -90,7 +191,7 @@ public class PortabilityStackInMemoryDataCopier extends PortabilityAbstractInMem
       UUID jobId,
       Optional<ExportInformation> exportInfo)
       throws CopyException {
-    idempotentImportExecutor.setJobId(jobId);
+    setUpExecutors(jobId);
     String jobIdPrefix = "Job " + jobId + ": ";
 
     Optional<Stack<ExportInformation>> maybeLoadedStack = jobStore.loadJobStack(jobId);
@@ -114,6 +215,11 @@ public class PortabilityStackInMemoryDataCopier extends PortabilityAbstractInMem
           initialCopyIteration,
           initialExportResult.getContinuationData());
     }
+    int jobParallelism = getParallelism();
+    if (jobParallelism > 1) {
+      copyStackConcurrently(exportAuthData, importAuthData, jobId, jobIdPrefix, jobParallelism);
+      return;
+    }
     while (!exportInfoStack.isEmpty()) {
       int copyIteration = COPY_ITERATION_COUNTER.incrementAndGet();
       ExportInformation currentExportInfo = exportInfoStack.pop();
@@ -135,12 +241,160 @@ public class PortabilityStackInMemoryDataCopier extends PortabilityAbstractInMem
     }
   }
 
+  /** Returns how many entries of the stack the job being copied may copy at once. */
+  private int getParallelism() {
+    int jobParallelism =
+        context == null ? parallelism : context.getSetting("stackCopierParallelism", 1);
+    return Math.max(1, jobParallelism);
+  }
+
+  /**
+   * Drains the job stack using up to {@code parallelism} threads. The stack itself is only touched
+   * on the calling thread: entries are handed out to workers and the continuation data of each
+   * finished entry is pushed back once it completes. Entries that are held behind a next page, and
+   * entries that are still in flight, are included in the persisted stack in the order the serial
+   * loop would have it, so a resumed job repeats them instead of losing them.
+   */
+  private void copyStackConcurrently(
+      AuthData exportAuthData,
+      AuthData importAuthData,
+      UUID jobId,
+      String jobIdPrefix,
+      int parallelism)
+      throws CopyException {
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            parallelism,
+            new ThreadFactoryBuilder()
+                .setNameFormat("stack-copier-" + jobId + "-%d")
+                .setDaemon(true)
+                .build());
+    CompletionService<ExportResult<?>> completionService =
+        new ExecutorCompletionService<>(executor);
+    Map<Future<ExportResult<?>>, InFlightCopy> inFlight = new HashMap<>();
+    Map<ExportInformation, List<ExportInformation>> heldBehindPages = new IdentityHashMap<>();
+    List<ExportInformation> loadedStack = new ArrayList<>(exportInfoStack);
+    exportInfoStack.clear();
+    pushHoldingBehindPages(loadedStack, heldBehindPages);
+    try {
+      while (!exportInfoStack.isEmpty() || !inFlight.isEmpty()) {
+        while (inFlight.size() < parallelism && !exportInfoStack.isEmpty()) {
+          int copyIteration = COPY_ITERATION_COUNTER.incrementAndGet();
+          ExportInformation currentExportInfo = exportInfoStack.pop();
+          List<ExportInformation> held =
+              heldBehindPages.getOrDefault(currentExportInfo, ImmutableList.of());
+          heldBehindPages.remove(currentExportInfo);
+          Future<ExportResult<?>> future =
+              completionService.submit(
+                  JobMetadata.inCurrentScope(
+                      () ->
+                          copyIteration(
+                              jobId,
+                              exportAuthData,
+                              importAuthData,
+                              Optional.of(currentExportInfo),
+                              jobIdPrefix,
+                              copyIteration)));
+          inFlight.put(future, new InFlightCopy(currentExportInfo, copyIteration, held));
+        }
+
+        Future<ExportResult<?>> completed = completionService.take();
+        InFlightCopy finished = inFlight.remove(completed);
+        ExportResult<?> exportResult = getCopyResult(completed, jobIdPrefix);
+        pushHoldingBehindPages(
+            getContinuationEntries(
+                jobIdPrefix,
+                finished.exportInfo.getContainerResource(),
+                finished.copyIteration,
+                finished.held,
+                exportResult.getContinuationData()),
+            heldBehindPages);
+        Stack<ExportInformation> persistedStack = new Stack<>();
+        for (ExportInformation entry : exportInfoStack) {
+          persistedStack.addAll(heldBehindPages.getOrDefault(entry, ImmutableList.of()));
+          persistedStack.push(entry);
+        }
+        for (InFlightCopy copy : inFlight.values()) {
+          persistedStack.addAll(copy.held);
+          persistedStack.push(copy.exportInfo);
+        }
+        jobStore.storeJobStack(jobId, persistedStack);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CopyException(jobIdPrefix + "Interrupted while copying the job stack", e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Pushes {@code entries}, listed from the bottom of the stack to the top, onto the stack. If any
+   * of them is a next page, the entries below the topmost one are held back behind it rather than
+   * pushed, so that they are only copied once the pagination of that resource has been drained.
+   */
+  private void pushHoldingBehindPages(
+      List<ExportInformation> entries,
+      Map<ExportInformation, List<ExportInformation>> heldBehindPages) {
+    int topmostPage = entries.size() - 1;
+    while (topmostPage >= 0 && entries.get(topmostPage).getPaginationData() == null) {
+      topmostPage--;
+    }
+    if (topmostPage > 0) {
+      heldBehindPages.put(
+          entries.get(topmostPage), new ArrayList<>(entries.subList(0, topmostPage)));
+    }
+    exportInfoStack.addAll(entries.subList(Math.max(topmostPage, 0), entries.size()));
+  }
+
+  /**
+   * Returns the entries that the serial loop would have on the stack after copying an entry: those
+   * that were held behind it, then its sub-resources and finally its next page, from the bottom of
+   * the stack to the top.
+   */
+  private List<ExportInformation> getContinuationEntries(
+      String jobIdPrefix,
+      ContainerResource exportContainerResource,
+      int copyIteration,
+      List<ExportInformation> held,
+      ContinuationData continuationData) {
+    Stack<ExportInformation> entries = new Stack<>();
+    entries.addAll(held);
+    pushContinuationData(
+        entries, jobIdPrefix, exportContainerResource, copyIteration, continuationData);
+    return entries;
+  }
+
+  private static ExportResult<?> getCopyResult(
+      Future<ExportResult<?>> completed, String jobIdPrefix)
+      throws CopyException, InterruptedException {
+    try {
+      return completed.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof CopyException) {
+        throw (CopyException) e.getCause();
+      }
+      throw new CopyException(jobIdPrefix + "Error happened during copy", e.getCause());
+    }
+  }
+
   private void updateStackAfterCopyIteration(
       UUID jobId,
       String jobIdPrefix,
       ContainerResource exportContainerResource,
       int copyIteration,
       ContinuationData continuationData) {
+    pushContinuationData(
+        exportInfoStack, jobIdPrefix, exportContainerResource, copyIteration, continuationData);
+    jobStore.storeJobStack(jobId, (Stack<ExportInformation>) exportInfoStack.clone());
+  }
+
+  private void pushContinuationData(
+      Stack<ExportInformation> stack,
+      String jobIdPrefix,
+      ContainerResource exportContainerResource,
+      int copyIteration,
+      ContinuationData continuationData) {
 
     // NOTE: order is important below: we process next page before sub-resources, so we push them
     // on the stack in reverse order.
@@ -156,7 +410,7 @@ public class PortabilityStackInMemoryDataCopier extends PortabilityAbstractInMem
                   jobIdPrefix
                       + "Pushing to the stack a new copy iteration with a new container resource, copy iteration: "
                       + copyIteration);
-          exportInfoStack.push((new ExportInformation(null, subResources.get(i))));
+          stack.push((new ExportInformation(null, subResources.get(i))));
         }
       }
 
@@ -167,10 +421,24 @@ public class PortabilityStackInMemoryDataCopier extends PortabilityAbstractInMem
                 jobIdPrefix
                     + "Pushing to the stack a new copy iteration with pagination info, copy iteration: "
                     + copyIteration);
-        exportInfoStack.push(
+        stack.push(
             new ExportInformation(continuationData.getPaginationData(), exportContainerResource));
       }
     }
-    jobStore.storeJobStack(jobId, (Stack<ExportInformation>) exportInfoStack.clone());
+  }
+
+  /** An entry of the job stack that is currently being copied by a worker thread. */
+  private static final class InFlightCopy {
+    private final ExportInformation exportInfo;
+    private final int copyIteration;
+    // The entries held behind it, from the bottom of the stack to the top
+    private final List<ExportInformation> held;
+
+    private InFlightCopy(
+        ExportInformation exportInfo, int copyIteration, List<ExportInformation> held) {
+      this.exportInfo = exportInfo;
+      this.copyIteration = copyIteration;
+      this.held = held;
+    }
   }
 }
@@ -29,6 +29,7 @@ import org.datatransferproject.datatransfer.backblaze.common.BackblazeDataTransf
 import org.datatransferproject.datatransfer.backblaze.photos.BackblazePhotosImporter;
 import org.datatransferproject.datatransfer.backblaze.videos.BackblazeVideosImporter;
 import org.datatransferproject.spi.cloud.connection.ConnectionProvider;
+import org.datatransferproject.spi.cloud.storage.JobTempFileManager;
 import org.datatransferproject.spi.cloud.storage.TemporaryPerJobDataStore;
 import org.datatransferproject.types.common.models.DataVertical;
 import org.datatransferproject.spi.transfer.extension.TransferExtension;
@@ -73,20 +74,21 @@ public class BackblazeTransferExtension implements TransferExtension {
     }
 
     TemporaryPerJobDataStore jobStore = context.getService(TemporaryPerJobDataStore.class);
+    JobTempFileManager tempFiles = context.getService(JobTempFileManager.class);
 
     ImmutableMap.Builder<DataVertical, Importer> importerBuilder = ImmutableMap.builder();
     BackblazeDataTransferClientFactory backblazeDataTransferClientFactory =
             new BackblazeDataTransferClientFactory(monitor);
-    ConnectionProvider isProvider = new ConnectionProvider(jobStore);
+    ConnectionProvider isProvider = context.getService(ConnectionProvider.class);
 
     importerBuilder.put(
             PHOTOS,
             new BackblazePhotosImporter(
-                    monitor, jobStore, isProvider, backblazeDataTransferClientFactory));
+                    monitor, jobStore, isProvider, tempFiles, backblazeDataTransferClientFactory));
     importerBuilder.put(
             VIDEOS,
             new BackblazeVideosImporter(
-                    monitor, jobStore, isProvider, backblazeDataTransferClientFactory));
+                    monitor, isProvider, tempFiles, backblazeDataTransferClientFactory));
     importerMap = importerBuilder.build();
     initialized = true;
   }
@@ -28,6 +28,7 @@ import org.datatransferproject.api.launcher.Monitor;
 import org.datatransferproject.datatransfer.backblaze.common.BackblazeDataTransferClient;
 import org.datatransferproject.datatransfer.backblaze.common.BackblazeDataTransferClientFactory;
 import org.datatransferproject.spi.cloud.connection.ConnectionProvider;
+import org.datatransferproject.spi.cloud.storage.JobTempFileManager;
 import org.datatransferproject.spi.cloud.storage.TemporaryPerJobDataStore;
 import org.datatransferproject.spi.transfer.idempotentexecutor.IdempotentImportExecutor;
 import org.datatransferproject.spi.transfer.idempotentexecutor.ItemImportResult;
@@ -45,6 +46,7 @@ public class BackblazePhotosImporter
 
   private final TemporaryPerJobDataStore jobStore;
   private final ConnectionProvider connectionProvider;
+  private final JobTempFileManager tempFiles;
   private final Monitor monitor;
   private final BackblazeDataTransferClientFactory b2ClientFactory;
 
@@ -52,10 +54,12 @@ public class BackblazePhotosImporter
       Monitor monitor,
       TemporaryPerJobDataStore jobStore,
       ConnectionProvider connectionProvider,
+      JobTempFileManager tempFiles,
       BackblazeDataTransferClientFactory b2ClientFactory) {
     this.monitor = monitor;
     this.jobStore = jobStore;
     this.connectionProvider = connectionProvider;
+    this.tempFiles = tempFiles;
     this.b2ClientFactory = b2ClientFactory;
   }
 
@@ -111,13 +115,20 @@ public class BackblazePhotosImporter
 
     File file;
     try (InputStream is = connectionProvider.getInputStreamForItem(jobId, photo).getStream()) {
-      file = jobStore.getTempFileFromInputStream(is, photo.getDataId(), ".jpg");
+      file = tempFiles.createTempFile(jobId, is, photo.getDataId(), ".jpg");
+    }
+    String response;
+    long size;
+    try {
+      response =
+          b2Client.uploadFile(
+              String.format(
+                  "%s/%s/%s.jpg", PHOTO_TRANSFER_MAIN_FOLDER, albumName, photo.getDataId()),
+              file);
+      size = file.length();
+    } finally {
+      tempFiles.delete(file);
     }
-    String response =
-        b2Client.uploadFile(
-            String.format("%s/%s/%s.jpg", PHOTO_TRANSFER_MAIN_FOLDER, albumName, photo.getDataId()),
-            file);
-    long size = file.length();
 
     try {
       if (photo.isInTempStore()) {
@@ -27,7 +27,7 @@ import org.datatransferproject.api.launcher.Monitor;
 import org.datatransferproject.datatransfer.backblaze.common.BackblazeDataTransferClient;
 import org.datatransferproject.datatransfer.backblaze.common.BackblazeDataTransferClientFactory;
 import org.datatransferproject.spi.cloud.connection.ConnectionProvider;
-import org.datatransferproject.spi.cloud.storage.TemporaryPerJobDataStore;
+import org.datatransferproject.spi.cloud.storage.JobTempFileManager;
 import org.datatransferproject.spi.transfer.idempotentexecutor.IdempotentImportExecutor;
 import org.datatransferproject.spi.transfer.idempotentexecutor.ItemImportResult;
 import org.datatransferproject.spi.transfer.provider.ImportResult;
@@ -41,19 +41,19 @@ public class BackblazeVideosImporter
 
   private static final String VIDEO_TRANSFER_MAIN_FOLDER = "Video Transfer";
 
-  private final TemporaryPerJobDataStore jobStore;
   private final ConnectionProvider connectionProvider;
+  private final JobTempFileManager tempFiles;
   private final Monitor monitor;
   private final BackblazeDataTransferClientFactory b2ClientFactory;
 
   public BackblazeVideosImporter(
       Monitor monitor,
-      TemporaryPerJobDataStore jobStore,
       ConnectionProvider connectionProvider,
+      JobTempFileManager tempFiles,
       BackblazeDataTransferClientFactory b2ClientFactory) {
     this.monitor = monitor;
-    this.jobStore = jobStore;
     this.connectionProvider = connectionProvider;
+    this.tempFiles = tempFiles;
     this.b2ClientFactory = b2ClientFactory;
   }
 
@@ -93,11 +93,15 @@ public class BackblazeVideosImporter
       UUID jobId, BackblazeDataTransferClient b2Client, VideoModel video) throws IOException {
     try (InputStream videoFileStream =
         connectionProvider.getInputStreamForItem(jobId, video).getStream()) {
-      File file = jobStore.getTempFileFromInputStream(videoFileStream, video.getDataId(), ".mp4");
-      String res =
-          b2Client.uploadFile(
-              String.format("%s/%s.mp4", VIDEO_TRANSFER_MAIN_FOLDER, video.getDataId()), file);
-      return ItemImportResult.success(res, file.length());
+      File file = tempFiles.createTempFile(jobId, videoFileStream, video.getDataId(), ".mp4");
+      try {
+        String res =
+            b2Client.uploadFile(
+                String.format("%s/%s.mp4", VIDEO_TRANSFER_MAIN_FOLDER, video.getDataId()), file);
+        return ItemImportResult.success(res, file.length());
+      } finally {
+        tempFiles.delete(file);
+      }
     } catch (FileNotFoundException e) {
       monitor.info(
           () -> String.format("Video resource was missing for id: %s", video.getDataId()), e);
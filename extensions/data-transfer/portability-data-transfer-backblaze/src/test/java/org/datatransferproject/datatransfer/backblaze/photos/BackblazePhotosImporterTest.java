@@ -34,6 +34,7 @@ import org.datatransferproject.api.launcher.Monitor;
 import org.datatransferproject.datatransfer.backblaze.common.BackblazeDataTransferClient;
 import org.datatransferproject.datatransfer.backblaze.common.BackblazeDataTransferClientFactory;
 import org.datatransferproject.spi.cloud.connection.ConnectionProvider;
+import org.datatransferproject.spi.cloud.storage.JobTempFileManager;
 import org.datatransferproject.spi.cloud.storage.TemporaryPerJobDataStore;
 import org.datatransferproject.spi.cloud.storage.TemporaryPerJobDataStore.InputStreamWrapper;
 import org.datatransferproject.spi.transfer.idempotentexecutor.IdempotentImportExecutor;
@@ -52,6 +53,7 @@ public class BackblazePhotosImporterTest {
   Monitor monitor;
   TemporaryPerJobDataStore dataStore;
   ConnectionProvider streamProvider;
+  JobTempFileManager tempFiles;
   BackblazeDataTransferClientFactory clientFactory;
   IdempotentImportExecutor executor;
   TokenSecretAuthData authData;
@@ -62,6 +64,7 @@ public class BackblazePhotosImporterTest {
     monitor = mock(Monitor.class);
     dataStore = mock(TemporaryPerJobDataStore.class);
     streamProvider = mock(ConnectionProvider.class);
+    tempFiles = mock(JobTempFileManager.class);
     clientFactory = mock(BackblazeDataTransferClientFactory.class);
     executor = mock(IdempotentImportExecutor.class);
     authData = mock(TokenSecretAuthData.class);
@@ -73,7 +76,7 @@ public class BackblazePhotosImporterTest {
   @Test
   public void testNullData() throws Exception {
     BackblazePhotosImporter sut =
-        new BackblazePhotosImporter(monitor, dataStore, streamProvider, clientFactory);
+        new BackblazePhotosImporter(monitor, dataStore, streamProvider, tempFiles, clientFactory);
     ImportResult result = sut.importItem(UUID.randomUUID(), executor, authData, null);
     assertEquals(ImportResult.OK, result);
   }
@@ -85,7 +88,7 @@ public class BackblazePhotosImporterTest {
     when(data.getPhotos()).thenReturn(null);
 
     BackblazePhotosImporter sut =
-        new BackblazePhotosImporter(monitor, dataStore, streamProvider, clientFactory);
+        new BackblazePhotosImporter(monitor, dataStore, streamProvider, tempFiles, clientFactory);
     ImportResult result = sut.importItem(UUID.randomUUID(), executor, authData, data);
     assertEquals(ImportResult.ResultType.OK, result.getType());
   }
@@ -97,7 +100,7 @@ public class BackblazePhotosImporterTest {
     when(data.getPhotos()).thenReturn(new ArrayList<>());
 
     BackblazePhotosImporter sut =
-        new BackblazePhotosImporter(monitor, dataStore, streamProvider, clientFactory);
+        new BackblazePhotosImporter(monitor, dataStore, streamProvider, tempFiles, clientFactory);
     ImportResult result = sut.importItem(UUID.randomUUID(), executor, authData, data);
     assertEquals(ImportResult.ResultType.OK, result.getType());
   }
@@ -124,10 +127,10 @@ public class BackblazePhotosImporterTest {
     when(clientFactory.getOrCreateB2Client(jobId, authData)).thenReturn(client);
 
     File file = folder.toFile();
-    when(dataStore.getTempFileFromInputStream(any(), any(), any())).thenReturn(file);
+    when(tempFiles.createTempFile(any(), any(), any(), any())).thenReturn(file);
 
     BackblazePhotosImporter sut =
-        new BackblazePhotosImporter(monitor, dataStore, streamProvider, clientFactory);
+        new BackblazePhotosImporter(monitor, dataStore, streamProvider, tempFiles, clientFactory);
     sut.importItem(jobId, executor, authData, data);
 
     ArgumentCaptor<ImportFunction<PhotoModel, String>> importCapture =
@@ -149,7 +152,7 @@ public class BackblazePhotosImporterTest {
     when(data.getAlbums()).thenReturn(albums);
 
     BackblazePhotosImporter sut =
-        new BackblazePhotosImporter(monitor, dataStore, streamProvider, clientFactory);
+        new BackblazePhotosImporter(monitor, dataStore, streamProvider, tempFiles, clientFactory);
     sut.importItem(UUID.randomUUID(), executor, authData, data);
 
     verify(executor, times(1))
@@ -32,7 +32,7 @@ import org.datatransferproject.api.launcher.Monitor;
 import org.datatransferproject.datatransfer.backblaze.common.BackblazeDataTransferClient;
 import org.datatransferproject.datatransfer.backblaze.common.BackblazeDataTransferClientFactory;
 import org.datatransferproject.spi.cloud.connection.ConnectionProvider;
-import org.datatransferproject.spi.cloud.storage.TemporaryPerJobDataStore;
+import org.datatransferproject.spi.cloud.storage.JobTempFileManager;
 import org.datatransferproject.spi.cloud.storage.TemporaryPerJobDataStore.InputStreamWrapper;
 import org.datatransferproject.spi.transfer.idempotentexecutor.IdempotentImportExecutor;
 import org.datatransferproject.spi.transfer.idempotentexecutor.ImportFunction;
@@ -48,8 +48,8 @@ import org.mockito.ArgumentCaptor;
 public class BackblazeVideosImporterTest {
 
   Monitor monitor;
-  TemporaryPerJobDataStore dataStore;
   ConnectionProvider streamProvider;
+  JobTempFileManager tempFiles;
   BackblazeDataTransferClientFactory clientFactory;
   IdempotentImportExecutor executor;
   TokenSecretAuthData authData;
@@ -59,8 +59,8 @@ public class BackblazeVideosImporterTest {
   @BeforeEach
   public void setUp() {
     monitor = mock(Monitor.class);
-    dataStore = mock(TemporaryPerJobDataStore.class);
     streamProvider = mock(ConnectionProvider.class);
+    tempFiles = mock(JobTempFileManager.class);
     clientFactory = mock(BackblazeDataTransferClientFactory.class);
     executor = mock(IdempotentImportExecutor.class);
     authData = mock(TokenSecretAuthData.class);
@@ -70,7 +70,7 @@ public class BackblazeVideosImporterTest {
   @Test
   public void testNullData() throws Exception {
     BackblazeVideosImporter sut =
-        new BackblazeVideosImporter(monitor, dataStore, streamProvider, clientFactory);
+        new BackblazeVideosImporter(monitor, streamProvider, tempFiles, clientFactory);
     ImportResult result = sut.importItem(UUID.randomUUID(), executor, authData, null);
     assertEquals(ImportResult.OK, result);
   }
@@ -81,7 +81,7 @@ public class BackblazeVideosImporterTest {
     when(data.getVideos()).thenReturn(null);
 
     BackblazeVideosImporter sut =
-        new BackblazeVideosImporter(monitor, dataStore, streamProvider, clientFactory);
+        new BackblazeVideosImporter(monitor, streamProvider, tempFiles, clientFactory);
     ImportResult result = sut.importItem(UUID.randomUUID(), executor, authData, data);
     assertEquals(ImportResult.ResultType.OK, result.getType());
   }
@@ -92,7 +92,7 @@ public class BackblazeVideosImporterTest {
     when(data.getVideos()).thenReturn(new ArrayList<>());
 
     BackblazeVideosImporter sut =
-        new BackblazeVideosImporter(monitor, dataStore, streamProvider, clientFactory);
+        new BackblazeVideosImporter(monitor, streamProvider, tempFiles, clientFactory);
     ImportResult result = sut.importItem(UUID.randomUUID(), executor, authData, data);
     assertEquals(ImportResult.ResultType.OK, result.getType());
   }
@@ -121,12 +121,12 @@ public class BackblazeVideosImporterTest {
     when(streamProvider.getInputStreamForItem(jobId, videoObject))
         .thenReturn(new InputStreamWrapper(IOUtils.toInputStream("video content", "UTF-8")));
 
-    when(dataStore.getTempFileFromInputStream(any(), any(), any())).thenReturn(folder.toFile());
+    when(tempFiles.createTempFile(any(), any(), any(), any())).thenReturn(folder.toFile());
     when(client.uploadFile(eq("Video Transfer/dataId.mp4"), any())).thenReturn(response);
     when(clientFactory.getOrCreateB2Client(jobId, authData)).thenReturn(client);
 
     BackblazeVideosImporter sut =
-        new BackblazeVideosImporter(monitor, dataStore, streamProvider, clientFactory);
+        new BackblazeVideosImporter(monitor, streamProvider, tempFiles, clientFactory);
     sut.importItem(jobId, executor, authData, data);
 
     ArgumentCaptor<ImportFunction<VideoModel, String>> importCapture =
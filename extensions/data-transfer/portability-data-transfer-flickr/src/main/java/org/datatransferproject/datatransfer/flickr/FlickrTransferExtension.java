@@ -29,11 +29,10 @@ import org.datatransferproject.api.launcher.Monitor;
 import org.datatransferproject.datatransfer.flickr.media.FlickrMediaImporter;
 import org.datatransferproject.datatransfer.flickr.photos.FlickrPhotosExporter;
 import org.datatransferproject.datatransfer.flickr.photos.FlickrPhotosImporter;
+import org.datatransferproject.spi.cloud.connection.ConnectionProvider;
 import org.datatransferproject.spi.cloud.storage.AppCredentialStore;
 import org.datatransferproject.spi.cloud.storage.TemporaryPerJobDataStore;
 import org.datatransferproject.spi.transfer.extension.TransferExtension;
-import org.datatransferproject.spi.transfer.idempotentexecutor.IdempotentImportExecutor;
-import org.datatransferproject.spi.transfer.idempotentexecutor.IdempotentImportExecutorExtension;
 import org.datatransferproject.spi.transfer.provider.Exporter;
 import org.datatransferproject.spi.transfer.provider.Importer;
 import org.datatransferproject.types.common.models.DataVertical;
@@ -97,20 +96,15 @@ public class FlickrTransferExtension implements TransferExtension {
 
     TransferServiceConfig serviceConfig = context.getService(TransferServiceConfig.class);
 
-    IdempotentImportExecutor idempotentImportExecutor = context.getService(
-        IdempotentImportExecutorExtension.class).getRetryingIdempotentImportExecutor(context);
-    boolean enableRetrying = context.getSetting("enableRetrying", false);
-
     ImmutableMap.Builder<DataVertical, Importer> importerBuilder = ImmutableMap.builder();
     importerBuilder.put(
         PHOTOS,
         new FlickrPhotosImporter(
             appCredentials,
             jobStore,
+            context.getService(ConnectionProvider.class),
             monitor,
-            serviceConfig,
-            idempotentImportExecutor,
-            enableRetrying));
+            serviceConfig));
     importerBuilder.put(
         MEDIA, new FlickrMediaImporter(appCredentials, jobStore, monitor, serviceConfig));
     importerMap = importerBuilder.build();
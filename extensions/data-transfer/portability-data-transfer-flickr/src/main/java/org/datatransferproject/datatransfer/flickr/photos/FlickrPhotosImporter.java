@@ -59,33 +59,20 @@ public class FlickrPhotosImporter implements Importer<AuthData, PhotosContainerR
   private final PhotosetsInterface photosetsInterface;
   private final Monitor monitor;
   private final RateLimiter perUserRateLimiter;
-  private IdempotentImportExecutor retryingIdempotentExecutor;
-  private Boolean enableRetrying;
 
   public FlickrPhotosImporter(
       AppCredentials appCredentials,
       TemporaryPerJobDataStore jobStore,
+      ConnectionProvider connectionProvider,
       Monitor monitor,
-      TransferServiceConfig serviceConfig,
-      IdempotentImportExecutor retryingIdempotentExecutor,
-      boolean enableRetrying) {
+      TransferServiceConfig serviceConfig) {
     this.jobStore = jobStore;
     this.flickr = new Flickr(appCredentials.getKey(), appCredentials.getSecret(), new REST());
     this.uploader = flickr.getUploader();
-    this.connectionProvider = new ConnectionProvider(jobStore);
+    this.connectionProvider = connectionProvider;
     this.photosetsInterface = flickr.getPhotosetsInterface();
     this.monitor = monitor;
     this.perUserRateLimiter = serviceConfig.getPerUserRateLimiter();
-    this.retryingIdempotentExecutor = retryingIdempotentExecutor;
-    this.enableRetrying = enableRetrying;
-  }
-
-  public FlickrPhotosImporter(
-      AppCredentials appCredentials,
-      TemporaryPerJobDataStore jobStore,
-      Monitor monitor,
-      TransferServiceConfig serviceConfig) {
-    this(appCredentials, jobStore, monitor, serviceConfig, null /*retryingIdempotentExecutor*/, false  /*enableRetrying*/);
   }
 
   @VisibleForTesting
@@ -126,13 +113,10 @@ public class FlickrPhotosImporter implements Importer<AuthData, PhotosContainerR
       storeAlbums(jobId, data.getAlbums());
     }
 
-    IdempotentImportExecutor executor =
-        (retryingIdempotentExecutor != null && enableRetrying) ? retryingIdempotentExecutor : idempotentExecutor;
-
     if (data.getPhotos() != null) {
       for (PhotoModel photo : data.getPhotos()) {
         try {
-          importSinglePhoto(executor, jobId, photo);
+          importSinglePhoto(idempotentExecutor, jobId, photo);
         } catch (FlickrException e) {
           if (e.getMessage().contains("Upload limit reached")) {
             throw new DestinationMemoryFullException("Flickr destination memory reached", e);
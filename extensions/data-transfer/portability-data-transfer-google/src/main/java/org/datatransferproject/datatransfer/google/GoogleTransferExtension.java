@@ -17,11 +17,15 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.function.Supplier;
 import org.datatransferproject.api.launcher.ExtensionContext;
+import org.datatransferproject.api.launcher.MetricRecorder;
 import org.datatransferproject.api.launcher.Monitor;
 import org.datatransferproject.datatransfer.google.calendar.GoogleCalendarExporter;
 import org.datatransferproject.datatransfer.google.calendar.GoogleCalendarImporter;
 import org.datatransferproject.datatransfer.google.common.GoogleCredentialFactory;
+import org.datatransferproject.datatransfer.google.common.gphotos.BatchSizer;
 import org.datatransferproject.datatransfer.google.contacts.GoogleContactsExporter;
 import org.datatransferproject.datatransfer.google.contacts.GoogleContactsImporter;
 import org.datatransferproject.datatransfer.google.drive.DriveExporter;
@@ -38,8 +42,11 @@ import org.datatransferproject.datatransfer.google.tasks.GoogleTasksExporter;
 import org.datatransferproject.datatransfer.google.tasks.GoogleTasksImporter;
 import org.datatransferproject.datatransfer.google.videos.GoogleVideosExporter;
 import org.datatransferproject.datatransfer.google.videos.GoogleVideosImporter;
+import org.datatransferproject.spi.cloud.connection.ConnectionProvider;
 import org.datatransferproject.spi.cloud.storage.AppCredentialStore;
+import org.datatransferproject.spi.cloud.storage.JobMediaCache;
 import org.datatransferproject.spi.cloud.storage.JobStore;
+import org.datatransferproject.spi.cloud.storage.JobTempFileManager;
 import org.datatransferproject.spi.transfer.idempotentexecutor.IdempotentImportExecutor;
 import org.datatransferproject.spi.transfer.idempotentexecutor.IdempotentImportExecutorExtension;
 import org.datatransferproject.types.common.models.DataVertical;
@@ -115,9 +122,22 @@ public class GoogleTransferExtension implements TransferExtension {
     GoogleCredentialFactory credentialFactory =
         new GoogleCredentialFactory(httpTransport, jsonFactory, appCredentials, monitor);
 
-    IdempotentImportExecutor idempotentImportExecutor = context.getService(
-        IdempotentImportExecutorExtension.class).getRetryingIdempotentImportExecutor(context);
-    boolean enableRetrying = context.getSetting("enableRetrying", false);
+    // Importers retry through the executor of each job; the media exporter has no such executor,
+    // so it creates its own for each job.
+    IdempotentImportExecutorExtension executorExtension =
+        context.getService(IdempotentImportExecutorExtension.class);
+    Supplier<IdempotentImportExecutor> retryingExecutorFactory =
+        context.getSetting("enableRetrying", false)
+            ? () -> executorExtension.getRetryingIdempotentImportExecutor(context)
+            : null;
+    int albumScanConcurrency = context.getSetting("googleAlbumScanConcurrency", 1);
+    BatchSizer batchSizer =
+        new BatchSizer(
+            context.getSetting("googleBatchMaxMb", 0) * 1024L * 1024L,
+            Duration.ofSeconds(context.getSetting("googleBatchTargetSeconds", 0)),
+            context.getService(MetricRecorder.class));
+
+    ConnectionProvider connectionProvider = context.getService(ConnectionProvider.class);
 
     ImmutableMap.Builder<DataVertical, Importer> importerBuilder = ImmutableMap.builder();
     importerBuilder.put(BLOBS, new DriveImporter(credentialFactory, jobStore, monitor));
@@ -130,28 +150,49 @@ public class GoogleTransferExtension implements TransferExtension {
         new GooglePhotosImporter(
             credentialFactory,
             jobStore,
+            connectionProvider,
             jsonFactory,
             monitor,
             context.getSetting("googleWritesPerSecond", 1.0),
-            idempotentImportExecutor,
-            enableRetrying));
-    importerBuilder.put(VIDEOS, new GoogleVideosImporter(appCredentials, jobStore, monitor));
+            context.getSetting("googleUploadConcurrency", 1),
+            batchSizer));
+    importerBuilder.put(
+        VIDEOS,
+        new GoogleVideosImporter(
+            appCredentials,
+            jobStore,
+            context.getService(JobTempFileManager.class),
+            connectionProvider,
+            monitor));
     importerBuilder.put(MUSIC, new GoogleMusicImporter(credentialFactory, jsonFactory, monitor,
         context.getSetting("googleWritesPerSecond", 1.0)));
     importerMap = importerBuilder.build();
 
     ImmutableMap.Builder<DataVertical, Exporter> exporterBuilder = ImmutableMap.builder();
-    exporterBuilder.put(BLOBS, new DriveExporter(credentialFactory, jobStore, monitor));
+    exporterBuilder.put(
+        BLOBS,
+        new DriveExporter(
+            credentialFactory, jobStore, context.getService(JobMediaCache.class), monitor));
     exporterBuilder.put(CONTACTS, new GoogleContactsExporter(credentialFactory));
     exporterBuilder.put(CALENDAR, new GoogleCalendarExporter(credentialFactory));
     exporterBuilder.put(MAIL, new GoogleMailExporter(credentialFactory));
     exporterBuilder.put(SOCIAL_POSTS, new GooglePlusExporter(credentialFactory));
     exporterBuilder.put(TASKS, new GoogleTasksExporter(credentialFactory, monitor));
     exporterBuilder.put(
-        PHOTOS, new GooglePhotosExporter(credentialFactory, jobStore, jsonFactory, monitor));
+        PHOTOS,
+        new GooglePhotosExporter(
+            credentialFactory, jobStore, jsonFactory, monitor, albumScanConcurrency));
     exporterBuilder.put(VIDEOS, new GoogleVideosExporter(credentialFactory, jobStore, jsonFactory, monitor));
     exporterBuilder.put(
-        MEDIA, new GoogleMediaExporter(credentialFactory, jobStore, jsonFactory, monitor, /* photosInterface= */ null, idempotentImportExecutor, enableRetrying));
+        MEDIA,
+        new GoogleMediaExporter(
+            credentialFactory,
+            jobStore,
+            jsonFactory,
+            monitor,
+            /* photosInterface= */ null,
+            retryingExecutorFactory,
+            albumScanConcurrency));
     exporterBuilder.put(MUSIC, new GoogleMusicExporter(credentialFactory, jsonFactory, monitor));
 
     exporterMap = exporterBuilder.build();
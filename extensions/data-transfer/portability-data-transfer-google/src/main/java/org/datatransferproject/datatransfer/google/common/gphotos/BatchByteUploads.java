@@ -0,0 +1,126 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.datatransferproject.datatransfer.google.common.gphotos;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import javax.annotation.Nullable;
+
+/**
+ * Runs the byte uploads of a batch of items that {@link GPhotosUpload} creates with a single
+ * {@code mediaItems:batchCreate} call. Only that call needs the items in order, so their bytes are
+ * uploaded on up to {@code concurrency} threads of the importer's executor at once, which all share
+ * the write rate limit of the {@code GooglePhotosInterface} of the job.
+ *
+ * <p>With a concurrency of 1, the default, every upload runs on the calling thread as it is
+ * submitted.
+ */
+public final class BatchByteUploads<R> {
+  private final ExecutorService executor;
+  private final int concurrency;
+  private final Semaphore running;
+  private final List<CompletableFuture<R>> uploads = new ArrayList<>();
+
+  /**
+   * @param executor runs the uploads when more than one runs at once
+   * @param concurrency how many items of the batch have their bytes uploaded at once
+   */
+  public BatchByteUploads(ExecutorService executor, int concurrency) {
+    Preconditions.checkArgument(concurrency > 0, "concurrency must be positive");
+    this.executor = executor;
+    this.concurrency = concurrency;
+    this.running = new Semaphore(concurrency);
+  }
+
+  /** Creates the executor that an importer keeps for the uploads of all its batches. */
+  public static ExecutorService newExecutor() {
+    return Executors.newCachedThreadPool(
+        new ThreadFactoryBuilder().setNameFormat("gphotos-upload-%d").setDaemon(true).build());
+  }
+
+  /** Starts {@code upload}, once fewer than {@code concurrency} uploads are running. */
+  public void submit(Callable<R> upload) throws InterruptedException {
+    CompletableFuture<R> future = new CompletableFuture<>();
+    uploads.add(future);
+    if (concurrency == 1) {
+      complete(future, upload);
+      return;
+    }
+    running.acquire();
+    executor.execute(
+        () -> {
+          try {
+            complete(future, upload);
+          } finally {
+            running.release();
+          }
+        });
+  }
+
+  /** Waits for every upload, and returns their results in the order they were submitted. */
+  public List<Result<R>> awaitAll() throws InterruptedException {
+    List<Result<R>> results = new ArrayList<>(uploads.size());
+    for (CompletableFuture<R> upload : uploads) {
+      try {
+        results.add(new Result<>(upload.get(), null));
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof Error) {
+          throw (Error) e.getCause();
+        }
+        results.add(new Result<>(null, (Exception) e.getCause()));
+      }
+    }
+    uploads.clear();
+    return results;
+  }
+
+  private static <R> void complete(CompletableFuture<R> future, Callable<R> upload) {
+    try {
+      future.complete(upload.call());
+    } catch (Throwable t) {
+      future.completeExceptionally(t);
+    }
+  }
+
+  /** The value returned by an upload, or the exception it threw. */
+  public static final class Result<R> {
+    @Nullable private final R value;
+    @Nullable private final Exception exception;
+
+    private Result(@Nullable R value, @Nullable Exception exception) {
+      this.value = value;
+      this.exception = exception;
+    }
+
+    @Nullable
+    public R getValue() {
+      return value;
+    }
+
+    @Nullable
+    public Exception getException() {
+      return exception;
+    }
+  }
+}
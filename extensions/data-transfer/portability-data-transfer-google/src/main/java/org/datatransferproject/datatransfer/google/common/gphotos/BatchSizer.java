@@ -0,0 +1,143 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.datatransferproject.datatransfer.google.common.gphotos;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+import org.datatransferproject.api.launcher.MetricRecorder;
+import org.datatransferproject.types.common.models.DataVertical;
+
+/**
+ * Chooses how many items {@link GPhotosUpload} puts in each {@code mediaItems:batchCreate} call of
+ * a job, so that a batch of large videos holds fewer items than a batch of small photos.
+ *
+ * <p>Items do not carry their size before they are downloaded, so the bytes of a batch are
+ * predicted from the average size of the items the job has uploaded so far, and batches are cut
+ * short to stay under {@code maxBatchBytes}. Batches also shrink by half when any of their items
+ * fails or they take longer than {@code targetLatency}, and grow back a step at a time while they
+ * are quick.
+ *
+ * <p>The state of a job is kept until {@link #releaseJob} is called at the end of the job.
+ *
+ * <p>The Google extension creates one sizer from its settings for the importers it creates. With a
+ * {@code maxBatchBytes} and {@code targetLatency} of zero, batches are only limited by their item
+ * count and by failures.
+ */
+public final class BatchSizer {
+  // 50 is the maximum number of items that can be created in one call. (We use 49 to avoid
+  // potential off by one errors)
+  // https://developers.google.com/photos/library/guides/upload-media#creating-media-item
+  @VisibleForTesting static final int MAX_BATCH_ITEMS = 49;
+
+  private static final double MIN_SCALE = 1.0 / MAX_BATCH_ITEMS;
+  private static final double SCALE_STEP = 0.25;
+  // Weight of the latest batch in the average size of the items of a job
+  private static final double SIZE_WEIGHT = 0.3;
+
+  private final long maxBatchBytes;
+  private final Duration targetLatency;
+  @Nullable private final MetricRecorder metricRecorder;
+  private final Map<UUID, JobBatches> jobs = new ConcurrentHashMap<>();
+
+  /**
+   * A {@code maxBatchBytes} or {@code targetLatency} of zero turns off the byte limit or the
+   * latency target respectively.
+   */
+  public BatchSizer(
+      long maxBatchBytes, Duration targetLatency, @Nullable MetricRecorder metricRecorder) {
+    Preconditions.checkArgument(maxBatchBytes >= 0, "maxBatchBytes is negative");
+    Preconditions.checkArgument(!targetLatency.isNegative(), "targetLatency is negative");
+    this.maxBatchBytes = maxBatchBytes;
+    this.targetLatency = targetLatency;
+    this.metricRecorder = metricRecorder;
+  }
+
+  /** Returns how many items the next batch of {@code jobId} should hold. */
+  public int nextBatchItems(UUID jobId, DataVertical dataType) {
+    int items = getJob(jobId).nextBatchItems();
+    if (metricRecorder != null) {
+      metricRecorder.recordMetric(dataType, "gphotosBatchItems", items);
+    }
+    return items;
+  }
+
+  /**
+   * Adapts the next batches of {@code jobId} to a batch of {@code items} that uploaded {@code
+   * bytes} in {@code latency}, of which {@code failedItems} were not imported.
+   */
+  public void batchFinished(
+      UUID jobId,
+      DataVertical dataType,
+      int items,
+      long bytes,
+      Duration latency,
+      int failedItems) {
+    getJob(jobId).batchFinished(items, bytes, latency, failedItems > 0);
+    if (metricRecorder != null) {
+      metricRecorder.recordMetric(dataType, "gphotosBatchKilobytes", (int) (bytes / 1024));
+      metricRecorder.recordMetric(dataType, "gphotosBatchLatency", latency);
+      metricRecorder.recordMetric(dataType, "gphotosBatchFailedItems", failedItems);
+      metricRecorder.recordMetric(dataType, "gphotosBatchSucceeded", failedItems == 0);
+    }
+  }
+
+  /** Forgets the batches of {@code jobId} once the job has finished. */
+  public void releaseJob(UUID jobId) {
+    jobs.remove(jobId);
+  }
+
+  private JobBatches getJob(UUID jobId) {
+    return jobs.computeIfAbsent(jobId, id -> new JobBatches());
+  }
+
+  /** The batches of a job so far. */
+  private final class JobBatches {
+    // The fraction of the largest batch that the next batch may hold
+    private double scale = 1.0;
+    // Zero until the job has uploaded some bytes
+    private double averageItemBytes;
+
+    private synchronized int nextBatchItems() {
+      int items = (int) Math.round(MAX_BATCH_ITEMS * scale);
+      if (maxBatchBytes > 0 && averageItemBytes > 0) {
+        items = Math.min(items, (int) (maxBatchBytes * scale / averageItemBytes));
+      }
+      return Math.max(1, items);
+    }
+
+    private synchronized void batchFinished(
+        int items, long bytes, Duration latency, boolean failed) {
+      if (items > 0 && bytes > 0) {
+        double batchAverage = (double) bytes / items;
+        averageItemBytes =
+            averageItemBytes == 0
+                ? batchAverage
+                : SIZE_WEIGHT * batchAverage + (1 - SIZE_WEIGHT) * averageItemBytes;
+      }
+      boolean targeted = !targetLatency.isZero();
+      if (failed || (targeted && latency.compareTo(targetLatency) > 0)) {
+        scale = Math.max(MIN_SCALE, scale / 2);
+      } else if (!targeted || latency.compareTo(targetLatency.dividedBy(2)) < 0) {
+        scale = Math.min(1.0, scale + SCALE_STEP);
+      }
+    }
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.datatransferproject.datatransfer.google.common.gphotos;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import java.util.Collection;
+
+/**
+ * The IDs of the media items that are contained in albums, kept as an open addressing table of
+ * their 64 bit fingerprints rather than as strings, so that each item takes at most 32 bytes and
+ * each lookup is a probe or two.
+ *
+ * <p>Two IDs only share a fingerprint with a probability of about 2^-64, which for a library of a
+ * million items is too small for an albumless item to be mistaken for a contained one in practice.
+ */
+public final class ContainedMediaIndex {
+  private static final HashFunction FINGERPRINT = Hashing.farmHashFingerprint64();
+  // Marks an empty slot, so the fingerprints that are 0 are stored as 1 instead
+  private static final long EMPTY = 0L;
+
+  private final long[] slots;
+  private final int mask;
+
+  private ContainedMediaIndex(int expectedItems) {
+    // Keeps the table at most half full, so that probe sequences stay short
+    int capacity = Integer.highestOneBit(Math.max(expectedItems, 1) * 2 - 1) << 1;
+    this.slots = new long[capacity];
+    this.mask = capacity - 1;
+  }
+
+  /** Builds the index of the media items with the given {@code mediaItemIds}. */
+  public static ContainedMediaIndex of(Collection<String> mediaItemIds) {
+    ContainedMediaIndex index = new ContainedMediaIndex(mediaItemIds.size());
+    for (String mediaItemId : mediaItemIds) {
+      index.add(fingerprint(mediaItemId));
+    }
+    return index;
+  }
+
+  public boolean contains(String mediaItemId) {
+    long fingerprint = fingerprint(mediaItemId);
+    for (int i = slot(fingerprint); slots[i] != EMPTY; i = (i + 1) & mask) {
+      if (slots[i] == fingerprint) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void add(long fingerprint) {
+    int i = slot(fingerprint);
+    while (slots[i] != EMPTY) {
+      if (slots[i] == fingerprint) {
+        return;
+      }
+      i = (i + 1) & mask;
+    }
+    slots[i] = fingerprint;
+  }
+
+  private int slot(long fingerprint) {
+    return (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+  }
+
+  private static long fingerprint(String mediaItemId) {
+    long fingerprint = FINGERPRINT.hashString(mediaItemId, UTF_8).asLong();
+    return fingerprint == EMPTY ? 1L : fingerprint;
+  }
+}
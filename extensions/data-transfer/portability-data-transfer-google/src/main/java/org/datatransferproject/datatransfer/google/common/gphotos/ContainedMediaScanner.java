@@ -0,0 +1,219 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.datatransferproject.datatransfer.google.common.gphotos;
+
+import static java.lang.String.format;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.datatransferproject.api.launcher.Monitor;
+import org.datatransferproject.datatransfer.google.mediaModels.AlbumListResponse;
+import org.datatransferproject.datatransfer.google.mediaModels.GoogleAlbum;
+import org.datatransferproject.datatransfer.google.mediaModels.GoogleMediaItem;
+import org.datatransferproject.datatransfer.google.mediaModels.MediaItemSearchResponse;
+
+/**
+ * Lists the media items contained in the albums of a user, which the Google Photos exporters skip
+ * when they export the media that is not in any album.
+ *
+ * <p>Albums are listed a page at a time, and the media of up to {@code albumConcurrency} albums is
+ * listed at once. Exporters {@link #start} the listing in the
+ * background when a job begins, so that albums are exported meanwhile, and {@link #await} it only
+ * before they export the albumless media.
+ */
+public final class ContainedMediaScanner {
+  private final ExecutorService executor =
+      Executors.newCachedThreadPool(
+          new ThreadFactoryBuilder().setNameFormat("gphotos-album-scan-%d").setDaemon(true).build());
+
+  private final Monitor monitor;
+  private final int albumConcurrency;
+  private final Map<UUID, Future<?>> scans = new ConcurrentHashMap<>();
+
+  /** @param albumConcurrency how many albums have their media listed at once */
+  public ContainedMediaScanner(Monitor monitor, int albumConcurrency) {
+    Preconditions.checkArgument(albumConcurrency > 0, "albumConcurrency must be positive");
+    this.monitor = monitor;
+    this.albumConcurrency = albumConcurrency;
+  }
+
+  /** Returns the IDs of the media items in every album, in album order. */
+  public List<String> listContainedMediaIds(AlbumLister albums, MediaLister media)
+      throws Exception {
+    Semaphore running = new Semaphore(albumConcurrency);
+    AtomicBoolean failed = new AtomicBoolean();
+    List<Future<List<String>>> albumScans = new ArrayList<>();
+    try {
+      String albumToken = null;
+      do {
+        AlbumListResponse albumListResponse = albums.listAlbums(Optional.ofNullable(albumToken));
+        albumToken = albumListResponse.getNextPageToken();
+        if (albumListResponse.getAlbums() == null) {
+          continue;
+        }
+
+        for (GoogleAlbum album : albumListResponse.getAlbums()) {
+          if (albumConcurrency == 1) {
+            albumScans.add(
+                CompletableFuture.completedFuture(listAlbumMedia(album.getId(), media, failed)));
+            continue;
+          }
+          running.acquire();
+          albumScans.add(
+              executor.submit(
+                  () -> {
+                    try {
+                      return listAlbumMedia(album.getId(), media, failed);
+                    } catch (Exception e) {
+                      failed.set(true);
+                      throw e;
+                    } finally {
+                      running.release();
+                    }
+                  }));
+        }
+      } while (albumToken != null);
+
+      List<String> mediaItemIds = new ArrayList<>();
+      for (Future<List<String>> albumScan : albumScans) {
+        mediaItemIds.addAll(getResult(albumScan));
+      }
+      return mediaItemIds;
+    } catch (Exception e) {
+      // Stops the albums still being listed
+      failed.set(true);
+      throw e;
+    }
+  }
+
+  /**
+   * Runs {@code scan} for {@code jobId} in the background, unless a scan of the job has already
+   * been started and not yet awaited, as happens when the export of the root page is retried.
+   */
+  public void start(UUID jobId, Scan scan) {
+    scans.computeIfAbsent(
+        jobId,
+        id ->
+            executor.submit(
+                () -> {
+                  scan.run();
+                  return null;
+                }));
+  }
+
+  /**
+   * Waits for the scan that was started for {@code jobId}, if this scanner started one.
+   *
+   * @return false if the scan failed, in which case the caller should run it again itself. A job
+   *     that resumed on another worker has no scan here, so callers should still check that the
+   *     listing was stored when this returns true.
+   */
+  public boolean await(UUID jobId) throws InterruptedIOException {
+    Future<?> scan = scans.get(jobId);
+    if (scan == null) {
+      return true;
+    }
+    try {
+      scan.get();
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while listing the media in albums");
+    } catch (ExecutionException e) {
+      monitor.info(
+          () -> format("%s: Unable to list the media in albums in the background", jobId),
+          e.getCause());
+      return false;
+    } finally {
+      if (scan.isDone()) {
+        scans.remove(jobId, scan);
+      }
+    }
+  }
+
+  /** Stops the scan of {@code jobId} if it is still running, and forgets it. */
+  public void releaseJob(UUID jobId) {
+    Future<?> scan = scans.remove(jobId);
+    if (scan != null) {
+      scan.cancel(true);
+    }
+  }
+
+  private static List<String> listAlbumMedia(
+      String albumId, MediaLister media, AtomicBoolean failed) throws Exception {
+    List<String> mediaItemIds = new ArrayList<>();
+    String photoToken = null;
+    do {
+      if (failed.get()) {
+        // The listing has failed as a whole, so the rest of this album is not needed
+        break;
+      }
+      MediaItemSearchResponse containedMediaSearchResponse =
+          media.listMediaItems(albumId, Optional.ofNullable(photoToken));
+      if (containedMediaSearchResponse.getMediaItems() != null) {
+        for (GoogleMediaItem mediaItem : containedMediaSearchResponse.getMediaItems()) {
+          mediaItemIds.add(mediaItem.getId());
+        }
+      }
+      photoToken = containedMediaSearchResponse.getNextPageToken();
+    } while (photoToken != null);
+    return mediaItemIds;
+  }
+
+  private static <T> T getResult(Future<T> future) throws Exception {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw (Exception) e.getCause();
+    }
+  }
+
+  /** Lists a page of the albums of the user. */
+  @FunctionalInterface
+  public interface AlbumLister {
+    AlbumListResponse listAlbums(Optional<String> pageToken) throws Exception;
+  }
+
+  /** Lists a page of the media items in an album. */
+  @FunctionalInterface
+  public interface MediaLister {
+    MediaItemSearchResponse listMediaItems(String albumId, Optional<String> pageToken)
+        throws Exception;
+  }
+
+  /** Lists the media in albums and stores it for the job. */
+  @FunctionalInterface
+  public interface Scan {
+    void run() throws Exception;
+  }
+}
@@ -24,13 +24,13 @@ import com.google.api.client.auth.oauth2.Credential;
 import com.google.api.client.json.JsonFactory;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
-import com.google.common.collect.Iterators;
-import com.google.common.collect.UnmodifiableIterator;
 import com.google.photos.library.v1.PhotosLibraryClient;
 import com.google.rpc.Code;
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -68,6 +68,7 @@ import org.datatransferproject.spi.transfer.types.PermissionDeniedException;
 import org.datatransferproject.spi.transfer.types.UploadErrorException;
 import org.datatransferproject.types.common.DownloadableFile;
 import org.datatransferproject.types.common.ImportableItem;
+import org.datatransferproject.types.common.models.DataVertical;
 import org.datatransferproject.types.common.models.media.MediaContainerResource;
 import org.datatransferproject.types.common.models.media.MediaAlbum;
 import org.datatransferproject.types.common.models.photos.PhotoAlbum;
@@ -97,22 +98,31 @@ public class GPhotosUpload {
   private UUID jobId;
   private IdempotentImportExecutor executor;
   private TokensAndUrlAuthData authData;
-
-  // We partition into groups of 49 as 50 is the maximum number of items that can be created
-  // in one call. (We use 49 to avoid potential off by one errors)
-  // https://developers.google.com/photos/library/guides/upload-media#creating-media-item
-  private static final int BATCH_UPLOAD_SIZE = 49;
+  private BatchSizer batchSizer;
 
   /**
    * WARNING: this should be constructed PER request so as to not conflate job IDs or auth data
    * across processes. That is: do NOT cache an instance of this object across your requests, say by
    * storing the instance as a member of your adapter's Importer or Exporter implementations.
+   *
+   * @param batchSizer the sizer of the importer, which keeps adapting the batches of the job across
+   *     requests
    */
   public GPhotosUpload(
-      UUID jobId, IdempotentImportExecutor executor, TokensAndUrlAuthData authData) {
+      UUID jobId,
+      IdempotentImportExecutor executor,
+      TokensAndUrlAuthData authData,
+      BatchSizer batchSizer) {
     this.jobId = jobId;
     this.executor = executor;
     this.authData = authData;
+    this.batchSizer = batchSizer;
+  }
+
+  /** Uploads in batches that are only limited by their item count and by failures. */
+  public GPhotosUpload(
+      UUID jobId, IdempotentImportExecutor executor, TokensAndUrlAuthData authData) {
+    this(jobId, executor, authData, new BatchSizer(0, Duration.ZERO, null));
   }
 
   /**
@@ -155,18 +165,53 @@ public class GPhotosUpload {
         googleAlbumId = executor.getCachedValue(originalAlbumId);
       }
 
-      UnmodifiableIterator<List<T>> batches =
-          Iterators.partition(albumEntry.getValue().iterator(), BATCH_UPLOAD_SIZE);
-
-      while (batches.hasNext()) {
-        long batchBytes =
-            importer.uploadToAlbum(jobId, authData, batches.next(), executor, googleAlbumId);
-        bytes += batchBytes;
+      // Batches are cut one at a time, as their size adapts to the batches before them
+      List<T> albumItems = albumEntry.getValue();
+      int next = 0;
+      while (next < albumItems.size()) {
+        int batchItems =
+            Math.min(
+                albumItems.size() - next,
+                batchSizer.nextBatchItems(jobId, getDataType(albumItems.get(next))));
+        List<T> batch = new ArrayList<>(albumItems.subList(next, next + batchItems));
+        next += batchItems;
+        bytes += uploadBatch(batch, importer, googleAlbumId);
       }
     }
     return bytes;
   }
 
+  private <T extends DownloadableFile> long uploadBatch(
+      List<T> batch, ItemBatchUploader<T> importer, String googleAlbumId) throws Exception {
+    DataVertical dataType = getDataType(batch.get(0));
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    long batchBytes;
+    try {
+      batchBytes = importer.uploadToAlbum(jobId, authData, batch, executor, googleAlbumId);
+    } catch (Exception e) {
+      batchSizer.batchFinished(
+          jobId, dataType, batch.size(), 0L, stopwatch.elapsed(), batch.size());
+      throw e;
+    }
+    Duration latency = stopwatch.elapsed();
+    batchSizer.batchFinished(
+        jobId, dataType, batch.size(), batchBytes, latency, countFailedItems(batch));
+    return batchBytes;
+  }
+
+  /**
+   * Uploaders record the errors of single items with the executor instead of throwing, so the items
+   * that failed are those the executor has no result for.
+   */
+  private <T extends DownloadableFile> int countFailedItems(List<T> batch) {
+    return (int)
+        batch.stream().filter(item -> !executor.isKeyCached(item.getIdempotentId())).count();
+  }
+
+  private static DataVertical getDataType(DownloadableFile item) {
+    return item instanceof VideoModel ? DataVertical.VIDEOS : DataVertical.PHOTOS;
+  }
+
   // TODO(aksingh737,jzacsh) consider renaming lower-level gphotos code (ie: anything of the "google
   // photos" product but not a "photo" from "google"; examples: the GooglePhotosInterface that
   // interacts with gphotos teams' upstream SDKs, interfaces like this one below, PhotoResult,
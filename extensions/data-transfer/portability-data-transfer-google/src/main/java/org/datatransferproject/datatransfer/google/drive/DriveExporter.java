@@ -10,6 +10,7 @@ import com.google.common.collect.ImmutableMap;
 import org.datatransferproject.api.launcher.Monitor;
 import org.datatransferproject.datatransfer.google.common.GoogleCredentialFactory;
 import org.datatransferproject.datatransfer.google.common.GoogleStaticObjects;
+import org.datatransferproject.spi.cloud.storage.JobMediaCache;
 import org.datatransferproject.spi.cloud.storage.TemporaryPerJobDataStore;
 import org.datatransferproject.spi.transfer.provider.ExportResult;
 import org.datatransferproject.spi.transfer.provider.ExportResult.ResultType;
@@ -22,6 +23,7 @@ import org.datatransferproject.types.common.models.blob.DigitalDocumentWrapper;
 import org.datatransferproject.types.common.models.blob.DtpDigitalDocument;
 import org.datatransferproject.types.transfer.auth.TokensAndUrlAuthData;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Optional;
@@ -65,6 +67,7 @@ public final class DriveExporter
 
   private final GoogleCredentialFactory credentialFactory;
   private final TemporaryPerJobDataStore jobStore;
+  private final JobMediaCache mediaCache;
   private final Monitor monitor;
 
   // Don't access this directly, instead access via getDriveInterface.
@@ -73,9 +76,11 @@ public final class DriveExporter
   public DriveExporter(
       GoogleCredentialFactory credentialFactory,
       TemporaryPerJobDataStore jobStore,
+      JobMediaCache mediaCache,
       Monitor monitor) {
     this.credentialFactory = checkNotNull(credentialFactory, "Credential Factory can't be null");
     this.jobStore = checkNotNull(jobStore, "Job store can't be null");
+    this.mediaCache = checkNotNull(mediaCache, "Media cache can't be null");
     this.monitor = monitor;
   }
 
@@ -121,26 +126,11 @@ public final class DriveExporter
         monitor.info(() -> "Exporting of maps is not yet supported: " + file);
       } else {
         try {
-          InputStream inputStream;
-          String newMimeType = file.getMimeType();
-          if (EXPORT_FORMATS.containsKey(file.getMimeType())) {
-            newMimeType = EXPORT_FORMATS.get(file.getMimeType());
-            inputStream =
-                driveInterface
-                    .files()
-                    .export(file.getId(), newMimeType)
-                    .executeMedia()
-                    .getContent();
-          } else {
-            inputStream =
-                driveInterface
-                    .files()
-                    .get(file.getId())
-                    .setAlt("media")
-                    .executeMedia()
-                    .getContent();
-          }
-          jobStore.create(jobId, file.getId(), inputStream);
+          String newMimeType =
+              EXPORT_FORMATS.getOrDefault(file.getMimeType(), file.getMimeType());
+          // A file in several folders is only downloaded once
+          mediaCache.stageOnce(
+              jobStore, jobId, file.getId(), () -> download(driveInterface, file, newMimeType));
           files.add(
               new DigitalDocumentWrapper(
                   new DtpDigitalDocument(
@@ -169,6 +159,14 @@ public final class DriveExporter
     return new ExportResult<>(resultType, result, continuationData);
   }
 
+  private static InputStream download(Drive driveInterface, File file, String newMimeType)
+      throws IOException {
+    if (EXPORT_FORMATS.containsKey(file.getMimeType())) {
+      return driveInterface.files().export(file.getId(), newMimeType).executeMedia().getContent();
+    }
+    return driveInterface.files().get(file.getId()).setAlt("media").executeMedia().getContent();
+  }
+
   private static boolean isDone(FileList fileList) {
     return fileList.getFiles().isEmpty() || Strings.isNullOrEmpty(fileList.getNextPageToken());
   }
@@ -24,16 +24,25 @@ import com.google.api.client.json.JsonFactory;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import javax.annotation.Nullable;
 
 import org.datatransferproject.api.launcher.Monitor;
@@ -41,6 +50,8 @@ import org.datatransferproject.datatransfer.google.common.FailedToListAlbumsExce
 import org.datatransferproject.datatransfer.google.common.FailedToListMediaItemsException;
 import org.datatransferproject.datatransfer.google.common.GoogleCredentialFactory;
 import org.datatransferproject.datatransfer.google.common.GoogleErrorLogger;
+import org.datatransferproject.datatransfer.google.common.gphotos.ContainedMediaIndex;
+import org.datatransferproject.datatransfer.google.common.gphotos.ContainedMediaScanner;
 import org.datatransferproject.datatransfer.google.mediaModels.AlbumListResponse;
 import org.datatransferproject.datatransfer.google.mediaModels.GoogleAlbum;
 import org.datatransferproject.datatransfer.google.mediaModels.GoogleMediaItem;
@@ -79,8 +90,14 @@ public class GoogleMediaExporter implements Exporter<TokensAndUrlAuthData, Media
   private final JsonFactory jsonFactory;
   private final Monitor monitor;
   private volatile GooglePhotosInterface photosInterface;
-  private IdempotentImportExecutor retryingExecutor;
-  private Boolean enableRetrying;
+  // Creates the executor that retries the calls of a job, or null if calls are not retried
+  @Nullable private final Supplier<IdempotentImportExecutor> retryingExecutorFactory;
+  private final Map<UUID, IdempotentImportExecutor> retryingExecutors = new ConcurrentHashMap<>();
+  // The media contained in albums of each job, so the root listing does not re-read the job store.
+  // Jobs that have been idle for a while are read from the job store again if they come back.
+  private final Cache<UUID, ContainedMediaIndex> containedMedia =
+      CacheBuilder.newBuilder().expireAfterAccess(Duration.ofHours(1)).build();
+  private final ContainedMediaScanner containedMediaScanner;
 
   public GoogleMediaExporter(
       GoogleCredentialFactory credentialFactory,
@@ -123,13 +140,35 @@ public class GoogleMediaExporter implements Exporter<TokensAndUrlAuthData, Media
       @Nullable GooglePhotosInterface photosInterface,
       @Nullable IdempotentImportExecutor retryingExecutor,
       boolean enableRetrying) {
+    this(
+        credentialFactory,
+        jobStore,
+        jsonFactory,
+        monitor,
+        photosInterface,
+        retryingExecutor == null || !enableRetrying ? null : () -> retryingExecutor,
+        /* albumScanConcurrency= */ 1);
+  }
+
+  /**
+   * @param retryingExecutorFactory creates the executor that retries the calls of each job, or null
+   *     if calls are not retried
+   */
+  public GoogleMediaExporter(
+      GoogleCredentialFactory credentialFactory,
+      JobStore jobStore,
+      JsonFactory jsonFactory,
+      Monitor monitor,
+      @Nullable GooglePhotosInterface photosInterface,
+      @Nullable Supplier<IdempotentImportExecutor> retryingExecutorFactory,
+      int albumScanConcurrency) {
     this.credentialFactory = credentialFactory;
     this.jobStore = jobStore;
     this.jsonFactory = jsonFactory;
     this.photosInterface = photosInterface;
     this.monitor = monitor;
-    this.retryingExecutor = retryingExecutor;
-    this.enableRetrying = enableRetrying;
+    this.retryingExecutorFactory = retryingExecutorFactory;
+    this.containedMediaScanner = new ContainedMediaScanner(monitor, albumScanConcurrency);
   }
 
   @VisibleForTesting
@@ -147,8 +186,9 @@ public class GoogleMediaExporter implements Exporter<TokensAndUrlAuthData, Media
       UUID jobId, TokensAndUrlAuthData authData, Optional<ExportInformation> exportInformation)
           throws UploadErrorException, FailedToListAlbumsException, InvalidTokenException, PermissionDeniedException, IOException, FailedToListMediaItemsException {
     if (!exportInformation.isPresent()) {
-      // Make list of photos contained in albums so they are not exported twice later on
-      populateContainedMediaList(jobId, authData);
+      // Make list of photos contained in albums so they are not exported twice later on. Only the
+      // albumless media waits for the list, so albums are exported while it is being made.
+      containedMediaScanner.start(jobId, () -> populateContainedMediaList(jobId, authData));
       return exportAlbums(authData, Optional.empty(), jobId);
     } else if (exportInformation.get().getContainerResource() instanceof PhotosContainerResource) {
       // if ExportInformation is a photos container, this is a request to only export the contents
@@ -193,6 +233,9 @@ public class GoogleMediaExporter implements Exporter<TokensAndUrlAuthData, Media
       // were still listing out all of the albums since we have pagination data
       return exportAlbums(authData, Optional.of(paginationToken), jobId);
     } else {
+      if (!containerResourcePresent && !hasContainedMedia(jobId)) {
+        populateContainedMediaList(jobId, authData);
+      }
       return exportMedia(
           authData,
           Optional.ofNullable(idOnlyContainerResource),
@@ -210,7 +253,8 @@ public class GoogleMediaExporter implements Exporter<TokensAndUrlAuthData, Media
     List<IdOnlyContainerResource> subResources = new ArrayList<>();
 
     for (PhotoAlbum album : container.getAlbums()) {
-      GoogleAlbum googleAlbum = getGoogleAlbum(album.getIdempotentId(), album.getId(), album.getName(), authData);
+      GoogleAlbum googleAlbum =
+          getGoogleAlbum(jobId, album.getIdempotentId(), album.getId(), album.getName(), authData);
       if (googleAlbum == null) {
         continue;
       }
@@ -223,7 +267,8 @@ public class GoogleMediaExporter implements Exporter<TokensAndUrlAuthData, Media
     ImmutableList.Builder<ErrorDetail> errors = ImmutableList.builder();
     for (PhotoModel photo : container.getPhotos()) {
       GoogleMediaItem googleMediaItem =
-          getGoogleMediaItem(photo.getIdempotentId(), photo.getDataId(), photo.getName(), authData);
+          getGoogleMediaItem(
+              jobId, photo.getIdempotentId(), photo.getDataId(), photo.getName(), authData);
       if (googleMediaItem == null) {
         continue;
       }
@@ -258,7 +303,8 @@ public class GoogleMediaExporter implements Exporter<TokensAndUrlAuthData, Media
     List<IdOnlyContainerResource> subResources = new ArrayList<>();
 
     for (MediaAlbum album : container.getAlbums()) {
-      GoogleAlbum googleAlbum = getGoogleAlbum(album.getIdempotentId(), album.getId(), album.getName(), authData);
+      GoogleAlbum googleAlbum =
+          getGoogleAlbum(jobId, album.getIdempotentId(), album.getId(), album.getName(), authData);
       if (googleAlbum == null) {
         continue;
       }
@@ -271,7 +317,8 @@ public class GoogleMediaExporter implements Exporter<TokensAndUrlAuthData, Media
     ImmutableList.Builder<ErrorDetail> errors = ImmutableList.builder();
     for (PhotoModel photo : container.getPhotos()) {
       GoogleMediaItem photoMediaItem =
-          getGoogleMediaItem(photo.getIdempotentId(), photo.getDataId(), photo.getName(), authData);
+          getGoogleMediaItem(
+              jobId, photo.getIdempotentId(), photo.getDataId(), photo.getName(), authData);
       if (photoMediaItem == null) {
         continue;
       }
@@ -289,7 +336,8 @@ public class GoogleMediaExporter implements Exporter<TokensAndUrlAuthData, Media
 
     for (VideoModel video : container.getVideos()) {
       GoogleMediaItem videoMediaItem =
-          getGoogleMediaItem(video.getIdempotentId(), video.getDataId(), video.getName(), authData);
+          getGoogleMediaItem(
+              jobId, video.getIdempotentId(), video.getDataId(), video.getName(), authData);
       if (videoMediaItem == null) {
         continue;
       }
@@ -403,6 +451,26 @@ public class GoogleMediaExporter implements Exporter<TokensAndUrlAuthData, Media
     return new ExportResult<>(resultType, containerResource, continuationData);
   }
 
+  @Override
+  public void releaseJob(UUID jobId) {
+    containedMediaScanner.releaseJob(jobId);
+    containedMedia.invalidate(jobId);
+    IdempotentImportExecutor retryingExecutor = retryingExecutors.remove(jobId);
+    if (retryingExecutor != null) {
+      retryingExecutor.releaseJob(jobId);
+    }
+  }
+
+  /**
+   * Waits for the scan of the media contained in albums, and returns whether their list is stored.
+   * It is not if the scan failed, or if the scan was lost with the worker that started the job.
+   */
+  private boolean hasContainedMedia(UUID jobId) throws InterruptedIOException {
+    return containedMediaScanner.await(jobId)
+        && (containedMedia.getIfPresent(jobId) != null
+            || jobStore.hasStream(jobId, createCacheKey()));
+  }
+
   /** Method for storing a list of all photos that are already contained in albums */
   void populateContainedMediaList(UUID jobId, TokensAndUrlAuthData authData)
           throws IOException, InvalidTokenException, PermissionDeniedException, UploadErrorException, FailedToListAlbumsException, FailedToListMediaItemsException {
@@ -410,38 +478,54 @@ public class GoogleMediaExporter implements Exporter<TokensAndUrlAuthData, Media
     // initializing a new TempMediaData to be store in the job store.
     TempMediaData tempMediaData = new TempMediaData(jobId);
 
-    String albumToken = null;
-    AlbumListResponse albumListResponse;
-    MediaItemSearchResponse containedMediaSearchResponse;
-    do {
-      albumListResponse = listAlbums(jobId, authData, Optional.ofNullable(albumToken));
-      albumToken = albumListResponse.getNextPageToken();
-      if (albumListResponse.getAlbums() == null) {
-        continue;
-      }
-
-      for (GoogleAlbum album : albumListResponse.getAlbums()) {
-        String albumId = album.getId();
-        String photoToken = null;
-
-        do {
-          containedMediaSearchResponse = listMediaItems(jobId, authData, Optional.of(albumId), Optional.ofNullable(photoToken));
-          if (containedMediaSearchResponse.getMediaItems() != null) {
-            for (GoogleMediaItem mediaItem : containedMediaSearchResponse.getMediaItems()) {
-              tempMediaData.addContainedPhotoId(mediaItem.getId());
-            }
-          }
-          photoToken = containedMediaSearchResponse.getNextPageToken();
-        } while (photoToken != null);
-      }
-
-      albumToken = albumListResponse.getNextPageToken();
-    } while (albumToken != null);
+    try {
+      tempMediaData.addAllContainedPhotoIds(
+          containedMediaScanner.listContainedMediaIds(
+              albumToken -> listAlbums(jobId, authData, albumToken),
+              (albumId, photoToken) ->
+                  listMediaItems(jobId, authData, Optional.of(albumId), photoToken)));
+    } catch (Exception e) {
+      Throwables.throwIfInstanceOf(e, FailedToListAlbumsException.class);
+      Throwables.throwIfInstanceOf(e, FailedToListMediaItemsException.class);
+      Throwables.throwIfInstanceOf(e, IOException.class);
+      Throwables.throwIfUnchecked(e);
+      throw new IOException("Unable to list the media in albums", e);
+    }
 
     // TODO: if we see complaints about objects being too large for JobStore in other places, we
     // should consider putting logic in JobStore itself to handle it
     InputStream stream = convertJsonToInputStream(tempMediaData);
     jobStore.create(jobId, createCacheKey(), stream);
+    containedMedia.put(jobId, buildContainedMediaIndex(tempMediaData));
+  }
+
+  /**
+   * Returns the media contained in albums, as stored by {@link #populateContainedMediaList}, or
+   * null if it has not been stored.
+   */
+  @Nullable
+  private ContainedMediaIndex getContainedMediaIndex(UUID jobId) throws IOException {
+    ContainedMediaIndex index = containedMedia.getIfPresent(jobId);
+    if (index != null) {
+      return index;
+    }
+    InputStream stream = jobStore.getStream(jobId, createCacheKey()).getStream();
+    if (stream == null) {
+      return null;
+    }
+    TempMediaData tempMediaData;
+    try (stream) {
+      tempMediaData = new ObjectMapper().readValue(stream, TempMediaData.class);
+    }
+    index = buildContainedMediaIndex(tempMediaData);
+    containedMedia.put(jobId, index);
+    return index;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static ContainedMediaIndex buildContainedMediaIndex(TempMediaData tempMediaData) {
+    return ContainedMediaIndex.of(
+        (Collection<String>) tempMediaData.lookupContainedPhotoIds());
   }
 
   private Optional<String> getPhotosPaginationToken(Optional<PaginationData> paginationData) {
@@ -462,19 +546,16 @@ public class GoogleMediaExporter implements Exporter<TokensAndUrlAuthData, Media
     List<PhotoModel> photos = new ArrayList<>(mediaItems.length);
     List<VideoModel> videos = new ArrayList<>(mediaItems.length);
 
-    TempMediaData tempMediaData = null;
-    InputStream stream = jobStore.getStream(jobId, createCacheKey()).getStream();
-    if (stream != null) {
-      tempMediaData = new ObjectMapper().readValue(stream, TempMediaData.class);
-      stream.close();
-    }
+    // Only the albumless media needs to skip the media that was exported with its albums
+    ContainedMediaIndex containedMediaIndex =
+        albumId.isPresent() ? null : getContainedMediaIndex(jobId);
 
     ImmutableList.Builder<ErrorDetail> errors = ImmutableList.builder();
     for (GoogleMediaItem mediaItem : mediaItems) {
       boolean shouldUpload = albumId.isPresent();
 
-      if (tempMediaData != null) {
-        shouldUpload = shouldUpload || !tempMediaData.isContainedPhotoId(mediaItem.getId());
+      if (containedMediaIndex != null) {
+        shouldUpload = shouldUpload || !containedMediaIndex.contains(mediaItem.getId());
       }
 
       if (mediaItem.isPhoto()) {
@@ -519,10 +600,11 @@ public class GoogleMediaExporter implements Exporter<TokensAndUrlAuthData, Media
 
   @VisibleForTesting
   @Nullable
-  GoogleAlbum getGoogleAlbum(String albumIdempotentId, String albumId, String albumName,
-      TokensAndUrlAuthData authData) throws IOException, InvalidTokenException,
+  GoogleAlbum getGoogleAlbum(UUID jobId, String albumIdempotentId, String albumId,
+      String albumName, TokensAndUrlAuthData authData) throws IOException, InvalidTokenException,
       PermissionDeniedException {
-    if (retryingExecutor == null || !enableRetrying) {
+    IdempotentImportExecutor retryingExecutor = getRetryingExecutor(jobId);
+    if (retryingExecutor == null) {
       return getOrCreatePhotosInterface(authData).getAlbum(albumId);
     }
 
@@ -541,9 +623,10 @@ public class GoogleMediaExporter implements Exporter<TokensAndUrlAuthData, Media
   //TODO(#1308): Make the retrying methods API & adaptor agnostic
   @VisibleForTesting
   @Nullable
-  GoogleMediaItem getGoogleMediaItem(String photoIdempotentId, String photoDataId,
+  GoogleMediaItem getGoogleMediaItem(UUID jobId, String photoIdempotentId, String photoDataId,
       String photoName, TokensAndUrlAuthData authData) throws IOException, InvalidTokenException, PermissionDeniedException {
-    if (retryingExecutor == null || !enableRetrying) {
+    IdempotentImportExecutor retryingExecutor = getRetryingExecutor(jobId);
+    if (retryingExecutor == null) {
       return getOrCreatePhotosInterface(authData).getMediaItem(photoDataId);
     }
 
@@ -565,7 +648,8 @@ public class GoogleMediaExporter implements Exporter<TokensAndUrlAuthData, Media
    */
   private AlbumListResponse listAlbums(UUID jobId, TokensAndUrlAuthData authData, Optional<String> albumToken)
           throws FailedToListAlbumsException {
-    if (retryingExecutor == null || !enableRetrying) {
+    IdempotentImportExecutor retryingExecutor = getRetryingExecutor(jobId);
+    if (retryingExecutor == null) {
       try {
         return getOrCreatePhotosInterface(authData).listAlbums(albumToken);
       } catch (IOException | InvalidTokenException | PermissionDeniedException e) {
@@ -595,7 +679,8 @@ public class GoogleMediaExporter implements Exporter<TokensAndUrlAuthData, Media
           Optional<String> pageToken
   )
           throws FailedToListMediaItemsException {
-    if (retryingExecutor == null || !enableRetrying) {
+    IdempotentImportExecutor retryingExecutor = getRetryingExecutor(jobId);
+    if (retryingExecutor == null) {
       try {
         return getOrCreatePhotosInterface(authData).listMediaItems(albumId, pageToken);
       } catch (IOException | InvalidTokenException | PermissionDeniedException | UploadErrorException e) {
@@ -614,6 +699,21 @@ public class GoogleMediaExporter implements Exporter<TokensAndUrlAuthData, Media
     }
   }
 
+  /** Returns the executor that retries the calls of {@code jobId}, or null if they are not. */
+  @Nullable
+  private IdempotentImportExecutor getRetryingExecutor(UUID jobId) {
+    if (retryingExecutorFactory == null) {
+      return null;
+    }
+    return retryingExecutors.computeIfAbsent(
+        jobId,
+        id -> {
+          IdempotentImportExecutor executor = retryingExecutorFactory.get();
+          executor.setJobId(id);
+          return executor;
+        });
+  }
+
   private synchronized GooglePhotosInterface getOrCreatePhotosInterface(
       TokensAndUrlAuthData authData) {
     return photosInterface == null ? makePhotosInterface(authData) : photosInterface;
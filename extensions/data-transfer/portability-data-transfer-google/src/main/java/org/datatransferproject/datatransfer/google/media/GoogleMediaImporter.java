@@ -27,17 +27,24 @@ import com.google.photos.library.v1.PhotosLibraryClient;
 import com.google.rpc.Code;
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
 import org.apache.commons.lang3.StringUtils;
 import org.datatransferproject.api.launcher.Monitor;
 import org.datatransferproject.datatransfer.google.common.GoogleCredentialFactory;
 import org.datatransferproject.datatransfer.google.common.GooglePhotosImportUtils;
+import org.datatransferproject.datatransfer.google.common.gphotos.BatchByteUploads;
+import org.datatransferproject.datatransfer.google.common.gphotos.BatchSizer;
 import org.datatransferproject.datatransfer.google.common.gphotos.GPhotosUpload;
 import org.datatransferproject.datatransfer.google.mediaModels.BatchMediaItemResponse;
 import org.datatransferproject.datatransfer.google.mediaModels.GoogleAlbum;
@@ -50,18 +57,21 @@ import org.datatransferproject.datatransfer.google.photos.PhotoResult;
 import org.datatransferproject.datatransfer.google.videos.GoogleVideosInterface;
 import org.datatransferproject.spi.cloud.connection.ConnectionProvider;
 import org.datatransferproject.spi.cloud.storage.JobStore;
+import org.datatransferproject.spi.cloud.storage.JobTempFileManager;
 import org.datatransferproject.spi.cloud.storage.TemporaryPerJobDataStore.InputStreamWrapper;
 import org.datatransferproject.spi.cloud.types.PortabilityJob;
 import org.datatransferproject.spi.transfer.i18n.BaseMultilingualDictionary;
 import org.datatransferproject.spi.transfer.idempotentexecutor.IdempotentImportExecutor;
 import org.datatransferproject.spi.transfer.idempotentexecutor.ItemImportResult;
+import org.datatransferproject.spi.transfer.prefetch.DownloadPrefetcher;
+import org.datatransferproject.spi.transfer.prefetch.DownloadPrefetcher.Downloaded;
+import org.datatransferproject.spi.transfer.prefetch.DownloadPrefetcher.Prefetch;
 import org.datatransferproject.spi.transfer.provider.ImportResult;
 import org.datatransferproject.spi.transfer.provider.Importer;
 import org.datatransferproject.spi.transfer.types.DestinationMemoryFullException;
 import org.datatransferproject.spi.transfer.types.InvalidTokenException;
 import org.datatransferproject.spi.transfer.types.PermissionDeniedException;
 import org.datatransferproject.spi.transfer.types.UploadErrorException;
-import org.datatransferproject.types.common.ImportableItem;
 import org.datatransferproject.types.common.models.media.MediaContainerResource;
 import org.datatransferproject.types.common.models.media.MediaAlbum;
 import org.datatransferproject.types.common.models.photos.PhotoModel;
@@ -74,15 +84,21 @@ public class GoogleMediaImporter
 
   private final GoogleCredentialFactory credentialFactory;
   private final JobStore jobStore;
+  private final JobTempFileManager tempFiles;
   private final JsonFactory jsonFactory;
   private final ConnectionProvider connectionProvider;
+  private final DownloadPrefetcher prefetcher;
   private final Monitor monitor;
   private final double writesPerSecond;
+  private final int uploadConcurrency;
+  private final ExecutorService uploadExecutor = BatchByteUploads.newExecutor();
+  private final BatchSizer batchSizer;
   private final Map<UUID, GooglePhotosInterface> photosInterfacesMap;
   // TODO(aksingh737) delete the two interface-management approaches (map vs. singleton); the
   // singleton appears to have been left behind during PR #882
   private final GooglePhotosInterface photosInterface;
-  private final HashMap<UUID, BaseMultilingualDictionary> multilingualStrings = new HashMap<>();
+  private final Map<UUID, BaseMultilingualDictionary> multilingualStrings =
+      new ConcurrentHashMap<>();
   private final Map<UUID, PhotosLibraryClient> photosLibraryClientMap;
   private final AppCredentials appCredentials;
 
@@ -94,45 +110,92 @@ public class GoogleMediaImporter
   public GoogleMediaImporter(
       GoogleCredentialFactory credentialFactory,
       JobStore jobStore,
+      JobTempFileManager tempFiles,
+      ConnectionProvider connectionProvider,
+      DownloadPrefetcher prefetcher,
       JsonFactory jsonFactory,
       AppCredentials appCredentials,
       Monitor monitor,
-      double writesPerSecond) {
+      double writesPerSecond,
+      int uploadConcurrency,
+      BatchSizer batchSizer) {
     this(
         credentialFactory,
         jobStore,
+        tempFiles,
         jsonFactory,
-        new HashMap<>(),  /*photosInterfacesMap*/
-        new HashMap<>(), /*photosLibraryClientMap*/
+        new ConcurrentHashMap<>(),  /*photosInterfacesMap*/
+        new ConcurrentHashMap<>(), /*photosLibraryClientMap*/
         appCredentials,
         null,  /*photosInterface*/
-        new ConnectionProvider(jobStore),
+        connectionProvider,
+        prefetcher,
         monitor,
-        writesPerSecond);
+        writesPerSecond,
+        uploadConcurrency,
+        batchSizer);
   }
 
   @VisibleForTesting
   GoogleMediaImporter(
       GoogleCredentialFactory credentialFactory,
       JobStore jobStore,
+      JobTempFileManager tempFiles,
       JsonFactory jsonFactory,
       Map<UUID, GooglePhotosInterface> photosInterfacesMap,
       Map<UUID, PhotosLibraryClient> photosLibraryClientMap,
       AppCredentials appCredentials,
       GooglePhotosInterface photosInterface,
       ConnectionProvider connectionProvider,
+      DownloadPrefetcher prefetcher,
       Monitor monitor,
       double writesPerSecond) {
+    this(
+        credentialFactory,
+        jobStore,
+        tempFiles,
+        jsonFactory,
+        photosInterfacesMap,
+        photosLibraryClientMap,
+        appCredentials,
+        photosInterface,
+        connectionProvider,
+        prefetcher,
+        monitor,
+        writesPerSecond,
+        1,
+        new BatchSizer(0, Duration.ZERO, null));
+  }
+
+  private GoogleMediaImporter(
+      GoogleCredentialFactory credentialFactory,
+      JobStore jobStore,
+      JobTempFileManager tempFiles,
+      JsonFactory jsonFactory,
+      Map<UUID, GooglePhotosInterface> photosInterfacesMap,
+      Map<UUID, PhotosLibraryClient> photosLibraryClientMap,
+      AppCredentials appCredentials,
+      GooglePhotosInterface photosInterface,
+      ConnectionProvider connectionProvider,
+      DownloadPrefetcher prefetcher,
+      Monitor monitor,
+      double writesPerSecond,
+      int uploadConcurrency,
+      BatchSizer batchSizer) {
     this.credentialFactory = credentialFactory;
     this.jobStore = jobStore;
+    this.tempFiles = tempFiles;
     this.jsonFactory = jsonFactory;
     this.photosInterfacesMap = photosInterfacesMap;
     this.photosLibraryClientMap = photosLibraryClientMap;
     this.appCredentials = appCredentials;
     this.photosInterface = photosInterface;
     this.connectionProvider = connectionProvider;
+    this.prefetcher = prefetcher;
     this.monitor = monitor;
     this.writesPerSecond = writesPerSecond;
+    this.uploadConcurrency = uploadConcurrency;
+    this.batchSizer = batchSizer;
   }
 
   @Override
@@ -148,13 +211,19 @@ public class GoogleMediaImporter
     }
 
     if (!photosLibraryClientMap.containsKey(jobId)) {
-      photosLibraryClientMap.put(jobId, GoogleVideosInterface.buildPhotosLibraryClient(appCredentials, authData));
+      PhotosLibraryClient client =
+          GoogleVideosInterface.buildPhotosLibraryClient(appCredentials, authData);
+      if (photosLibraryClientMap.putIfAbsent(jobId, client) != null) {
+        // Another item of the job built its client first
+        client.close();
+      }
     }
 
     // WARNING: this should be constructed PER request so as to not conflate job IDs or auth data
     // across processes. That is: do NOT cache an instance of this object across your requests, say
     // by storing the instance as a member of your adapter's Importer or Exporter implementations.
-    final GPhotosUpload gPhotosUpload = new GPhotosUpload(jobId, idempotentImportExecutor, authData);
+    final GPhotosUpload gPhotosUpload =
+        new GPhotosUpload(jobId, idempotentImportExecutor, authData, batchSizer);
 
     // Uploads album metadata
     for (MediaAlbum album : data.getAlbums()) {
@@ -170,6 +239,17 @@ public class GoogleMediaImporter
     return result.copyWithBytes(bytes);
   }
 
+  @Override
+  public void releaseJob(UUID jobId) {
+    batchSizer.releaseJob(jobId);
+    photosInterfacesMap.remove(jobId);
+    multilingualStrings.remove(jobId);
+    PhotosLibraryClient client = photosLibraryClientMap.remove(jobId);
+    if (client != null) {
+      client.close();
+    }
+  }
+
   // TODO(aksingh737,jzacsh) fix unit tests across Google adapters to stop testing internal methods
   // like these, and just test importItem() (of
   // org.datatransferproject.spi.transfer.provider.Importer interface).
@@ -205,54 +285,84 @@ public class GoogleMediaImporter
       IdempotentImportExecutor executor,
       String albumId)
       throws Exception {
+    // The outcome of every photo, recorded with a single write of the executor once the batch ends
+    Map<PhotoModel, ItemImportResult<PhotoResult>> outcomes = new LinkedHashMap<>();
+    try {
+      return uploadPhotoBatch(jobId, authData, photos, outcomes, albumId);
+    } finally {
+      recordOutcomes(executor, outcomes);
+    }
+  }
+
+  private long uploadPhotoBatch(
+      UUID jobId,
+      TokensAndUrlAuthData authData,
+      List<PhotoModel> photos,
+      Map<PhotoModel, ItemImportResult<PhotoResult>> outcomes,
+      String albumId)
+      throws Exception {
     final ArrayList<NewMediaItem> mediaItems = new ArrayList<>();
     final HashMap<String, PhotoModel> uploadTokenToDataId = new HashMap<>();
     final HashMap<String, Long> uploadTokenToLength = new HashMap<>();
 
-    // TODO: resumable uploads https://developers.google.com/photos/library/guides/resumable-uploads
-    //  Resumable uploads would allow the upload of larger media that don't fit in memory.  To do
-    //  this however, seems to require knowledge of the total file size.
-    for (PhotoModel photo : photos) {
-      Long size = null;
-      try {
-        InputStreamWrapper streamWrapper = connectionProvider
-            .getInputStreamForItem(jobId, photo);
-
-        try (InputStream s = streamWrapper.getStream()) {
-          String uploadToken = getOrCreatePhotosInterface(jobId, authData).uploadMediaContent(s,
-              photo.getSha1());
-          String description = GooglePhotosImportUtils.cleanDescription(photo.getDescription());
-          mediaItems.add(new NewMediaItem(description, uploadToken, photo.getTitle()));
-          uploadTokenToDataId.put(uploadToken, photo);
-          size = streamWrapper.getBytes();
-          uploadTokenToLength.put(uploadToken, size);
-        } catch (UploadErrorException e) {
-          if (e.getMessage().contains(ERROR_HASH_MISMATCH)) {
-            monitor.severe(
-                () -> format("%s: SHA-1 (%s) mismatch during upload", jobId, photo.getSha1()));
-          }
-
-          Long finalSize = size;
-          executor.importAndSwallowIOExceptions(photo, p -> ItemImportResult.error(e, finalSize));
+    // Streams are opened in order here, and their bytes are uploaded concurrently
+    GooglePhotosInterface uploadInterface = getOrCreatePhotosInterface(jobId, authData);
+    BatchByteUploads<String> uploads = new BatchByteUploads<>(uploadExecutor, uploadConcurrency);
+    List<PhotoModel> uploading = new ArrayList<>();
+    List<Long> sizes = new ArrayList<>();
+    try (Prefetch<PhotoModel> prefetch =
+        prefetcher.prefetch(jobId, photos, photo -> download(jobId, photo))) {
+      for (PhotoModel photo : photos) {
+        Downloaded streamWrapper;
+        try {
+          streamWrapper = prefetch.open(photo);
+        } catch (IOException exception) {
+          outcomes.put(photo, ItemImportResult.error(exception, null));
+          continue;
         }
+        uploading.add(photo);
+        sizes.add(streamWrapper.getBytes());
+        uploads.submit(() -> uploadPhoto(uploadInterface, photo, streamWrapper));
+      }
+    }
 
-        try {
-          if (photo.isInTempStore()) {
-            jobStore.removeData(jobId, photo.getFetchableUrl());
-          }
-        } catch (Exception e) {
-          // Swallow the exception caused by Remove data so that existing flows continue
-          monitor.info(
-              () ->
-                  format(
-                      "%s: Exception swallowed in removeData call for localPath %s",
-                      jobId, photo.getFetchableUrl()),
-              e);
+    List<BatchByteUploads.Result<String>> results = uploads.awaitAll();
+    for (int i = 0; i < uploading.size(); i++) {
+      PhotoModel photo = uploading.get(i);
+      Exception exception = results.get(i).getException();
+      if (exception == null) {
+        String uploadToken = results.get(i).getValue();
+        String description = GooglePhotosImportUtils.cleanDescription(photo.getDescription());
+        mediaItems.add(new NewMediaItem(description, uploadToken, photo.getTitle()));
+        uploadTokenToDataId.put(uploadToken, photo);
+        uploadTokenToLength.put(uploadToken, sizes.get(i));
+      } else if (exception instanceof UploadErrorException) {
+        if (exception.getMessage().contains(ERROR_HASH_MISMATCH)) {
+          monitor.severe(
+              () -> format("%s: SHA-1 (%s) mismatch during upload", jobId, photo.getSha1()));
+        }
+        // Upload errors are not IOExceptions, so they still fail the batch once recorded
+        outcomes.put(photo, ItemImportResult.error(exception, null));
+        throw exception;
+      } else if (exception instanceof IOException) {
+        outcomes.put(photo, ItemImportResult.error(exception, null));
+        continue;
+      } else {
+        throw exception;
+      }
+
+      try {
+        if (photo.isInTempStore()) {
+          jobStore.removeData(jobId, photo.getFetchableUrl());
         }
-      } catch (IOException exception) {
-        Long finalSize = size;
-        executor.importAndSwallowIOExceptions(
-            photo, p -> ItemImportResult.error(exception, finalSize));
+      } catch (Exception e) {
+        // Swallow the exception caused by Remove data so that existing flows continue
+        monitor.info(
+            () ->
+                format(
+                    "%s: Exception swallowed in removeData call for localPath %s",
+                    jobId, photo.getFetchableUrl()),
+            e);
       }
     }
 
@@ -273,19 +383,18 @@ public class GoogleMediaImporter
         PhotoModel photo = uploadTokenToDataId.get(mediaItem.getUploadToken());
         totalBytes +=
             processMediaResult(
-                mediaItem, photo, executor, uploadTokenToLength.get(mediaItem.getUploadToken()));
+                mediaItem, photo, outcomes, uploadTokenToLength.get(mediaItem.getUploadToken()));
         uploadTokenToDataId.remove(mediaItem.getUploadToken());
       }
 
       if (!uploadTokenToDataId.isEmpty()) {
         for (Entry<String, PhotoModel> entry : uploadTokenToDataId.entrySet()) {
           PhotoModel photo = entry.getValue();
-          executor.importAndSwallowIOExceptions(
+          outcomes.put(
               photo,
-              p ->
-                  ItemImportResult.error(
-                      new IOException("Photo was missing from results list."),
-                      uploadTokenToLength.get(entry.getKey())));
+              ItemImportResult.error(
+                  new IOException("Photo was missing from results list."),
+                  uploadTokenToLength.get(entry.getKey())));
         }
       }
     } catch (IOException e) {
@@ -305,6 +414,20 @@ public class GoogleMediaImporter
     return totalBytes;
   }
 
+  private static String uploadPhoto(
+      GooglePhotosInterface photosInterface, PhotoModel photo, Downloaded streamWrapper)
+      throws IOException, InvalidTokenException, PermissionDeniedException, UploadErrorException {
+    try (InputStream s = streamWrapper.getStream()) {
+      return photosInterface.uploadMediaContent(
+          photo.getIdempotentId(), s, streamWrapper.getBytes(), photo.getSha1());
+    }
+  }
+
+  private Downloaded download(UUID jobId, PhotoModel photo) throws IOException {
+    InputStreamWrapper streamWrapper = connectionProvider.getInputStreamForItem(jobId, photo);
+    return new Downloaded(streamWrapper.getStream(), streamWrapper.getBytes());
+  }
+
   long importVideos(
       Collection<VideoModel> videos,
       GPhotosUpload gPhotosUpload)
@@ -326,6 +449,7 @@ public class GoogleMediaImporter
           jobId,
           batch,
           jobStore,
+          tempFiles,
           photosLibraryClientMap.get(jobId),
           executor,
           connectionProvider,
@@ -351,60 +475,67 @@ public class GoogleMediaImporter
 
   private long processMediaResult(
       NewMediaItemResult mediaItem,
-      ImportableItem item,
-      IdempotentImportExecutor executor,
-      long bytes)
-      throws Exception {
+      PhotoModel photo,
+      Map<PhotoModel, ItemImportResult<PhotoResult>> outcomes,
+      long bytes) {
     Status status = mediaItem.getStatus();
     if (status.getCode() == Code.OK_VALUE) {
       PhotoResult photoResult = new PhotoResult(mediaItem.getMediaItem().getId(), bytes);
-      executor.importAndSwallowIOExceptions(
-          item, itemToImport -> ItemImportResult.success(photoResult, bytes));
+      outcomes.put(photo, ItemImportResult.success(photoResult, bytes));
       return bytes;
     } else {
-      executor.importAndSwallowIOExceptions(
-          item,
-          itemToImport ->
-              ItemImportResult.error(
-                  new IOException(
-                      String.format(
-                          "Media item could not be created. Code: %d Message: %s",
-                          status.getCode(), status.getMessage())),
-                  bytes));
+      outcomes.put(
+          photo,
+          ItemImportResult.error(
+              new IOException(
+                  String.format(
+                      "Media item could not be created. Code: %d Message: %s",
+                      status.getCode(), status.getMessage())),
+              bytes));
       return 0;
     }
   }
 
-  private synchronized GooglePhotosInterface getOrCreatePhotosInterface(
+  /** Records the outcome of every photo of a batch with a single write of the executor. */
+  private static void recordOutcomes(
+      IdempotentImportExecutor executor, Map<PhotoModel, ItemImportResult<PhotoResult>> outcomes)
+      throws Exception {
+    if (outcomes.isEmpty()) {
+      return;
+    }
+    executor.<PhotoModel, PhotoResult>importBatchAndSwallowIOExceptions(
+        new ArrayList<>(outcomes.keySet()),
+        photos -> photos.stream().map(outcomes::get).collect(Collectors.toList()));
+  }
+
+  private GooglePhotosInterface getOrCreatePhotosInterface(
       UUID jobId, TokensAndUrlAuthData authData) {
 
     if (photosInterface != null) {
       return photosInterface;
     }
 
-    if (photosInterfacesMap.containsKey(jobId)) {
-      return photosInterfacesMap.get(jobId);
-    }
-
-    GooglePhotosInterface newInterface = makePhotosInterface(authData);
-    photosInterfacesMap.put(jobId, newInterface);
-
-    return newInterface;
+    return photosInterfacesMap.computeIfAbsent(jobId, id -> makePhotosInterface(authData));
   }
 
-  private synchronized GooglePhotosInterface makePhotosInterface(TokensAndUrlAuthData authData) {
+  private GooglePhotosInterface makePhotosInterface(TokensAndUrlAuthData authData) {
     Credential credential = credentialFactory.createCredential(authData);
     return new GooglePhotosInterface(
         credentialFactory, credential, jsonFactory, monitor, writesPerSecond);
   }
 
-  private synchronized BaseMultilingualDictionary getOrCreateStringDictionary(UUID jobId) {
-    if (!multilingualStrings.containsKey(jobId)) {
+  private BaseMultilingualDictionary getOrCreateStringDictionary(UUID jobId) {
+    BaseMultilingualDictionary dictionary = multilingualStrings.get(jobId);
+    if (dictionary == null) {
+      // The job is looked up outside the map so a slow job store does not block other jobs
       PortabilityJob job = jobStore.findJob(jobId);
       String locale = job != null ? job.userLocale() : null;
-      multilingualStrings.put(jobId, new BaseMultilingualDictionary(locale));
+      dictionary = new BaseMultilingualDictionary(locale);
+      BaseMultilingualDictionary existing = multilingualStrings.putIfAbsent(jobId, dictionary);
+      if (existing != null) {
+        dictionary = existing;
+      }
     }
-
-    return multilingualStrings.get(jobId);
+    return dictionary;
   }
 }
@@ -22,10 +22,12 @@ import com.google.api.client.json.JsonFactory;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.util.ArrayList;
@@ -36,6 +38,7 @@ import org.datatransferproject.api.launcher.Monitor;
 import org.datatransferproject.datatransfer.google.common.GoogleCredentialFactory;
 import org.datatransferproject.datatransfer.google.common.GoogleErrorLogger;
 import org.datatransferproject.datatransfer.google.common.InvalidExportedItemException;
+import org.datatransferproject.datatransfer.google.common.gphotos.ContainedMediaScanner;
 import org.datatransferproject.datatransfer.google.mediaModels.AlbumListResponse;
 import org.datatransferproject.datatransfer.google.mediaModels.GoogleAlbum;
 import org.datatransferproject.datatransfer.google.mediaModels.GoogleMediaItem;
@@ -75,16 +78,19 @@ public class GooglePhotosExporter
   private volatile GooglePhotosInterface photosInterface;
 
   private final Monitor monitor;
+  private final ContainedMediaScanner containedMediaScanner;
 
   public GooglePhotosExporter(
       GoogleCredentialFactory credentialFactory,
       JobStore jobStore,
       JsonFactory jsonFactory,
-      Monitor monitor) {
+      Monitor monitor,
+      int albumScanConcurrency) {
     this.credentialFactory = credentialFactory;
     this.jobStore = jobStore;
     this.jsonFactory = jsonFactory;
     this.monitor = monitor;
+    this.containedMediaScanner = new ContainedMediaScanner(monitor, albumScanConcurrency);
   }
 
   @VisibleForTesting
@@ -99,6 +105,7 @@ public class GooglePhotosExporter
     this.jsonFactory = jsonFactory;
     this.photosInterface = photosInterface;
     this.monitor = monitor;
+    this.containedMediaScanner = new ContainedMediaScanner(monitor, 1);
   }
 
   @Override
@@ -106,8 +113,9 @@ public class GooglePhotosExporter
       UUID jobId, TokensAndUrlAuthData authData, Optional<ExportInformation> exportInformation)
       throws IOException, InvalidTokenException, PermissionDeniedException, UploadErrorException {
     if (!exportInformation.isPresent()) {
-      // Make list of photos contained in albums so they are not exported twice later on
-      populateContainedPhotosList(jobId, authData);
+      // Make list of photos contained in albums so they are not exported twice later on. Only the
+      // albumless photos wait for the list, so albums are exported while it is being made.
+      containedMediaScanner.start(jobId, () -> populateContainedPhotosList(jobId, authData));
       return exportAlbums(authData, Optional.empty(), jobId);
     } else if (exportInformation.get().getContainerResource() instanceof PhotosContainerResource) {
       // if ExportInformation is a photos container, this is a request to only export the contents
@@ -145,6 +153,9 @@ public class GooglePhotosExporter
         && paginationToken.getToken().startsWith(ALBUM_TOKEN_PREFIX)) {
       return exportAlbums(authData, Optional.of(paginationToken), jobId);
     } else {
+      if (!containerResourcePresent && !hasContainedPhotos(jobId)) {
+        populateContainedPhotosList(jobId, authData);
+      }
       return exportPhotos(
           authData,
           Optional.ofNullable(idOnlyContainerResource),
@@ -284,6 +295,19 @@ public class GooglePhotosExporter
     return new ExportResult<>(resultType, containerResource, continuationData);
   }
 
+  @Override
+  public void releaseJob(UUID jobId) {
+    containedMediaScanner.releaseJob(jobId);
+  }
+
+  /**
+   * Waits for the scan of the photos contained in albums, and returns whether their list is stored.
+   * It is not if the scan failed, or if the scan was lost with the worker that started the job.
+   */
+  private boolean hasContainedPhotos(UUID jobId) throws InterruptedIOException {
+    return containedMediaScanner.await(jobId) && jobStore.hasStream(jobId, createCacheKey());
+  }
+
   /**
    * Method for storing a list of all photos that are already contained in albums
    */
@@ -294,34 +318,21 @@ public class GooglePhotosExporter
     // initializing a new TempMediaData to be store in the job store.
     TempMediaData tempMediaData = new TempMediaData(jobId);
 
-    String albumToken = null;
-    AlbumListResponse albumListResponse;
-    MediaItemSearchResponse containedMediaSearchResponse;
-    do {
-      albumListResponse =
-          getOrCreatePhotosInterface(authData).listAlbums(Optional.ofNullable(albumToken));
-      albumToken = albumListResponse.getNextPageToken();
-
-      if (albumListResponse.getAlbums() == null) {
-        continue;
-      }
-
-      for (GoogleAlbum album : albumListResponse.getAlbums()) {
-        String albumId = album.getId();
-        String photoToken = null;
-        do {
-          containedMediaSearchResponse =
-              getOrCreatePhotosInterface(authData)
-                  .listMediaItems(Optional.of(albumId), Optional.ofNullable(photoToken));
-          if (containedMediaSearchResponse.getMediaItems() != null) {
-            for (GoogleMediaItem mediaItem : containedMediaSearchResponse.getMediaItems()) {
-              tempMediaData.addContainedPhotoId(mediaItem.getId());
-            }
-          }
-          photoToken = containedMediaSearchResponse.getNextPageToken();
-        } while (photoToken != null);
-      }
-    } while (albumToken != null);
+    try {
+      tempMediaData.addAllContainedPhotoIds(
+          containedMediaScanner.listContainedMediaIds(
+              albumToken -> getOrCreatePhotosInterface(authData).listAlbums(albumToken),
+              (albumId, photoToken) ->
+                  getOrCreatePhotosInterface(authData)
+                      .listMediaItems(Optional.of(albumId), photoToken)));
+    } catch (Exception e) {
+      Throwables.throwIfInstanceOf(e, IOException.class);
+      Throwables.throwIfInstanceOf(e, InvalidTokenException.class);
+      Throwables.throwIfInstanceOf(e, PermissionDeniedException.class);
+      Throwables.throwIfInstanceOf(e, UploadErrorException.class);
+      Throwables.throwIfUnchecked(e);
+      throw new IOException("Unable to list the photos in albums", e);
+    }
 
     // TODO: if we see complaints about objects being too large for JobStore in other places, we
     // should consider putting logic in JobStore itself to handle it
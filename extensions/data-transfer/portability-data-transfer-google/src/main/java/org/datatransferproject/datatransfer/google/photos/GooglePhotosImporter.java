@@ -28,18 +28,24 @@ import com.google.common.collect.UnmodifiableIterator;
 import com.google.rpc.Code;
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 import org.apache.commons.lang3.StringUtils;
 import org.datatransferproject.api.launcher.Monitor;
 import org.datatransferproject.datatransfer.google.common.GoogleCredentialFactory;
 import org.datatransferproject.datatransfer.google.common.GooglePhotosImportUtils;
+import org.datatransferproject.datatransfer.google.common.gphotos.BatchByteUploads;
+import org.datatransferproject.datatransfer.google.common.gphotos.BatchSizer;
 import org.datatransferproject.datatransfer.google.common.gphotos.GPhotosUpload;
 import org.datatransferproject.datatransfer.google.mediaModels.BatchMediaItemResponse;
 import org.datatransferproject.datatransfer.google.mediaModels.GoogleAlbum;
@@ -60,7 +66,6 @@ import org.datatransferproject.spi.transfer.types.DestinationMemoryFullException
 import org.datatransferproject.spi.transfer.types.InvalidTokenException;
 import org.datatransferproject.spi.transfer.types.PermissionDeniedException;
 import org.datatransferproject.spi.transfer.types.UploadErrorException;
-import org.datatransferproject.types.common.ImportableItem;
 import org.datatransferproject.types.common.models.photos.PhotoAlbum;
 import org.datatransferproject.types.common.models.photos.PhotoModel;
 import org.datatransferproject.types.common.models.photos.PhotosContainerResource;
@@ -75,48 +80,33 @@ public class GooglePhotosImporter
   private final ConnectionProvider connectionProvider;
   private final Monitor monitor;
   private final double writesPerSecond;
+  private final int uploadConcurrency;
+  private final ExecutorService uploadExecutor = BatchByteUploads.newExecutor();
+  private final BatchSizer batchSizer;
   private final Map<UUID, GooglePhotosInterface> photosInterfacesMap;
   private final GooglePhotosInterface photosInterface;
-  private final HashMap<UUID, BaseMultilingualDictionary> multilingualStrings = new HashMap<>();
-  private IdempotentImportExecutor retryingIdempotentExecutor;
-  private Boolean enableRetrying;
-
+  private final Map<UUID, BaseMultilingualDictionary> multilingualStrings =
+      new ConcurrentHashMap<>();
   public GooglePhotosImporter(
       GoogleCredentialFactory credentialFactory,
       JobStore jobStore,
+      ConnectionProvider connectionProvider,
       JsonFactory jsonFactory,
       Monitor monitor,
       double writesPerSecond,
-      IdempotentImportExecutor retryingIdempotentExecutor,
-      boolean enableRetrying) {
+      int uploadConcurrency,
+      BatchSizer batchSizer) {
     this(
         credentialFactory,
         jobStore,
         jsonFactory,
-        new HashMap<>(),
+        new ConcurrentHashMap<>(),
         null,
-        new ConnectionProvider(jobStore),
+        connectionProvider,
         monitor,
         writesPerSecond,
-        retryingIdempotentExecutor,
-        enableRetrying);
-  }
-
-  public GooglePhotosImporter(
-      GoogleCredentialFactory credentialFactory,
-      JobStore jobStore,
-      JsonFactory jsonFactory,
-      Monitor monitor,
-      double writesPerSecond) {
-    this(
-        credentialFactory,
-        jobStore,
-        jsonFactory,
-        new HashMap<>(),
-        null,
-        new ConnectionProvider(jobStore),
-        monitor,
-        writesPerSecond);
+        uploadConcurrency,
+        batchSizer);
   }
 
   @VisibleForTesting
@@ -138,8 +128,8 @@ public class GooglePhotosImporter
         connectionProvider,
         monitor,
         writesPerSecond,
-        null,
-        false);
+        1,
+        new BatchSizer(0, Duration.ZERO, null));
   }
 
   GooglePhotosImporter(
@@ -151,8 +141,8 @@ public class GooglePhotosImporter
       ConnectionProvider connectionProvider,
       Monitor monitor,
       double writesPerSecond,
-      IdempotentImportExecutor retryingIdempotentExecutor,
-      boolean enableRetrying) {
+      int uploadConcurrency,
+      BatchSizer batchSizer) {
     this.credentialFactory = credentialFactory;
     this.jobStore = jobStore;
     this.jsonFactory = jsonFactory;
@@ -161,8 +151,8 @@ public class GooglePhotosImporter
     this.connectionProvider = connectionProvider;
     this.monitor = monitor;
     this.writesPerSecond = writesPerSecond;
-    this.retryingIdempotentExecutor = retryingIdempotentExecutor;
-    this.enableRetrying = enableRetrying;
+    this.uploadConcurrency = uploadConcurrency;
+    this.batchSizer = batchSizer;
   }
 
   // TODO(aksingh737) WARNING: stop maintaining this code here; this needs to be reconciled against
@@ -180,12 +170,12 @@ public class GooglePhotosImporter
       // Nothing to do
       return ImportResult.OK;
     }
-    IdempotentImportExecutor executor =
-        (retryingIdempotentExecutor != null && enableRetrying) ? retryingIdempotentExecutor : idempotentImportExecutor;
-    GPhotosUpload gPhotosUpload = new GPhotosUpload(jobId, executor, authData);
+    // The executor of the job, which retries items when the worker sets enableRetrying
+    GPhotosUpload gPhotosUpload =
+        new GPhotosUpload(jobId, idempotentImportExecutor, authData, batchSizer);
 
     for (PhotoAlbum album : data.getAlbums()) {
-      executor.executeAndSwallowIOExceptions(
+      idempotentImportExecutor.executeAndSwallowIOExceptions(
           album.getId(), album.getName(), () -> importSingleAlbum(jobId, authData, album));
     }
     long bytes = importPhotos(data.getPhotos(), gPhotosUpload);
@@ -194,6 +184,13 @@ public class GooglePhotosImporter
     return result.copyWithBytes(bytes);
   }
 
+  @Override
+  public void releaseJob(UUID jobId) {
+    batchSizer.releaseJob(jobId);
+    photosInterfacesMap.remove(jobId);
+    multilingualStrings.remove(jobId);
+  }
+
   @VisibleForTesting
   String importSingleAlbum(UUID jobId, TokensAndUrlAuthData authData, PhotoAlbum inputAlbum)
       throws IOException, InvalidTokenException, PermissionDeniedException, UploadErrorException {
@@ -220,54 +217,81 @@ public class GooglePhotosImporter
       IdempotentImportExecutor executor,
       String albumId)
       throws Exception {
+    // The outcome of every photo, recorded with a single write of the executor once the batch ends
+    Map<PhotoModel, ItemImportResult<PhotoResult>> outcomes = new LinkedHashMap<>();
+    try {
+      return uploadPhotoBatch(jobId, authData, photos, outcomes, albumId);
+    } finally {
+      recordOutcomes(executor, outcomes);
+    }
+  }
+
+  private long uploadPhotoBatch(
+      UUID jobId,
+      TokensAndUrlAuthData authData,
+      List<PhotoModel> photos,
+      Map<PhotoModel, ItemImportResult<PhotoResult>> outcomes,
+      String albumId)
+      throws Exception {
     final ArrayList<NewMediaItem> mediaItems = new ArrayList<>();
     final HashMap<String, PhotoModel> uploadTokenToDataId = new HashMap<>();
     final HashMap<String, Long> uploadTokenToLength = new HashMap<>();
 
-    // TODO: resumable uploads https://developers.google.com/photos/library/guides/resumable-uploads
-    //  Resumable uploads would allow the upload of larger media that don't fit in memory.  To do
-    //  this however, seems to require knowledge of the total file size.
+    // Streams are opened in order here, and their bytes are uploaded concurrently
+    GooglePhotosInterface uploadInterface = getOrCreatePhotosInterface(jobId, authData);
+    BatchByteUploads<String> uploads = new BatchByteUploads<>(uploadExecutor, uploadConcurrency);
+    List<PhotoModel> uploading = new ArrayList<>();
+    List<Long> sizes = new ArrayList<>();
     for (PhotoModel photo : photos) {
-      Long size = null;
+      InputStreamWrapper streamWrapper;
       try {
-        InputStreamWrapper streamWrapper = connectionProvider
-            .getInputStreamForItem(jobId, photo);
-
-        try (InputStream s = streamWrapper.getStream()) {
-          String uploadToken = getOrCreatePhotosInterface(jobId, authData).uploadMediaContent(s,
-              photo.getSha1());
-          String description = GooglePhotosImportUtils.cleanDescription(photo.getDescription());
-          mediaItems.add(new NewMediaItem(description, uploadToken, photo.getTitle()));
-          uploadTokenToDataId.put(uploadToken, photo);
-          size = streamWrapper.getBytes();
-          uploadTokenToLength.put(uploadToken, size);
-        } catch (UploadErrorException e) {
-          if (e.getMessage().contains(ERROR_HASH_MISMATCH)) {
-            monitor.severe(
-                () -> format("%s: SHA-1 (%s) mismatch during upload", jobId, photo.getSha1()));
-          }
+        streamWrapper = connectionProvider.getInputStreamForItem(jobId, photo);
+      } catch (IOException exception) {
+        outcomes.put(photo, ItemImportResult.error(exception, null));
+        continue;
+      }
+      uploading.add(photo);
+      sizes.add(streamWrapper.getBytes());
+      uploads.submit(() -> uploadPhoto(uploadInterface, photo, streamWrapper));
+    }
 
-          Long finalSize = size;
-          executor.importAndSwallowIOExceptions(photo, p -> ItemImportResult.error(e, finalSize));
+    List<BatchByteUploads.Result<String>> results = uploads.awaitAll();
+    for (int i = 0; i < uploading.size(); i++) {
+      PhotoModel photo = uploading.get(i);
+      Exception exception = results.get(i).getException();
+      if (exception == null) {
+        String uploadToken = results.get(i).getValue();
+        String description = GooglePhotosImportUtils.cleanDescription(photo.getDescription());
+        mediaItems.add(new NewMediaItem(description, uploadToken, photo.getTitle()));
+        uploadTokenToDataId.put(uploadToken, photo);
+        uploadTokenToLength.put(uploadToken, sizes.get(i));
+      } else if (exception instanceof UploadErrorException) {
+        if (exception.getMessage().contains(ERROR_HASH_MISMATCH)) {
+          monitor.severe(
+              () -> format("%s: SHA-1 (%s) mismatch during upload", jobId, photo.getSha1()));
         }
+        // Upload errors are not IOExceptions, so they still fail the batch once recorded
+        outcomes.put(photo, ItemImportResult.error(exception, null));
+        throw exception;
+      } else if (exception instanceof IOException) {
+        outcomes.put(photo, ItemImportResult.error(exception, null));
+        continue;
+      } else {
+        throw exception;
+      }
 
-        try {
-          if (photo.isInTempStore()) {
-            jobStore.removeData(jobId, photo.getFetchableUrl());
-          }
-        } catch (Exception e) {
-          // Swallow the exception caused by Remove data so that existing flows continue
-          monitor.info(
-              () ->
-                  format(
-                      "%s: Exception swallowed in removeData call for localPath %s",
-                      jobId, photo.getFetchableUrl()),
-              e);
+      try {
+        if (photo.isInTempStore()) {
+          jobStore.removeData(jobId, photo.getFetchableUrl());
         }
-      } catch (IOException exception) {
-        Long finalSize = size;
-        executor.importAndSwallowIOExceptions(
-            photo, p -> ItemImportResult.error(exception, finalSize));
+      } catch (Exception e) {
+        // Swallow the exception caused by Remove data so that existing flows continue
+        monitor.info(
+            () ->
+                format(
+                    "%s: Exception swallowed in removeData call for localPath %s",
+                    jobId, photo.getFetchableUrl()),
+            e);
       }
     }
 
@@ -288,19 +312,18 @@ public class GooglePhotosImporter
         PhotoModel photo = uploadTokenToDataId.get(mediaItem.getUploadToken());
         totalBytes +=
             processMediaResult(
-                mediaItem, photo, executor, uploadTokenToLength.get(mediaItem.getUploadToken()));
+                mediaItem, photo, outcomes, uploadTokenToLength.get(mediaItem.getUploadToken()));
         uploadTokenToDataId.remove(mediaItem.getUploadToken());
       }
 
       if (!uploadTokenToDataId.isEmpty()) {
         for (Entry<String, PhotoModel> entry : uploadTokenToDataId.entrySet()) {
           PhotoModel photo = entry.getValue();
-          executor.importAndSwallowIOExceptions(
+          outcomes.put(
               photo,
-              p ->
-                  ItemImportResult.error(
-                      new IOException("Photo was missing from results list."),
-                      uploadTokenToLength.get(entry.getKey())));
+              ItemImportResult.error(
+                  new IOException("Photo was missing from results list."),
+                  uploadTokenToLength.get(entry.getKey())));
         }
       }
     } catch (IOException e) {
@@ -320,6 +343,15 @@ public class GooglePhotosImporter
     return totalBytes;
   }
 
+  private static String uploadPhoto(
+      GooglePhotosInterface photosInterface, PhotoModel photo, InputStreamWrapper streamWrapper)
+      throws IOException, InvalidTokenException, PermissionDeniedException, UploadErrorException {
+    try (InputStream s = streamWrapper.getStream()) {
+      return photosInterface.uploadMediaContent(
+          photo.getIdempotentId(), s, streamWrapper.getBytes(), photo.getSha1());
+    }
+  }
+
   private void logMissingAlbumDetails(
       UUID jobId, TokensAndUrlAuthData authData, String albumId, IOException e) {
     monitor.info(
@@ -339,60 +371,67 @@ public class GooglePhotosImporter
 
   private long processMediaResult(
       NewMediaItemResult mediaItem,
-      ImportableItem item,
-      IdempotentImportExecutor executor,
-      long bytes)
-      throws Exception {
+      PhotoModel photo,
+      Map<PhotoModel, ItemImportResult<PhotoResult>> outcomes,
+      long bytes) {
     Status status = mediaItem.getStatus();
     if (status.getCode() == Code.OK_VALUE) {
       PhotoResult photoResult = new PhotoResult(mediaItem.getMediaItem().getId(), bytes);
-      executor.importAndSwallowIOExceptions(
-          item, itemToImport -> ItemImportResult.success(photoResult, bytes));
+      outcomes.put(photo, ItemImportResult.success(photoResult, bytes));
       return bytes;
     } else {
-      executor.importAndSwallowIOExceptions(
-          item,
-          itemToImport ->
-              ItemImportResult.error(
-                  new IOException(
-                      String.format(
-                          "Media item could not be created. Code: %d Message: %s",
-                          status.getCode(), status.getMessage())),
-                  bytes));
+      outcomes.put(
+          photo,
+          ItemImportResult.error(
+              new IOException(
+                  String.format(
+                      "Media item could not be created. Code: %d Message: %s",
+                      status.getCode(), status.getMessage())),
+              bytes));
       return 0;
     }
   }
 
-  private synchronized GooglePhotosInterface getOrCreatePhotosInterface(
+  /** Records the outcome of every photo of a batch with a single write of the executor. */
+  private static void recordOutcomes(
+      IdempotentImportExecutor executor, Map<PhotoModel, ItemImportResult<PhotoResult>> outcomes)
+      throws Exception {
+    if (outcomes.isEmpty()) {
+      return;
+    }
+    executor.<PhotoModel, PhotoResult>importBatchAndSwallowIOExceptions(
+        new ArrayList<>(outcomes.keySet()),
+        photos -> photos.stream().map(outcomes::get).collect(Collectors.toList()));
+  }
+
+  private GooglePhotosInterface getOrCreatePhotosInterface(
       UUID jobId, TokensAndUrlAuthData authData) {
 
     if (photosInterface != null) {
       return photosInterface;
     }
 
-    if (photosInterfacesMap.containsKey(jobId)) {
-      return photosInterfacesMap.get(jobId);
-    }
-
-    GooglePhotosInterface newInterface = makePhotosInterface(authData);
-    photosInterfacesMap.put(jobId, newInterface);
-
-    return newInterface;
+    return photosInterfacesMap.computeIfAbsent(jobId, id -> makePhotosInterface(authData));
   }
 
-  private synchronized GooglePhotosInterface makePhotosInterface(TokensAndUrlAuthData authData) {
+  private GooglePhotosInterface makePhotosInterface(TokensAndUrlAuthData authData) {
     Credential credential = credentialFactory.createCredential(authData);
     return new GooglePhotosInterface(
         credentialFactory, credential, jsonFactory, monitor, writesPerSecond);
   }
 
-  private synchronized BaseMultilingualDictionary getOrCreateStringDictionary(UUID jobId) {
-    if (!multilingualStrings.containsKey(jobId)) {
+  private BaseMultilingualDictionary getOrCreateStringDictionary(UUID jobId) {
+    BaseMultilingualDictionary dictionary = multilingualStrings.get(jobId);
+    if (dictionary == null) {
+      // The job is looked up outside the map so a slow job store does not block other jobs
       PortabilityJob job = jobStore.findJob(jobId);
       String locale = job != null ? job.userLocale() : null;
-      multilingualStrings.put(jobId, new BaseMultilingualDictionary(locale));
+      dictionary = new BaseMultilingualDictionary(locale);
+      BaseMultilingualDictionary existing = multilingualStrings.putIfAbsent(jobId, dictionary);
+      if (existing != null) {
+        dictionary = existing;
+      }
     }
-
-    return multilingualStrings.get(jobId);
+    return dictionary;
   }
 }
@@ -16,13 +16,17 @@
 
 package org.datatransferproject.datatransfer.google.photos;
 
+import static java.lang.String.format;
+
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.api.client.auth.oauth2.Credential;
 import com.google.api.client.http.ByteArrayContent;
+import com.google.api.client.http.EmptyContent;
 import com.google.api.client.http.GenericUrl;
 import com.google.api.client.http.HttpContent;
+import com.google.api.client.http.HttpHeaders;
 import com.google.api.client.http.HttpRequest;
 import com.google.api.client.http.HttpRequestFactory;
 import com.google.api.client.http.HttpResponse;
@@ -33,16 +37,22 @@ import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.http.json.JsonHttpContent;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.util.ArrayMap;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.io.BaseEncoding;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.CharStreams;
 import com.google.common.util.concurrent.RateLimiter;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.time.Clock;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Collections;
@@ -50,6 +60,7 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
@@ -64,6 +75,7 @@ import org.datatransferproject.datatransfer.google.mediaModels.NewMediaItemUploa
 import org.datatransferproject.spi.transfer.types.InvalidTokenException;
 import org.datatransferproject.spi.transfer.types.PermissionDeniedException;
 import org.datatransferproject.spi.transfer.types.UploadErrorException;
+import org.datatransferproject.types.transfer.retry.RetryAfterException;
 
 // TODO (#1307): Find a way to consolidate all 3P API interfaces
 public class GooglePhotosInterface {
@@ -86,15 +98,26 @@ public class GooglePhotosInterface {
       ImmutableMap.of(
           "Content-type", "application/octet-stream",
           "X-Goog-Upload-Protocol", "raw");
+  @VisibleForTesting static final long RESUMABLE_UPLOAD_THRESHOLD = 32 * 1024 * 1024;
+  private static final long RESUMABLE_CHUNK_SIZE = 16 * 1024 * 1024;
+  private static final int MAX_CHUNK_ATTEMPTS = 3;
+  // Streamed uploads cannot be sent again after a 401, so tokens expiring sooner are refreshed first
+  private static final long STREAMED_UPLOAD_TOKEN_MARGIN_SECONDS = 5 * 60;
 
   private final ObjectMapper objectMapper =
       new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-  private final HttpTransport httpTransport = new NetHttpTransport();
-  private Credential credential;
+  private final HttpTransport httpTransport;
+  // Refreshed by threads importing concurrently, under credentialLock
+  private volatile Credential credential;
+  private final Object credentialLock = new Object();
   private final JsonFactory jsonFactory;
   private final Monitor monitor;
   private final GoogleCredentialFactory credentialFactory;
   private final RateLimiter writeRateLimiter;
+  // Resumable uploads that have yet to complete, by upload key. Uploads that gave up are kept so
+  // that a retry resumes them, and are forgotten once they have not been retried for a while.
+  private final Cache<String, UploadSession> uploadSessions =
+      CacheBuilder.newBuilder().expireAfterAccess(Duration.ofHours(1)).build();
 
   public GooglePhotosInterface(
       GoogleCredentialFactory credentialFactory,
@@ -102,6 +125,19 @@ public class GooglePhotosInterface {
       JsonFactory jsonFactory,
       Monitor monitor,
       double writesPerSecond) {
+    this(credentialFactory, credential, jsonFactory, monitor, writesPerSecond,
+        new NetHttpTransport());
+  }
+
+  @VisibleForTesting
+  GooglePhotosInterface(
+      GoogleCredentialFactory credentialFactory,
+      Credential credential,
+      JsonFactory jsonFactory,
+      Monitor monitor,
+      double writesPerSecond,
+      HttpTransport httpTransport) {
+    this.httpTransport = httpTransport;
     this.credential = credential;
     this.jsonFactory = jsonFactory;
     this.monitor = monitor;
@@ -170,6 +206,39 @@ public class GooglePhotosInterface {
     }
     HttpContent httpContent = new ByteArrayContent(null, contentBytes);
 
+    return makePostRequest(BASE_URL + "uploads/", Optional.of(PHOTO_UPLOAD_PARAMS),
+        Optional.of(getHashHeaders(sha1)), httpContent, String.class);
+  }
+
+  /**
+   * Uploads media of a known {@code length} without holding it in memory. Media of at least {@link
+   * #RESUMABLE_UPLOAD_THRESHOLD} bytes is sent with the resumable upload protocol, a chunk at a
+   * time, and the upload session is kept under {@code uploadKey} until the upload completes, so
+   * that uploading the same key again carries on from the last byte Google Photos received.
+   *
+   * <p>Smaller media is streamed, and as it cannot be sent again once the access token turns out
+   * to have expired, a token that expires within a few minutes is refreshed before the upload.
+   *
+   * <p>Media of unknown length, which sources report as 0 or less, is uploaded as before.
+   */
+  public String uploadMediaContent(
+      String uploadKey, InputStream inputStream, long length, @Nullable String sha1)
+      throws IOException, InvalidTokenException, PermissionDeniedException, UploadErrorException {
+    if (length <= 0) {
+      return uploadMediaContent(inputStream, sha1);
+    }
+    if (length >= RESUMABLE_UPLOAD_THRESHOLD) {
+      return uploadResumable(uploadKey, inputStream, length);
+    }
+    // The stream cannot be sent twice, so a failed upload is retried by the caller
+    refreshCredentialIfExpiring();
+    InputStreamContent content =
+        new InputStreamContent(null, inputStream).setLength(length).setRetrySupported(false);
+    return makePostRequest(BASE_URL + "uploads/", Optional.of(PHOTO_UPLOAD_PARAMS),
+        Optional.of(getHashHeaders(sha1)), content, String.class);
+  }
+
+  private Map<String, String> getHashHeaders(@Nullable String sha1) {
     // Adding optional fields.
     ImmutableMap.Builder<String, String> headers = ImmutableMap.builder();
     if (sha1 != null && !sha1.isEmpty()) {
@@ -179,9 +248,158 @@ public class GooglePhotosInterface {
       headers.put("X-Goog-Hash", "sha1=" + Base64.getEncoder()
           .encodeToString(BaseEncoding.base16().decode(sha1.toUpperCase())));
     }
+    return headers.build();
+  }
+
+  /**
+   * Uploads media with the resumable upload protocol, see
+   * https://developers.google.com/photos/library/guides/resumable-uploads. Only the chunk being
+   * sent is held in memory, and a chunk that fails is sent again from the last byte received.
+   */
+  private String uploadResumable(String uploadKey, InputStream inputStream, long length)
+      throws IOException, InvalidTokenException, PermissionDeniedException, UploadErrorException {
+    UploadSession session = uploadSessions.getIfPresent(uploadKey);
+    long offset = -1;
+    if (session != null && session.length == length) {
+      offset = queryReceivedBytes(session);
+    }
+    if (offset < 0) {
+      session = startUploadSession(length);
+      uploadSessions.put(uploadKey, session);
+      offset = 0;
+    } else {
+      long resumedAt = offset;
+      monitor.info(
+          () -> format("Resuming the upload of %s at %d of %d bytes", uploadKey, resumedAt,
+              length));
+      ByteStreams.skipFully(inputStream, offset);
+    }
 
-    return makePostRequest(BASE_URL + "uploads/", Optional.of(PHOTO_UPLOAD_PARAMS),
-        Optional.of(headers.build()), httpContent, String.class);
+    byte[] chunk = new byte[(int) Math.min(session.chunkSize, length)];
+    while (offset < length) {
+      long chunkStart = offset;
+      int chunkLength = (int) Math.min(chunk.length, length - chunkStart);
+      ByteStreams.readFully(inputStream, chunk, 0, chunkLength);
+      boolean finalChunk = chunkStart + chunkLength == length;
+      int attempts = 0;
+      while (offset < chunkStart + chunkLength) {
+        int from = (int) (offset - chunkStart);
+        try {
+          String uploadToken =
+              uploadChunk(session, chunk, from, chunkLength - from, offset, finalChunk);
+          offset = chunkStart + chunkLength;
+          if (finalChunk) {
+            uploadSessions.invalidate(uploadKey);
+            return uploadToken;
+          }
+        } catch (IOException e) {
+          // The session is kept when giving up on the chunk, so that a retry resumes it
+          if (e instanceof RetryAfterException || ++attempts > MAX_CHUNK_ATTEMPTS) {
+            throw e;
+          }
+          long received = queryReceivedBytes(session);
+          if (received < chunkStart || received > chunkStart + chunkLength) {
+            uploadSessions.invalidate(uploadKey);
+            throw e;
+          }
+          offset = received;
+        }
+      }
+    }
+    // Every byte was received but the upload token was lost, so the upload has to start over
+    uploadSessions.invalidate(uploadKey);
+    throw new IOException(format("The upload of %s completed without an upload token", uploadKey));
+  }
+
+  private UploadSession startUploadSession(long length)
+      throws IOException, InvalidTokenException, PermissionDeniedException, UploadErrorException {
+    // Wait for write permit before starting the upload, its chunks are part of the same write
+    writeRateLimiter.acquire();
+    HttpHeaders headers = new HttpHeaders();
+    headers.set("X-Goog-Upload-Command", "start");
+    headers.set("X-Goog-Upload-Protocol", "resumable");
+    headers.set("X-Goog-Upload-Raw-Size", Long.toString(length));
+    HttpResponse response = executeUploadRequest(BASE_URL + "uploads", headers, new EmptyContent());
+    try {
+      String url = response.getHeaders().getFirstHeaderStringValue("X-Goog-Upload-URL");
+      if (url == null) {
+        throw new IOException("No upload URL in the response to starting a resumable upload");
+      }
+      String granularity =
+          response.getHeaders().getFirstHeaderStringValue("X-Goog-Upload-Chunk-Granularity");
+      long chunkSize = RESUMABLE_CHUNK_SIZE;
+      if (granularity != null && Long.parseLong(granularity) > 0) {
+        long granularityBytes = Long.parseLong(granularity);
+        chunkSize = Math.max(1, chunkSize / granularityBytes) * granularityBytes;
+      }
+      return new UploadSession(url, length, chunkSize);
+    } finally {
+      response.disconnect();
+    }
+  }
+
+  /** Returns the bytes of an upload that Google Photos received, or -1 if it is not active. */
+  private long queryReceivedBytes(UploadSession session)
+      throws IOException, InvalidTokenException, PermissionDeniedException, UploadErrorException {
+    HttpHeaders headers = new HttpHeaders();
+    headers.set("X-Goog-Upload-Command", "query");
+    HttpResponse response;
+    try {
+      response = executeUploadRequest(session.url, headers, new EmptyContent());
+    } catch (IOException e) {
+      monitor.info(() -> "Unable to query a resumable upload", e);
+      return -1;
+    }
+    try {
+      String status = response.getHeaders().getFirstHeaderStringValue("X-Goog-Upload-Status");
+      String received =
+          response.getHeaders().getFirstHeaderStringValue("X-Goog-Upload-Size-Received");
+      return "active".equals(status) && received != null ? Long.parseLong(received) : -1;
+    } finally {
+      response.disconnect();
+    }
+  }
+
+  private String uploadChunk(
+      UploadSession session, byte[] chunk, int from, int count, long offset, boolean finalChunk)
+      throws IOException, InvalidTokenException, PermissionDeniedException, UploadErrorException {
+    HttpHeaders headers = new HttpHeaders();
+    headers.set("X-Goog-Upload-Command", finalChunk ? "upload, finalize" : "upload");
+    headers.set("X-Goog-Upload-Offset", Long.toString(offset));
+    HttpResponse response =
+        executeUploadRequest(session.url, headers, new ByteArrayContent(null, chunk, from, count));
+    try {
+      return finalChunk
+          ? CharStreams.toString(new InputStreamReader(response.getContent(), Charsets.UTF_8))
+          : null;
+    } finally {
+      response.disconnect();
+    }
+  }
+
+  private HttpResponse executeUploadRequest(String url, HttpHeaders headers, HttpContent content)
+      throws IOException, InvalidTokenException, PermissionDeniedException, UploadErrorException {
+    HttpRequestFactory requestFactory = httpTransport.createRequestFactory();
+    SupplierWithIO<HttpRequest> request =
+        () -> {
+          // The access token is read again, as it is refreshed on 401
+          HttpRequest uploadRequest =
+              requestFactory.buildPostRequest(
+                  new GenericUrl(
+                      url + (url.contains("?") ? "&" : "?")
+                          + generateParamsString(Optional.empty())),
+                  content);
+          uploadRequest.getHeaders().putAll(headers);
+          uploadRequest.setReadTimeout(2 * 60000); // 2 minutes read timeout
+          return uploadRequest;
+        };
+    String accessToken = credential.getAccessToken();
+    try {
+      return request.getWithIO().execute();
+    } catch (HttpResponseException e) {
+      maybeRethrowAsUploadError(e);
+      return handleHttpResponseException(request, e, accessToken);
+    }
   }
 
   public BatchMediaItemResponse createPhotos(NewMediaItemUpload newMediaItemUpload)
@@ -196,6 +414,7 @@ public class GooglePhotosInterface {
   private <T> T makeGetRequest(String url, Optional<Map<String, String>> parameters, Class<T> clazz)
       throws IOException, InvalidTokenException, PermissionDeniedException {
     HttpRequestFactory requestFactory = httpTransport.createRequestFactory();
+    String accessToken = credential.getAccessToken();
     HttpRequest getRequest =
         requestFactory.buildGetRequest(
             new GenericUrl(url + "?" + generateParamsString(parameters)));
@@ -209,7 +428,8 @@ public class GooglePhotosInterface {
               () ->
                   requestFactory.buildGetRequest(
                       new GenericUrl(url + "?" + generateParamsString(parameters))),
-              e);
+              e,
+              accessToken);
     }
 
     Preconditions.checkState(response.getStatusCode() == 200);
@@ -225,6 +445,7 @@ public class GooglePhotosInterface {
     writeRateLimiter.acquire();
 
     HttpRequestFactory requestFactory = httpTransport.createRequestFactory();
+    String accessToken = credential.getAccessToken();
     HttpRequest postRequest =
         requestFactory.buildPostRequest(
             new GenericUrl(url + "?" + generateParamsString(parameters)), httpContent);
@@ -240,10 +461,15 @@ public class GooglePhotosInterface {
 
       response =
           handleHttpResponseException(
-              () ->
-                  requestFactory.buildPostRequest(
-                      new GenericUrl(url + "?" + generateParamsString(parameters)), httpContent),
-              e);
+              () -> {
+                if (!httpContent.retrySupported()) {
+                  throw new IOException("Unable to send the content of " + url + " again", e);
+                }
+                return requestFactory.buildPostRequest(
+                    new GenericUrl(url + "?" + generateParamsString(parameters)), httpContent);
+              },
+              e,
+              accessToken);
     }
 
     Preconditions.checkState(response.getStatusCode() == 200);
@@ -272,18 +498,20 @@ public class GooglePhotosInterface {
     }
   }
 
+  /**
+   * Handles the error response of a request that was sent with {@code accessToken}, retrying it
+   * with a refreshed token if it was unauthorized.
+   */
   private HttpResponse handleHttpResponseException(
-      SupplierWithIO<HttpRequest> httpRequest, HttpResponseException e)
+      SupplierWithIO<HttpRequest> httpRequest, HttpResponseException e, String accessToken)
       throws IOException, InvalidTokenException, PermissionDeniedException {
     // if the response is "unauthorized", refresh the token and try the request again
     final int statusCode = e.getStatusCode();
 
     if (statusCode == 401) {
-      monitor.info(() -> "Attempting to refresh authorization token");
       // if the credential refresh failed, let the error bubble up via the IOException that gets
       // thrown
-      credential = credentialFactory.refreshCredential(credential);
-      monitor.info(() -> "Refreshed authorization token successfully");
+      refreshCredential(accessToken);
 
       // if the second attempt throws an error, then something else is wrong, and we bubble up the
       // response errors
@@ -295,15 +523,45 @@ public class GooglePhotosInterface {
             (e.getContent().contains("The caller does not have permission") ||
              e.getContent().contains("Google Photos is disabled for the user"))) {
       throw new PermissionDeniedException("User permission to google photos was denied", e);
-    } else {
-      // something else is wrong, bubble up the error
-      throw new IOException(
-          "Bad status code: "
-              + e.getStatusCode()
-              + " Error: '"
-              + e.getStatusMessage()
-              + "' Content: "
-              + e.getContent());
+    }
+    String message =
+        "Bad status code: "
+            + e.getStatusCode()
+            + " Error: '"
+            + e.getStatusMessage()
+            + "' Content: "
+            + e.getContent();
+    if (statusCode == 429 || statusCode == 503) {
+      // the service is rate limiting or unavailable, pass on how long it asked us to wait
+      throw new RetryAfterException(
+          message,
+          RetryAfterException.parseRetryAfterHeader(
+              e.getHeaders() == null ? null : e.getHeaders().getRetryAfter(), Clock.systemUTC()));
+    }
+    // something else is wrong, bubble up the error
+    throw new IOException(message);
+  }
+
+  private void refreshCredentialIfExpiring() throws IOException, InvalidTokenException {
+    Long expiresInSeconds = credential.getExpiresInSeconds();
+    if (expiresInSeconds != null && expiresInSeconds < STREAMED_UPLOAD_TOKEN_MARGIN_SECONDS) {
+      refreshCredential(credential.getAccessToken());
+    }
+  }
+
+  /**
+   * Refreshes the credential unless another thread already replaced {@code staleAccessToken}, so
+   * that concurrent requests failing with the same token refresh it once.
+   */
+  private void refreshCredential(String staleAccessToken)
+      throws IOException, InvalidTokenException {
+    synchronized (credentialLock) {
+      if (!Objects.equals(staleAccessToken, credential.getAccessToken())) {
+        return;
+      }
+      monitor.info(() -> "Attempting to refresh authorization token");
+      credential = credentialFactory.refreshCredential(credential);
+      monitor.info(() -> "Refreshed authorization token successfully");
     }
   }
 
@@ -340,4 +598,16 @@ public class GooglePhotosInterface {
   private interface SupplierWithIO<T> {
     T getWithIO() throws IOException;
   }
+
+  private static final class UploadSession {
+    private final String url;
+    private final long length;
+    private final long chunkSize;
+
+    private UploadSession(String url, long length, long chunkSize) {
+      this.url = url;
+      this.length = length;
+      this.chunkSize = chunkSize;
+    }
+  }
 }
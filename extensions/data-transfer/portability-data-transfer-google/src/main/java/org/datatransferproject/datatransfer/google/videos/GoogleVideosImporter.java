@@ -74,6 +74,7 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.datatransferproject.api.launcher.Monitor;
 import org.datatransferproject.datatransfer.google.common.GooglePhotosImportUtils;
 import org.datatransferproject.spi.cloud.connection.ConnectionProvider;
+import org.datatransferproject.spi.cloud.storage.JobTempFileManager;
 import org.datatransferproject.spi.cloud.storage.TemporaryPerJobDataStore;
 import org.datatransferproject.spi.transfer.idempotentexecutor.IdempotentImportExecutor;
 import org.datatransferproject.spi.transfer.idempotentexecutor.ItemImportResult;
@@ -96,17 +97,29 @@ public class GoogleVideosImporter
   private final Monitor monitor;
   private final AppCredentials appCredentials;
   private final TemporaryPerJobDataStore dataStore;
+  private final JobTempFileManager tempFiles;
   private final Map<UUID, PhotosLibraryClient> clientsMap;
 
   public GoogleVideosImporter(
-      AppCredentials appCredentials, TemporaryPerJobDataStore dataStore, Monitor monitor) {
-    this(appCredentials, dataStore, monitor, new ConnectionProvider(dataStore), new HashMap<>());
+      AppCredentials appCredentials,
+      TemporaryPerJobDataStore dataStore,
+      JobTempFileManager tempFiles,
+      ConnectionProvider connectionProvider,
+      Monitor monitor) {
+    this(
+        appCredentials,
+        dataStore,
+        tempFiles,
+        monitor,
+        connectionProvider,
+        new HashMap<>());
   }
 
   @VisibleForTesting
   GoogleVideosImporter(
       AppCredentials appCredentials,
       TemporaryPerJobDataStore dataStore,
+      JobTempFileManager tempFiles,
       Monitor monitor,
       ConnectionProvider connectionProvider,
       Map<UUID, PhotosLibraryClient> clientsMap) {
@@ -114,6 +127,7 @@ public class GoogleVideosImporter
     this.monitor = monitor;
     this.appCredentials = appCredentials;
     this.dataStore = dataStore;
+    this.tempFiles = tempFiles;
     this.clientsMap = clientsMap;
   }
 
@@ -166,6 +180,7 @@ public class GoogleVideosImporter
             jobId,
             batches.next(),
             dataStore,
+            tempFiles,
             client,
             executor,
             connectionProvider,
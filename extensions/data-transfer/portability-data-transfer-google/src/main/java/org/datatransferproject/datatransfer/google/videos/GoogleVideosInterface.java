@@ -84,6 +84,7 @@ import org.datatransferproject.datatransfer.google.mediaModels.BatchMediaItemRes
 import org.datatransferproject.datatransfer.google.mediaModels.MediaItemSearchResponse;
 import org.datatransferproject.datatransfer.google.mediaModels.NewMediaItemUpload;
 import org.datatransferproject.spi.cloud.connection.ConnectionProvider;
+import org.datatransferproject.spi.cloud.storage.JobTempFileManager;
 import org.datatransferproject.spi.cloud.storage.TemporaryPerJobDataStore;
 import org.datatransferproject.spi.transfer.idempotentexecutor.IdempotentImportExecutor;
 import org.datatransferproject.spi.transfer.idempotentexecutor.ItemImportResult;
@@ -253,13 +254,13 @@ public class GoogleVideosInterface {
       UUID jobId,
       VideoModel video,
       PhotosLibraryClient photosLibraryClient,
-      TemporaryPerJobDataStore dataStore,
+      JobTempFileManager tempFiles,
       ConnectionProvider connectionProvider)
       throws IOException, UploadErrorException, InvalidTokenException {
 
     final File tmp = createTempFile(
         jobId,
-        dataStore,
+        tempFiles,
         connectionProvider,
         video);
     try {
@@ -301,14 +302,13 @@ public class GoogleVideosInterface {
       }
       throw new IOException("An error was encountered while uploading the video.", cause);
     } finally {
-      //noinspection ResultOfMethodCallIgnored
-      tmp.delete();
+      tempFiles.delete(tmp);
     }
   }
 
   private static File createTempFile(
       UUID jobId,
-      TemporaryPerJobDataStore dataStore,
+      JobTempFileManager tempFiles,
       ConnectionProvider connectionProvider,
       DownloadableFile video) throws IOException {
     // TODO(aksingh737) switch from hardcoding mp4 to relying on DownloadableFile#getMimeType()'s
@@ -316,7 +316,7 @@ public class GoogleVideosInterface {
     final String fileSuffix = "mp4";
     return createTempFile(
         jobId,
-        dataStore,
+        tempFiles,
         connectionProvider,
         video,
         fileSuffix);
@@ -326,12 +326,12 @@ public class GoogleVideosInterface {
   // related logic
   private static File createTempFile(
       UUID jobId,
-      TemporaryPerJobDataStore dataStore,
+      JobTempFileManager tempFiles,
       ConnectionProvider connectionProvider,
       DownloadableFile item,
       String fileSuffix) throws IOException {
     try (InputStream is = connectionProvider.getInputStreamForItem(jobId, item).getStream()) {
-      return dataStore.getTempFileFromInputStream(is, item.getName(), fileSuffix);
+      return tempFiles.createTempFile(jobId, is, item.getName(), fileSuffix);
     }
   }
 
@@ -344,6 +344,7 @@ public class GoogleVideosInterface {
       UUID jobId,
       List<VideoModel> batchedVideos,
       TemporaryPerJobDataStore dataStore,
+      JobTempFileManager tempFiles,
       PhotosLibraryClient client,
       IdempotentImportExecutor executor,
       ConnectionProvider connectionProvider,
@@ -357,7 +358,7 @@ public class GoogleVideosInterface {
     try {
       for (VideoModel video : batchedVideos) {
         try {
-          Pair<String, Long> pair = uploadVideo(jobId, video, client, dataStore, connectionProvider);
+          Pair<String, Long> pair = uploadVideo(jobId, video, client, tempFiles, connectionProvider);
           final String uploadToken = pair.getLeft();
           final String googleAlbumId =
               Strings.isNullOrEmpty(video.getAlbumId())
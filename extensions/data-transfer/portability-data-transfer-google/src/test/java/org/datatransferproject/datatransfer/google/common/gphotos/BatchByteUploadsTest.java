@@ -0,0 +1,96 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.datatransferproject.datatransfer.google.common.gphotos;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.datatransferproject.datatransfer.google.common.gphotos.BatchByteUploads.Result;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class BatchByteUploadsTest {
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  @AfterEach
+  public void shutDownExecutor() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void resultsAreReturnedInSubmitOrder() throws Exception {
+    BatchByteUploads<String> uploads = new BatchByteUploads<>(executor, 3);
+    CountDownLatch firstMayFinish = new CountDownLatch(1);
+
+    uploads.submit(
+        () -> {
+          firstMayFinish.await(5, TimeUnit.SECONDS);
+          return "token1";
+        });
+    uploads.submit(
+        () -> {
+          throw new IOException("Upload failed");
+        });
+    uploads.submit(
+        () -> {
+          firstMayFinish.countDown();
+          return "token3";
+        });
+    List<Result<String>> results = uploads.awaitAll();
+
+    assertThat(results).hasSize(3);
+    assertThat(results.get(0).getValue()).isEqualTo("token1");
+    assertThat(results.get(1).getException()).hasMessageThat().isEqualTo("Upload failed");
+    assertThat(results.get(2).getValue()).isEqualTo("token3");
+  }
+
+  @Test
+  public void noMoreThanConcurrencyUploadsRunAtOnce() throws Exception {
+    BatchByteUploads<Integer> uploads = new BatchByteUploads<>(executor, 2);
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger mostRunning = new AtomicInteger();
+
+    for (int i = 0; i < 10; i++) {
+      uploads.submit(
+          () -> {
+            mostRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(10);
+            return running.decrementAndGet();
+          });
+    }
+    List<Result<Integer>> results = uploads.awaitAll();
+
+    assertThat(results).hasSize(10);
+    assertThat(mostRunning.get()).isAtMost(2);
+  }
+
+  @Test
+  public void uploadsRunOnTheCallingThreadWithoutConcurrency() throws Exception {
+    BatchByteUploads<Thread> uploads = new BatchByteUploads<>(executor, 1);
+
+    uploads.submit(Thread::currentThread);
+
+    assertThat(uploads.awaitAll().get(0).getValue()).isSameInstanceAs(Thread.currentThread());
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.datatransferproject.datatransfer.google.common.gphotos;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.datatransferproject.datatransfer.google.common.gphotos.BatchSizer.MAX_BATCH_ITEMS;
+import static org.datatransferproject.types.common.models.DataVertical.PHOTOS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.time.Duration;
+import java.util.UUID;
+import org.datatransferproject.api.launcher.MetricRecorder;
+import org.junit.jupiter.api.Test;
+
+public class BatchSizerTest {
+
+  private static final long MB = 1024 * 1024;
+
+  private final UUID jobId = UUID.randomUUID();
+  private final MetricRecorder metricRecorder = mock(MetricRecorder.class);
+
+  @Test
+  public void batchesHoldAsManyItemsAsACallAllows() {
+    BatchSizer sizer = new BatchSizer(0, Duration.ZERO, metricRecorder);
+
+    assertThat(sizer.nextBatchItems(jobId, PHOTOS)).isEqualTo(MAX_BATCH_ITEMS);
+    verify(metricRecorder).recordMetric(PHOTOS, "gphotosBatchItems", MAX_BATCH_ITEMS);
+  }
+
+  @Test
+  public void batchesOfLargeItemsHoldFewerItems() {
+    BatchSizer sizer = new BatchSizer(100 * MB, Duration.ZERO, metricRecorder);
+
+    sizer.batchFinished(jobId, PHOTOS, 10, 200 * MB, Duration.ofSeconds(1), 0);
+
+    assertThat(sizer.nextBatchItems(jobId, PHOTOS)).isEqualTo(5);
+    assertThat(sizer.nextBatchItems(UUID.randomUUID(), PHOTOS)).isEqualTo(MAX_BATCH_ITEMS);
+  }
+
+  @Test
+  public void batchesShrinkAfterFailuresAndGrowBack() {
+    BatchSizer sizer = new BatchSizer(0, Duration.ZERO, metricRecorder);
+
+    sizer.batchFinished(
+        jobId, PHOTOS, MAX_BATCH_ITEMS, 0, Duration.ofSeconds(1), MAX_BATCH_ITEMS);
+    // A single item that failed without failing the batch also shrinks the next batches
+    sizer.batchFinished(jobId, PHOTOS, 25, MB, Duration.ofSeconds(1), 1);
+    assertThat(sizer.nextBatchItems(jobId, PHOTOS)).isEqualTo(12);
+    verify(metricRecorder).recordMetric(PHOTOS, "gphotosBatchFailedItems", 1);
+
+    for (int i = 0; i < 3; i++) {
+      sizer.batchFinished(jobId, PHOTOS, 12, MB, Duration.ofSeconds(1), 0);
+    }
+    assertThat(sizer.nextBatchItems(jobId, PHOTOS)).isEqualTo(MAX_BATCH_ITEMS);
+    verify(metricRecorder).recordMetric(PHOTOS, "gphotosBatchItems", 12);
+  }
+
+  @Test
+  public void batchesShrinkWhenSlowerThanTheTarget() {
+    BatchSizer sizer = new BatchSizer(0, Duration.ofSeconds(30), metricRecorder);
+
+    sizer.batchFinished(jobId, PHOTOS, MAX_BATCH_ITEMS, MB, Duration.ofSeconds(60), 0);
+    assertThat(sizer.nextBatchItems(jobId, PHOTOS)).isEqualTo(25);
+
+    // Batches between half the target and the target keep their size
+    sizer.batchFinished(jobId, PHOTOS, 25, MB, Duration.ofSeconds(20), 0);
+    assertThat(sizer.nextBatchItems(jobId, PHOTOS)).isEqualTo(25);
+
+    sizer.batchFinished(jobId, PHOTOS, 25, MB, Duration.ofSeconds(5), 0);
+    assertThat(sizer.nextBatchItems(jobId, PHOTOS)).isEqualTo(37);
+  }
+
+  @Test
+  public void releasedJobStartsOverWithFullBatches() {
+    BatchSizer sizer = new BatchSizer(0, Duration.ZERO, metricRecorder);
+    sizer.batchFinished(jobId, PHOTOS, MAX_BATCH_ITEMS, 0, Duration.ofSeconds(1), 3);
+    assertThat(sizer.nextBatchItems(jobId, PHOTOS)).isEqualTo(25);
+
+    sizer.releaseJob(jobId);
+
+    assertThat(sizer.nextBatchItems(jobId, PHOTOS)).isEqualTo(MAX_BATCH_ITEMS);
+  }
+}
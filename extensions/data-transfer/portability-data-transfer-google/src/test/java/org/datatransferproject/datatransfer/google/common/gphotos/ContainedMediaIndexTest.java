@@ -0,0 +1,60 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.datatransferproject.datatransfer.google.common.gphotos;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class ContainedMediaIndexTest {
+
+  @Test
+  public void containsOnlyTheIndexedMedia() {
+    List<String> contained = new ArrayList<>();
+    for (int i = 0; i < 10_000; i++) {
+      contained.add("contained-" + i);
+    }
+
+    ContainedMediaIndex index = ContainedMediaIndex.of(contained);
+
+    for (String mediaItemId : contained) {
+      assertThat(index.contains(mediaItemId)).isTrue();
+    }
+    for (int i = 0; i < 10_000; i++) {
+      assertThat(index.contains("albumless-" + i)).isFalse();
+    }
+  }
+
+  @Test
+  public void emptyIndexContainsNothing() {
+    ContainedMediaIndex index = ContainedMediaIndex.of(ImmutableList.of());
+
+    assertThat(index.contains("some-media-id")).isFalse();
+  }
+
+  @Test
+  public void duplicateIdsAreIndexedOnce() {
+    ContainedMediaIndex index = ContainedMediaIndex.of(ImmutableList.of("a", "a", "b"));
+
+    assertThat(index.contains("a")).isTrue();
+    assertThat(index.contains("b")).isTrue();
+    assertThat(index.contains("c")).isFalse();
+  }
+}
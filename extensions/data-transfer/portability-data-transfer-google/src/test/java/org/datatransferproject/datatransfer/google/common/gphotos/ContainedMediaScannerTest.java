@@ -0,0 +1,145 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.datatransferproject.datatransfer.google.common.gphotos;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.datatransferproject.api.launcher.Monitor;
+import org.datatransferproject.datatransfer.google.mediaModels.AlbumListResponse;
+import org.datatransferproject.datatransfer.google.mediaModels.GoogleAlbum;
+import org.datatransferproject.datatransfer.google.mediaModels.GoogleMediaItem;
+import org.datatransferproject.datatransfer.google.mediaModels.MediaItemSearchResponse;
+import org.junit.jupiter.api.Test;
+
+public class ContainedMediaScannerTest {
+
+  @Test
+  public void listsMediaInAlbumOrderWhenAlbumsAreScannedConcurrently() throws Exception {
+    ContainedMediaScanner scanner = new ContainedMediaScanner(mock(Monitor.class), 3);
+
+    assertThat(
+            scanner.listContainedMediaIds(
+                albumToken ->
+                    albumToken.isPresent()
+                        ? albumPage(null, "album3")
+                        : albumPage("albumToken", "album1", "album2"),
+                (albumId, photoToken) ->
+                    photoToken.isPresent()
+                        ? mediaPage(null, albumId + "-b")
+                        : mediaPage("photoToken", albumId + "-a")))
+        .containsExactly(
+            "album1-a", "album1-b", "album2-a", "album2-b", "album3-a", "album3-b")
+        .inOrder();
+  }
+
+  @Test
+  public void failedAlbumFailsTheListing() {
+    ContainedMediaScanner scanner = new ContainedMediaScanner(mock(Monitor.class), 2);
+
+    assertThrows(
+        IOException.class,
+        () ->
+            scanner.listContainedMediaIds(
+                albumToken -> albumPage(null, "album1", "album2"),
+                (albumId, photoToken) -> {
+                  if (albumId.equals("album2")) {
+                    throw new IOException("listing failed");
+                  }
+                  return mediaPage(null, albumId + "-a");
+                }));
+  }
+
+  @Test
+  public void awaitReportsAFailedScan() throws Exception {
+    ContainedMediaScanner scanner = new ContainedMediaScanner(mock(Monitor.class), 1);
+    UUID failingJob = UUID.randomUUID();
+    UUID succeedingJob = UUID.randomUUID();
+
+    scanner.start(
+        failingJob,
+        () -> {
+          throw new IOException("listing failed");
+        });
+    scanner.start(succeedingJob, () -> {});
+
+    assertThat(scanner.await(failingJob)).isFalse();
+    assertThat(scanner.await(succeedingJob)).isTrue();
+    // Jobs without a scan in the background have nothing to wait for
+    assertThat(scanner.await(UUID.randomUUID())).isTrue();
+  }
+
+  @Test
+  public void restartedScanIsNotRunTwice() throws Exception {
+    ContainedMediaScanner scanner = new ContainedMediaScanner(mock(Monitor.class), 1);
+    UUID jobId = UUID.randomUUID();
+    AtomicInteger runs = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+    scanner.start(
+        jobId,
+        () -> {
+          runs.incrementAndGet();
+          release.await();
+        });
+
+    scanner.start(jobId, runs::incrementAndGet);
+    release.countDown();
+
+    assertThat(scanner.await(jobId)).isTrue();
+    assertThat(runs.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void releasedJobHasNoScanToWaitFor() throws Exception {
+    ContainedMediaScanner scanner = new ContainedMediaScanner(mock(Monitor.class), 1);
+    UUID jobId = UUID.randomUUID();
+    CountDownLatch never = new CountDownLatch(1);
+    scanner.start(jobId, never::await);
+
+    scanner.releaseJob(jobId);
+
+    assertThat(scanner.await(jobId)).isTrue();
+  }
+
+  private static AlbumListResponse albumPage(String nextPageToken, String... albumIds) {
+    GoogleAlbum[] albums = new GoogleAlbum[albumIds.length];
+    for (int i = 0; i < albumIds.length; i++) {
+      albums[i] = new GoogleAlbum();
+      albums[i].setId(albumIds[i]);
+    }
+    AlbumListResponse albumListResponse = mock(AlbumListResponse.class);
+    when(albumListResponse.getAlbums()).thenReturn(albums);
+    when(albumListResponse.getNextPageToken()).thenReturn(nextPageToken);
+    return albumListResponse;
+  }
+
+  private static MediaItemSearchResponse mediaPage(String nextPageToken, String mediaItemId) {
+    GoogleMediaItem mediaItem = new GoogleMediaItem();
+    mediaItem.setId(mediaItemId);
+    MediaItemSearchResponse mediaItemSearchResponse = new MediaItemSearchResponse();
+    mediaItemSearchResponse.setMediaItems(new GoogleMediaItem[] {mediaItem});
+    mediaItemSearchResponse.setNextPageToken(nextPageToken);
+    return mediaItemSearchResponse;
+  }
+}
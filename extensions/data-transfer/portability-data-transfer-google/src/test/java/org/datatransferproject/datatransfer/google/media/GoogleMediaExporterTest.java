@@ -389,13 +389,31 @@ public class GoogleMediaExporterTest {
         .containsExactly(albumlessPhotoUri + "=d"); // download
   }
 
+  @Test
+  public void resumedJobListsContainedMediaWhenNoneIsStored() throws Exception {
+    // The job was started on another worker, so neither a scan nor a stored list is found here
+    setUpSingleAlbum();
+    when(albumListResponse.getNextPageToken()).thenReturn(null);
+    when(photosInterface.listAlbums(any(Optional.class))).thenReturn(albumListResponse);
+    when(photosInterface.listMediaItems(any(Optional.class), any(Optional.class)))
+        .thenReturn(mediaItemSearchResponse);
+    when(mediaItemSearchResponse.getNextPageToken()).thenReturn(null);
+    ExportInformation exportInformation =
+        new ExportInformation(new StringPaginationToken(MEDIA_TOKEN_PREFIX), null);
+
+    googleMediaExporter.export(uuid, authData, Optional.of(exportInformation));
+
+    verify(photosInterface).listAlbums(Optional.empty());
+    verify(jobStore).create(eq(uuid), eq("tempMediaData"), any(InputStream.class));
+  }
+
   @Test
   public void testGetGoogleMediaItemSucceeds() throws IOException, InvalidTokenException, PermissionDeniedException {
     String mediaItemID = "media_id";
     MediaMetadata mediaMetadata = new MediaMetadata();
     when(photosInterface.getMediaItem(any())).thenReturn(setUpSingleMediaItem(mediaItemID, mediaItemID, mediaMetadata));
 
-    assertThat(retryingGoogleMediaExporter.getGoogleMediaItem(mediaItemID, mediaItemID, mediaItemID, authData)).isInstanceOf(GoogleMediaItem.class);
+    assertThat(retryingGoogleMediaExporter.getGoogleMediaItem(uuid, mediaItemID, mediaItemID, mediaItemID, authData)).isInstanceOf(GoogleMediaItem.class);
   }
 
   @Test
@@ -458,7 +476,7 @@ public class GoogleMediaExporterTest {
     when(photosInterface.getMediaItem(mediaItemID)).thenThrow(IOException.class);
 
     long start = System.currentTimeMillis();
-    assertThat(retryingGoogleMediaExporter.getGoogleMediaItem(mediaItemID, mediaItemID, mediaItemID, authData)).isNull();
+    assertThat(retryingGoogleMediaExporter.getGoogleMediaItem(uuid, mediaItemID, mediaItemID, mediaItemID, authData)).isNull();
     long end = System.currentTimeMillis();
 
     // If retrying occurred, then the retry_interval must have been waited at least max_attempts
@@ -469,7 +487,7 @@ public class GoogleMediaExporterTest {
 
 
     start = System.currentTimeMillis();
-    assertThrows(IOException.class, () -> googleMediaExporter.getGoogleMediaItem(mediaItemID, mediaItemID, mediaItemID, authData));
+    assertThrows(IOException.class, () -> googleMediaExporter.getGoogleMediaItem(uuid, mediaItemID, mediaItemID, mediaItemID, authData));
     end = System.currentTimeMillis();
 
     assertThat(end - start).isLessThan(RETRY_INTERVAL_MILLIS * RETRY_MAX_ATTEMPTS);
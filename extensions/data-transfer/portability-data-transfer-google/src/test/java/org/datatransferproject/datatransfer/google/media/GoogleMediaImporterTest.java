@@ -22,6 +22,7 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.atMostOnce;
@@ -47,11 +48,13 @@ import org.datatransferproject.datatransfer.google.mediaModels.Status;
 import org.datatransferproject.datatransfer.google.photos.GooglePhotosInterface;
 import org.datatransferproject.spi.cloud.connection.ConnectionProvider;
 import org.datatransferproject.spi.cloud.storage.JobStore;
+import org.datatransferproject.spi.cloud.storage.JobTempFileManager;
 import org.datatransferproject.spi.cloud.storage.TemporaryPerJobDataStore;
 import org.datatransferproject.spi.cloud.storage.TemporaryPerJobDataStore.InputStreamWrapper;
 import org.datatransferproject.spi.cloud.types.PortabilityJob;
 import org.datatransferproject.spi.transfer.idempotentexecutor.IdempotentImportExecutor;
 import org.datatransferproject.spi.transfer.idempotentexecutor.InMemoryIdempotentImportExecutor;
+import org.datatransferproject.spi.transfer.prefetch.DownloadPrefetcher;
 import org.datatransferproject.spi.transfer.types.InvalidTokenException;
 import org.datatransferproject.spi.transfer.types.PermissionDeniedException;
 import org.datatransferproject.spi.transfer.types.UploadErrorException;
@@ -110,12 +113,14 @@ public class GoogleMediaImporterTest {
         new GoogleMediaImporter(
             null,  /*credentialFactory*/
             jobStore,
+            mock(JobTempFileManager.class),
             null,  /*jsonFactory*/
             new HashMap<>(),  /*photosInterfacesMap*/
             new HashMap<>(), /*photosLibraryClientMap*/
             appCredentials,
             googlePhotosInterface,
             connectionProvider,
+            new DownloadPrefetcher(0, 0),
             monitor,
             1.0  /*writesPerSecond*/);
   }
@@ -154,7 +159,8 @@ public class GoogleMediaImporterTest {
             OLD_ALBUM_ID,
             false,
             SHA1);
-    Mockito.when(googlePhotosInterface.uploadMediaContent(any(), eq(SHA1))).thenReturn("token1");
+    Mockito.when(googlePhotosInterface.uploadMediaContent(any(), any(), anyLong(), eq(SHA1)))
+        .thenReturn("token1");
 
     PhotoModel photoModel2 =
         new PhotoModel(
@@ -165,7 +171,7 @@ public class GoogleMediaImporterTest {
             "oldPhotoID2",
             OLD_ALBUM_ID,
             false);
-    Mockito.when(googlePhotosInterface.uploadMediaContent(any(), eq(null)))
+    Mockito.when(googlePhotosInterface.uploadMediaContent(any(), any(), anyLong(), eq(null)))
         .thenReturn("token2");
 
     BatchMediaItemResponse batchMediaItemResponse =
@@ -220,7 +226,7 @@ public class GoogleMediaImporterTest {
             OLD_ALBUM_ID,
             false);
 
-    Mockito.when(googlePhotosInterface.uploadMediaContent(any(), eq(null)))
+    Mockito.when(googlePhotosInterface.uploadMediaContent(any(), any(), anyLong(), eq(null)))
         .thenReturn("token1", "token2");
     BatchMediaItemResponse batchMediaItemResponse =
         new BatchMediaItemResponse(
@@ -258,7 +264,7 @@ public class GoogleMediaImporterTest {
             false,
             SHA1);
 
-    Mockito.when(googlePhotosInterface.uploadMediaContent(any(), eq(SHA1)))
+    Mockito.when(googlePhotosInterface.uploadMediaContent(any(), any(), anyLong(), eq(SHA1)))
         .thenThrow(new UploadErrorException("Hash mismatch will be thrown", new Throwable()));
     BatchMediaItemResponse batchMediaItemResponse = new BatchMediaItemResponse(
         new NewMediaItemResult[]{});
@@ -302,12 +308,14 @@ public class GoogleMediaImporterTest {
         new GoogleMediaImporter(
             null,  /*credentialFactory*/
             jobStore,
+            mock(JobTempFileManager.class),
             null,  /*jsonFactory*/
             new HashMap<>(),  /*photosInterfacesMap*/
             new HashMap<>(),  /*photosLibraryClientMap*/
             appCredentials,
             googlePhotosInterface,
             connectionProvider,
+            new DownloadPrefetcher(0, 0),
             monitor,
             1.0  /*writesPerSecond*/);
 
@@ -340,12 +348,14 @@ public class GoogleMediaImporterTest {
         new GoogleMediaImporter(
             null,  /*credentialFactory*/
             jobStore,
+            mock(JobTempFileManager.class),
             null,  /*jsonFactory*/
             new HashMap<>(),  /*photosInterfacesMap*/
             new HashMap<>(),  /*photosLibraryClientMap*/
             appCredentials,
             googlePhotosInterface,
             connectionProvider,
+            new DownloadPrefetcher(0, 0),
             monitor,
             1.0  /*writesPerSecond*/);
 
@@ -366,7 +376,8 @@ public class GoogleMediaImporterTest {
             OLD_ALBUM_ID,
             true);
 
-    Mockito.when(googlePhotosInterface.uploadMediaContent(any(), eq(null))).thenReturn("token1");
+    Mockito.when(googlePhotosInterface.uploadMediaContent(any(), any(), anyLong(), eq(null)))
+        .thenReturn("token1");
     PhotosLibraryClient photosLibraryClient = mock(PhotosLibraryClient.class);
     JobStore jobStore = mock(LocalJobStore.class);
     Mockito.when(jobStore.getStream(any(), any()))
@@ -380,12 +391,14 @@ public class GoogleMediaImporterTest {
         new GoogleMediaImporter(
             null,  /*credentialFactory*/
             jobStore,
+            mock(JobTempFileManager.class),
             null,  /*jsonFactory*/
             new HashMap<>(),  /*photosInterfacesMap*/
             new HashMap<>(),  /*photosLibraryClientMap*/
             appCredentials,
             googlePhotosInterface,
             connectionProvider,
+            new DownloadPrefetcher(0, 0),
             monitor,
             1.0  /*writesPerSecond*/);
 
@@ -417,7 +430,7 @@ public class GoogleMediaImporterTest {
             OLD_ALBUM_ID,
             true);
 
-    Mockito.when(googlePhotosInterface.uploadMediaContent(any(), eq(null)))
+    Mockito.when(googlePhotosInterface.uploadMediaContent(any(), any(), anyLong(), eq(null)))
         .thenThrow(new IOException("Unit Testing"));
     PhotosLibraryClient photosLibraryClient = mock(PhotosLibraryClient.class);
     JobStore jobStore = mock(LocalJobStore.class);
@@ -432,12 +445,14 @@ public class GoogleMediaImporterTest {
         new GoogleMediaImporter(
             null,  /*credentialFactory*/
             jobStore,
+            mock(JobTempFileManager.class),
             null,  /*jsonFactory*/
             new HashMap<>(),  /*photosInterfacesMap*/
             new HashMap<>(),  /*photosLibraryClientMap*/
             appCredentials,
             googlePhotosInterface,
             connectionProvider,
+            new DownloadPrefetcher(0, 0),
             monitor,
             1.0  /*writesPerSecond*/);
 
@@ -468,7 +483,7 @@ public class GoogleMediaImporterTest {
             OLD_ALBUM_ID,
             true);
 
-    Mockito.when(googlePhotosInterface.uploadMediaContent(any(), eq(null)))
+    Mockito.when(googlePhotosInterface.uploadMediaContent(any(), any(), anyLong(), eq(null)))
         .thenReturn("token1", "token2");
     PhotosLibraryClient photosLibraryClient = mock(PhotosLibraryClient.class);
     JobStore jobStore = mock(LocalJobStore.class);
@@ -480,12 +495,14 @@ public class GoogleMediaImporterTest {
         new GoogleMediaImporter(
             null,  /*credentialFactory*/
             jobStore,
+            mock(JobTempFileManager.class),
             null,  /*jsonFactory*/
             new HashMap<>(),  /*photosInterfacesMap*/
             new HashMap<>(),  /*photosLibraryClientMap*/
             appCredentials,
             googlePhotosInterface,
             connectionProvider,
+            new DownloadPrefetcher(0, 0),
             monitor,
             1.0  /*writesPerSecond*/);
     Mockito.when(googlePhotosInterface.createPhotos(any(NewMediaItemUpload.class)))
@@ -513,7 +530,7 @@ public class GoogleMediaImporterTest {
             OLD_ALBUM_ID,
             true);
 
-    Mockito.when(googlePhotosInterface.uploadMediaContent(any(), eq(null)))
+    Mockito.when(googlePhotosInterface.uploadMediaContent(any(), any(), anyLong(), eq(null)))
         .thenReturn("token1", "token2");
     PhotosLibraryClient photosLibraryClient = mock(PhotosLibraryClient.class);
     JobStore jobStore = mock(LocalJobStore.class);
@@ -525,12 +542,14 @@ public class GoogleMediaImporterTest {
         new GoogleMediaImporter(
             null,  /*credentialFactory*/
             jobStore,
+            mock(JobTempFileManager.class),
             null,  /*jsonFactory*/
             new HashMap<>(),  /*photosInterfacesMap*/
             new HashMap<>(),  /*photosLibraryClientMap*/
             appCredentials,
             googlePhotosInterface,
             connectionProvider,
+            new DownloadPrefetcher(0, 0),
             monitor,
             1.0  /*writesPerSecond*/);
 
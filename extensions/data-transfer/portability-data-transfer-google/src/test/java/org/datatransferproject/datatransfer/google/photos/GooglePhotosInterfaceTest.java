@@ -0,0 +1,253 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.datatransferproject.datatransfer.google.photos;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.api.client.auth.oauth2.BearerToken;
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.datatransferproject.api.launcher.Monitor;
+import org.datatransferproject.datatransfer.google.common.GoogleCredentialFactory;
+import org.datatransferproject.datatransfer.google.mediaModels.AlbumListResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class GooglePhotosInterfaceTest {
+
+  private static final String SESSION_URL = "https://photoslibrary.googleapis.com/upload?id=1";
+
+  private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+  private final List<String> commands = new ArrayList<>();
+  private byte[] media;
+  private int brokenChunks;
+  private GooglePhotosInterface photosInterface;
+
+  @BeforeEach
+  public void setUp() {
+    media = new byte[(int) GooglePhotosInterface.RESUMABLE_UPLOAD_THRESHOLD + 1_000_000];
+    new Random(1).nextBytes(media);
+    Credential credential =
+        new Credential(BearerToken.authorizationHeaderAccessMethod()).setAccessToken("token");
+    photosInterface =
+        new GooglePhotosInterface(
+            mock(GoogleCredentialFactory.class),
+            credential,
+            null,
+            mock(Monitor.class),
+            100,
+            new UploadTransport());
+  }
+
+  @Test
+  public void largeMediaIsUploadedInChunks() throws Exception {
+    String uploadToken =
+        photosInterface.uploadMediaContent(
+            "photo", new ByteArrayInputStream(media), media.length, null);
+
+    assertThat(uploadToken).isEqualTo("upload-token");
+    assertThat(received.toByteArray()).isEqualTo(media);
+    assertThat(commands)
+        .containsExactly("start", "upload", "upload", "upload, finalize")
+        .inOrder();
+  }
+
+  @Test
+  public void brokenChunksAreSentAgainFromTheLastByteReceived() throws Exception {
+    brokenChunks = 1;
+
+    String uploadToken =
+        photosInterface.uploadMediaContent(
+            "photo", new ByteArrayInputStream(media), media.length, null);
+
+    assertThat(uploadToken).isEqualTo("upload-token");
+    assertThat(received.toByteArray()).isEqualTo(media);
+    assertThat(commands).contains("query");
+  }
+
+  @Test
+  public void uploadsOfTheSameKeyResumeTheirSession() throws Exception {
+    InputStream brokenSource =
+        new SequenceInputStream(
+            new ByteArrayInputStream(media, 0, media.length / 2),
+            new InputStream() {
+              @Override
+              public int read() throws IOException {
+                throw new IOException("Download failed");
+              }
+            });
+    assertThrows(
+        IOException.class,
+        () -> photosInterface.uploadMediaContent("photo", brokenSource, media.length, null));
+
+    String uploadToken =
+        photosInterface.uploadMediaContent(
+            "photo", new ByteArrayInputStream(media), media.length, null);
+
+    assertThat(uploadToken).isEqualTo("upload-token");
+    assertThat(received.toByteArray()).isEqualTo(media);
+    assertThat(commands.stream().filter("start"::equals).count()).isEqualTo(1L);
+  }
+
+  @Test
+  public void streamedUploadRefreshesAnExpiringToken() throws Exception {
+    Credential credential =
+        new Credential(BearerToken.authorizationHeaderAccessMethod())
+            .setAccessToken("expiring")
+            .setExpiresInSeconds(60L);
+    GoogleCredentialFactory credentialFactory = mock(GoogleCredentialFactory.class);
+    when(credentialFactory.refreshCredential(credential))
+        .thenAnswer(
+            invocation -> credential.setAccessToken("refreshed").setExpiresInSeconds(3600L));
+    List<String> urls = new ArrayList<>();
+    MockHttpTransport transport =
+        new MockHttpTransport() {
+          @Override
+          public LowLevelHttpRequest buildRequest(String method, String url) {
+            urls.add(url);
+            return new MockLowLevelHttpRequest(url)
+                .setResponse(new MockLowLevelHttpResponse().setContent("upload-token"));
+          }
+        };
+    GooglePhotosInterface streamingInterface =
+        new GooglePhotosInterface(
+            credentialFactory, credential, null, mock(Monitor.class), 100, transport);
+
+    String uploadToken =
+        streamingInterface.uploadMediaContent(
+            "photo", new ByteArrayInputStream(new byte[100]), 100, null);
+
+    assertThat(uploadToken).isEqualTo("upload-token");
+    assertThat(urls).hasSize(1);
+    assertThat(urls.get(0)).contains("access_token=refreshed");
+  }
+
+  @Test
+  public void concurrentUnauthorizedRequestsRefreshTheTokenOnce() throws Exception {
+    Credential credential =
+        new Credential(BearerToken.authorizationHeaderAccessMethod()).setAccessToken("expired");
+    GoogleCredentialFactory credentialFactory = mock(GoogleCredentialFactory.class);
+    AtomicInteger refreshes = new AtomicInteger();
+    when(credentialFactory.refreshCredential(credential))
+        .thenAnswer(
+            invocation -> {
+              refreshes.incrementAndGet();
+              return credential.setAccessToken("refreshed");
+            });
+    CountDownLatch unauthorized = new CountDownLatch(2);
+    MockHttpTransport transport =
+        new MockHttpTransport() {
+          @Override
+          public LowLevelHttpRequest buildRequest(String method, String url) {
+            return new MockLowLevelHttpRequest(url) {
+              @Override
+              public LowLevelHttpResponse execute() throws IOException {
+                if (url.contains("access_token=expired")) {
+                  // Both requests fail before either refreshes the token
+                  unauthorized.countDown();
+                  try {
+                    unauthorized.await(5, TimeUnit.SECONDS);
+                  } catch (InterruptedException e) {
+                    throw new IOException(e);
+                  }
+                  return new MockLowLevelHttpResponse().setStatusCode(401);
+                }
+                return new MockLowLevelHttpResponse().setContent("{}");
+              }
+            };
+          }
+        };
+    GooglePhotosInterface concurrentInterface =
+        new GooglePhotosInterface(
+            credentialFactory, credential, null, mock(Monitor.class), 100, transport);
+    ExecutorService threads = Executors.newFixedThreadPool(2);
+
+    List<Future<AlbumListResponse>> responses = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      responses.add(threads.submit(() -> concurrentInterface.listAlbums(Optional.empty())));
+    }
+    for (Future<AlbumListResponse> response : responses) {
+      assertThat(response.get()).isNotNull();
+    }
+    threads.shutdown();
+
+    assertThat(refreshes.get()).isEqualTo(1);
+  }
+
+  /** Follows the resumable upload protocol of Google Photos. */
+  private class UploadTransport extends MockHttpTransport {
+    @Override
+    public LowLevelHttpRequest buildRequest(String method, String url) {
+      return new MockLowLevelHttpRequest(url) {
+        @Override
+        public LowLevelHttpResponse execute() throws IOException {
+          String command = getFirstHeaderValue("X-Goog-Upload-Command");
+          commands.add(command);
+          MockLowLevelHttpResponse response = new MockLowLevelHttpResponse();
+          if (command.equals("start")) {
+            assertThat(getFirstHeaderValue("X-Goog-Upload-Raw-Size"))
+                .isEqualTo(Integer.toString(media.length));
+            return response
+                .addHeader("X-Goog-Upload-URL", SESSION_URL)
+                .addHeader("X-Goog-Upload-Chunk-Granularity", "262144");
+          }
+          assertThat(getUrl()).startsWith(SESSION_URL + "&access_token=token");
+          if (command.equals("query")) {
+            return response
+                .addHeader("X-Goog-Upload-Status", "active")
+                .addHeader("X-Goog-Upload-Size-Received", Integer.toString(received.size()));
+          }
+          assertThat(getFirstHeaderValue("X-Goog-Upload-Offset"))
+              .isEqualTo(Integer.toString(received.size()));
+          ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+          getStreamingContent().writeTo(chunk);
+          if (brokenChunks > 0 && received.size() > 0) {
+            brokenChunks--;
+            received.write(chunk.toByteArray(), 0, 1000);
+            throw new IOException("Connection reset");
+          }
+          chunk.writeTo(received);
+          return command.equals("upload, finalize")
+              ? response.setContent("upload-token")
+              : response;
+        }
+      };
+    }
+  }
+}
@@ -52,6 +52,7 @@ import java.util.Map;
 import java.util.UUID;
 import org.datatransferproject.api.launcher.Monitor;
 import org.datatransferproject.spi.cloud.connection.ConnectionProvider;
+import org.datatransferproject.spi.cloud.storage.JobTempFileManager;
 import org.datatransferproject.spi.cloud.storage.TemporaryPerJobDataStore;
 import org.datatransferproject.spi.cloud.storage.TemporaryPerJobDataStore.InputStreamWrapper;
 import org.datatransferproject.spi.transfer.idempotentexecutor.InMemoryIdempotentImportExecutor;
@@ -81,6 +82,7 @@ public class GoogleVideosImporterTest {
 
   private GoogleVideosImporter googleVideosImporter;
   private TemporaryPerJobDataStore dataStore;
+  private JobTempFileManager tempFiles;
   private ConnectionProvider connectionProvider;
   private PhotosLibraryClient client;
   private UUID jobId;
@@ -96,7 +98,8 @@ public class GoogleVideosImporterTest {
     Files.write(new byte[32], file1);
     File file2 = folder.newFile();
     Files.write(new byte[32], file2);
-    when(dataStore.getTempFileFromInputStream(any(), any(), any())).thenReturn(file1, file2);
+    tempFiles = mock(JobTempFileManager.class);
+    when(tempFiles.createTempFile(any(), any(), any(), any())).thenReturn(file1, file2);
 
     when(dataStore.getStream(any(), anyString())).thenReturn(
         new TemporaryPerJobDataStore.InputStreamWrapper(
@@ -110,7 +113,12 @@ public class GoogleVideosImporterTest {
     jobId = UUID.randomUUID();
     googleVideosImporter =
         new GoogleVideosImporter(
-            null, dataStore, mock(Monitor.class), connectionProvider, Map.of(jobId, client));
+            null,
+            dataStore,
+            tempFiles,
+            mock(Monitor.class),
+            connectionProvider,
+            Map.of(jobId, client));
   }
 
   @Test
@@ -244,6 +252,7 @@ public class GoogleVideosImporterTest {
                     false,
                     null)),
             dataStore,
+            tempFiles,
             photosLibraryClient,
             executor,
             connectionProvider,
@@ -280,6 +289,7 @@ public class GoogleVideosImporterTest {
                     false,
                     null)),
             dataStore,
+            tempFiles,
             photosLibraryClient,
             executor,
             connectionProvider,
@@ -356,6 +366,7 @@ public class GoogleVideosImporterTest {
                     true,
                     null)),
             dataStore,
+            tempFiles,
             photosLibraryClient,
             executor,
             connectionProvider,
@@ -376,7 +387,12 @@ public class GoogleVideosImporterTest {
     ConnectionProvider connectionProvider = new ConnectionProvider(dataStore);
     GoogleVideosImporter googleVideosImporter =
         new GoogleVideosImporter(
-            null, dataStore, mock(Monitor.class), connectionProvider, Map.of(jobId, client));
+            null,
+            dataStore,
+            tempFiles,
+            mock(Monitor.class),
+            connectionProvider,
+            Map.of(jobId, client));
     uploadBatchOfVideos(jobId,
         Lists.newArrayList(
             new VideoModel(
@@ -389,6 +405,7 @@ public class GoogleVideosImporterTest {
                 true,
                 null)),
         dataStore,
+        tempFiles,
         mock(PhotosLibraryClient.class),
         executor,
         connectionProvider,
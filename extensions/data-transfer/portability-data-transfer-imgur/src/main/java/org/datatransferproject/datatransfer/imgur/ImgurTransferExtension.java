@@ -27,6 +27,7 @@ import org.datatransferproject.api.launcher.ExtensionContext;
 import org.datatransferproject.api.launcher.Monitor;
 import org.datatransferproject.datatransfer.imgur.photos.ImgurPhotosExporter;
 import org.datatransferproject.datatransfer.imgur.photos.ImgurPhotosImporter;
+import org.datatransferproject.spi.cloud.storage.JobMediaCache;
 import org.datatransferproject.spi.cloud.storage.TemporaryPerJobDataStore;
 import org.datatransferproject.types.common.models.DataVertical;
 import org.datatransferproject.spi.transfer.extension.TransferExtension;
@@ -58,7 +59,9 @@ public class ImgurTransferExtension implements TransferExtension {
     OkHttpClient client = context.getService(OkHttpClient.class);
     TemporaryPerJobDataStore jobStore = context.getService(TemporaryPerJobDataStore.class);
 
-    exporter = new ImgurPhotosExporter(monitor, client, mapper, jobStore, BASE_URL);
+    exporter =
+        new ImgurPhotosExporter(
+            monitor, client, mapper, jobStore, context.getService(JobMediaCache.class), BASE_URL);
     importer = new ImgurPhotosImporter(monitor, client, mapper, jobStore, BASE_URL);
 
     initialized = true;
@@ -26,6 +26,7 @@ import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
 import org.datatransferproject.api.launcher.Monitor;
+import org.datatransferproject.spi.cloud.storage.JobMediaCache;
 import org.datatransferproject.spi.cloud.storage.TemporaryPerJobDataStore;
 import org.datatransferproject.spi.transfer.provider.ExportResult;
 import org.datatransferproject.spi.transfer.provider.Exporter;
@@ -69,6 +70,7 @@ public class ImgurPhotosExporter
   private final ObjectMapper objectMapper;
   private final Monitor monitor;
   private final TemporaryPerJobDataStore jobStore;
+  private final JobMediaCache mediaCache;
 
   private Function<String, URL> urlFactory;
 
@@ -77,8 +79,9 @@ public class ImgurPhotosExporter
       OkHttpClient client,
       ObjectMapper objectMapper,
       TemporaryPerJobDataStore jobStore,
+      JobMediaCache mediaCache,
       String baseUrl) {
-    this(monitor, client, objectMapper, jobStore, baseUrl, (url) -> {
+    this(monitor, client, objectMapper, jobStore, mediaCache, baseUrl, (url) -> {
       try {
         return new URL(url);
       } catch (MalformedURLException e) {
@@ -93,12 +96,14 @@ public class ImgurPhotosExporter
       OkHttpClient client,
       ObjectMapper objectMapper,
       TemporaryPerJobDataStore jobStore,
+      JobMediaCache mediaCache,
       String baseUrl,
       Function<String, URL> urlFactory) {
     this.client = client;
     this.objectMapper = objectMapper;
     this.monitor = monitor;
     this.jobStore = jobStore;
+    this.mediaCache = mediaCache;
     this.urlFactory = urlFactory;
     ALBUM_PHOTOS_URL_TEMPLATE = baseUrl + "/album/%s/images";
     ALBUMS_URL_TEMPLATE = baseUrl + "/account/me/albums/%s?perPage=" + RESULTS_PER_PAGE;
@@ -225,8 +230,12 @@ public class ImgurPhotosExporter
               true);
       photos.add(photoModel);
 
-      InputStream inputStream = getImageAsStream(photoModel.getFetchableUrl());
-      jobStore.create(jobId, photoModel.getFetchableUrl(), inputStream);
+      // A photo in several albums is only downloaded once
+      mediaCache.stageOnce(
+          jobStore,
+          jobId,
+          photoModel.getFetchableUrl(),
+          () -> getImageAsStream(photoModel.getFetchableUrl()));
 
       // Save id of each album photo for finding non-album photos later
       albumPhotos.add((String) item.get("id"));
@@ -279,8 +288,11 @@ public class ImgurPhotosExporter
                 true);
         photos.add(photoModel);
 
-        InputStream inputStream = getImageAsStream(photoModel.getFetchableUrl());
-        jobStore.create(jobId, photoModel.getFetchableUrl(), inputStream);
+        mediaCache.stageOnce(
+            jobStore,
+            jobId,
+            photoModel.getFetchableUrl(),
+            () -> getImageAsStream(photoModel.getFetchableUrl()));
       }
     }
 
@@ -38,6 +38,7 @@ import java.util.UUID;
 import okhttp3.OkHttpClient;
 import org.datatransferproject.api.launcher.Monitor;
 import org.datatransferproject.datatransfer.imgur.photos.ImgurPhotosExporter;
+import org.datatransferproject.spi.cloud.storage.JobMediaCache;
 import org.datatransferproject.spi.cloud.storage.JobStore;
 import org.datatransferproject.spi.transfer.provider.ExportResult;
 import org.datatransferproject.types.common.ExportInformation;
@@ -108,7 +109,8 @@ public class ImgurPhotoExporterTest {
     server = new MockWebServer();
     server.start();
     exporter =
-        new ImgurPhotosExporter(monitor, client, mapper, jobStore, server.url("").toString(),
+        new ImgurPhotosExporter(monitor, client, mapper, jobStore, new JobMediaCache(false),
+            server.url("").toString(),
             (urlString) -> {
               URL u = null;
               try {
@@ -15,10 +15,12 @@ import java.util.concurrent.TimeUnit;
 import okhttp3.OkHttpClient;
 import org.datatransferproject.api.launcher.ExtensionContext;
 import org.datatransferproject.api.launcher.Monitor;
+import org.datatransferproject.spi.cloud.connection.ConnectionProvider;
 import org.datatransferproject.spi.cloud.storage.AppCredentialStore;
 import org.datatransferproject.spi.cloud.storage.JobStore;
 import org.datatransferproject.types.common.models.DataVertical;
 import org.datatransferproject.spi.transfer.extension.TransferExtension;
+import org.datatransferproject.spi.transfer.prefetch.DownloadPrefetcher;
 import org.datatransferproject.spi.transfer.provider.Exporter;
 import org.datatransferproject.spi.transfer.provider.Importer;
 import org.datatransferproject.transfer.koofr.common.KoofrClientFactory;
@@ -116,8 +118,17 @@ public class KoofrTransferExtension implements TransferExtension {
             BASE_API_URL, client, fileUploadClient, mapper, monitor, credentialFactory);
 
     ImmutableMap.Builder<DataVertical, Importer> importBuilder = ImmutableMap.builder();
-    importBuilder.put(PHOTOS, new KoofrPhotosImporter(koofrClientFactory, monitor, jobStore));
-    importBuilder.put(VIDEOS, new KoofrVideosImporter(koofrClientFactory, monitor, jobStore));
+    ConnectionProvider connectionProvider = context.getService(ConnectionProvider.class);
+    importBuilder.put(
+        PHOTOS,
+        new KoofrPhotosImporter(
+            koofrClientFactory,
+            monitor,
+            jobStore,
+            connectionProvider,
+            context.getService(DownloadPrefetcher.class)));
+    importBuilder.put(
+        VIDEOS, new KoofrVideosImporter(koofrClientFactory, monitor, connectionProvider));
     importerMap = importBuilder.build();
 
     ImmutableMap.Builder<DataVertical, Exporter> exportBuilder = ImmutableMap.builder();
@@ -21,9 +21,11 @@ import java.io.InputStream;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.TimeZone;
 import java.util.UUID;
 import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
 
 import org.apache.commons.imaging.Imaging;
 import org.apache.commons.imaging.common.ImageMetadata;
@@ -37,6 +39,9 @@ import org.datatransferproject.spi.cloud.storage.JobStore;
 import org.datatransferproject.spi.cloud.storage.TemporaryPerJobDataStore.InputStreamWrapper;
 import org.datatransferproject.spi.transfer.idempotentexecutor.IdempotentImportExecutor;
 import org.datatransferproject.spi.transfer.idempotentexecutor.ItemImportResult;
+import org.datatransferproject.spi.transfer.prefetch.DownloadPrefetcher;
+import org.datatransferproject.spi.transfer.prefetch.DownloadPrefetcher.Downloaded;
+import org.datatransferproject.spi.transfer.prefetch.DownloadPrefetcher.Prefetch;
 import org.datatransferproject.spi.transfer.provider.ImportResult;
 import org.datatransferproject.spi.transfer.provider.Importer;
 import org.datatransferproject.spi.transfer.types.DestinationMemoryFullException;
@@ -61,6 +66,7 @@ public class KoofrPhotosImporter
   private final KoofrClientFactory koofrClientFactory;
   private final JobStore jobStore;
   private final ConnectionProvider connectionProvider;
+  private final DownloadPrefetcher prefetcher;
   private final Monitor monitor;
   private final KoofrTransmogrificationConfig transmogrificationConfig =
       new KoofrTransmogrificationConfig();
@@ -70,9 +76,14 @@ public class KoofrPhotosImporter
   private volatile HashMap<UUID, SimpleDateFormat> titleDateFormats = new HashMap<>();
 
   public KoofrPhotosImporter(
-      KoofrClientFactory koofrClientFactory, Monitor monitor, JobStore jobStore) {
+      KoofrClientFactory koofrClientFactory,
+      Monitor monitor,
+      JobStore jobStore,
+      ConnectionProvider connectionProvider,
+      DownloadPrefetcher prefetcher) {
     this.koofrClientFactory = koofrClientFactory;
-    this.connectionProvider = new ConnectionProvider(jobStore);
+    this.connectionProvider = connectionProvider;
+    this.prefetcher = prefetcher;
     this.monitor = monitor;
     this.jobStore = jobStore;
   }
@@ -106,17 +117,25 @@ public class KoofrPhotosImporter
     }
 
     final LongAdder totalImportedFilesSizes = new LongAdder();
-    for (PhotoModel photoModel : resource.getPhotos()) {
-      idempotentImportExecutor.importAndSwallowIOExceptions(
-          photoModel,
-          photo -> {
-            ItemImportResult<String> fileImportResult =
-                importSinglePhoto(photoModel, jobId, idempotentImportExecutor, koofrClient);
-            if (fileImportResult != null && fileImportResult.hasBytes()) {
-              totalImportedFilesSizes.add(fileImportResult.getBytes());
-            }
-            return fileImportResult;
-          });
+    List<PhotoModel> photosToImport =
+        resource.getPhotos().stream()
+            .filter(photo -> !idempotentImportExecutor.isKeyCached(photo.getIdempotentId()))
+            .collect(Collectors.toList());
+    try (Prefetch<PhotoModel> prefetch =
+        prefetcher.prefetch(jobId, photosToImport, photo -> download(jobId, photo))) {
+      for (PhotoModel photoModel : resource.getPhotos()) {
+        idempotentImportExecutor.importAndSwallowIOExceptions(
+            photoModel,
+            photo -> {
+              ItemImportResult<String> fileImportResult =
+                  importSinglePhoto(
+                      photoModel, jobId, idempotentImportExecutor, koofrClient, prefetch);
+              if (fileImportResult != null && fileImportResult.hasBytes()) {
+                totalImportedFilesSizes.add(fileImportResult.getBytes());
+              }
+              return fileImportResult;
+            });
+      }
     }
     return ImportResult.OK.copyWithBytes(totalImportedFilesSizes.longValue());
   }
@@ -145,13 +164,13 @@ public class KoofrPhotosImporter
       PhotoModel photo,
       UUID jobId,
       IdempotentImportExecutor idempotentImportExecutor,
-      KoofrClient koofrClient)
+      KoofrClient koofrClient,
+      Prefetch<PhotoModel> prefetch)
       throws IOException, InvalidTokenException, DestinationMemoryFullException {
     monitor.debug(() -> String.format("Import single photo %s", photo.getTitle()));
     Long size = null;
     try {
-      InputStreamWrapper inputStreamWrapper =
-          connectionProvider.getInputStreamForItem(jobId, photo);
+      Downloaded inputStreamWrapper = prefetch.open(photo);
       ItemImportResult<String> response;
 
       try (InputStream inputStream = inputStreamWrapper.getStream()) {
@@ -227,6 +246,11 @@ public class KoofrPhotosImporter
     }
   }
 
+  private Downloaded download(UUID jobId, PhotoModel photo) throws IOException {
+    InputStreamWrapper inputStreamWrapper = connectionProvider.getInputStreamForItem(jobId, photo);
+    return new Downloaded(inputStreamWrapper.getStream(), inputStreamWrapper.getBytes());
+  }
+
   private String buildPhotoTitle(UUID jobId, String originalTitle, Date dateCreated) {
     if (dateCreated == null) {
       return originalTitle;
@@ -23,7 +23,6 @@ import java.util.concurrent.atomic.LongAdder;
 
 import org.datatransferproject.api.launcher.Monitor;
 import org.datatransferproject.spi.cloud.connection.ConnectionProvider;
-import org.datatransferproject.spi.cloud.storage.JobStore;
 import org.datatransferproject.spi.cloud.storage.TemporaryPerJobDataStore.InputStreamWrapper;
 import org.datatransferproject.spi.transfer.idempotentexecutor.IdempotentImportExecutor;
 import org.datatransferproject.spi.transfer.idempotentexecutor.ItemImportResult;
@@ -50,9 +49,11 @@ public class KoofrVideosImporter
   private final Monitor monitor;
 
   public KoofrVideosImporter(
-      KoofrClientFactory koofrClientFactory, Monitor monitor, JobStore jobStore) {
+      KoofrClientFactory koofrClientFactory,
+      Monitor monitor,
+      ConnectionProvider connectionProvider) {
     this.koofrClientFactory = koofrClientFactory;
-    this.connectionProvider = new ConnectionProvider(jobStore);
+    this.connectionProvider = connectionProvider;
     this.monitor = monitor;
   }
 
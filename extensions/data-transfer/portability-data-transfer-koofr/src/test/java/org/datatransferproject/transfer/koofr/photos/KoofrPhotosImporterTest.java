@@ -29,10 +29,12 @@ import okhttp3.mockwebserver.MockWebServer;
 import okio.Buffer;
 import org.apache.commons.io.IOUtils;
 import org.datatransferproject.api.launcher.Monitor;
+import org.datatransferproject.spi.cloud.connection.ConnectionProvider;
 import org.datatransferproject.spi.cloud.storage.JobStore;
 import org.datatransferproject.spi.cloud.storage.TemporaryPerJobDataStore.InputStreamWrapper;
 import org.datatransferproject.spi.cloud.types.PortabilityJob;
 import org.datatransferproject.spi.transfer.idempotentexecutor.IdempotentImportExecutor;
+import org.datatransferproject.spi.transfer.prefetch.DownloadPrefetcher;
 import org.datatransferproject.transfer.koofr.KoofrTransmogrificationConfig;
 import org.datatransferproject.transfer.koofr.common.KoofrClient;
 import org.datatransferproject.transfer.koofr.common.KoofrClientFactory;
@@ -77,7 +79,13 @@ public class KoofrPhotosImporterTest {
     monitor = mock(Monitor.class);
     jobStore = mock(JobStore.class);
 
-    importer = new KoofrPhotosImporter(clientFactory, monitor, jobStore);
+    importer =
+        new KoofrPhotosImporter(
+            clientFactory,
+            monitor,
+            jobStore,
+            new ConnectionProvider(jobStore),
+            new DownloadPrefetcher(0, 0));
 
     executor = mock(IdempotentImportExecutor.class);
     when(executor.executeAndSwallowIOExceptions(any(), any(), any()))
@@ -24,6 +24,7 @@ import org.datatransferproject.api.launcher.ExtensionContext;
 import org.datatransferproject.api.launcher.Monitor;
 import org.datatransferproject.api.launcher.TypeManager;
 import org.datatransferproject.spi.cloud.storage.AppCredentialStore;
+import org.datatransferproject.spi.cloud.storage.JobMediaCache;
 import org.datatransferproject.spi.cloud.storage.TemporaryPerJobDataStore;
 import org.datatransferproject.types.common.models.DataVertical;
 import org.datatransferproject.spi.transfer.extension.TransferExtension;
@@ -103,7 +104,9 @@ public class SmugMugTransferExtension implements TransferExtension {
 
     ObjectMapper mapper = context.getService(TypeManager.class).getMapper();
 
-    exporter = new SmugMugPhotosExporter(appCredentials, mapper, jobStore, monitor);
+    exporter =
+        new SmugMugPhotosExporter(
+            appCredentials, mapper, jobStore, context.getService(JobMediaCache.class), monitor);
 
     ImmutableMap.Builder<DataVertical, Importer> importerBuilder = ImmutableMap.builder();
 
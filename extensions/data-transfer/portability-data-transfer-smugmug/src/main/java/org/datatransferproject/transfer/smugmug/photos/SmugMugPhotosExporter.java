@@ -22,6 +22,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import org.datatransferproject.api.launcher.Monitor;
+import org.datatransferproject.spi.cloud.storage.JobMediaCache;
 import org.datatransferproject.spi.cloud.storage.TemporaryPerJobDataStore;
 import org.datatransferproject.spi.transfer.provider.ExportResult;
 import org.datatransferproject.spi.transfer.provider.ExportResult.ResultType;
@@ -42,7 +43,6 @@ import org.datatransferproject.types.transfer.auth.AppCredentials;
 import org.datatransferproject.types.transfer.auth.TokenSecretAuthData;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -57,6 +57,7 @@ public class SmugMugPhotosExporter
   private final AppCredentials appCredentials;
   private final ObjectMapper mapper;
   private final TemporaryPerJobDataStore jobStore;
+  private final JobMediaCache mediaCache;
   private final Monitor monitor;
 
   private SmugMugInterface smugMugInterface;
@@ -65,8 +66,9 @@ public class SmugMugPhotosExporter
       AppCredentials appCredentials,
       ObjectMapper mapper,
       TemporaryPerJobDataStore jobStore,
+      JobMediaCache mediaCache,
       Monitor monitor) {
-    this(null, appCredentials, mapper, jobStore, monitor);
+    this(null, appCredentials, mapper, jobStore, mediaCache, monitor);
   }
 
   @VisibleForTesting
@@ -75,11 +77,13 @@ public class SmugMugPhotosExporter
       AppCredentials appCredentials,
       ObjectMapper mapper,
       TemporaryPerJobDataStore jobStore,
+      JobMediaCache mediaCache,
       Monitor monitor) {
     this.appCredentials = appCredentials;
     this.smugMugInterface = smugMugInterface;
     this.mapper = mapper;
     this.jobStore = jobStore;
+    this.mediaCache = mediaCache;
     this.monitor = monitor;
   }
 
@@ -223,8 +227,12 @@ public class SmugMugPhotosExporter
               containerResource.getId(),
               true);
 
-      InputStream inputStream = smugMugInterface.getImageAsStream(model.getFetchableUrl());
-      jobStore.create(jobId, model.getFetchableUrl(), inputStream);
+      // An image in several albums is only downloaded once
+      mediaCache.stageOnce(
+          jobStore,
+          jobId,
+          model.getFetchableUrl(),
+          () -> smugMugInterface.getImageAsStream(model.getFetchableUrl()));
 
       photoList.add(model);
     }
@@ -1,9 +1,12 @@
 package org.datatransferproject.api.launcher;
 
+import java.util.function.Supplier;
+
 public interface JobAwareMonitor extends Monitor {
 
   /**
-   * Sets the jobId for the monitor, this will be included with all log messages.
+   * Sets where the monitor reads the jobId that is included with all log messages. The supplier is
+   * called on the logging thread and returns the job that thread is working on, or null if none.
    */
-  void setJobId(String jobId);
+  void setJobIdSupplier(Supplier<String> jobIdSupplier);
 }
@@ -49,10 +49,10 @@ public class MultiplexMonitor implements JobAwareMonitor {
   }
 
   @Override
-  public void setJobId(String jobId) {
+  public void setJobIdSupplier(Supplier<String> jobIdSupplier) {
     for (Monitor delegate : delegates) {
       if (delegate instanceof JobAwareMonitor) {
-        ((JobAwareMonitor) delegate).setJobId(jobId);
+        ((JobAwareMonitor) delegate).setJobIdSupplier(jobIdSupplier);
       }
     }
   }
@@ -103,11 +103,17 @@ public class SingleVMMain {
 
   private class WorkerRunner implements Runnable {
     public void run() {
+      // The worker is initialized once and then kept warm between jobs
+      WorkerMain workerMain = new WorkerMain();
+      try {
+        workerMain.initialize();
+      } catch (Exception e) {
+        errorCallback.accept(e);
+        return;
+      }
       //noinspection InfiniteLoopStatement
       while (true) {
         try {
-          WorkerMain workerMain = new WorkerMain();
-          workerMain.initialize();
           workerMain.poll();
         } catch (Exception e) {
           errorCallback.accept(e);
@@ -1,19 +1,75 @@
 package org.datatransferproject.spi.cloud.connection;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import org.datatransferproject.spi.cloud.storage.JobMediaCache;
+import org.datatransferproject.spi.cloud.storage.JobTempFileManager;
 import org.datatransferproject.spi.cloud.storage.TemporaryPerJobDataStore;
 import org.datatransferproject.spi.cloud.storage.TemporaryPerJobDataStore.InputStreamWrapper;
 import org.datatransferproject.types.common.DownloadableItem;
 
+/**
+ * Opens the items that importers download.
+ *
+ * <p>Connections are kept alive and reused through the connection pool of {@link
+ * HttpURLConnection}, which keeps up to {@code http.maxConnections} idle connections per host.
+ * Downloads that break are resumed with {@code Range} requests when the origin supports them, and
+ * large items can be downloaded as several ranges at once, see {@link
+ * Builder#segmentedDownloads}.
+ *
+ * <p>The worker registers a provider built from its settings as a service of its extension
+ * context. A provider created with {@link #ConnectionProvider(TemporaryPerJobDataStore)} uses the
+ * default timeouts and resumes, and downloads each item over a single connection.
+ */
 public class ConnectionProvider {
+  private static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(30);
+  private static final int DEFAULT_READ_TIMEOUT_MILLIS = (int) TimeUnit.MINUTES.toMillis(2);
+  private static final int DEFAULT_MAX_RESUMES = 5;
 
   private final TemporaryPerJobDataStore jobStore;
+  private final int connectTimeoutMillis;
+  private final int readTimeoutMillis;
+  private final int maxResumes;
+  // Null unless segmented downloads are set up
+  @Nullable private final SegmentedDownloader segmentedDownloader;
+  // Null unless downloads are staged in the job store
+  @Nullable private final JobMediaCache mediaCache;
+  private final Map<UUID, Map<String, HostMetrics>> jobMetrics = new ConcurrentHashMap<>();
 
   public ConnectionProvider(TemporaryPerJobDataStore jobStore) {
-    this.jobStore = jobStore;
+    this(Builder.newInstance(jobStore));
+  }
+
+  private ConnectionProvider(Builder builder) {
+    this.jobStore = builder.jobStore;
+    this.connectTimeoutMillis = builder.connectTimeoutMillis;
+    this.readTimeoutMillis = builder.readTimeoutMillis;
+    this.maxResumes = builder.maxResumes;
+    this.segmentedDownloader = builder.segmentedDownloader;
+    this.mediaCache = builder.mediaCache;
+  }
+
+  /**
+   * Forgets the connections of a job that has ended.
+   *
+   * @return the connections opened, bytes downloaded and downloads resumed by the job, per host
+   */
+  public Map<String, HostMetrics> releaseJob(UUID jobId) {
+    if (segmentedDownloader != null) {
+      segmentedDownloader.releaseJob(jobId);
+    }
+    Map<String, HostMetrics> metrics = jobMetrics.remove(jobId);
+    return metrics == null ? Collections.emptyMap() : Collections.unmodifiableMap(metrics);
   }
 
   public InputStreamWrapper getInputStreamForItem(UUID jobId, DownloadableItem item)
@@ -24,15 +80,146 @@ public class ConnectionProvider {
       return jobStore.getStream(jobId, fetchableUrl);
     }
 
-    HttpURLConnection conn = getConnection(fetchableUrl);
+    if (mediaCache != null && mediaCache.isCachingDownloads()) {
+      return mediaCache.getOrStage(
+          jobStore, jobId, item, () -> download(jobId, fetchableUrl).getStream());
+    }
+
+    return download(jobId, fetchableUrl);
+  }
+
+  /** Downloads {@code urlStr}, resuming the download if the connection breaks. */
+  @VisibleForTesting
+  InputStreamWrapper download(UUID jobId, String urlStr) throws IOException {
+    HostMetrics metrics = getMetrics(jobId, new URL(urlStr));
+    HttpURLConnection conn = openConnection(urlStr, metrics);
+    conn.connect();
+    if (segmentedDownloader != null) {
+      InputStreamWrapper segmented =
+          segmentedDownloader.tryDownload(this, jobId, urlStr, conn, metrics);
+      if (segmented != null) {
+        return segmented;
+      }
+    }
     return new InputStreamWrapper(
-        conn.getInputStream(), Math.max(conn.getContentLengthLong(), 0));
+        new ResumableInputStream(this, urlStr, conn, metrics, maxResumes),
+        Math.max(conn.getContentLengthLong(), 0));
   }
 
+  /** Connects to {@code urlStr} with the default timeouts. */
   public static HttpURLConnection getConnection(String urlStr) throws IOException {
-    URL url = new URL(urlStr);
-    HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+    HttpURLConnection conn = (HttpURLConnection) new URL(urlStr).openConnection();
+    conn.setConnectTimeout(DEFAULT_CONNECT_TIMEOUT_MILLIS);
+    conn.setReadTimeout(DEFAULT_READ_TIMEOUT_MILLIS);
     conn.connect();
     return conn;
   }
+
+  /** Creates a connection with the timeouts of this provider, which has yet to connect. */
+  HttpURLConnection openConnection(String urlStr, HostMetrics metrics) throws IOException {
+    HttpURLConnection conn = (HttpURLConnection) new URL(urlStr).openConnection();
+    conn.setConnectTimeout(connectTimeoutMillis);
+    conn.setReadTimeout(readTimeoutMillis);
+    metrics.connections.incrementAndGet();
+    return conn;
+  }
+
+  private HostMetrics getMetrics(UUID jobId, URL url) {
+    return jobMetrics
+        .computeIfAbsent(jobId, id -> new ConcurrentHashMap<>())
+        .computeIfAbsent(url.getHost(), host -> new HostMetrics());
+  }
+
+  /** Download metrics of a host. */
+  public static final class HostMetrics {
+    final AtomicLong connections = new AtomicLong();
+    final AtomicLong bytes = new AtomicLong();
+    final AtomicLong resumes = new AtomicLong();
+
+    /** Connections opened, including those reused from the pool. */
+    public long getConnections() {
+      return connections.get();
+    }
+
+    /** Bytes read from downloads. */
+    public long getBytes() {
+      return bytes.get();
+    }
+
+    /** Downloads resumed with a range request after their connection broke. */
+    public long getResumes() {
+      return resumes.get();
+    }
+  }
+
+  /**
+   * Builds a provider with other timeouts, resumes, segmented downloads or media cache than the
+   * defaults.
+   */
+  public static final class Builder {
+    private final TemporaryPerJobDataStore jobStore;
+    private int connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+    private int readTimeoutMillis = DEFAULT_READ_TIMEOUT_MILLIS;
+    private int maxResumes = DEFAULT_MAX_RESUMES;
+    private SegmentedDownloader segmentedDownloader;
+    private JobMediaCache mediaCache;
+
+    public static Builder newInstance(TemporaryPerJobDataStore jobStore) {
+      return new Builder(jobStore);
+    }
+
+    /**
+     * Sets the timeouts of every connection. The size of the connection pool is set with the
+     * {@code http.maxConnections} system property instead, which has to be set before the first
+     * connection of the JVM is opened.
+     */
+    public Builder timeouts(int connectTimeoutMillis, int readTimeoutMillis) {
+      Preconditions.checkArgument(connectTimeoutMillis >= 0, "connectTimeoutMillis is negative");
+      Preconditions.checkArgument(readTimeoutMillis >= 0, "readTimeoutMillis is negative");
+      this.connectTimeoutMillis = connectTimeoutMillis;
+      this.readTimeoutMillis = readTimeoutMillis;
+      return this;
+    }
+
+    /** Sets how many times a broken download is resumed. */
+    public Builder maxResumes(int maxResumes) {
+      Preconditions.checkArgument(maxResumes >= 0, "maxResumes is negative");
+      this.maxResumes = maxResumes;
+      return this;
+    }
+
+    /**
+     * Downloads items of at least {@code thresholdBytes} as {@code segments} ranges at once, with at
+     * most {@code connectionsPerJob} extra connections per job, into temp files of {@code
+     * tempFiles}. A threshold of 0 turns segmented downloads off.
+     */
+    public Builder segmentedDownloads(
+        JobTempFileManager tempFiles, long thresholdBytes, int segments, int connectionsPerJob) {
+      Preconditions.checkArgument(thresholdBytes >= 0, "thresholdBytes is negative");
+      Preconditions.checkArgument(segments > 0, "segments must be positive");
+      Preconditions.checkArgument(connectionsPerJob >= 0, "connectionsPerJob is negative");
+      this.segmentedDownloader =
+          thresholdBytes == 0 || segments == 1
+              ? null
+              : new SegmentedDownloader(tempFiles, thresholdBytes, segments, connectionsPerJob);
+      return this;
+    }
+
+    /**
+     * Stages the items that are downloaded through {@code mediaCache}, if it caches downloads, so
+     * that an item is only downloaded once per job.
+     */
+    public Builder mediaCache(JobMediaCache mediaCache) {
+      this.mediaCache = mediaCache;
+      return this;
+    }
+
+    public ConnectionProvider build() {
+      return new ConnectionProvider(this);
+    }
+
+    private Builder(TemporaryPerJobDataStore jobStore) {
+      this.jobStore = jobStore;
+    }
+  }
 }
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.datatransferproject.spi.cloud.connection;
+
+import static java.lang.String.format;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the body of a download, and when the connection breaks before the end of the body, carries
+ * on from where it stopped with a {@code Range} request, if the origin supports ranges.
+ *
+ * <p>The download is only resumed when the origin gave a validator, an {@code ETag} or a {@code
+ * Last-Modified} date, which is sent as {@code If-Range} so that the rest of a different version of
+ * the item is never appended.
+ */
+class ResumableInputStream extends InputStream {
+  private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-\\d+/(\\d+|\\*)");
+
+  private final ConnectionProvider connectionProvider;
+  private final String url;
+  private final long length;
+  private final String validator;
+  private final ConnectionProvider.HostMetrics metrics;
+  private final int maxResumes;
+
+  private InputStream in;
+  private long position;
+  private int resumes;
+  private boolean closed;
+
+  ResumableInputStream(
+      ConnectionProvider connectionProvider,
+      String url,
+      HttpURLConnection connection,
+      ConnectionProvider.HostMetrics metrics,
+      int maxResumes)
+      throws IOException {
+    this.connectionProvider = connectionProvider;
+    this.url = url;
+    this.in = connection.getInputStream();
+    this.length = connection.getContentLengthLong();
+    this.metrics = metrics;
+    this.maxResumes = maxResumes;
+    this.validator = length < 0 ? null : getRangeValidator(connection);
+  }
+
+  /**
+   * The validator to send as {@code If-Range} when requesting ranges of the response of {@code
+   * connection}, or null if the origin does not support ranges of it.
+   */
+  static String getRangeValidator(HttpURLConnection connection) {
+    if (!"bytes".equalsIgnoreCase(connection.getHeaderField("Accept-Ranges"))) {
+      return null;
+    }
+    String etag = connection.getHeaderField("ETag");
+    // Weak ETags cannot be used with If-Range
+    if (etag != null && !etag.startsWith("W/")) {
+      return etag;
+    }
+    return connection.getHeaderField("Last-Modified");
+  }
+
+  /** Returns the start of the range of a {@code Content-Range} header, or -1. */
+  static long startOf(String contentRange) {
+    if (contentRange == null) {
+      return -1;
+    }
+    Matcher matcher = CONTENT_RANGE.matcher(contentRange.trim());
+    return matcher.matches() ? Long.parseLong(matcher.group(1)) : -1;
+  }
+
+  @Override
+  public int read() throws IOException {
+    byte[] single = new byte[1];
+    int read = read(single, 0, 1);
+    return read == -1 ? -1 : single[0] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] bytes, int offset, int count) throws IOException {
+    if (count == 0) {
+      return 0;
+    }
+    while (true) {
+      int read;
+      try {
+        read = in.read(bytes, offset, count);
+      } catch (IOException e) {
+        resume(e);
+        continue;
+      }
+      if (read == -1 && length >= 0 && position < length) {
+        resume(new EOFException(format("Connection closed at %d of %d bytes", position, length)));
+        continue;
+      }
+      if (read > 0) {
+        position += read;
+        metrics.bytes.addAndGet(read);
+      }
+      return read;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    in.close();
+  }
+
+  private void resume(IOException cause) throws IOException {
+    if (closed || validator == null || resumes >= maxResumes) {
+      throw cause;
+    }
+    resumes++;
+    metrics.resumes.incrementAndGet();
+    try {
+      in.close();
+    } catch (IOException e) {
+      cause.addSuppressed(e);
+    }
+    try {
+      HttpURLConnection connection = connectionProvider.openConnection(url, metrics);
+      connection.setRequestProperty("Range", format("bytes=%d-", position));
+      connection.setRequestProperty("If-Range", validator);
+      if (connection.getResponseCode() != HttpURLConnection.HTTP_PARTIAL
+          || startOf(connection.getHeaderField("Content-Range")) != position) {
+        // The origin sent the whole item again, or a different version of it
+        connection.disconnect();
+        throw cause;
+      }
+      in = connection.getInputStream();
+    } catch (IOException e) {
+      if (e != cause) {
+        cause.addSuppressed(e);
+      }
+      throw cause;
+    }
+  }
+}
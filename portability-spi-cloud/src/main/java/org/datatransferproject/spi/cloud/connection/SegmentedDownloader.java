@@ -0,0 +1,243 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.datatransferproject.spi.cloud.connection;
+
+import static java.lang.String.format;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import org.datatransferproject.spi.cloud.connection.ConnectionProvider.HostMetrics;
+import org.datatransferproject.spi.cloud.storage.JobTempFileManager;
+import org.datatransferproject.spi.cloud.storage.TemporaryPerJobDataStore.InputStreamWrapper;
+
+/**
+ * Downloads large items as several byte ranges at once, as many origins cap the throughput of each
+ * connection, into a temp file of the job that is read back as one stream and deleted when that is
+ * closed. The temp file counts towards the temp file quotas of the job and the worker, and is
+ * deleted with the other temp files of the job if the stream is never closed.
+ *
+ * <p>The first range is read from the connection that was already opened for the whole item, and
+ * every other range takes one of the connections of the job, so that a job never has more than
+ * {@code connectionsPerJob} range connections open at once.
+ */
+final class SegmentedDownloader {
+  private static final int BUFFER_SIZE = 256 * 1024;
+
+  private final JobTempFileManager tempFiles;
+  private final long thresholdBytes;
+  private final int segments;
+  private final int connectionsPerJob;
+  private final ExecutorService executor =
+      Executors.newCachedThreadPool(
+          new ThreadFactoryBuilder()
+              .setNameFormat("segmented-download-%d")
+              .setDaemon(true)
+              .build());
+  private final Map<UUID, Semaphore> jobConnections = new ConcurrentHashMap<>();
+
+  SegmentedDownloader(
+      JobTempFileManager tempFiles, long thresholdBytes, int segments, int connectionsPerJob) {
+    this.tempFiles = tempFiles;
+    this.thresholdBytes = thresholdBytes;
+    this.segments = segments;
+    this.connectionsPerJob = connectionsPerJob;
+  }
+
+  /**
+   * Downloads the item of {@code connection} in ranges, if it is large enough and its origin
+   * supports ranges, and the job has a connection to spare.
+   *
+   * @return the downloaded item, or null if {@code connection} should be read as usual
+   */
+  InputStreamWrapper tryDownload(
+      ConnectionProvider connectionProvider,
+      UUID jobId,
+      String url,
+      HttpURLConnection connection,
+      HostMetrics metrics)
+      throws IOException {
+    long length = connection.getContentLengthLong();
+    String validator = ResumableInputStream.getRangeValidator(connection);
+    if (length < thresholdBytes || validator == null) {
+      return null;
+    }
+    Semaphore permits =
+        jobConnections.computeIfAbsent(jobId, id -> new Semaphore(connectionsPerJob));
+    int ranges = 1;
+    while (ranges < segments && permits.tryAcquire()) {
+      ranges++;
+    }
+    if (ranges == 1) {
+      return null;
+    }
+    try {
+      return download(
+          connectionProvider, jobId, url, validator, length, ranges, connection, metrics);
+    } finally {
+      permits.release(ranges - 1);
+    }
+  }
+
+  /** Forgets the connections of a job that has ended. */
+  void releaseJob(UUID jobId) {
+    jobConnections.remove(jobId);
+  }
+
+  private InputStreamWrapper download(
+      ConnectionProvider connectionProvider,
+      UUID jobId,
+      String url,
+      String validator,
+      long length,
+      int ranges,
+      HttpURLConnection connection,
+      HostMetrics metrics)
+      throws IOException {
+    File tempFile = tempFiles.createTempFile(jobId, length, "dtp-download-", ".tmp");
+    Path file = tempFile.toPath();
+    List<Future<?>> futures = new ArrayList<>();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      for (int i = 1; i < ranges; i++) {
+        long start = length * i / ranges;
+        long end = length * (i + 1) / ranges;
+        futures.add(
+            executor.submit(
+                () -> {
+                  downloadRange(
+                      connectionProvider, url, validator, start, end, channel, metrics);
+                  return null;
+                }));
+      }
+      try (InputStream in = connection.getInputStream()) {
+        copy(in, channel, 0, length / ranges, metrics);
+      } finally {
+        // Drops the rest of the item rather than reading it to reuse the connection
+        connection.disconnect();
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (IOException | ExecutionException | InterruptedException | RuntimeException e) {
+      futures.forEach(future -> future.cancel(true));
+      connection.disconnect();
+      tempFiles.delete(tempFile);
+      if (e instanceof InterruptedException) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while downloading " + url);
+      }
+      Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new IOException(format("Unable to download %s in %d ranges", url, ranges), cause);
+    }
+    InputStream in;
+    try {
+      in = new TempFileInputStream(Files.newInputStream(file), tempFile);
+    } catch (IOException e) {
+      tempFiles.delete(tempFile);
+      throw e;
+    }
+    return new InputStreamWrapper(new BufferedInputStream(in, BUFFER_SIZE), length);
+  }
+
+  private static void downloadRange(
+      ConnectionProvider connectionProvider,
+      String url,
+      String validator,
+      long start,
+      long end,
+      FileChannel channel,
+      HostMetrics metrics)
+      throws IOException {
+    HttpURLConnection connection = connectionProvider.openConnection(url, metrics);
+    connection.setRequestProperty("Range", format("bytes=%d-%d", start, end - 1));
+    connection.setRequestProperty("If-Range", validator);
+    try {
+      if (connection.getResponseCode() != HttpURLConnection.HTTP_PARTIAL
+          || ResumableInputStream.startOf(connection.getHeaderField("Content-Range")) != start) {
+        throw new IOException(format("%s did not return the range %d-%d", url, start, end - 1));
+      }
+      try (InputStream in = connection.getInputStream()) {
+        copy(in, channel, start, end, metrics);
+      }
+    } catch (IOException e) {
+      connection.disconnect();
+      throw e;
+    }
+  }
+
+  /** Copies the bytes from {@code start} to {@code end} of the item from {@code in}. */
+  private static void copy(
+      InputStream in, FileChannel channel, long start, long end, HostMetrics metrics)
+      throws IOException {
+    byte[] buffer = new byte[BUFFER_SIZE];
+    long position = start;
+    while (position < end) {
+      int read = in.read(buffer, 0, (int) Math.min(buffer.length, end - position));
+      if (read == -1) {
+        throw new IOException(
+            format("Connection closed at %d of range %d-%d", position, start, end - 1));
+      }
+      ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+      while (bytes.hasRemaining()) {
+        position += channel.write(bytes, position);
+      }
+      metrics.bytes.addAndGet(read);
+    }
+  }
+
+  /** Reads the temp file of an item, which is deleted once it is closed. */
+  private final class TempFileInputStream extends FilterInputStream {
+    private final File tempFile;
+
+    private TempFileInputStream(InputStream in, File tempFile) {
+      super(in);
+      this.tempFile = tempFile;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        super.close();
+      } finally {
+        tempFiles.delete(tempFile);
+      }
+    }
+  }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.datatransferproject.spi.cloud.storage;
+
+import com.google.common.base.Strings;
+import com.google.common.io.CountingInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.datatransferproject.spi.cloud.storage.TemporaryPerJobDataStore.InputStreamWrapper;
+import org.datatransferproject.types.common.DownloadableItem;
+import org.datatransferproject.types.common.models.photos.PhotoModel;
+
+/**
+ * Remembers which media a job has already staged in its {@link TemporaryPerJobDataStore}, so that
+ * media that appears in several albums is only downloaded and staged once per job.
+ *
+ * <p>Exporters stage media through {@link #stageOnce}, keyed by the source ID of the media. The
+ * {@link org.datatransferproject.spi.cloud.connection.ConnectionProvider} of importers also stages
+ * what it downloads, keyed by {@link #getContentKey}, when {@code cacheDownloads} is configured.
+ * Staged media is looked up in the store before it is reused, so media that an importer removed
+ * with {@link TemporaryPerJobDataStore#removeData} is simply staged again. Whatever the cache
+ * staged is removed from the store when the job is released.
+ *
+ * <p>The worker registers one cache as a service of its extension context.
+ */
+public final class JobMediaCache {
+  private static final String DOWNLOAD_KEY_PREFIX = "media-cache-";
+
+  private final boolean cacheDownloads;
+  private final Map<UUID, JobEntries> jobs = new ConcurrentHashMap<>();
+
+  /**
+   * @param cacheDownloads whether the media that importers download is staged, which costs a write
+   *     and a read of the store for media that only appears once
+   */
+  public JobMediaCache(boolean cacheDownloads) {
+    this.cacheDownloads = cacheDownloads;
+  }
+
+  public boolean isCachingDownloads() {
+    return cacheDownloads;
+  }
+
+  /**
+   * Stages the media of {@code key} with {@link TemporaryPerJobDataStore#create}, unless this job
+   * already staged it, in which case {@code source} is not called.
+   *
+   * @return whether the media was staged by this call
+   */
+  public boolean stageOnce(
+      TemporaryPerJobDataStore store, UUID jobId, String key, MediaSource source)
+      throws IOException {
+    JobEntries entries = getEntries(jobId);
+    Entry entry = entries.get(key);
+    synchronized (entry) {
+      if (entry.bytes >= 0 && store.hasStream(jobId, key)) {
+        entries.bytesSaved.addAndGet(entry.bytes);
+        return false;
+      }
+      entries.store = store;
+      stage(store, jobId, key, source, entry);
+      return true;
+    }
+  }
+
+  /**
+   * Returns the media of {@code item} from the store, staging it from {@code source} the first
+   * time.
+   */
+  public InputStreamWrapper getOrStage(
+      TemporaryPerJobDataStore store, UUID jobId, DownloadableItem item, MediaSource source)
+      throws IOException {
+    String key = DOWNLOAD_KEY_PREFIX + getContentKey(item);
+    JobEntries entries = getEntries(jobId);
+    Entry entry = entries.get(key);
+    synchronized (entry) {
+      if (entry.bytes >= 0) {
+        try {
+          InputStreamWrapper staged = store.getStream(jobId, key);
+          entries.bytesSaved.addAndGet(entry.bytes);
+          return staged;
+        } catch (IOException | RuntimeException e) {
+          // Removed from the store since, so it is staged again
+        }
+      }
+      entries.store = store;
+      stage(store, jobId, key, source, entry);
+    }
+    return store.getStream(jobId, key);
+  }
+
+  /**
+   * Removes the media staged by a job that has ended from the store, and forgets it.
+   *
+   * @return the bytes that the job did not download or stage again thanks to the cache
+   */
+  public long releaseJob(UUID jobId) {
+    JobEntries entries = jobs.remove(jobId);
+    if (entries == null) {
+      return 0L;
+    }
+    entries.removeStaged(jobId);
+    return entries.bytesSaved.get();
+  }
+
+  /**
+   * The key of the content of an item, which is the hash of a photo when the exporter knows it, as
+   * the same photo can have a different URL in each album, and the URL of the item otherwise.
+   */
+  public static String getContentKey(DownloadableItem item) {
+    if (item instanceof PhotoModel && !Strings.isNullOrEmpty(((PhotoModel) item).getSha1())) {
+      return "sha1-" + ((PhotoModel) item).getSha1();
+    }
+    return item.getFetchableUrl();
+  }
+
+  private JobEntries getEntries(UUID jobId) {
+    return jobs.computeIfAbsent(jobId, id -> new JobEntries());
+  }
+
+  private static void stage(
+      TemporaryPerJobDataStore store, UUID jobId, String key, MediaSource source, Entry entry)
+      throws IOException {
+    try (CountingInputStream stream = new CountingInputStream(source.open())) {
+      store.create(jobId, key, stream);
+      entry.bytes = stream.getCount();
+    }
+  }
+
+  /** Opens the stream of some media, typically by downloading it. */
+  @FunctionalInterface
+  public interface MediaSource {
+    InputStream open() throws IOException;
+  }
+
+  private static final class JobEntries {
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong bytesSaved = new AtomicLong();
+    // The store the job staged its media in, null until something is staged
+    private volatile TemporaryPerJobDataStore store;
+
+    private Entry get(String key) {
+      return entries.computeIfAbsent(key, k -> new Entry());
+    }
+
+    private void removeStaged(UUID jobId) {
+      if (store == null) {
+        return;
+      }
+      for (Map.Entry<String, Entry> staged : entries.entrySet()) {
+        synchronized (staged.getValue()) {
+          if (staged.getValue().bytes < 0) {
+            continue;
+          }
+        }
+        try {
+          store.removeData(jobId, staged.getKey());
+        } catch (RuntimeException e) {
+          // Already removed, or the store cannot remove data; the job is over either way
+        }
+      }
+    }
+  }
+
+  private static final class Entry {
+    // Guarded by this, negative until the media is staged
+    private long bytes = -1;
+  }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.datatransferproject.spi.cloud.storage;
+
+import static java.lang.String.format;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.datatransferproject.api.launcher.Monitor;
+
+/**
+ * Manages the temp files that importers stage items in, under a directory per job, so that they
+ * are deleted when their item completes, and at the latest when their job ends, instead of
+ * accumulating in a long-running worker.
+ *
+ * <p>The space used by a job and by the whole worker can be limited. The quotas are soft: a new
+ * temp file waits until its job and the worker are back under their quotas, but a file that has
+ * started is always written in full, and a file that waited for longer than {@code maxWaitMillis}
+ * goes ahead anyway, so that an importer that never deletes its files cannot stall its job.
+ *
+ * <p>There is one manager per worker, which the worker registers as a service of its extension
+ * context.
+ */
+public final class JobTempFileManager {
+  public static final Path DEFAULT_ROOT =
+      Paths.get(System.getProperty("java.io.tmpdir"), "dtp-temp-files");
+  @VisibleForTesting static final long DEFAULT_MAX_WAIT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final int MAX_PREFIX_LENGTH = 64;
+
+  private final Path root;
+  private final long jobQuotaBytes;
+  private final long workerQuotaBytes;
+  private final long maxWaitMillis;
+  private final Monitor monitor;
+
+  // Guarded by this
+  private final Map<UUID, JobSpace> jobs = new HashMap<>();
+  private final Map<Path, TempFile> files = new HashMap<>();
+  private long workerBytes;
+
+  /**
+   * @param jobQuotaBytes the space a job may use before its new files wait, or {@link
+   *     Long#MAX_VALUE} for no quota
+   * @param workerQuotaBytes the space all jobs may use before new files wait, or {@link
+   *     Long#MAX_VALUE} for no quota
+   */
+  public JobTempFileManager(
+      Path root, long jobQuotaBytes, long workerQuotaBytes, Monitor monitor) {
+    this(root, jobQuotaBytes, workerQuotaBytes, DEFAULT_MAX_WAIT_MILLIS, monitor);
+  }
+
+  @VisibleForTesting
+  JobTempFileManager(
+      Path root, long jobQuotaBytes, long workerQuotaBytes, long maxWaitMillis, Monitor monitor) {
+    Preconditions.checkArgument(jobQuotaBytes > 0, "jobQuotaBytes must be positive");
+    Preconditions.checkArgument(workerQuotaBytes > 0, "workerQuotaBytes must be positive");
+    this.root = root;
+    this.jobQuotaBytes = jobQuotaBytes;
+    this.workerQuotaBytes = workerQuotaBytes;
+    this.maxWaitMillis = maxWaitMillis;
+    this.monitor = monitor;
+  }
+
+  /**
+   * Copies {@code inputStream} to a new temp file of {@code jobId}, once the job and the worker are
+   * under their quotas. The file should be passed to {@link #delete} once its item is imported.
+   */
+  public File createTempFile(UUID jobId, InputStream inputStream, String prefix, String suffix)
+      throws IOException {
+    Path file = newTempFile(jobId, prefix, suffix);
+    boolean written = false;
+    try (OutputStream out = Files.newOutputStream(file)) {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int read;
+      while ((read = inputStream.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+        addBytes(file, read);
+      }
+      written = true;
+    } finally {
+      if (!written) {
+        delete(file.toFile());
+      }
+    }
+    return file.toFile();
+  }
+
+  /**
+   * Creates an empty temp file of {@code jobId} that the caller writes up to {@code bytes} to, once
+   * the job and the worker are under their quotas. The bytes count towards the quotas until the
+   * file is passed to {@link #delete}.
+   */
+  public File createTempFile(UUID jobId, long bytes, String prefix, String suffix)
+      throws IOException {
+    Path file = newTempFile(jobId, prefix, suffix);
+    addBytes(file, bytes);
+    return file.toFile();
+  }
+
+  /** Deletes a temp file created by this manager and releases its space. */
+  public void delete(File file) {
+    Path path = file.toPath();
+    synchronized (this) {
+      TempFile tempFile = files.remove(path);
+      if (tempFile != null) {
+        JobSpace job = jobs.get(tempFile.jobId);
+        if (job != null) {
+          job.files.remove(path);
+          job.bytes -= tempFile.bytes;
+        }
+        workerBytes -= tempFile.bytes;
+        notifyAll();
+      }
+    }
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException e) {
+      monitor.info(() -> format("Unable to delete temp file %s", path), e);
+    }
+  }
+
+  /**
+   * Deletes every temp file and the directory of a job that has ended.
+   *
+   * @return the most space the job used at any time, in bytes
+   */
+  public long deleteJob(UUID jobId) {
+    JobSpace job;
+    synchronized (this) {
+      job = jobs.remove(jobId);
+      if (job != null) {
+        job.files.forEach(files::remove);
+        workerBytes -= job.bytes;
+        notifyAll();
+      }
+    }
+    Path directory = root.resolve(jobId.toString());
+    if (Files.exists(directory)) {
+      try (Stream<Path> paths = Files.walk(directory)) {
+        paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+      } catch (IOException e) {
+        monitor.info(() -> format("Unable to delete temp files of job %s", jobId), e);
+      }
+    }
+    return job == null ? 0L : job.peakBytes;
+  }
+
+  /** The space used by the temp files of a job, in bytes. */
+  public synchronized long getJobBytes(UUID jobId) {
+    JobSpace job = jobs.get(jobId);
+    return job == null ? 0L : job.bytes;
+  }
+
+  /** The space used by the temp files of all jobs, in bytes. */
+  public synchronized long getWorkerBytes() {
+    return workerBytes;
+  }
+
+  private Path newTempFile(UUID jobId, String prefix, String suffix) throws IOException {
+    awaitSpace(jobId);
+    Path directory = root.resolve(jobId.toString());
+    Files.createDirectories(directory);
+    Path file = Files.createTempFile(directory, sanitize(prefix), suffix);
+    synchronized (this) {
+      jobs.computeIfAbsent(jobId, id -> new JobSpace()).files.add(file);
+      files.put(file, new TempFile(jobId));
+    }
+    return file;
+  }
+
+  private synchronized void awaitSpace(UUID jobId) throws IOException {
+    long deadline = System.currentTimeMillis() + maxWaitMillis;
+    while (getJobBytes(jobId) >= jobQuotaBytes || workerBytes >= workerQuotaBytes) {
+      long remainingMillis = deadline - System.currentTimeMillis();
+      if (remainingMillis <= 0) {
+        monitor.info(
+            () ->
+                format(
+                    "Temp files of job %s are over quota after waiting %d ms, using %d bytes of"
+                        + " the job and %d bytes of the worker",
+                    jobId, maxWaitMillis, getJobBytes(jobId), workerBytes));
+        return;
+      }
+      try {
+        wait(remainingMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for temp file space");
+      }
+    }
+  }
+
+  private synchronized void addBytes(Path file, long bytes) {
+    TempFile tempFile = files.get(file);
+    if (tempFile == null) {
+      // The job ended while the file was being written
+      return;
+    }
+    tempFile.bytes += bytes;
+    workerBytes += bytes;
+    JobSpace job = jobs.get(tempFile.jobId);
+    job.bytes += bytes;
+    job.peakBytes = Math.max(job.peakBytes, job.bytes);
+  }
+
+  /** Keeps only characters that are safe in a file name, as prefixes are often item names. */
+  private static String sanitize(String prefix) {
+    if (prefix == null) {
+      return null;
+    }
+    String sanitized = prefix.replaceAll("[^A-Za-z0-9._-]", "_");
+    return sanitized.length() > MAX_PREFIX_LENGTH
+        ? sanitized.substring(0, MAX_PREFIX_LENGTH)
+        : sanitized;
+  }
+
+  private static final class JobSpace {
+    private final Set<Path> files = new HashSet<>();
+    private long bytes;
+    private long peakBytes;
+  }
+
+  private static final class TempFile {
+    private final UUID jobId;
+    private long bytes;
+
+    private TempFile(UUID jobId) {
+      this.jobId = jobId;
+    }
+  }
+}
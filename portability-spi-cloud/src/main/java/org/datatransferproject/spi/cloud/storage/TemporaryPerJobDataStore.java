@@ -43,6 +43,24 @@ public interface TemporaryPerJobDataStore {
     throw new UnsupportedOperationException();
   }
 
+  /**
+   * Returns whether a stream was created for the key and not removed since. Stores should override
+   * this to check without reading the stream.
+   */
+  default boolean hasStream(UUID jobId, String key) {
+    try {
+      getStream(jobId, key).getStream().close();
+      return true;
+    } catch (IOException | RuntimeException e) {
+      return false;
+    }
+  }
+
+  /**
+   * @deprecated the file is only deleted when the JVM exits, use {@link
+   *     JobTempFileManager#createTempFile} instead.
+   */
+  @Deprecated
   default File getTempFileFromInputStream(InputStream inputStream, String prefix, String suffix)
       throws IOException {
     File tmp = Files.createTempFile(prefix, suffix).toFile();
@@ -0,0 +1,424 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.datatransferproject.spi.cloud.storage;
+
+import static java.lang.String.format;
+
+import com.google.common.base.Preconditions;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Stack;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.datatransferproject.api.launcher.Monitor;
+import org.datatransferproject.spi.cloud.types.JobAuthorization;
+import org.datatransferproject.spi.cloud.types.PortabilityJob;
+import org.datatransferproject.spi.cloud.types.PortabilityJob.State;
+import org.datatransferproject.types.common.ExportInformation;
+import org.datatransferproject.types.common.models.DataModel;
+import org.datatransferproject.types.transfer.errors.ErrorDetail;
+
+/**
+ * A {@link JobStore} that keeps small blobs in memory and passes everything else to another store.
+ *
+ * <p>Blobs of at most {@code maxBlobBytes} are kept in direct buffers, outside of the heap, up to
+ * {@code capacityBytes} in total. When that is full the least recently used blobs are evicted by
+ * writing them to the backing store, so a blob is never lost, and larger blobs are streamed to the
+ * backing store directly.
+ *
+ * <p>Blobs kept in memory are only visible to this worker, which is enough as a job only reads back
+ * the blobs that it stored itself. They are dropped by {@link #releaseJob} when the job ends.
+ */
+public class TieredJobStore implements JobStore {
+  private final JobStore delegate;
+  private final int maxBlobBytes;
+  private final long capacityBytes;
+  private final Monitor monitor;
+
+  // Guarded by this, in least recently used order
+  private final LinkedHashMap<String, Blob> blobs = new LinkedHashMap<>(16, 0.75f, true);
+  private long usedBytes;
+  // Evicted blobs that are still being written to the backing store
+  private final Map<String, Blob> spilling = new ConcurrentHashMap<>();
+  private final Map<UUID, Stats> stats = new ConcurrentHashMap<>();
+
+  public TieredJobStore(JobStore delegate, int maxBlobBytes, long capacityBytes, Monitor monitor) {
+    Preconditions.checkArgument(maxBlobBytes >= 0, "maxBlobBytes must not be negative");
+    Preconditions.checkArgument(capacityBytes >= 0, "capacityBytes must not be negative");
+    this.delegate = delegate;
+    // Leaves room to read one byte past the limit
+    this.maxBlobBytes =
+        (int) Math.min(Math.min(maxBlobBytes, capacityBytes), Integer.MAX_VALUE - 1);
+    this.capacityBytes = capacityBytes;
+    this.monitor = monitor;
+  }
+
+  @Override
+  public void create(UUID jobId, String key, InputStream stream) throws IOException {
+    byte[] head = stream.readNBytes(maxBlobBytes + 1);
+    forgetSpilling(fullKey(jobId, key));
+    if (head.length > maxBlobBytes) {
+      dropFromMemory(jobId, key);
+      delegate.create(
+          jobId, key, new SequenceInputStream(new ByteArrayInputStream(head), stream));
+      return;
+    }
+    ByteBuffer buffer = ByteBuffer.allocateDirect(head.length);
+    buffer.put(head).flip();
+    Blob blob = new Blob(jobId, key, buffer);
+    List<Blob> evicted = new ArrayList<>();
+    synchronized (this) {
+      Blob previous = blobs.put(blob.fullKey, blob);
+      if (previous != null) {
+        usedBytes -= previous.size();
+      }
+      usedBytes += blob.size();
+      Iterator<Blob> eldest = blobs.values().iterator();
+      while (usedBytes > capacityBytes && eldest.hasNext()) {
+        Blob victim = eldest.next();
+        eldest.remove();
+        usedBytes -= victim.size();
+        spilling.put(victim.fullKey, victim);
+        evicted.add(victim);
+      }
+    }
+    for (Blob victim : evicted) {
+      spill(victim);
+    }
+  }
+
+  @Override
+  public InputStreamWrapper getStream(UUID jobId, String key) throws IOException {
+    String fullKey = fullKey(jobId, key);
+    Blob blob;
+    synchronized (this) {
+      blob = blobs.get(fullKey);
+    }
+    if (blob == null) {
+      blob = spilling.get(fullKey);
+    }
+    if (blob != null) {
+      getStats(jobId).hits.incrementAndGet();
+      return new InputStreamWrapper(blob.newInputStream(), (long) blob.size());
+    }
+    getStats(jobId).misses.incrementAndGet();
+    return delegate.getStream(jobId, key);
+  }
+
+  @Override
+  public boolean hasStream(UUID jobId, String key) {
+    String fullKey = fullKey(jobId, key);
+    synchronized (this) {
+      if (blobs.containsKey(fullKey)) {
+        return true;
+      }
+    }
+    return spilling.containsKey(fullKey) || delegate.hasStream(jobId, key);
+  }
+
+  /** Removes the data model instance, and the blob of the key from both tiers. */
+  @Override
+  public void removeData(UUID jobId, String key) {
+    dropFromMemory(jobId, key);
+    forgetSpilling(fullKey(jobId, key));
+    delegate.removeData(jobId, key);
+  }
+
+  /**
+   * Drops the blobs that a finished job kept in memory, without writing them to the backing store.
+   *
+   * @return how the job used the memory tier
+   */
+  public Stats releaseJob(UUID jobId) {
+    synchronized (this) {
+      Iterator<Blob> iterator = blobs.values().iterator();
+      while (iterator.hasNext()) {
+        Blob blob = iterator.next();
+        if (blob.jobId.equals(jobId)) {
+          iterator.remove();
+          usedBytes -= blob.size();
+        }
+      }
+    }
+    spilling.values().removeIf(blob -> blob.jobId.equals(jobId));
+    Stats jobStats = stats.remove(jobId);
+    return jobStats == null ? new Stats() : jobStats;
+  }
+
+  /** The bytes of the blobs currently kept in memory. */
+  public synchronized long getUsedBytes() {
+    return usedBytes;
+  }
+
+  private synchronized Blob dropFromMemory(UUID jobId, String key) {
+    Blob blob = blobs.remove(fullKey(jobId, key));
+    if (blob != null) {
+      usedBytes -= blob.size();
+    }
+    return blob;
+  }
+
+  /**
+   * Forgets the evicted blob of a key, and waits for it if it is being written to the backing
+   * store, so that it cannot overwrite or remove what is stored for the key next.
+   */
+  private void forgetSpilling(String fullKey) {
+    Blob blob = spilling.remove(fullKey);
+    if (blob != null) {
+      synchronized (blob) {
+        // Held by spill while the blob is written
+      }
+    }
+  }
+
+  private void spill(Blob blob) {
+    getStats(blob.jobId).evictions.incrementAndGet();
+    synchronized (blob) {
+      if (spilling.get(blob.fullKey) != blob) {
+        // Replaced or removed before it was written
+        return;
+      }
+      try {
+        delegate.create(blob.jobId, blob.key, blob.newInputStream());
+      } catch (IOException | RuntimeException e) {
+        // Leaves the blob in spilling, so that it can still be read from memory
+        monitor.severe(
+            () -> format("Unable to evict blob %s of job %s", blob.key, blob.jobId),
+            e);
+        return;
+      }
+      if (!spilling.remove(blob.fullKey, blob)) {
+        // Removed while it was being written
+        try {
+          delegate.removeData(blob.jobId, blob.key);
+        } catch (RuntimeException e) {
+          monitor.debug(() -> format("Unable to remove evicted blob %s", blob.key), e);
+        }
+      }
+    }
+  }
+
+  private Stats getStats(UUID jobId) {
+    return stats.computeIfAbsent(jobId, id -> new Stats());
+  }
+
+  private static String fullKey(UUID jobId, String key) {
+    return jobId + "/" + key;
+  }
+
+  @Override
+  public void createJob(UUID jobId, PortabilityJob job) throws IOException {
+    delegate.createJob(jobId, job);
+  }
+
+  @Override
+  public void claimJob(UUID jobId, PortabilityJob job) throws IOException {
+    delegate.claimJob(jobId, job);
+  }
+
+  @Override
+  public void updateJobAuthStateToCredsAvailable(UUID jobId) throws IOException {
+    delegate.updateJobAuthStateToCredsAvailable(jobId);
+  }
+
+  @Override
+  public void updateJobWithCredentials(UUID jobId, PortabilityJob job) throws IOException {
+    delegate.updateJobWithCredentials(jobId, job);
+  }
+
+  @Override
+  public void addErrorsToJob(UUID jobId, Collection<ErrorDetail> errors) throws IOException {
+    delegate.addErrorsToJob(jobId, errors);
+  }
+
+  @Override
+  public void addFailureReasonToJob(UUID jobId, String failureReason) throws IOException {
+    delegate.addFailureReasonToJob(jobId, failureReason);
+  }
+
+  @Override
+  public void markJobAsFinished(UUID jobId, State state) throws IOException {
+    delegate.markJobAsFinished(jobId, state);
+  }
+
+  @Override
+  public void markJobAsStarted(UUID jobId) throws IOException {
+    delegate.markJobAsStarted(jobId);
+  }
+
+  @Override
+  public void markJobAsTimedOut(UUID jobId) throws IOException {
+    delegate.markJobAsTimedOut(jobId);
+  }
+
+  @Override
+  public void remove(UUID jobId) throws IOException {
+    releaseJob(jobId);
+    delegate.remove(jobId);
+  }
+
+  @Override
+  public PortabilityJob findJob(UUID jobId) {
+    return delegate.findJob(jobId);
+  }
+
+  @Override
+  public UUID findFirst(JobAuthorization.State jobState) {
+    return delegate.findFirst(jobState);
+  }
+
+  @Override
+  public void addCounts(UUID jobId, Map<String, Integer> newCounts) throws IOException {
+    delegate.addCounts(jobId, newCounts);
+  }
+
+  @Override
+  public Map<String, Integer> getCounts(UUID jobId) {
+    return delegate.getCounts(jobId);
+  }
+
+  @Override
+  public void addBytes(UUID jobId, Long bytes) throws IOException {
+    delegate.addBytes(jobId, bytes);
+  }
+
+  @Override
+  public void addBytes(UUID jobId, Map<String, Long> bytes) {
+    delegate.addBytes(jobId, bytes);
+  }
+
+  @Override
+  public Long getBytes(UUID jobId) {
+    return delegate.getBytes(jobId);
+  }
+
+  @Override
+  public Optional<Stack<ExportInformation>> loadJobStack(UUID jobId) {
+    return delegate.loadJobStack(jobId);
+  }
+
+  @Override
+  public void storeJobStack(UUID jobId, Stack<ExportInformation> stack) {
+    delegate.storeJobStack(jobId, stack);
+  }
+
+  @Override
+  public void abandonJob(UUID jobId, String reason) {
+    delegate.abandonJob(jobId, reason);
+  }
+
+  @Override
+  public <T extends DataModel> void create(UUID jobId, String key, T model) throws IOException {
+    delegate.create(jobId, key, model);
+  }
+
+  @Override
+  public <T extends DataModel> void update(UUID jobId, String key, T model) {
+    delegate.update(jobId, key, model);
+  }
+
+  @Override
+  public <T extends DataModel> T findData(UUID jobId, String key, Class<T> type)
+      throws IOException {
+    return delegate.findData(jobId, key, type);
+  }
+
+  @Override
+  @Deprecated
+  public File getTempFileFromInputStream(InputStream inputStream, String prefix, String suffix)
+      throws IOException {
+    return delegate.getTempFileFromInputStream(inputStream, prefix, suffix);
+  }
+
+  /** How a job used the memory tier. */
+  public static final class Stats {
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /** Reads of blobs that were kept in memory. */
+    public long getHits() {
+      return hits.get();
+    }
+
+    /** Reads of blobs from the backing store. */
+    public long getMisses() {
+      return misses.get();
+    }
+
+    /** Blobs that were written to the backing store to make space. */
+    public long getEvictions() {
+      return evictions.get();
+    }
+  }
+
+  private static final class Blob {
+    private final UUID jobId;
+    private final String key;
+    private final String fullKey;
+    private final ByteBuffer buffer;
+
+    private Blob(UUID jobId, String key, ByteBuffer buffer) {
+      this.jobId = jobId;
+      this.key = key;
+      this.fullKey = fullKey(jobId, key);
+      this.buffer = buffer;
+    }
+
+    private int size() {
+      return buffer.limit();
+    }
+
+    /** Reads the blob through its own view of the buffer, so that readers never interfere. */
+    private InputStream newInputStream() {
+      ByteBuffer view = buffer.asReadOnlyBuffer();
+      return new InputStream() {
+        @Override
+        public int read() {
+          return view.hasRemaining() ? view.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+          if (!view.hasRemaining()) {
+            return length == 0 ? 0 : -1;
+          }
+          int read = Math.min(length, view.remaining());
+          view.get(bytes, offset, read);
+          return read;
+        }
+
+        @Override
+        public int available() {
+          return view.remaining();
+        }
+      };
+    }
+  }
+}
@@ -8,18 +8,38 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.common.truth.Truth;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.nio.file.Path;
+import java.net.InetSocketAddress;
+import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.datatransferproject.api.launcher.Monitor;
+import org.datatransferproject.spi.cloud.storage.JobTempFileManager;
 import org.datatransferproject.spi.cloud.storage.TemporaryPerJobDataStore;
 import org.datatransferproject.spi.cloud.storage.TemporaryPerJobDataStore.InputStreamWrapper;
 import org.datatransferproject.types.common.DownloadableItem;
 import org.datatransferproject.types.common.models.photos.PhotoModel;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 public class ConnectionProviderTest {
 
+  @TempDir Path tempDir;
+
   private TemporaryPerJobDataStore jobStore;
   private ConnectionProvider connectionProvider;
+  private HttpServer server;
+  private final ExecutorService executor = Executors.newCachedThreadPool();
 
   @BeforeEach
   public void setUp() throws Exception {
@@ -43,4 +63,129 @@ public class ConnectionProviderTest {
     Truth.assertThat(streamWrapper.getBytes()).isEqualTo(expectedBytes);
     verify(jobStore).getStream(eq(jobId), eq(fetchableUrl));
   }
+
+  @Test
+  public void brokenDownloadsAreResumedWithARange() throws Exception {
+    byte[] body = new byte[100_000];
+    new Random(1).nextBytes(body);
+    AtomicInteger requests = new AtomicInteger();
+    String url =
+        serve(
+            exchange -> {
+              exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+              exchange.getResponseHeaders().add("ETag", "\"v1\"");
+              if (requests.incrementAndGet() == 1) {
+                // Closes the connection half way through the body
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body, 0, body.length / 2);
+                out.flush();
+                return;
+              }
+              String range = exchange.getRequestHeaders().getFirst("Range");
+              int start = Integer.parseInt(range.replaceAll("bytes=(\\d+)-", "$1"));
+              Truth.assertThat(exchange.getRequestHeaders().getFirst("If-Range"))
+                  .isEqualTo("\"v1\"");
+              exchange
+                  .getResponseHeaders()
+                  .add(
+                      "Content-Range",
+                      "bytes " + start + "-" + (body.length - 1) + "/" + body.length);
+              exchange.sendResponseHeaders(206, body.length - start);
+              try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body, start, body.length - start);
+              }
+            });
+
+    UUID jobId = UUID.randomUUID();
+    InputStreamWrapper wrapper = connectionProvider.download(jobId, url);
+    try (InputStream stream = wrapper.getStream()) {
+      Truth.assertThat(stream.readAllBytes()).isEqualTo(body);
+    }
+    Truth.assertThat(wrapper.getBytes()).isEqualTo((long) body.length);
+    Truth.assertThat(requests.get()).isEqualTo(2);
+    Truth.assertThat(connectionProvider.releaseJob(jobId).get("127.0.0.1").getResumes())
+        .isAtLeast(1L);
+  }
+
+  @Test
+  public void largeDownloadsAreSplitIntoRanges() throws Exception {
+    byte[] body = new byte[100_000];
+    new Random(2).nextBytes(body);
+    AtomicInteger rangeRequests = new AtomicInteger();
+    String url =
+        serve(
+            exchange -> {
+              exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+              exchange.getResponseHeaders().add("ETag", "\"v1\"");
+              String range = exchange.getRequestHeaders().getFirst("Range");
+              int start = 0;
+              int end = body.length;
+              if (range != null) {
+                rangeRequests.incrementAndGet();
+                start = Integer.parseInt(range.replaceAll("bytes=(\\d+)-\\d+", "$1"));
+                end = Integer.parseInt(range.replaceAll("bytes=\\d+-(\\d+)", "$1")) + 1;
+                exchange
+                    .getResponseHeaders()
+                    .add("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + body.length);
+                exchange.sendResponseHeaders(206, end - start);
+              } else {
+                exchange.sendResponseHeaders(200, body.length);
+              }
+              try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body, start, end - start);
+              } catch (IOException e) {
+                // The client only reads the first range of the whole item
+              }
+            });
+    JobTempFileManager tempFiles =
+        new JobTempFileManager(tempDir, Long.MAX_VALUE, Long.MAX_VALUE, new Monitor() {});
+    SegmentedDownloader downloader = new SegmentedDownloader(tempFiles, 1, 4, 8);
+    UUID jobId = UUID.randomUUID();
+
+    InputStreamWrapper wrapper =
+        downloader.tryDownload(
+            connectionProvider,
+            jobId,
+            url,
+            ConnectionProvider.getConnection(url),
+            new ConnectionProvider.HostMetrics());
+
+    try (InputStream stream = wrapper.getStream()) {
+      Truth.assertThat(stream.readAllBytes()).isEqualTo(body);
+    }
+    Truth.assertThat(wrapper.getBytes()).isEqualTo((long) body.length);
+    Truth.assertThat(rangeRequests.get()).isEqualTo(3);
+    // The temp file of the ranges is deleted once it is read
+    Truth.assertThat(tempFiles.getJobBytes(jobId)).isEqualTo(0L);
+    Truth.assertThat(tempDir.resolve(jobId.toString()).toFile().list()).isEmpty();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    if (server != null) {
+      server.stop(0);
+    }
+    executor.shutdownNow();
+  }
+
+  private String serve(Handler handler) throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext(
+        "/",
+        exchange -> {
+          try {
+            handler.handle(exchange);
+          } finally {
+            exchange.close();
+          }
+        });
+    server.setExecutor(executor);
+    server.start();
+    return "http://127.0.0.1:" + server.getAddress().getPort() + "/video.mp4";
+  }
+
+  private interface Handler {
+    void handle(HttpExchange exchange) throws IOException;
+  }
 }
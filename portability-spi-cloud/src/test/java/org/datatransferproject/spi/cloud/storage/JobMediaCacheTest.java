@@ -0,0 +1,135 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.datatransferproject.spi.cloud.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.datatransferproject.types.common.models.photos.PhotoModel;
+import org.junit.jupiter.api.Test;
+
+public class JobMediaCacheTest {
+
+  private final UUID jobId = UUID.randomUUID();
+  private final InMemoryStore store = new InMemoryStore();
+  private final AtomicInteger downloads = new AtomicInteger();
+
+  @Test
+  public void mediaIsStagedOncePerJob() throws Exception {
+    JobMediaCache cache = new JobMediaCache(false);
+
+    assertThat(cache.stageOnce(store, jobId, "photo", this::download)).isTrue();
+    assertThat(cache.stageOnce(store, jobId, "photo", this::download)).isFalse();
+    assertThat(cache.stageOnce(store, UUID.randomUUID(), "photo", this::download)).isTrue();
+
+    assertThat(downloads.get()).isEqualTo(2);
+    // Staged media is looked up without reading it back
+    assertThat(store.opens.get()).isEqualTo(0);
+    assertThat(cache.releaseJob(jobId)).isEqualTo(10L);
+    assertThat(cache.releaseJob(jobId)).isEqualTo(0L);
+  }
+
+  @Test
+  public void removedMediaIsStagedAgain() throws Exception {
+    JobMediaCache cache = new JobMediaCache(false);
+    cache.stageOnce(store, jobId, "photo", this::download);
+
+    store.removeData(jobId, "photo");
+
+    assertThat(cache.stageOnce(store, jobId, "photo", this::download)).isTrue();
+    assertThat(downloads.get()).isEqualTo(2);
+    assertThat(cache.releaseJob(jobId)).isEqualTo(0L);
+  }
+
+  @Test
+  public void downloadsAreSharedByTheHashOfThePhoto() throws Exception {
+    JobMediaCache cache = new JobMediaCache(true);
+    PhotoModel inFirstAlbum = photo("https://example.com/a/1.jpg", "first");
+    PhotoModel inSecondAlbum = photo("https://example.com/b/1.jpg", "second");
+
+    assertThat(cache.getOrStage(store, jobId, inFirstAlbum, this::download).getBytes())
+        .isEqualTo(10L);
+    try (InputStream stream =
+        cache.getOrStage(store, jobId, inSecondAlbum, this::download).getStream()) {
+      assertThat(stream.readAllBytes()).hasLength(10);
+    }
+
+    assertThat(downloads.get()).isEqualTo(1);
+    assertThat(cache.releaseJob(jobId)).isEqualTo(10L);
+  }
+
+  @Test
+  public void releasingAJobRemovesItsStagedMedia() throws Exception {
+    JobMediaCache cache = new JobMediaCache(true);
+    UUID otherJobId = UUID.randomUUID();
+    cache.stageOnce(store, jobId, "photo", this::download);
+    cache.getOrStage(store, jobId, photo("https://example.com/a/1.jpg", "first"), this::download);
+    cache.stageOnce(store, otherJobId, "photo", this::download);
+
+    cache.releaseJob(jobId);
+
+    assertThat(store.hasStream(jobId, "photo")).isFalse();
+    assertThat(store.hasStream(jobId, "media-cache-sha1-0123abcd")).isFalse();
+    assertThat(store.hasStream(otherJobId, "photo")).isTrue();
+  }
+
+  private InputStream download() {
+    downloads.incrementAndGet();
+    return new ByteArrayInputStream(new byte[10]);
+  }
+
+  private static PhotoModel photo(String url, String albumId) {
+    return new PhotoModel(
+        "title", url, "description", "image/jpeg", url, albumId, false, "0123abcd");
+  }
+
+  private static class InMemoryStore implements TemporaryPerJobDataStore {
+    private final Map<String, byte[]> blobs = new ConcurrentHashMap<>();
+    private final AtomicInteger opens = new AtomicInteger();
+
+    @Override
+    public void create(UUID jobId, String key, InputStream stream) throws IOException {
+      blobs.put(jobId + key, stream.readAllBytes());
+    }
+
+    @Override
+    public InputStreamWrapper getStream(UUID jobId, String key) throws IOException {
+      opens.incrementAndGet();
+      byte[] bytes = blobs.get(jobId + key);
+      if (bytes == null) {
+        throw new IOException("Not found: " + key);
+      }
+      return new InputStreamWrapper(new ByteArrayInputStream(bytes), (long) bytes.length);
+    }
+
+    @Override
+    public boolean hasStream(UUID jobId, String key) {
+      return blobs.containsKey(jobId + key);
+    }
+
+    @Override
+    public void removeData(UUID jobId, String key) {
+      blobs.remove(jobId + key);
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.datatransferproject.spi.cloud.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.datatransferproject.api.launcher.Monitor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class JobTempFileManagerTest {
+
+  @TempDir Path root;
+
+  private final UUID jobId = UUID.randomUUID();
+
+  @Test
+  public void deletingFilesReleasesTheirSpace() throws Exception {
+    JobTempFileManager manager = newManager(Long.MAX_VALUE, 60000);
+
+    File first = manager.createTempFile(jobId, bytes(100), "photo/with:odd name", ".jpg");
+    File second = manager.createTempFile(jobId, bytes(50), "video", ".mp4");
+
+    assertThat(first.getParentFile().toPath()).isEqualTo(root.resolve(jobId.toString()));
+    assertThat(first.length()).isEqualTo(100);
+    assertThat(manager.getJobBytes(jobId)).isEqualTo(150);
+    assertThat(manager.getWorkerBytes()).isEqualTo(150);
+
+    manager.delete(first);
+    assertThat(first.exists()).isFalse();
+    assertThat(manager.getJobBytes(jobId)).isEqualTo(50);
+
+    assertThat(manager.deleteJob(jobId)).isEqualTo(150);
+    assertThat(second.exists()).isFalse();
+    assertThat(Files.exists(root.resolve(jobId.toString()))).isFalse();
+    assertThat(manager.getWorkerBytes()).isEqualTo(0);
+  }
+
+  @Test
+  public void newFilesWaitUntilTheJobIsUnderQuota() throws Exception {
+    JobTempFileManager manager = newManager(100, 60000);
+    File first = manager.createTempFile(jobId, bytes(150), "first", ".tmp");
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    Future<File> second =
+        executor.submit(() -> manager.createTempFile(jobId, bytes(10), "second", ".tmp"));
+    Assertions.assertThrows(TimeoutException.class, () -> second.get(200, TimeUnit.MILLISECONDS));
+
+    manager.delete(first);
+    assertThat(second.get(10, TimeUnit.SECONDS).length()).isEqualTo(10);
+    executor.shutdown();
+  }
+
+  @Test
+  public void newFilesGoAheadAfterTheMaximumWait() throws Exception {
+    JobTempFileManager manager = newManager(100, 10);
+    manager.createTempFile(jobId, bytes(150), "first", ".tmp");
+
+    File second = manager.createTempFile(jobId, bytes(10), "second", ".tmp");
+
+    assertThat(second.length()).isEqualTo(10);
+    assertThat(manager.getJobBytes(jobId)).isEqualTo(160);
+  }
+
+  @Test
+  public void reservedFilesCountTowardsTheQuota() throws Exception {
+    JobTempFileManager manager = newManager(100, 60000);
+
+    File reserved = manager.createTempFile(jobId, 150L, "download", ".tmp");
+
+    assertThat(reserved.length()).isEqualTo(0);
+    assertThat(manager.getJobBytes(jobId)).isEqualTo(150);
+    manager.delete(reserved);
+    assertThat(reserved.exists()).isFalse();
+    assertThat(manager.getWorkerBytes()).isEqualTo(0);
+  }
+
+  private JobTempFileManager newManager(long quotaBytes, long maxWaitMillis) {
+    return new JobTempFileManager(root, quotaBytes, Long.MAX_VALUE, maxWaitMillis, new Monitor() {});
+  }
+
+  private static ByteArrayInputStream bytes(int length) {
+    return new ByteArrayInputStream(new byte[length]);
+  }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.datatransferproject.spi.cloud.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.datatransferproject.api.launcher.Monitor;
+import org.datatransferproject.spi.cloud.storage.TemporaryPerJobDataStore.InputStreamWrapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TieredJobStoreTest {
+
+  private final UUID jobId = UUID.randomUUID();
+  private final JobStore backingStore = mock(JobStore.class);
+  private final Map<String, byte[]> backingBlobs = new HashMap<>();
+  private TieredJobStore store;
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    doAnswer(
+            invocation -> {
+              InputStream stream = invocation.getArgument(2);
+              backingBlobs.put(invocation.getArgument(1), stream.readAllBytes());
+              return null;
+            })
+        .when(backingStore)
+        .create(eq(jobId), anyString(), any(InputStream.class));
+    when(backingStore.getStream(eq(jobId), anyString()))
+        .thenAnswer(
+            invocation -> {
+              byte[] bytes = backingBlobs.get(invocation.getArgument(1));
+              if (bytes == null) {
+                throw new IOException("Not found");
+              }
+              return new InputStreamWrapper(new ByteArrayInputStream(bytes), (long) bytes.length);
+            });
+    store = new TieredJobStore(backingStore, 10, 25, new Monitor() {});
+  }
+
+  @Test
+  public void smallBlobsStayInMemory() throws Exception {
+    store.create(jobId, "small", bytes(10, 1));
+
+    assertThat(read("small")).isEqualTo(new byte[] {1, 1, 1, 1, 1, 1, 1, 1, 1, 1});
+    assertThat(read("small")).hasLength(10);
+    verify(backingStore, never()).create(eq(jobId), anyString(), any(InputStream.class));
+    assertThat(store.getUsedBytes()).isEqualTo(10L);
+
+    TieredJobStore.Stats stats = store.releaseJob(jobId);
+    assertThat(stats.getHits()).isEqualTo(2L);
+    assertThat(stats.getMisses()).isEqualTo(0L);
+    assertThat(store.getUsedBytes()).isEqualTo(0L);
+  }
+
+  @Test
+  public void largeBlobsGoToTheBackingStore() throws Exception {
+    store.create(jobId, "large", bytes(11, 2));
+
+    assertThat(backingBlobs.get("large")).hasLength(11);
+    assertThat(read("large")).hasLength(11);
+    assertThat(store.getUsedBytes()).isEqualTo(0L);
+    assertThat(store.releaseJob(jobId).getMisses()).isEqualTo(1L);
+  }
+
+  @Test
+  public void leastRecentlyUsedBlobsAreEvictedToTheBackingStore() throws Exception {
+    store.create(jobId, "first", bytes(10, 1));
+    store.create(jobId, "second", bytes(10, 2));
+    read("first");
+    store.create(jobId, "third", bytes(10, 3));
+
+    assertThat(backingBlobs.keySet()).containsExactly("second");
+    assertThat(store.getUsedBytes()).isEqualTo(20L);
+    assertThat(read("second")).isEqualTo(backingBlobs.get("second"));
+    assertThat(read("first")[0]).isEqualTo((byte) 1);
+    assertThat(read("third")[0]).isEqualTo((byte) 3);
+
+    TieredJobStore.Stats stats = store.releaseJob(jobId);
+    assertThat(stats.getEvictions()).isEqualTo(1L);
+    assertThat(stats.getMisses()).isEqualTo(1L);
+    assertThat(stats.getHits()).isEqualTo(3L);
+  }
+
+  @Test
+  public void largeBlobWaitsForTheEvictionOfItsKey() throws Exception {
+    CountDownLatch evicting = new CountDownLatch(1);
+    CountDownLatch evicted = new CountDownLatch(1);
+    doAnswer(
+            invocation -> {
+              InputStream stream = invocation.getArgument(2);
+              byte[] bytes = stream.readAllBytes();
+              if (bytes.length <= 10) {
+                evicting.countDown();
+                evicted.await();
+              }
+              backingBlobs.put(invocation.getArgument(1), bytes);
+              return null;
+            })
+        .when(backingStore)
+        .create(eq(jobId), anyString(), any(InputStream.class));
+    store.create(jobId, "first", bytes(10, 1));
+    store.create(jobId, "second", bytes(10, 2));
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    // Evicts "first", whose write to the backing store blocks
+    Future<?> eviction =
+        executor.submit(
+            () -> {
+              store.create(jobId, "third", bytes(10, 3));
+              return null;
+            });
+    evicting.await();
+    Future<?> large =
+        executor.submit(
+            () -> {
+              store.create(jobId, "first", bytes(11, 4));
+              return null;
+            });
+
+    assertThrows(TimeoutException.class, () -> large.get(200, TimeUnit.MILLISECONDS));
+    evicted.countDown();
+    eviction.get(10, TimeUnit.SECONDS);
+    large.get(10, TimeUnit.SECONDS);
+    executor.shutdown();
+    assertThat(read("first")).isEqualTo(backingBlobs.get("first"));
+    assertThat(backingBlobs.get("first")).hasLength(11);
+  }
+
+  @Test
+  public void removeDataRemovesTheBlobFromBothTiers() throws Exception {
+    store.create(jobId, "small", bytes(5, 1));
+
+    store.removeData(jobId, "small");
+
+    assertThat(store.getUsedBytes()).isEqualTo(0L);
+    verify(backingStore).removeData(jobId, "small");
+  }
+
+  private byte[] read(String key) throws IOException {
+    InputStreamWrapper wrapper = store.getStream(jobId, key);
+    try (InputStream stream = wrapper.getStream()) {
+      byte[] bytes = stream.readAllBytes();
+      assertThat(wrapper.getBytes()).isEqualTo((long) bytes.length);
+      return bytes;
+    }
+  }
+
+  private static InputStream bytes(int length, int value) {
+    byte[] bytes = new byte[length];
+    Arrays.fill(bytes, (byte) value);
+    return new ByteArrayInputStream(bytes);
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.datatransferproject.spi.transfer.idempotentexecutor;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import org.datatransferproject.types.common.ImportableItem;
+import org.datatransferproject.types.transfer.errors.ErrorDetail;
+import org.datatransferproject.types.transfer.retry.RetryException;
+
+/**
+ * The outcome of running a {@link BatchImportFunction} over the items of a batch that an {@link
+ * IdempotentImportExecutor} has not imported yet. Executors record the collected results and
+ * errors with a single write rather than one write per item.
+ */
+public final class BatchImport {
+  private final Map<String, Serializable> results = new LinkedHashMap<>();
+  private final Map<String, ErrorDetail> errors = new LinkedHashMap<>();
+  private Exception failure;
+
+  private BatchImport() {}
+
+  /**
+   * Calls {@code function} once with the items whose idempotent id is neither cached nor repeated
+   * earlier in {@code items}. The function is not called if there are no such items.
+   */
+  public static <T extends ImportableItem, R extends Serializable> BatchImport run(
+      List<T> items, BatchImportFunction<T, R> function, Predicate<String> isCached) {
+    BatchImport batch = new BatchImport();
+    Set<String> seen = new HashSet<>();
+    List<T> toImport = new ArrayList<>();
+    for (T item : items) {
+      String idempotentId = item.getIdempotentId();
+      if (seen.add(idempotentId) && !isCached.test(idempotentId)) {
+        toImport.add(item);
+      }
+    }
+    if (toImport.isEmpty()) {
+      return batch;
+    }
+
+    List<ItemImportResult<R>> itemResults;
+    try {
+      itemResults = function.apply(toImport);
+      Preconditions.checkState(
+          itemResults.size() == toImport.size(),
+          "Batch import returned %s results for %s items",
+          itemResults.size(),
+          toImport.size());
+    } catch (Exception e) {
+      batch.failure = e;
+      toImport.forEach(item -> batch.addError(item, e));
+      return batch;
+    }
+
+    for (int i = 0; i < toImport.size(); i++) {
+      ItemImportResult<R> itemResult = itemResults.get(i);
+      if (itemResult.getStatus() == ItemImportResult.Status.SUCCESS) {
+        batch.results.put(toImport.get(i).getIdempotentId(), itemResult.getData());
+      } else {
+        batch.addError(toImport.get(i), itemResult.getException());
+      }
+    }
+    return batch;
+  }
+
+  /** Values of the items imported successfully, keyed by idempotent id. */
+  public Map<String, Serializable> getResults() {
+    return results;
+  }
+
+  /** Errors of the items that failed, keyed by idempotent id. */
+  public Map<String, ErrorDetail> getErrors() {
+    return errors;
+  }
+
+  /**
+   * Rethrows the exception that failed the whole batch, if any, unless it is an {@link
+   * IOException}. Failures of single items are never thrown.
+   */
+  public void rethrowUnlessIOException() throws Exception {
+    if (failure != null && !(failure instanceof IOException)) {
+      throw failure;
+    }
+  }
+
+  private void addError(ImportableItem item, Exception e) {
+    String title = item.getName() == null ? item.getIdempotentId() : item.getName();
+    errors.put(
+        item.getIdempotentId(),
+        ErrorDetail.builder()
+            .setId(item.getIdempotentId())
+            .setTitle(title)
+            .setException(Throwables.getStackTraceAsString(e))
+            .setCanSkip(e instanceof RetryException && ((RetryException) e).canSkip())
+            .build());
+  }
+}
@@ -88,4 +88,17 @@ public interface CachingExecutor {
 
   /** Reset recent errors to empty set */
   default void resetRecentErrors() {}
+
+  /**
+   * Releases what the executor keeps in memory for {@code jobId} once the job has finished and its
+   * errors have been read. What it stored for the job is kept, see {@link #deleteJob}.
+   */
+  default void releaseJob(UUID jobId) {}
+
+  /**
+   * Deletes what the executor stored for {@code jobId}. This is only called for a job that
+   * succeeded, as it is not resumed; what is stored for a failed job is kept so that it can be
+   * looked into, or run again without importing its items twice.
+   */
+  default void deleteJob(UUID jobId) {}
 }
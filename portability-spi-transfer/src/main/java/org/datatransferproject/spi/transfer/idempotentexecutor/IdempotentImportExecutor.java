@@ -16,14 +16,23 @@
 
 package org.datatransferproject.spi.transfer.idempotentexecutor;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
 import javax.annotation.Nullable;
 import org.datatransferproject.types.common.ImportableItem;
+import org.datatransferproject.types.common.models.DataVertical;
 
 /** This class provides a more specialized API for imports executions. */
 public interface IdempotentImportExecutor extends CachingExecutor {
 
+  /**
+   * Names the data type and the service that the job imports into, so that executors that retry
+   * can consult that service's circuit breaker. Executors that do not retry ignore it.
+   */
+  default void setImportService(DataVertical dataType, String service) {}
+
   /**
    * Execute an import function for a given item. The function throws whatever exception was wrapped
    * in the returning Rusult. If you can, please wrap an exception rather than throw it because an
@@ -46,16 +55,59 @@ public interface IdempotentImportExecutor extends CachingExecutor {
         });
   }
 
+  /**
+   * Imports a batch of items with a single call to {@code function}. Items that are already cached
+   * are not passed to the function, and the results and errors of the others are recorded together
+   * once the function returns.
+   *
+   * <p>An item that fails on its own is reported as an error and does not fail the batch. If the
+   * function throws, every item it was given is reported as failed and the exception is rethrown,
+   * unless it is an {@link java.io.IOException}.
+   *
+   * <p>By default the items are recorded one at a time with {@link #importAndSwallowIOExceptions},
+   * so executors that can record a batch with a single write should override this.
+   *
+   * @return the value of every item, in the order of {@code items}, or null for items that failed
+   */
   default <T extends ImportableItem, R extends Serializable>
-      List<R> importBatchAndSwallowIOExceptions(
-          List<T> items, ImportFunction<List<T>, List<R>> function) {
-
-    // The general idea is:
-    //   1. go through the items, filter out isKeyCached(item)
-    //   2. pass the remaining ones to function
-    //   3. save the resulting objects to cache, one by one
-    //   4. return the result that function returned
+      List<R> importBatchAndSwallowIOExceptions(List<T> items, BatchImportFunction<T, R> function)
+          throws Exception {
+    List<T> toImport = new ArrayList<>();
+    for (T item : items) {
+      if (!isKeyCached(item.getIdempotentId())) {
+        toImport.add(item);
+      }
+    }
+    List<ItemImportResult<R>> results = new ArrayList<>();
+    Exception failure = null;
+    if (!toImport.isEmpty()) {
+      try {
+        results = function.apply(toImport);
+      } catch (Exception e) {
+        failure = e;
+        for (int i = 0; i < toImport.size(); i++) {
+          results.add(ItemImportResult.error(e, null));
+        }
+      }
+    }
+    for (int i = 0; i < toImport.size(); i++) {
+      ItemImportResult<R> result = results.get(i);
+      try {
+        importAndSwallowIOExceptions(toImport.get(i), item -> result);
+      } catch (Exception e) {
+        // Recorded as the error of the item, which does not fail the batch
+      }
+    }
+    if (failure != null && !(failure instanceof IOException)) {
+      throw failure;
+    }
 
-    throw new UnsupportedOperationException();
+    List<R> values = new ArrayList<>(items.size());
+    for (T item : items) {
+      String idempotentId = item.getIdempotentId();
+      R value = isKeyCached(idempotentId) ? getCachedValue(idempotentId) : null;
+      values.add(value);
+    }
+    return values;
   }
 }
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.datatransferproject.spi.transfer.idempotentexecutor;
+
+import java.io.Serializable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Tracks the executions of an {@link IdempotentImportExecutor} that are still running, so that
+ * threads submitting the same {@code idempotentId} at the same time share a single execution
+ * instead of importing the item twice.
+ *
+ * <p>Executors should check their cache of known values before calling {@link #execute}, which
+ * checks it again once it holds the item, since another thread may have finished the same item in
+ * between. Results must be cached before the execution returns.
+ */
+public final class InFlightExecutions {
+  private final ConcurrentMap<String, CompletableFuture<Serializable>> inFlight =
+      new ConcurrentHashMap<>();
+  private final CachingExecutor cache;
+
+  /** @param cache the executor whose known values are checked before an execution is run */
+  public InFlightExecutions(CachingExecutor cache) {
+    this.cache = cache;
+  }
+
+  /**
+   * Runs {@code execution} unless another thread is already running an execution for {@code
+   * idempotentId}, in which case this waits for it and returns its result, or throws its exception.
+   * The cached value is returned instead if another thread imported the item since the cache was
+   * checked.
+   */
+  @SuppressWarnings("unchecked")
+  public <T extends Serializable> T execute(String idempotentId, Callable<T> execution)
+      throws Exception {
+    CompletableFuture<Serializable> future = new CompletableFuture<>();
+    CompletableFuture<Serializable> existing = inFlight.putIfAbsent(idempotentId, future);
+    if (existing != null) {
+      return (T) await(existing);
+    }
+    try {
+      T result =
+          cache.isKeyCached(idempotentId) ? cache.getCachedValue(idempotentId) : execution.call();
+      future.complete(result);
+      return result;
+    } catch (Throwable t) {
+      future.completeExceptionally(t);
+      throw t;
+    } finally {
+      inFlight.remove(idempotentId, future);
+    }
+  }
+
+  private static Serializable await(CompletableFuture<Serializable> future) throws Exception {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      }
+      throw (Error) cause;
+    }
+  }
+}
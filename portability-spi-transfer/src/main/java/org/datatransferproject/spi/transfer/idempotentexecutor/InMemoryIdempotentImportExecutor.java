@@ -23,23 +23,34 @@ import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import java.util.UUID;
 import org.datatransferproject.api.launcher.Monitor;
+import org.datatransferproject.types.common.ImportableItem;
 import org.datatransferproject.types.transfer.errors.ErrorDetail;
 
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 
-/** A {@link IdempotentImportExecutor} that stores known values in memory. */
+/**
+ * A {@link IdempotentImportExecutor} that stores known values in memory. It can be shared by
+ * importers that import items from several threads.
+ */
 public class InMemoryIdempotentImportExecutor implements IdempotentImportExecutor {
-  private final Map<String, Serializable> knownValues = new HashMap<>();
-  private final Map<String, ErrorDetail> errors = new HashMap<>();
-  private final Map<String, ErrorDetail> recentErrors = new HashMap<>();
+  // Synchronized rather than concurrent maps, as callables are allowed to return null
+  private final Map<String, Serializable> knownValues =
+      Collections.synchronizedMap(new HashMap<>());
+  private final Map<String, ErrorDetail> errors = Collections.synchronizedMap(new HashMap<>());
+  private final Map<String, ErrorDetail> recentErrors =
+      Collections.synchronizedMap(new HashMap<>());
+  private final InFlightExecutions inFlightExecutions = new InFlightExecutions(this);
   private final Monitor monitor;
-  private UUID jobId;
+  private volatile UUID jobId;
 
   public InMemoryIdempotentImportExecutor(Monitor monitor) {
     this.monitor = monitor;
@@ -69,6 +80,13 @@ public class InMemoryIdempotentImportExecutor implements IdempotentImportExecuto
                   + format("Using cached key %s from cache for %s", idempotentId, itemName));
       return (T) knownValues.get(idempotentId);
     }
+    return inFlightExecutions.execute(
+        idempotentId, () -> execute(idempotentId, itemName, callable, jobIdPrefix));
+  }
+
+  private <T extends Serializable> T execute(
+      String idempotentId, String itemName, Callable<T> callable, String jobIdPrefix)
+      throws Exception {
     try {
       T result = callable.call();
       knownValues.put(idempotentId, result);
@@ -90,16 +108,53 @@ public class InMemoryIdempotentImportExecutor implements IdempotentImportExecuto
     }
   }
 
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T extends ImportableItem, R extends Serializable>
+      List<R> importBatchAndSwallowIOExceptions(List<T> items, BatchImportFunction<T, R> function)
+          throws Exception {
+    BatchImport batch = BatchImport.run(items, function, this::isKeyCached);
+    recordBatch(batch);
+    batch.rethrowUnlessIOException();
+    List<R> values = new ArrayList<>(items.size());
+    for (T item : items) {
+      values.add((R) knownValues.get(item.getIdempotentId()));
+    }
+    return values;
+  }
+
+  private void recordBatch(BatchImport batch) {
+    String jobIdPrefix = "Job " + jobId + ": ";
+    knownValues.putAll(batch.getResults());
+    synchronized (errors) {
+      errors.keySet().removeAll(batch.getResults().keySet());
+      errors.putAll(batch.getErrors());
+    }
+    recentErrors.putAll(batch.getErrors());
+    monitor.debug(
+        () ->
+            jobIdPrefix
+                + format("Storing %d keys in cache for a batch", batch.getResults().size()));
+    batch
+        .getErrors()
+        .values()
+        .forEach(
+            errorDetail ->
+                monitor.severe(() -> jobIdPrefix + "Problem with importing item: " + errorDetail));
+  }
+
   @Override
   @SuppressWarnings("unchecked")
   public <T extends Serializable> T getCachedValue(String idempotentId) {
-    if (!knownValues.containsKey(idempotentId)) {
-      throw new IllegalArgumentException(
-          idempotentId
-              + " is not a known key, known keys: "
-              + Joiner.on(", ").join(knownValues.keySet()));
+    synchronized (knownValues) {
+      if (!knownValues.containsKey(idempotentId)) {
+        throw new IllegalArgumentException(
+            idempotentId
+                + " is not a known key, known keys: "
+                + Joiner.on(", ").join(knownValues.keySet()));
+      }
+      return (T) knownValues.get(idempotentId);
     }
-    return (T) knownValues.get(idempotentId);
   }
 
   @Override
@@ -109,7 +164,9 @@ public class InMemoryIdempotentImportExecutor implements IdempotentImportExecuto
 
   @Override
   public Collection<ErrorDetail> getErrors() {
-    return ImmutableList.copyOf(errors.values());
+    synchronized (errors) {
+      return ImmutableList.copyOf(errors.values());
+    }
   }
 
   @Override
@@ -119,7 +176,9 @@ public class InMemoryIdempotentImportExecutor implements IdempotentImportExecuto
 
   @Override
   public Collection<ErrorDetail> getRecentErrors() {
-    return ImmutableList.copyOf(recentErrors.values());
+    synchronized (recentErrors) {
+      return ImmutableList.copyOf(recentErrors.values());
+    }
   }
 
   @Override
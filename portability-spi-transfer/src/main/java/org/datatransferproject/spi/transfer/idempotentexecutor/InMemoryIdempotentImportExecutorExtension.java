@@ -8,22 +8,19 @@ import org.datatransferproject.api.launcher.ExtensionContext;
 public class InMemoryIdempotentImportExecutorExtension
     implements IdempotentImportExecutorExtension {
 
-  IdempotentImportExecutor idempotentImportExecutor;
-  IdempotentImportExecutor retryingIdempotentImportExecutor;
+  /**
+   * Returns a new executor on every call. The worker asks for one executor per job, and in-memory
+   * state must not leak between jobs that run in the same process.
+   */
   @Override
-  public synchronized IdempotentImportExecutor getIdempotentImportExecutor(ExtensionContext extensionContext) {
-    if (idempotentImportExecutor == null) {
-      idempotentImportExecutor = new InMemoryIdempotentImportExecutor(extensionContext.getMonitor());
-    }
-    return idempotentImportExecutor;
+  public IdempotentImportExecutor getIdempotentImportExecutor(ExtensionContext extensionContext) {
+    return new InMemoryIdempotentImportExecutor(extensionContext.getMonitor());
   }
 
+  /** Like {@link #getIdempotentImportExecutor}, returns a new executor for every job. */
   @Override
-  public synchronized IdempotentImportExecutor getRetryingIdempotentImportExecutor(ExtensionContext extensionContext){
-    if(retryingIdempotentImportExecutor == null) {
-      retryingIdempotentImportExecutor = new RetryingInMemoryIdempotentImportExecutor(extensionContext.getMonitor(), extensionContext.getSetting("retryLibrary", null));
-    }
-    return retryingIdempotentImportExecutor;
+  public IdempotentImportExecutor getRetryingIdempotentImportExecutor(ExtensionContext extensionContext){
+    return new RetryingInMemoryIdempotentImportExecutor(extensionContext.getMonitor(), extensionContext.getSetting("retryLibrary", null));
   }
 
   @Override
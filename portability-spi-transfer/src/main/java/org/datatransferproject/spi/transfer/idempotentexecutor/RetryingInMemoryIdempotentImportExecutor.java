@@ -24,25 +24,39 @@ import com.google.common.collect.ImmutableList;
 import java.io.IOException;
 import java.io.Serializable;
 import java.time.Clock;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.Callable;
 import org.datatransferproject.api.launcher.Monitor;
+import org.datatransferproject.types.common.ImportableItem;
+import org.datatransferproject.types.common.models.DataVertical;
 import org.datatransferproject.types.transfer.errors.ErrorDetail;
 import org.datatransferproject.types.transfer.retry.RetryException;
 import org.datatransferproject.types.transfer.retry.RetryStrategyLibrary;
 import org.datatransferproject.types.transfer.retry.RetryingCallable;
 
-/** A {@link IdempotentImportExecutor} that stores known values in memory. */
+/**
+ * A {@link IdempotentImportExecutor} that stores known values in memory. It can be shared by
+ * importers that import items from several threads.
+ */
 public class RetryingInMemoryIdempotentImportExecutor implements IdempotentImportExecutor {
 
-  private final Map<String, Serializable> knownValues = new HashMap<>();
-  private final Map<String, ErrorDetail> errors = new HashMap<>();
-  private final Map<String, ErrorDetail> recentErrors = new HashMap<>();
+  // Synchronized rather than concurrent maps, as callables are allowed to return null
+  private final Map<String, Serializable> knownValues =
+      Collections.synchronizedMap(new HashMap<>());
+  private final Map<String, ErrorDetail> errors = Collections.synchronizedMap(new HashMap<>());
+  private final Map<String, ErrorDetail> recentErrors =
+      Collections.synchronizedMap(new HashMap<>());
+  private final InFlightExecutions inFlightExecutions = new InFlightExecutions(this);
   private final Monitor monitor;
-  private UUID jobId;
+  private volatile UUID jobId;
+  private volatile DataVertical dataType;
+  private volatile String service;
   private final RetryStrategyLibrary retryStrategyLibrary;
 
   public RetryingInMemoryIdempotentImportExecutor(
@@ -68,13 +82,6 @@ public class RetryingInMemoryIdempotentImportExecutor implements IdempotentImpor
       String idempotentId, String itemName, Callable<T> callable) throws Exception {
     String jobIdPrefix = "Job " + jobId + ": ";
 
-    RetryingCallable<T> retryingCallable =
-        new RetryingCallable<>(
-            callable,
-            retryStrategyLibrary,
-            Clock.systemUTC(),
-            monitor);
-
     if (knownValues.containsKey(idempotentId)) {
       monitor.debug(
           () ->
@@ -82,6 +89,23 @@ public class RetryingInMemoryIdempotentImportExecutor implements IdempotentImpor
                   + format("Using cached key %s from cache for %s", idempotentId, itemName));
       return (T) knownValues.get(idempotentId);
     }
+    return inFlightExecutions.execute(
+        idempotentId, () -> execute(idempotentId, itemName, callable, jobIdPrefix));
+  }
+
+  private <T extends Serializable> T execute(
+      String idempotentId, String itemName, Callable<T> callable, String jobIdPrefix)
+      throws Exception {
+
+    RetryingCallable<T> retryingCallable =
+        new RetryingCallable<>(
+            callable,
+            retryStrategyLibrary,
+            Clock.systemUTC(),
+            monitor,
+            dataType,
+            service);
+
     try {
       T result = retryingCallable.call();
       knownValues.put(idempotentId, result);
@@ -112,16 +136,79 @@ public class RetryingInMemoryIdempotentImportExecutor implements IdempotentImpor
     }
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Only failures of the whole batch are retried, items that fail on their own are recorded as
+   * errors straight away.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T extends ImportableItem, R extends Serializable>
+      List<R> importBatchAndSwallowIOExceptions(List<T> items, BatchImportFunction<T, R> function)
+          throws Exception {
+    BatchImportFunction<T, R> retryingFunction =
+        toImport -> {
+          RetryingCallable<List<ItemImportResult<R>>> retryingCallable =
+              new RetryingCallable<>(
+                  () -> function.apply(toImport),
+                  retryStrategyLibrary,
+                  Clock.systemUTC(),
+                  monitor,
+                  dataType,
+                  service);
+          try {
+            return retryingCallable.call();
+          } catch (RetryException e) {
+            if (!e.canSkip()) {
+              // In RetryingCallable.call(), we wrap the exception in a RetryException.
+              throw e.getCause();
+            }
+            return Collections.nCopies(toImport.size(), ItemImportResult.error(e, null));
+          }
+        };
+    BatchImport batch = BatchImport.run(items, retryingFunction, this::isKeyCached);
+    recordBatch(batch);
+    batch.rethrowUnlessIOException();
+    List<R> values = new ArrayList<>(items.size());
+    for (T item : items) {
+      values.add((R) knownValues.get(item.getIdempotentId()));
+    }
+    return values;
+  }
+
+  private void recordBatch(BatchImport batch) {
+    String jobIdPrefix = "Job " + jobId + ": ";
+    knownValues.putAll(batch.getResults());
+    synchronized (errors) {
+      errors.keySet().removeAll(batch.getResults().keySet());
+      errors.putAll(batch.getErrors());
+    }
+    recentErrors.putAll(batch.getErrors());
+    monitor.debug(
+        () ->
+            jobIdPrefix
+                + format("Storing %d keys in cache for a batch", batch.getResults().size()));
+    batch
+        .getErrors()
+        .values()
+        .forEach(
+            errorDetail ->
+                monitor.severe(() -> jobIdPrefix + "Problem with importing item: " + errorDetail));
+  }
+
   @Override
   @SuppressWarnings("unchecked")
   public <T extends Serializable> T getCachedValue(String idempotentId) {
-    if (!knownValues.containsKey(idempotentId)) {
-      throw new IllegalArgumentException(
-          idempotentId
-              + " is not a known key, known keys: "
-              + Joiner.on(", ").join(knownValues.keySet()));
+    synchronized (knownValues) {
+      if (!knownValues.containsKey(idempotentId)) {
+        throw new IllegalArgumentException(
+            idempotentId
+                + " is not a known key, known keys: "
+                + Joiner.on(", ").join(knownValues.keySet()));
+      }
+      return (T) knownValues.get(idempotentId);
     }
-    return (T) knownValues.get(idempotentId);
   }
 
   @Override
@@ -131,7 +218,9 @@ public class RetryingInMemoryIdempotentImportExecutor implements IdempotentImpor
 
   @Override
   public Collection<ErrorDetail> getErrors() {
-    return ImmutableList.copyOf(errors.values());
+    synchronized (errors) {
+      return ImmutableList.copyOf(errors.values());
+    }
   }
 
   @Override
@@ -139,9 +228,17 @@ public class RetryingInMemoryIdempotentImportExecutor implements IdempotentImpor
     this.jobId = jobId;
   }
 
+  @Override
+  public void setImportService(DataVertical dataType, String service) {
+    this.dataType = dataType;
+    this.service = service;
+  }
+
   @Override
   public Collection<ErrorDetail> getRecentErrors() {
-    return ImmutableList.copyOf(recentErrors.values());
+    synchronized (recentErrors) {
+      return ImmutableList.copyOf(recentErrors.values());
+    }
   }
 
   @Override
@@ -0,0 +1,356 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.datatransferproject.spi.transfer.prefetch;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Downloads the next items of an importer while it uploads the current one, so that uploads do
+ * not wait for downloads.
+ *
+ * <p>An importer wraps the items it is about to import with {@link #prefetch}, and opens each item
+ * through the returned {@link Prefetch} instead of downloading it. Up to {@code depth} items ahead
+ * of the last opened one are downloaded in the background, and their bytes are buffered in memory
+ * as long as the job stays under its byte budget. Once the budget is used up, items are still
+ * opened ahead of time but the rest of their bytes is read from the connection when the importer
+ * reads the item.
+ *
+ * <p>The worker registers one prefetcher as a service of its extension context. A prefetcher with a
+ * depth of zero does not prefetch anything.
+ */
+public final class DownloadPrefetcher {
+  private static final int CHUNK_SIZE = 64 * 1024;
+
+  private final int depth;
+  private final long jobBudgetBytes;
+  private final Map<UUID, ByteBudget> budgets = new ConcurrentHashMap<>();
+  private final ExecutorService executor =
+      Executors.newCachedThreadPool(
+          new ThreadFactoryBuilder()
+              .setNameFormat("download-prefetch-%d")
+              .setDaemon(true)
+              .build());
+
+  /**
+   * Creates a prefetcher which downloads up to {@code depth} items ahead and buffers at most {@code
+   * jobBudgetBytes} of them per job.
+   */
+  public DownloadPrefetcher(int depth, long jobBudgetBytes) {
+    checkArgument(depth >= 0, "depth is negative");
+    checkArgument(jobBudgetBytes >= 0, "jobBudgetBytes is negative");
+    this.depth = depth;
+    this.jobBudgetBytes = jobBudgetBytes;
+  }
+
+  /**
+   * Starts downloading the first {@code items} of a job with {@code download}. The returned
+   * prefetch is meant to be used by a single thread, and closed once the items are imported.
+   */
+  public <T> Prefetch<T> prefetch(UUID jobId, List<T> items, Download<T> download) {
+    ByteBudget budget = budgets.computeIfAbsent(jobId, id -> new ByteBudget(jobBudgetBytes));
+    Prefetch<T> prefetch = new Prefetch<>(items, download, budget);
+    prefetch.schedule();
+    return prefetch;
+  }
+
+  /** Forgets the byte budget of a job that has ended. */
+  public void releaseJob(UUID jobId) {
+    budgets.remove(jobId);
+  }
+
+  /** Opens the stream of an item, typically by downloading it. */
+  @FunctionalInterface
+  public interface Download<T> {
+    Downloaded open(T item) throws IOException;
+  }
+
+  /** The stream of a downloaded item, and its size as reported by its origin. */
+  public static final class Downloaded {
+    private final InputStream stream;
+    private final long bytes;
+
+    public Downloaded(InputStream stream, long bytes) {
+      this.stream = stream;
+      this.bytes = bytes;
+    }
+
+    public InputStream getStream() {
+      return stream;
+    }
+
+    public long getBytes() {
+      return bytes;
+    }
+  }
+
+  /** The items of a job that are being prefetched. */
+  public final class Prefetch<T> implements AutoCloseable {
+    private final List<T> items;
+    private final Download<T> download;
+    private final ByteBudget budget;
+    private final Map<Integer, Entry> pending = new HashMap<>();
+    // The index of the item after the last one opened, and of the next item to download
+    private int position;
+    private int scheduled;
+
+    private Prefetch(List<T> items, Download<T> download, ByteBudget budget) {
+      this.items = items;
+      this.download = download;
+      this.budget = budget;
+    }
+
+    /**
+     * Opens {@code item}, waiting for its download if it is still running. Items should be opened
+     * in the order they were given in, as the items skipped over are assumed not to be needed and
+     * are discarded. Items that were not given are simply downloaded.
+     */
+    public Downloaded open(T item) throws IOException {
+      int index = indexOf(item);
+      if (index < 0) {
+        return download.open(item);
+      }
+      for (int i = position; i < index; i++) {
+        discard(pending.remove(i));
+      }
+      position = index + 1;
+      Entry entry = pending.remove(index);
+      schedule();
+      return entry == null ? download.open(item) : entry.await();
+    }
+
+    /** Discards the items that were prefetched but not opened. */
+    @Override
+    public void close() {
+      pending.values().forEach(this::discard);
+      pending.clear();
+      position = items.size();
+      scheduled = items.size();
+    }
+
+    private void schedule() {
+      while (scheduled < items.size() && scheduled < position + depth) {
+        T item = items.get(scheduled);
+        Entry entry = new Entry();
+        entry.future = CompletableFuture.supplyAsync(() -> fetch(item, entry), executor);
+        pending.put(scheduled++, entry);
+      }
+    }
+
+    private int indexOf(T item) {
+      for (int i = position; i < items.size(); i++) {
+        if (items.get(i) == item) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    private void discard(Entry entry) {
+      if (entry == null) {
+        return;
+      }
+      entry.discarded = true;
+      entry.future.thenAccept(downloaded -> closeQuietly(downloaded.getStream()));
+    }
+
+    private Downloaded fetch(T item, Entry entry) {
+      try {
+        Downloaded downloaded = download.open(item);
+        return new Downloaded(buffer(downloaded.getStream(), entry), downloaded.getBytes());
+      } catch (IOException e) {
+        throw new CompletionException(e);
+      }
+    }
+
+    /** Reads {@code in} into memory, for as long as the byte budget of the job allows. */
+    private InputStream buffer(InputStream in, Entry entry) throws IOException {
+      PrefetchedInputStream prefetched = new PrefetchedInputStream(in, budget);
+      try {
+        while (!entry.discarded && budget.tryReserve(CHUNK_SIZE)) {
+          byte[] chunk = new byte[CHUNK_SIZE];
+          int read = 0;
+          try {
+            read = in.readNBytes(chunk, 0, CHUNK_SIZE);
+          } finally {
+            budget.release(CHUNK_SIZE - read);
+          }
+          if (read < CHUNK_SIZE) {
+            prefetched.add(Arrays.copyOf(chunk, read));
+            prefetched.endOfStream();
+            break;
+          }
+          prefetched.add(chunk);
+        }
+      } catch (IOException | RuntimeException e) {
+        closeQuietly(prefetched);
+        throw e;
+      }
+      return prefetched;
+    }
+  }
+
+  private static final class Entry {
+    private CompletableFuture<Downloaded> future;
+    private volatile boolean discarded;
+
+    private Downloaded await() throws IOException {
+      try {
+        return future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for a download");
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof CompletionException) {
+          cause = cause.getCause();
+        }
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        throw new IOException("Unable to download the item", cause);
+      }
+    }
+  }
+
+  /**
+   * The bytes of an item that were read ahead, followed by the rest of the item. The bytes return
+   * to the budget of the job as they are read.
+   */
+  private static final class PrefetchedInputStream extends InputStream {
+    private final Deque<byte[]> chunks = new ArrayDeque<>();
+    private final ByteBudget budget;
+    private InputStream rest;
+    private int offset;
+
+    private PrefetchedInputStream(InputStream rest, ByteBudget budget) {
+      this.rest = rest;
+      this.budget = budget;
+    }
+
+    private void add(byte[] chunk) {
+      if (chunk.length > 0) {
+        chunks.add(chunk);
+      }
+    }
+
+    private void endOfStream() throws IOException {
+      rest.close();
+      rest = null;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] single = new byte[1];
+      int read = read(single, 0, 1);
+      return read == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] bytes, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      byte[] chunk = chunks.peek();
+      if (chunk == null) {
+        return rest == null ? -1 : rest.read(bytes, off, len);
+      }
+      int read = Math.min(len, chunk.length - offset);
+      System.arraycopy(chunk, offset, bytes, off, read);
+      offset += read;
+      if (offset == chunk.length) {
+        chunks.remove();
+        offset = 0;
+        budget.release(chunk.length);
+      }
+      return read;
+    }
+
+    @Override
+    public int available() throws IOException {
+      byte[] chunk = chunks.peek();
+      if (chunk != null) {
+        return chunk.length - offset;
+      }
+      return rest == null ? 0 : rest.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+      long buffered = -offset;
+      for (byte[] chunk : chunks) {
+        buffered += chunk.length;
+      }
+      chunks.clear();
+      offset = 0;
+      budget.release(buffered);
+      if (rest != null) {
+        rest.close();
+        rest = null;
+      }
+    }
+  }
+
+  /** The bytes that a job may still buffer. */
+  private static final class ByteBudget {
+    private long available;
+
+    private ByteBudget(long available) {
+      this.available = available;
+    }
+
+    private synchronized boolean tryReserve(long bytes) {
+      if (available < bytes) {
+        return false;
+      }
+      available -= bytes;
+      return true;
+    }
+
+    private synchronized void release(long bytes) {
+      available += bytes;
+    }
+  }
+
+  private static void closeQuietly(InputStream stream) {
+    try {
+      stream.close();
+    } catch (IOException e) {
+      // The item is no longer needed
+    }
+  }
+}
@@ -38,4 +38,12 @@ public interface Exporter<A extends AuthData, T extends DataModel> {
   // We need to be able throw exceptions that can be caught by RetryingCallable.
   ExportResult<T> export(UUID jobId, A authData, Optional<ExportInformation> exportInformation)
       throws Exception;
+
+  /**
+   * Releases what the exporter keeps for {@code jobId} once the job has finished. Exporters may be
+   * shared by the jobs of a worker, so per-job state should not outlive this call.
+   *
+   * @param jobId the job id
+   */
+  default void releaseJob(UUID jobId) {}
 }
@@ -39,4 +39,12 @@ public interface Importer<A extends AuthData, T extends DataModel> {
       A authData,
       T data)
       throws Exception;
+
+  /**
+   * Releases what the importer keeps for {@code jobId} once the job has finished. Importers may be
+   * shared by the jobs of a worker, so per-job state should not outlive this call.
+   *
+   * @param jobId the ID for the job
+   */
+  default void releaseJob(UUID jobId) {}
 }
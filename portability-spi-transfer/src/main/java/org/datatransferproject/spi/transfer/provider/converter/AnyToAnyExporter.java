@@ -64,4 +64,9 @@ public class AnyToAnyExporter<
     return originalResult.copyWithExportedData(
         containerResourceConverter.apply(originalResult.getExportedData()));
   }
+
+  @Override
+  public void releaseJob(UUID jobId) {
+    exporter.releaseJob(jobId);
+  }
 }
@@ -36,4 +36,9 @@ public class AnyToAnyImporter<
       AD authData, To data) throws Exception {
     return importer.importItem(jobId, idempotentExecutor, authData, converter.apply(data));
   }
+
+  @Override
+  public void releaseJob(UUID jobId) {
+    importer.releaseJob(jobId);
+  }
 }
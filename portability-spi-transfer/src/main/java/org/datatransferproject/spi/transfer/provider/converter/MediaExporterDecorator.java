@@ -111,4 +111,10 @@ public class MediaExporterDecorator<AD extends AuthData> implements
         a2.stream().map(MediaAlbum::videoToMediaAlbum)
     ).distinct().collect(Collectors.toList());
   }
+
+  @Override
+  public void releaseJob(UUID jobId) {
+    photosExporter.releaseJob(jobId);
+    videosExporter.releaseJob(jobId);
+  }
 }
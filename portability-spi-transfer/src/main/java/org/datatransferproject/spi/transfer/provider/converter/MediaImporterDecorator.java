@@ -37,4 +37,10 @@ public class MediaImporterDecorator<AD extends AuthData> implements
 
     return ImportResult.merge(photosResult, videosResult);
   }
+
+  @Override
+  public void releaseJob(UUID jobId) {
+    photosImporter.releaseJob(jobId);
+    videosImporter.releaseJob(jobId);
+  }
 }
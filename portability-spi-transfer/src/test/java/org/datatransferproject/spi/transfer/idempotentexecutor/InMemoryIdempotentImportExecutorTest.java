@@ -0,0 +1,189 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.datatransferproject.spi.transfer.idempotentexecutor;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.datatransferproject.api.launcher.Monitor;
+import org.datatransferproject.types.common.ImportableItem;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class InMemoryIdempotentImportExecutorTest {
+
+  private static final int THREADS = 16;
+  private static final int ITEMS = 50;
+
+  private InMemoryIdempotentImportExecutor executor;
+
+  @BeforeEach
+  public void setUp() {
+    executor = new InMemoryIdempotentImportExecutor(mock(Monitor.class));
+    executor.setJobId(UUID.randomUUID());
+  }
+
+  @Test
+  public void concurrentSubmissionsOfAnItemShareOneExecution() throws Exception {
+    ConcurrentMap<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+    List<Future<String>> results = new ArrayList<>();
+    for (int thread = 0; thread < THREADS; thread++) {
+      for (int item = 0; item < ITEMS; item++) {
+        String id = "id" + item;
+        results.add(
+            threads.submit(
+                () -> {
+                  start.await();
+                  return executor.executeOrThrowException(
+                      id,
+                      "name",
+                      () -> {
+                        calls.computeIfAbsent(id, k -> new AtomicInteger()).incrementAndGet();
+                        return "result-" + id;
+                      });
+                }));
+      }
+    }
+    start.countDown();
+    for (int i = 0; i < results.size(); i++) {
+      assertThat(results.get(i).get()).isEqualTo("result-id" + (i % ITEMS));
+    }
+    threads.shutdown();
+
+    assertThat(calls).hasSize(ITEMS);
+    for (AtomicInteger count : calls.values()) {
+      assertThat(count.get()).isEqualTo(1);
+    }
+    assertThat(executor.getErrors()).isEmpty();
+  }
+
+  @Test
+  public void waitingSubmissionsSeeTheFailureOfTheSharedExecution() throws Exception {
+    CountDownLatch running = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger calls = new AtomicInteger();
+    ExecutorService threads = Executors.newFixedThreadPool(2);
+    Future<String> first =
+        threads.submit(
+            () ->
+                executor.executeAndSwallowIOExceptions(
+                    "id",
+                    "name",
+                    () -> {
+                      calls.incrementAndGet();
+                      running.countDown();
+                      release.await();
+                      throw new IOException("Test IO exception");
+                    }));
+    running.await();
+    Future<String> second =
+        threads.submit(
+            () ->
+                executor.executeAndSwallowIOExceptions(
+                    "id",
+                    "name",
+                    () -> {
+                      calls.incrementAndGet();
+                      return "unexpected";
+                    }));
+    // Give the second submission time to find the in-flight execution
+    Thread.sleep(100);
+    release.countDown();
+
+    assertThat(first.get()).isNull();
+    assertThat(second.get()).isNull();
+    threads.shutdown();
+    assertThat(calls.get()).isEqualTo(1);
+    assertThat(executor.getErrors()).hasSize(1);
+    assertThat(executor.isKeyCached("id")).isFalse();
+  }
+
+  @Test
+  public void importBatchSkipsCachedItemsAndRecordsEachItem() throws Exception {
+    executor.executeOrThrowException("cached", "cached", () -> "cached-result");
+    List<List<String>> batches = new ArrayList<>();
+
+    List<String> results =
+        executor.importBatchAndSwallowIOExceptions(
+            ImmutableList.of(item("cached"), item("ok"), item("failed"), item("ok")),
+            toImport -> {
+              List<String> ids = new ArrayList<>();
+              toImport.forEach(item -> ids.add(item.getIdempotentId()));
+              batches.add(ids);
+              return ImmutableList.of(
+                  ItemImportResult.success("ok-result"),
+                  ItemImportResult.error(new IOException("Test IO exception"), null));
+            });
+
+    assertThat(batches).containsExactly(ImmutableList.of("ok", "failed"));
+    assertThat(results).containsExactly("cached-result", "ok-result", null, "ok-result").inOrder();
+    assertThat(executor.getCachedValue("ok").toString()).isEqualTo("ok-result");
+    assertThat(executor.isKeyCached("failed")).isFalse();
+    assertThat(executor.getErrors()).hasSize(1);
+  }
+
+  @Test
+  public void importBatchFailureFailsEveryItem() throws Exception {
+    List<String> swallowed =
+        executor.importBatchAndSwallowIOExceptions(
+            ImmutableList.of(item("a"), item("b")),
+            toImport -> {
+              throw new IOException("Test IO exception");
+            });
+    assertThat(swallowed).containsExactly(null, null);
+    assertThat(executor.getErrors()).hasSize(2);
+
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            executor.importBatchAndSwallowIOExceptions(
+                ImmutableList.of(item("c")),
+                toImport -> {
+                  throw new IllegalStateException("Test exception");
+                }));
+    assertThat(executor.getErrors()).hasSize(3);
+
+    // A later successful batch clears the errors of its items
+    executor.importBatchAndSwallowIOExceptions(
+        ImmutableList.of(item("a"), item("b"), item("c")),
+        toImport ->
+            ImmutableList.of(
+                ItemImportResult.success("a"),
+                ItemImportResult.success("b"),
+                ItemImportResult.success("c")));
+    assertThat(executor.getErrors()).isEmpty();
+  }
+
+  private static ImportableItem item(String idempotentId) {
+    return () -> idempotentId;
+  }
+}
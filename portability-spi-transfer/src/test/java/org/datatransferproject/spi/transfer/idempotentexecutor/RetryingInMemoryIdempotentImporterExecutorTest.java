@@ -2,11 +2,19 @@ package org.datatransferproject.spi.transfer.idempotentexecutor;
 
 import com.google.common.collect.ImmutableList;
 import org.datatransferproject.api.launcher.Monitor;
+import org.datatransferproject.types.common.ImportableItem;
 import org.datatransferproject.types.transfer.retry.*;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -264,4 +272,63 @@ public class RetryingInMemoryIdempotentImporterExecutorTest {
                 )
         );
     }
+
+    @Test
+    public void concurrentSubmissionsOfAnItemShareOneExecution() throws Exception {
+        RetryStrategy UNIFORM_RETRY_STRATEGY = new UniformRetryStrategy(
+                /* maxAttempts = */ 3,
+                /* intervalMillis = */ 1,
+                /* identifier = */ "identifier"
+        );
+        RetryingInMemoryIdempotentImportExecutor retryingExecutor = new RetryingInMemoryIdempotentImportExecutor(
+                mock(Monitor.class),
+                new RetryStrategyLibrary( ImmutableList.of(), UNIFORM_RETRY_STRATEGY )
+        );
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            results.add(threads.submit(() -> {
+                start.await();
+                return retryingExecutor.executeOrThrowException("id", "name", () -> {
+                    // Fails once so that the shared execution also goes through a retry
+                    if (calls.incrementAndGet() == 1) {
+                        throw new IOException("Test IO exception");
+                    }
+                    return "result";
+                });
+            }));
+        }
+        start.countDown();
+        for (Future<String> result : results) {
+            assertThat(result.get()).isEqualTo("result");
+        }
+        threads.shutdown();
+
+        assertThat(calls.get()).isEqualTo(2);
+        assertThat(retryingExecutor.getErrors()).isEmpty();
+    }
+
+    @Test
+    public void skipRetryStrategy_importBatchAndSwallowIOExceptions() throws Exception {
+        // Retries and then by default ALWAYS skips
+        RetryStrategy SKIP_RETRY_STRATEGY = new SkipRetryStrategy();
+        RetryingInMemoryIdempotentImportExecutor retryingExecutor = new RetryingInMemoryIdempotentImportExecutor(
+                mock(Monitor.class),
+                new RetryStrategyLibrary( ImmutableList.of(), SKIP_RETRY_STRATEGY )
+        );
+        ImportableItem item1 = () -> "id1";
+        ImportableItem item2 = () -> "id2";
+
+        // Non-IO exceptions are not thrown either, as the whole batch is skipped
+        List<String> results = retryingExecutor.importBatchAndSwallowIOExceptions(
+                ImmutableList.of(item1, item2),
+                toImport -> { throw new NullPointerException("Test null pointer exception");}
+        );
+
+        assertThat(results).containsExactly(null, null);
+        assertThat(retryingExecutor.getErrors()).hasSize(2);
+        retryingExecutor.getErrors().forEach(error -> assertThat(error.canSkip()).isTrue());
+    }
 }
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.datatransferproject.spi.transfer.prefetch;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.google.common.collect.ImmutableList;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.datatransferproject.spi.transfer.prefetch.DownloadPrefetcher.Downloaded;
+import org.datatransferproject.spi.transfer.prefetch.DownloadPrefetcher.Prefetch;
+import org.junit.jupiter.api.Test;
+
+public class DownloadPrefetcherTest {
+
+  private final UUID jobId = UUID.randomUUID();
+  private final Map<String, byte[]> contents = new ConcurrentHashMap<>();
+  private final Map<String, CountDownLatch> opened = new ConcurrentHashMap<>();
+  private final Map<String, CountDownLatch> closed = new ConcurrentHashMap<>();
+
+  @Test
+  public void nextItemsAreDownloadedAhead() throws Exception {
+    List<String> items = ImmutableList.of("a", "b", "c", "d");
+    items.forEach(item -> addItem(item, 1000));
+    DownloadPrefetcher prefetcher = new DownloadPrefetcher(2, 1024 * 1024);
+
+    try (Prefetch<String> prefetch = prefetcher.prefetch(jobId, items, this::download)) {
+      assertOpened("a");
+      assertOpened("b");
+      assertRead(prefetch.open("a"), "a");
+      assertOpened("c");
+      assertThat(opened.get("d").getCount()).isEqualTo(1L);
+      for (String item : items.subList(1, items.size())) {
+        assertRead(prefetch.open(item), item);
+      }
+    }
+  }
+
+  @Test
+  public void itemsOverTheBudgetAreReadFromTheirConnection() throws Exception {
+    List<String> items = ImmutableList.of("a", "b");
+    items.forEach(item -> addItem(item, 300_000));
+    DownloadPrefetcher prefetcher = new DownloadPrefetcher(2, 100_000);
+
+    try (Prefetch<String> prefetch = prefetcher.prefetch(jobId, items, this::download)) {
+      for (String item : items) {
+        assertRead(prefetch.open(item), item);
+      }
+    }
+    // Every buffered byte went back to the budget, so later items are buffered again
+    try (Prefetch<String> prefetch = prefetcher.prefetch(jobId, items, this::download)) {
+      Downloaded downloaded = prefetch.open("a");
+      assertThat(downloaded.getStream().available()).isGreaterThan(0);
+      assertRead(downloaded, "a");
+    }
+  }
+
+  @Test
+  public void skippedItemsAreClosed() throws Exception {
+    List<String> items = ImmutableList.of("a", "b", "c");
+    items.forEach(item -> addItem(item, 1000));
+    DownloadPrefetcher prefetcher = new DownloadPrefetcher(3, 1024 * 1024);
+
+    try (Prefetch<String> prefetch = prefetcher.prefetch(jobId, items, this::download)) {
+      assertRead(prefetch.open("b"), "b");
+    }
+
+    assertThat(closed.get("a").await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(closed.get("c").await(5, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  public void downloadErrorsAreThrownWhenTheItemIsOpened() throws Exception {
+    DownloadPrefetcher prefetcher = new DownloadPrefetcher(2, 1024 * 1024);
+
+    try (Prefetch<String> prefetch =
+        prefetcher.prefetch(
+            jobId,
+            ImmutableList.of("missing"),
+            item -> {
+              throw new IOException("Not found: " + item);
+            })) {
+      IOException e = assertThrows(IOException.class, () -> prefetch.open("missing"));
+      assertThat(e).hasMessageThat().isEqualTo("Not found: missing");
+    }
+  }
+
+  private void addItem(String item, int size) {
+    byte[] content = new byte[size];
+    new Random(item.hashCode()).nextBytes(content);
+    contents.put(item, content);
+    opened.put(item, new CountDownLatch(1));
+    closed.put(item, new CountDownLatch(1));
+  }
+
+  private Downloaded download(String item) {
+    byte[] content = contents.get(item);
+    opened.get(item).countDown();
+    InputStream stream =
+        new ByteArrayInputStream(content) {
+          @Override
+          public void close() {
+            closed.get(item).countDown();
+          }
+        };
+    return new Downloaded(stream, content.length);
+  }
+
+  private void assertOpened(String item) throws InterruptedException {
+    assertThat(opened.get(item).await(5, TimeUnit.SECONDS)).isTrue();
+  }
+
+  private void assertRead(Downloaded downloaded, String item) throws IOException {
+    try (InputStream stream = downloaded.getStream()) {
+      assertThat(stream.readAllBytes()).isEqualTo(contents.get(item));
+    }
+    assertThat(downloaded.getBytes()).isEqualTo((long) contents.get(item).length);
+  }
+}
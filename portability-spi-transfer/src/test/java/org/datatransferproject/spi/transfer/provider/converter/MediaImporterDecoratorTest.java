@@ -1,8 +1,11 @@
 package org.datatransferproject.spi.transfer.provider.converter;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 
 import java.util.List;
+import java.util.UUID;
 import org.datatransferproject.spi.transfer.provider.ImportResult;
 import org.datatransferproject.spi.transfer.provider.Importer;
 import org.datatransferproject.types.common.models.media.MediaAlbum;
@@ -84,4 +87,17 @@ public class MediaImporterDecoratorTest {
     assertEquals(new ImportResult(throwable), res);
   }
 
+  @Test
+  @SuppressWarnings("unchecked")
+  public void shouldReleaseJobOfBothImporters() {
+    photosImporter = mock(Importer.class);
+    videosImporter = mock(Importer.class);
+    mediaImporter = new MediaImporterDecorator<>(photosImporter, videosImporter);
+    UUID jobId = UUID.randomUUID();
+
+    mediaImporter.releaseJob(jobId);
+
+    verify(photosImporter).releaseJob(jobId);
+    verify(videosImporter).releaseJob(jobId);
+  }
 }
@@ -30,5 +30,10 @@ public final class Annotations {
   @Retention(RetentionPolicy.RUNTIME)
   public @interface RetryingExecutor {}
 
+  /** The action taken once a job that is being processed has been abandoned, e.g. canceled. */
+  @Qualifier
+  @Retention(RetentionPolicy.RUNTIME)
+  @interface JobAbandonedAction {}
+
   public Annotations() {}
 }
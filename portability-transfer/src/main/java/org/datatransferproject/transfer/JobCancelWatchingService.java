@@ -23,25 +23,39 @@ import org.datatransferproject.launcher.monitor.events.EventCode;
 import org.datatransferproject.spi.cloud.storage.JobStore;
 import org.datatransferproject.spi.cloud.types.PortabilityJob;
 
-/** A service that polls storage to see if a job is canceled, if it is it kills the binary. */
+/**
+ * A service that polls storage to see if a job is canceled, if it is it abandons the job and runs
+ * the {@link Annotations.JobAbandonedAction}, which kills the binary unless the worker runs several
+ * jobs at once.
+ */
 class JobCancelWatchingService extends AbstractScheduledService {
   private final JobStore store;
   private final Scheduler scheduler;
   private final Monitor monitor;
   private final DtpInternalMetricRecorder dtpInternalMetricRecorder;
+  private final Runnable jobAbandonedAction;
+  // Iterations run on the thread of the scheduler, so they take along the job scope of the slot
+  // that created this service
+  private final Runnable iteration = JobMetadata.inCurrentScope(this::checkJob);
 
   @Inject
   JobCancelWatchingService(
           JobStore store, @Annotations.CancelScheduler Scheduler scheduler,
-          Monitor monitor, DtpInternalMetricRecorder dtpInternalMetricRecorder) {
+          Monitor monitor, DtpInternalMetricRecorder dtpInternalMetricRecorder,
+          @Annotations.JobAbandonedAction Runnable jobAbandonedAction) {
     this.store = store;
     this.scheduler = scheduler;
     this.monitor = monitor;
     this.dtpInternalMetricRecorder = dtpInternalMetricRecorder;
+    this.jobAbandonedAction = jobAbandonedAction;
   }
 
   @Override
   protected void runOneIteration() {
+    iteration.run();
+  }
+
+  private void checkJob() {
     if (!JobMetadata.isInitialized()) {
       return;
     }
@@ -58,8 +72,7 @@ class JobCancelWatchingService extends AbstractScheduledService {
             JobMetadata.getImportService(),
             JobMetadata.getStopWatch().elapsed());
         monitor.flushLogs();
-        store.abandonJob(JobMetadata.getJobId(), PortabilityJob.State.CANCELED.toString());
-        System.exit(0);
+        abandonJob(PortabilityJob.State.CANCELED);
         break;
       case ERROR:
         monitor.severe(
@@ -67,8 +80,7 @@ class JobCancelWatchingService extends AbstractScheduledService {
             EventCode.WATCHING_SERVICE_JOB_ERRORED);
         recordGeneralMetric(PortabilityJob.State.ERROR.toString());
         monitor.flushLogs();
-        store.abandonJob(JobMetadata.getJobId(), PortabilityJob.State.ERROR.toString());
-        System.exit(0);
+        abandonJob(PortabilityJob.State.ERROR);
         break;
       case PREEMPTED:
         monitor.info(
@@ -76,8 +88,7 @@ class JobCancelWatchingService extends AbstractScheduledService {
             EventCode.WATCHING_SERVICE_JOB_PREEMPTED);
         recordGeneralMetric(PortabilityJob.State.PREEMPTED.toString());
         monitor.flushLogs();
-        store.abandonJob(JobMetadata.getJobId(), PortabilityJob.State.PREEMPTED.toString());
-        System.exit(0);
+        abandonJob(PortabilityJob.State.PREEMPTED);
         break;
       default:
         monitor.debug(
@@ -87,6 +98,12 @@ class JobCancelWatchingService extends AbstractScheduledService {
     }
   }
 
+  private void abandonJob(PortabilityJob.State state) {
+    store.abandonJob(JobMetadata.getJobId(), state.toString());
+    stopAsync();
+    jobAbandonedAction.run();
+  }
+
   @Override
   protected Scheduler scheduler() {
     return scheduler;
@@ -19,6 +19,9 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
 
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import javax.annotation.Nullable;
+import org.datatransferproject.spi.cloud.types.PortabilityJob.TransferMode;
 import org.datatransferproject.types.common.models.DataVertical;
 
 /**
@@ -27,25 +30,22 @@ import org.datatransferproject.types.common.models.DataVertical;
  * <p>
  *
  * <p>This class is completely static to ensure it is a singleton within each transfer worker
- * instance.
+ * instance. When a worker processes several jobs at once, each job runs in its own scope (see
+ * {@link #enterJobScope()}) and the static accessors return the metadata of the job that the
+ * calling thread is working on.
+ *
+ * <p>Scopes are not inherited by the threads a job creates, since pooled threads outlive the job
+ * that created them. Work handed to another thread takes the scope along explicitly through
+ * {@link #inCurrentScope(Runnable)}.
  */
 @SuppressWarnings("WeakerAccess")
 // We make the class and various methods public so they can be accessed from Monitors
 public final class JobMetadata {
-  private static byte[] encodedPrivateKey = null;
-  private static UUID jobId = null;
-  private static DataVertical dataType = null;
-  private static String exportService = null;
-  private static String importService = null;
-  private static Stopwatch stopWatch = null;
+  private static final JobScope GLOBAL_SCOPE = new JobScope();
+  private static final ThreadLocal<JobScope> CURRENT_SCOPE = new ThreadLocal<>();
 
   public static boolean isInitialized() {
-    return (jobId != null
-        && encodedPrivateKey != null
-        && dataType != null
-        && exportService != null
-        && importService != null
-        && stopWatch != null);
+    return currentScope().isInitialized();
   }
 
   static void init(
@@ -54,53 +54,175 @@ public final class JobMetadata {
       DataVertical initDataType,
       String initExportService,
       String initImportService,
+      TransferMode initTransferMode,
       Stopwatch initStopWatch) {
-    Preconditions.checkState(!isInitialized(), "JobMetadata cannot be initialized twice");
-    jobId = initJobId;
-    encodedPrivateKey = initEncodedPrivateKey;
-    dataType = initDataType;
-    exportService = initExportService;
-    importService = initImportService;
-    stopWatch = initStopWatch;
+    currentScope()
+        .init(
+            initJobId,
+            initEncodedPrivateKey,
+            initDataType,
+            initExportService,
+            initImportService,
+            initTransferMode,
+            initStopWatch);
   }
 
   // TODO: remove this
-  static synchronized void reset() {
-    jobId = null;
-    encodedPrivateKey = null;
-    dataType = null;
-    exportService = null;
-    importService = null;
-    stopWatch = null;
+  static void reset() {
+    currentScope().reset();
+  }
+
+  /**
+   * Gives the calling thread its own uninitialized job metadata. Threads that never enter a scope
+   * share a single process-wide instance.
+   */
+  static void enterJobScope() {
+    CURRENT_SCOPE.set(new JobScope());
+  }
+
+  /** Returns the calling thread to the process-wide job metadata. */
+  static void exitJobScope() {
+    CURRENT_SCOPE.remove();
+  }
+
+  /** Returns a task that runs {@code task} in the job scope of the calling thread. */
+  public static Runnable inCurrentScope(Runnable task) {
+    JobScope scope = CURRENT_SCOPE.get();
+    return () -> {
+      JobScope previous = swapScope(scope);
+      try {
+        task.run();
+      } finally {
+        swapScope(previous);
+      }
+    };
+  }
+
+  /** Returns a task that runs {@code task} in the job scope of the calling thread. */
+  public static <T> Callable<T> inCurrentScope(Callable<T> task) {
+    JobScope scope = CURRENT_SCOPE.get();
+    return () -> {
+      JobScope previous = swapScope(scope);
+      try {
+        return task.call();
+      } finally {
+        swapScope(previous);
+      }
+    };
   }
 
   static byte[] getPrivateKey() {
-    Preconditions.checkState(isInitialized(), "JobMetadata must be initialized");
-    return encodedPrivateKey;
+    return currentScope().checkInitialized().encodedPrivateKey;
   }
 
   public static UUID getJobId() {
-    Preconditions.checkState(isInitialized(), "JobMetadata must be initialized");
-    return jobId;
+    return currentScope().checkInitialized().jobId;
+  }
+
+  /**
+   * Returns the id of the job that the calling thread is working on, or null if there is none. Job
+   * aware monitors label their entries with it.
+   */
+  @Nullable
+  public static String getJobIdIfInitialized() {
+    UUID jobId = currentScope().getJobIdIfInitialized();
+    return jobId == null ? null : jobId.toString();
   }
 
   public static DataVertical getDataType() {
-    Preconditions.checkState(isInitialized(), "JobMetadata must be initialized");
-    return dataType;
+    return currentScope().checkInitialized().dataType;
   }
 
   public static String getExportService() {
-    Preconditions.checkState(isInitialized(), "JobMetadata must be initialized");
-    return exportService;
+    return currentScope().checkInitialized().exportService;
   }
 
   public static String getImportService() {
-    Preconditions.checkState(isInitialized(), "JobMetadata must be initialized");
-    return importService;
+    return currentScope().checkInitialized().importService;
+  }
+
+  /**
+   * Returns the transfer mode of the job as it was when the job was claimed. The mode is fixed when
+   * the job is created, so the copier reads it from here instead of the {@code JobStore}.
+   */
+  public static TransferMode getTransferMode() {
+    return currentScope().checkInitialized().transferMode;
   }
 
   public static Stopwatch getStopWatch() {
-    Preconditions.checkState(isInitialized(), "JobMetadata must be initialized");
-    return stopWatch;
+    return currentScope().checkInitialized().stopWatch;
+  }
+
+  private static JobScope swapScope(@Nullable JobScope scope) {
+    JobScope previous = CURRENT_SCOPE.get();
+    if (scope == null) {
+      CURRENT_SCOPE.remove();
+    } else {
+      CURRENT_SCOPE.set(scope);
+    }
+    return previous;
+  }
+
+  private static JobScope currentScope() {
+    JobScope scope = CURRENT_SCOPE.get();
+    return scope == null ? GLOBAL_SCOPE : scope;
+  }
+
+  /** The metadata of the job shared by all threads of one scope. */
+  private static final class JobScope {
+    private byte[] encodedPrivateKey = null;
+    private UUID jobId = null;
+    private DataVertical dataType = null;
+    private String exportService = null;
+    private String importService = null;
+    private TransferMode transferMode = null;
+    private Stopwatch stopWatch = null;
+
+    synchronized boolean isInitialized() {
+      return (jobId != null
+          && encodedPrivateKey != null
+          && dataType != null
+          && exportService != null
+          && importService != null
+          && transferMode != null
+          && stopWatch != null);
+    }
+
+    synchronized UUID getJobIdIfInitialized() {
+      return isInitialized() ? jobId : null;
+    }
+
+    synchronized JobScope checkInitialized() {
+      Preconditions.checkState(isInitialized(), "JobMetadata must be initialized");
+      return this;
+    }
+
+    synchronized void init(
+        UUID initJobId,
+        byte[] initEncodedPrivateKey,
+        DataVertical initDataType,
+        String initExportService,
+        String initImportService,
+        TransferMode initTransferMode,
+        Stopwatch initStopWatch) {
+      Preconditions.checkState(!isInitialized(), "JobMetadata cannot be initialized twice");
+      jobId = initJobId;
+      encodedPrivateKey = initEncodedPrivateKey;
+      dataType = initDataType;
+      exportService = initExportService;
+      importService = initImportService;
+      transferMode = initTransferMode;
+      stopWatch = initStopWatch;
+    }
+
+    synchronized void reset() {
+      jobId = null;
+      encodedPrivateKey = null;
+      dataType = null;
+      exportService = null;
+      importService = null;
+      transferMode = null;
+      stopWatch = null;
+    }
   }
 }
@@ -26,13 +26,13 @@ import java.io.IOException;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import org.datatransferproject.api.launcher.ExtensionContext;
-import org.datatransferproject.api.launcher.JobAwareMonitor;
 import org.datatransferproject.api.launcher.Monitor;
 import org.datatransferproject.launcher.monitor.events.EventCode;
 import org.datatransferproject.spi.cloud.storage.JobStore;
 import org.datatransferproject.spi.cloud.types.JobAuthorization;
 import org.datatransferproject.spi.cloud.types.PortabilityJob;
 import org.datatransferproject.spi.cloud.types.PortabilityJob.State;
+import org.datatransferproject.spi.cloud.types.PortabilityJob.TransferMode;
 import org.datatransferproject.spi.transfer.security.PublicKeySerializer;
 import org.datatransferproject.spi.transfer.security.TransferKeyGenerator;
 import org.datatransferproject.spi.transfer.security.TransferKeyGenerator.WorkerKeyPair;
@@ -52,6 +52,9 @@ class JobPollingService extends AbstractScheduledService {
   private final Monitor monitor;
   private final Stopwatch stopwatch = Stopwatch.createUnstarted();
   private final int credsTimeoutSeconds;
+  // Iterations run on the thread of the scheduler, so they take along the job scope of the slot
+  // that created this service
+  private final Runnable iteration = JobMetadata.inCurrentScope(this::poll);
 
   @Inject
   JobPollingService(
@@ -73,6 +76,10 @@ class JobPollingService extends AbstractScheduledService {
 
   @Override
   protected void runOneIteration() {
+    iteration.run();
+  }
+
+  private void poll() {
     monitor.debug(() -> "JobMetadata.isInitialized(): " + JobMetadata.isInitialized());
     if (JobMetadata.isInitialized()) {
       if (stopwatch.elapsed(TimeUnit.SECONDS) > credsTimeoutSeconds) {
@@ -205,16 +212,15 @@ class JobPollingService extends AbstractScheduledService {
       return false;
     }
 
-    if (monitor instanceof JobAwareMonitor) {
-      ((JobAwareMonitor) monitor).setJobId(jobId.toString());
-    }
-
     JobMetadata.init(
         jobId,
         keyPair.getEncodedPrivateKey(),
         existingJob.transferDataType(),
         existingJob.exportService(),
         existingJob.importService(),
+        existingJob.transferMode() == null
+            ? TransferMode.DATA_TRANSFER
+            : existingJob.transferMode(),
         Stopwatch.createUnstarted());
     monitor.debug(
         () -> format("Stored updated job: tryToClaimJob: JobMetadata initialized: %s", jobId));
@@ -19,6 +19,7 @@ import static java.lang.String.format;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
 import com.google.inject.Inject;
 import java.io.IOException;
 import java.util.Collection;
@@ -28,11 +29,16 @@ import javax.annotation.Nullable;
 import org.datatransferproject.api.launcher.DtpInternalMetricRecorder;
 import org.datatransferproject.api.launcher.Monitor;
 import org.datatransferproject.launcher.monitor.events.EventCode;
+import org.datatransferproject.spi.cloud.connection.ConnectionProvider;
+import org.datatransferproject.spi.cloud.storage.JobMediaCache;
 import org.datatransferproject.spi.cloud.storage.JobStore;
+import org.datatransferproject.spi.cloud.storage.JobTempFileManager;
+import org.datatransferproject.spi.cloud.storage.TieredJobStore;
 import org.datatransferproject.spi.cloud.types.JobAuthorization;
 import org.datatransferproject.spi.cloud.types.PortabilityJob;
 import org.datatransferproject.spi.cloud.types.PortabilityJob.State;
 import org.datatransferproject.spi.transfer.hooks.JobHooks;
+import org.datatransferproject.spi.transfer.prefetch.DownloadPrefetcher;
 import org.datatransferproject.spi.transfer.security.AuthDataDecryptService;
 import org.datatransferproject.spi.transfer.types.CopyException;
 import org.datatransferproject.spi.transfer.types.CopyExceptionWithFailureReason;
@@ -51,6 +57,10 @@ import org.datatransferproject.types.transfer.errors.ErrorDetail;
  */
 class JobProcessor {
   private final JobStore store;
+  private final JobTempFileManager tempFiles;
+  private final JobMediaCache mediaCache;
+  private final ConnectionProvider connectionProvider;
+  private final DownloadPrefetcher prefetcher;
   private final JobHooks hooks;
   private final ObjectMapper objectMapper;
   private final InMemoryDataCopier copier;
@@ -61,6 +71,10 @@ class JobProcessor {
   @Inject
   JobProcessor(
       JobStore store,
+      JobTempFileManager tempFiles,
+      JobMediaCache mediaCache,
+      ConnectionProvider connectionProvider,
+      DownloadPrefetcher prefetcher,
       JobHooks hooks,
       ObjectMapper objectMapper,
       InMemoryDataCopier copier,
@@ -68,6 +82,10 @@ class JobProcessor {
       Monitor monitor,
       DtpInternalMetricRecorder dtpInternalMetricRecorder) {
     this.store = store;
+    this.tempFiles = tempFiles;
+    this.mediaCache = mediaCache;
+    this.connectionProvider = connectionProvider;
+    this.prefetcher = prefetcher;
     this.hooks = hooks;
     this.objectMapper = objectMapper;
     this.copier = copier;
@@ -150,26 +168,102 @@ class JobProcessor {
     } finally {
       // The errors returned by copier.getErrors are those logged by the idempotentImportExecutor
       // and are distinct from the exceptions thrown by copier.copy
-      final Collection<ErrorDetail> loggedErrors = copier.getErrors(jobId);
+      Collection<ErrorDetail> loggedErrors;
+      try {
+        loggedErrors = copier.getErrors(jobId);
+      } catch (RuntimeException e) {
+        monitor.severe(() -> "Unable to get the errors of jobId: " + jobId, e);
+        loggedErrors = ImmutableList.of();
+        success = false;
+      }
       final int numErrors = loggedErrors.size();
       // success is set to true above if copy returned without throwing
-      success &= loggedErrors.isEmpty();
+      final boolean jobSucceeded = success && loggedErrors.isEmpty();
+      final Collection<ErrorDetail> jobErrors = loggedErrors;
       monitor.debug(
           () -> format("Finished processing jobId: %s with %d error(s).", jobId, numErrors),
           EventCode.WORKER_JOB_FINISHED);
-      addErrorsAndMarkJobFinished(jobId, success, loggedErrors);
-      hooks.jobFinished(jobId, success);
-      dtpInternalMetricRecorder.finishedJob(
+      // Each step is guarded so that a failing step does not skip the cleanup after it, which
+      // would leak the state of the job for as long as the worker lives
+      cleanUp(jobId, "mark job finished",
+          () -> addErrorsAndMarkJobFinished(jobId, jobSucceeded, jobErrors));
+      cleanUp(jobId, "release copier", () -> copier.releaseJob(jobId, jobSucceeded));
+      cleanUp(jobId, "run job hooks", () -> hooks.jobFinished(jobId, jobSucceeded));
+      cleanUp(jobId, "record job metrics", () -> dtpInternalMetricRecorder.finishedJob(
           JobMetadata.getDataType(),
           JobMetadata.getExportService(),
           JobMetadata.getImportService(),
-          success,
-          JobMetadata.getStopWatch().elapsed());
-      monitor.flushLogs();
+          jobSucceeded,
+          JobMetadata.getStopWatch().elapsed()));
+      cleanUp(jobId, "delete temp files", () -> deleteTempFiles(jobId));
+      cleanUp(jobId, "release memory blobs", () -> releaseMemoryBlobs(jobId));
+      cleanUp(jobId, "release media cache", () -> recordTempStoreMetric(
+          "mediaCacheKilobytesSaved", mediaCache.releaseJob(jobId) / 1024));
+      cleanUp(jobId, "release downloads", () -> releaseDownloads(jobId));
+      cleanUp(jobId, "release prefetcher", () -> prefetcher.releaseJob(jobId));
+      cleanUp(jobId, "flush logs", monitor::flushLogs);
       JobMetadata.reset();
     }
   }
 
+  /** Runs one cleanup step of a finished job, logging rather than throwing if it fails. */
+  private void cleanUp(UUID jobId, String step, Runnable cleanup) {
+    try {
+      cleanup.run();
+    } catch (RuntimeException e) {
+      monitor.severe(() -> format("Unable to %s for jobId: %s", step, jobId), e);
+    }
+  }
+
+  /** Deletes the temp files the importer left behind, and records how much space they used. */
+  private void deleteTempFiles(UUID jobId) {
+    long peakBytes = tempFiles.deleteJob(jobId);
+    dtpInternalMetricRecorder.recordGenericMetric(
+        JobMetadata.getDataType(),
+        JobMetadata.getImportService(),
+        "tempFilePeakKilobytes",
+        (int) Math.min(Integer.MAX_VALUE, peakBytes / 1024));
+    dtpInternalMetricRecorder.recordGenericMetric(
+        JobMetadata.getDataType(),
+        JobMetadata.getImportService(),
+        "tempFileWorkerKilobytes",
+        (int) Math.min(Integer.MAX_VALUE, tempFiles.getWorkerBytes() / 1024));
+  }
+
+  /** Drops the blobs the job kept in memory, and records how often they were read from memory. */
+  private void releaseMemoryBlobs(UUID jobId) {
+    if (!(store instanceof TieredJobStore)) {
+      return;
+    }
+    TieredJobStore.Stats stats = ((TieredJobStore) store).releaseJob(jobId);
+    recordTempStoreMetric("tempStoreMemoryHits", stats.getHits());
+    recordTempStoreMetric("tempStoreMemoryMisses", stats.getMisses());
+    recordTempStoreMetric("tempStoreMemoryEvictions", stats.getEvictions());
+  }
+
+  /** Records the connections, bytes and resumes of the downloads of the job over all hosts. */
+  private void releaseDownloads(UUID jobId) {
+    long connections = 0;
+    long bytes = 0;
+    long resumes = 0;
+    for (ConnectionProvider.HostMetrics metrics : connectionProvider.releaseJob(jobId).values()) {
+      connections += metrics.getConnections();
+      bytes += metrics.getBytes();
+      resumes += metrics.getResumes();
+    }
+    recordTempStoreMetric("downloadConnections", connections);
+    recordTempStoreMetric("downloadKilobytes", bytes / 1024);
+    recordTempStoreMetric("downloadResumes", resumes);
+  }
+
+  private void recordTempStoreMetric(String tag, long value) {
+    dtpInternalMetricRecorder.recordGenericMetric(
+        JobMetadata.getDataType(),
+        JobMetadata.getImportService(),
+        tag,
+        (int) Math.min(Integer.MAX_VALUE, value));
+  }
+
   @Nullable
   private AuthDataDecryptService getAuthDecryptService(String scheme) {
     if (decryptService.canHandle(scheme)) {
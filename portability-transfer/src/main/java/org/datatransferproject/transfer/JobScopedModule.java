@@ -0,0 +1,147 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.datatransferproject.transfer;
+
+import static java.lang.String.format;
+
+import com.google.common.collect.ImmutableList;
+import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.io.InputStream;
+import org.datatransferproject.api.launcher.DelegatingExtensionContext;
+import org.datatransferproject.api.launcher.DtpInternalMetricRecorder;
+import org.datatransferproject.api.launcher.ExtensionContext;
+import org.datatransferproject.api.launcher.MetricRecorder;
+import org.datatransferproject.launcher.metrics.ServiceAwareMetricRecorder;
+import org.datatransferproject.spi.transfer.extension.TransferExtension;
+import org.datatransferproject.spi.transfer.idempotentexecutor.IdempotentImportExecutor;
+import org.datatransferproject.spi.transfer.idempotentexecutor.IdempotentImportExecutorExtension;
+import org.datatransferproject.spi.transfer.provider.Exporter;
+import org.datatransferproject.spi.transfer.provider.Importer;
+import org.datatransferproject.spi.transfer.provider.TransferCompatibilityProvider;
+import org.datatransferproject.transfer.copier.InMemoryDataCopier;
+import org.datatransferproject.types.transfer.serviceconfig.TransferServiceConfig;
+
+/**
+ * Bindings that depend on the job being processed, installed in a child injector of the one
+ * created from {@link WorkerModule}. A new child injector is created for every job, so singletons
+ * bound here (the exporter, the importer and the idempotent executors) are never reused across
+ * jobs, while the expensive process-wide bindings are.
+ */
+final class JobScopedModule extends AbstractModule {
+
+  private final ExtensionContext context;
+  private final IdempotentImportExecutorExtension idempotentImportExecutorExtension;
+  private final TransferCompatibilityProvider compatibilityProvider;
+  private final Class<? extends InMemoryDataCopier> copierClass;
+  private final Runnable jobAbandonedAction;
+
+  JobScopedModule(
+      ExtensionContext context,
+      IdempotentImportExecutorExtension idempotentImportExecutorExtension,
+      TransferCompatibilityProvider compatibilityProvider,
+      Class<? extends InMemoryDataCopier> copierClass,
+      Runnable jobAbandonedAction) {
+    this.context = context;
+    this.idempotentImportExecutorExtension = idempotentImportExecutorExtension;
+    this.compatibilityProvider = compatibilityProvider;
+    this.copierClass = copierClass;
+    this.jobAbandonedAction = jobAbandonedAction;
+  }
+
+  @Override
+  protected void configure() {
+    bind(InMemoryDataCopier.class).to(copierClass);
+    bind(Runnable.class)
+        .annotatedWith(Annotations.JobAbandonedAction.class)
+        .toInstance(jobAbandonedAction);
+  }
+
+  @Provides
+  @Singleton
+  Exporter getExporter(ImmutableList<TransferExtension> transferExtensions) {
+    TransferExtension extension =
+        WorkerModule.findTransferExtension(transferExtensions, JobMetadata.getExportService());
+    extension.initialize(getServiceSpecificContext(extension));
+    return compatibilityProvider.getCompatibleExporter(extension, JobMetadata.getDataType());
+  }
+
+  @Provides
+  @Singleton
+  Importer getImporter(ImmutableList<TransferExtension> transferExtensions) {
+    TransferExtension extension =
+        WorkerModule.findTransferExtension(transferExtensions, JobMetadata.getImportService());
+    extension.initialize(getServiceSpecificContext(extension));
+    return compatibilityProvider.getCompatibleImporter(extension, JobMetadata.getDataType());
+  }
+
+  /**
+   * The executor that the importer is given for the job. With the {@code enableRetrying} setting it
+   * is the retrying executor of the job, so importers retry items without keeping an executor of
+   * their own, and the errors of the retried items are the errors of the job.
+   */
+  @Provides
+  @Singleton
+  public IdempotentImportExecutor getIdempotentImportExecutor(
+      @Annotations.RetryingExecutor IdempotentImportExecutor retryingIdempotentImportExecutor) {
+    if (context.getSetting("enableRetrying", false)) {
+      return retryingIdempotentImportExecutor;
+    }
+    return idempotentImportExecutorExtension.getIdempotentImportExecutor(context);
+  }
+
+  @Provides
+  @Singleton
+  @Annotations.RetryingExecutor
+  public IdempotentImportExecutor getRetryingIdempotentImportExecutor() {
+    return idempotentImportExecutorExtension.getRetryingIdempotentImportExecutor(context);
+  }
+
+  private ExtensionContext getServiceSpecificContext(TransferExtension extension) {
+    DelegatingExtensionContext serviceSpecificContext = new DelegatingExtensionContext(context);
+    serviceSpecificContext.registerOverrideService(
+        MetricRecorder.class,
+        new ServiceAwareMetricRecorder(
+            extension.getServiceId(),
+            context.getService(DtpInternalMetricRecorder.class)));
+    serviceSpecificContext.registerOverrideService(
+        TransferServiceConfig.class,
+        getTransferServiceConfig(extension));
+    return serviceSpecificContext;
+  }
+
+  private TransferServiceConfig getTransferServiceConfig(TransferExtension ext) {
+    String configFileName = "config/" + ext.getServiceId().toLowerCase() + ".yaml";
+    InputStream inputStream = this.getClass().getClassLoader().getResourceAsStream(configFileName);
+    context
+        .getMonitor()
+        .info(
+            () ->
+                format(
+                    "Service %s has a config file: %s", ext.getServiceId(), (inputStream != null)));
+    if (inputStream == null) {
+      return TransferServiceConfig.getDefaultInstance();
+    } else {
+      try {
+        return TransferServiceConfig.create(inputStream);
+      } catch (IOException e) {
+        throw new RuntimeException("Couldn't create config for " + ext.getServiceId(), e);
+      }
+    }
+  }
+}
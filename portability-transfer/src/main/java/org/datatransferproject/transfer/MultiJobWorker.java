@@ -0,0 +1,94 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.datatransferproject.transfer;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.datatransferproject.api.launcher.Monitor;
+
+/**
+ * Processes up to {@code concurrency} jobs at the same time within one transfer worker process.
+ *
+ * <p>Each slot repeatedly claims and processes a job in its own {@link JobMetadata} scope, using a
+ * {@link Worker} created from a fresh child injector so that job specific bindings are not shared.
+ * A canceled job interrupts its slot instead of exiting the process. With a single slot this is
+ * the warm worker loop used when {@code workerLoop} is set.
+ *
+ * <p>Transfer extensions are still initialized once per process, so their exporters and importers,
+ * and anything they capture during initialization, are shared by all jobs using the same service.
+ */
+final class MultiJobWorker {
+  private final Function<Runnable, Worker> workerFactory;
+  private final int concurrency;
+  private final Monitor monitor;
+  private volatile boolean running = true;
+
+  /**
+   * @param workerFactory creates the worker for a single job given the action to run when that job
+   *     is abandoned
+   */
+  MultiJobWorker(Function<Runnable, Worker> workerFactory, int concurrency, Monitor monitor) {
+    Preconditions.checkArgument(concurrency > 0, "concurrency must be positive");
+    this.workerFactory = workerFactory;
+    this.concurrency = concurrency;
+    this.monitor = monitor;
+  }
+
+  /** Runs the job slots until {@link #stop()} is called or the calling thread is interrupted. */
+  void run() {
+    ExecutorService slots =
+        Executors.newFixedThreadPool(
+            concurrency, new ThreadFactoryBuilder().setNameFormat("job-slot-%d").build());
+    for (int i = 0; i < concurrency; i++) {
+      slots.execute(this::runSlot);
+    }
+    slots.shutdown();
+    try {
+      while (!slots.awaitTermination(1, TimeUnit.HOURS)) {
+        monitor.debug(() -> "Job slots are still running");
+      }
+    } catch (InterruptedException e) {
+      stop();
+      slots.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** Lets every slot finish its current job and then stop claiming new ones. */
+  void stop() {
+    running = false;
+  }
+
+  private void runSlot() {
+    Thread slotThread = Thread.currentThread();
+    while (running) {
+      JobMetadata.enterJobScope();
+      try {
+        workerFactory.apply(slotThread::interrupt).doWork();
+      } catch (RuntimeException e) {
+        monitor.severe(() -> "Error processing a job in " + slotThread.getName(), e);
+      } finally {
+        JobMetadata.exitJobScope();
+        // Clears the interrupt of an abandoned job before the next job is claimed
+        Thread.interrupted();
+      }
+    }
+  }
+}
@@ -36,6 +36,10 @@ final class Worker {
   void doWork() {
     jobPoller.pollJob();
     jobCancelWatchingService.startAsync();
-    jobProcessor.processJob();
+    try {
+      jobProcessor.processJob();
+    } finally {
+      jobCancelWatchingService.stopAsync();
+    }
   }
 }
@@ -15,6 +15,7 @@
  */
 package org.datatransferproject.transfer;
 
+import static java.lang.String.format;
 import static org.datatransferproject.config.extension.SettingsExtensionLoader.getSettingsExtension;
 import static org.datatransferproject.launcher.monitor.MonitorLoader.loadMonitor;
 import static org.datatransferproject.spi.cloud.extension.CloudExtensionLoader.getCloudExtension;
@@ -29,33 +30,52 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.UncaughtExceptionHandlers;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.ServiceLoader;
 import okhttp3.OkHttpClient;
+import org.datatransferproject.api.launcher.ExtensionContext;
+import org.datatransferproject.api.launcher.JobAwareMonitor;
 import org.datatransferproject.api.launcher.Monitor;
 import org.datatransferproject.config.extension.SettingsExtension;
 import org.datatransferproject.security.AesSymmetricKeyGenerator;
 import org.datatransferproject.security.SymmetricKeyGenerator;
+import org.datatransferproject.spi.cloud.connection.ConnectionProvider;
 import org.datatransferproject.spi.cloud.extension.CloudExtension;
 import org.datatransferproject.spi.cloud.storage.AppCredentialStore;
+import org.datatransferproject.spi.cloud.storage.JobMediaCache;
 import org.datatransferproject.spi.cloud.storage.JobStore;
+import org.datatransferproject.spi.cloud.storage.JobTempFileManager;
 import org.datatransferproject.spi.cloud.storage.TemporaryPerJobDataStore;
+import org.datatransferproject.spi.cloud.storage.TieredJobStore;
 import org.datatransferproject.spi.service.extension.ServiceExtension;
 import org.datatransferproject.spi.transfer.extension.TransferExtension;
 import org.datatransferproject.spi.transfer.hooks.JobHooks;
 import org.datatransferproject.spi.transfer.idempotentexecutor.IdempotentImportExecutorExtension;
 import org.datatransferproject.spi.transfer.idempotentexecutor.IdempotentImportExecutorLoader;
+import org.datatransferproject.spi.transfer.prefetch.DownloadPrefetcher;
 import org.datatransferproject.spi.transfer.provider.TransferCompatibilityProvider;
 import org.datatransferproject.spi.transfer.security.SecurityExtension;
 import org.datatransferproject.spi.transfer.security.SecurityExtensionLoader;
+import org.datatransferproject.transfer.copier.InMemoryDataCopier;
+import org.datatransferproject.transfer.copier.InMemoryDataCopierClassLoader;
 
 /**
  * Main class to bootstrap a portability transfer worker that will operate on a single job whose
- * state is held in {@link JobMetadata}.
+ * state is held in {@link JobMetadata}, or on up to {@code workerJobConcurrency} jobs at once.
+ *
+ * <p>When {@code workerLoop} is set the worker stays warm after a job finishes and polls for the
+ * next one, reusing the injector and extensions built by {@link #initialize()}.
  */
 public class WorkerMain {
 
-  private Worker worker;
+  private Injector injector;
+  private Monitor monitor;
+  private ExtensionContext extensionContext;
+  private IdempotentImportExecutorExtension idempotentImportExecutorExtension;
+  private Class<? extends InMemoryDataCopier> copierClass;
+  private int jobConcurrency;
+  private boolean workerLoop;
 
   public static void main(String[] args) {
     Thread.setDefaultUncaughtExceptionHandler(UncaughtExceptionHandlers.systemExit());
@@ -68,12 +88,19 @@ public class WorkerMain {
   }
 
   public void initialize() {
-    Monitor monitor = loadMonitor();
+    monitor = loadMonitor();
+    if (monitor instanceof JobAwareMonitor) {
+      // Jobs processed at the same time each label their own entries
+      ((JobAwareMonitor) monitor).setJobIdSupplier(JobMetadata::getJobIdIfInitialized);
+    }
 
     SettingsExtension settingsExtension = getSettingsExtension();
     settingsExtension.initialize();
     WorkerExtensionContext extensionContext =
         new WorkerExtensionContext(settingsExtension, monitor);
+    this.extensionContext = extensionContext;
+    // Before any extension can open a connection, as the pool is sized by the first one
+    configureConnectionPool(extensionContext);
 
     // TODO this should be moved into a service extension
     extensionContext.registerService(HttpTransport.class, new NetHttpTransport());
@@ -89,9 +116,18 @@ public class WorkerMain {
     cloudExtension.initialize(extensionContext);
     monitor.info(() -> "Using CloudExtension: " + cloudExtension.getClass().getName());
 
-    JobStore jobStore = cloudExtension.getJobStore();
+    JobStore jobStore = getJobStore(cloudExtension, extensionContext);
     extensionContext.registerService(JobStore.class, jobStore);
     extensionContext.registerService(TemporaryPerJobDataStore.class, jobStore);
+    JobTempFileManager tempFiles = getTempFileManager(extensionContext);
+    extensionContext.registerService(JobTempFileManager.class, tempFiles);
+    JobMediaCache mediaCache =
+        new JobMediaCache(extensionContext.getSetting("mediaCacheDownloads", false));
+    extensionContext.registerService(JobMediaCache.class, mediaCache);
+    extensionContext.registerService(
+        ConnectionProvider.class, getConnectionProvider(jobStore, tempFiles, mediaCache, extensionContext));
+    extensionContext.registerService(
+        DownloadPrefetcher.class, getDownloadPrefetcher(extensionContext));
 
     AppCredentialStore appCredentialStore = cloudExtension.getAppCredentialStore();
     extensionContext.registerService(AppCredentialStore.class, appCredentialStore);
@@ -103,8 +139,7 @@ public class WorkerMain {
         SecurityExtensionLoader.getSecurityExtension(extensionContext);
     monitor.info(() -> "Using SecurityExtension: " + securityExtension.getClass().getName());
 
-    IdempotentImportExecutorExtension idempotentImportExecutorExtension =
-        IdempotentImportExecutorLoader.load(extensionContext);
+    idempotentImportExecutorExtension = IdempotentImportExecutorLoader.load(extensionContext);
 
     extensionContext.registerService(
         IdempotentImportExecutorExtension.class, idempotentImportExecutorExtension);
@@ -117,7 +152,12 @@ public class WorkerMain {
 
     JobHooks jobHooks = loadJobHooks();
 
-    Injector injector = null;
+    copierClass = InMemoryDataCopierClassLoader.load();
+    monitor.info(() -> "Using InMemoryDataCopier: " + copierClass.getName());
+
+    jobConcurrency = extensionContext.getSetting("workerJobConcurrency", 1);
+    workerLoop = extensionContext.getSetting("workerLoop", false);
+
     try {
       injector =
           Guice.createInjector(
@@ -126,30 +166,155 @@ public class WorkerMain {
                   cloudExtension,
                   transferExtensions,
                   securityExtension,
-                  idempotentImportExecutorExtension,
                   symmetricKeyGenerator,
-                  jobHooks,
-                  new TransferCompatibilityProvider()));
+                  jobHooks));
     } catch (Exception e) {
       monitor.severe(() -> "Unable to initialize Guice in Worker", e);
       throw e;
     }
-    worker = injector.getInstance(Worker.class);
 
     // Reset the JobMetadata in case set previously when running SingleVMMain
     JobMetadata.reset();
   }
 
+  /**
+   * Keeps blobs of at most {@code tempStoreMemoryMaxBlobKb} of the job store in memory, up to
+   * {@code tempStoreMemoryMb} in total, when that setting is not zero.
+   */
+  private JobStore getJobStore(CloudExtension cloudExtension, ExtensionContext context) {
+    JobStore jobStore = cloudExtension.getJobStore();
+    int memoryMb = context.getSetting("tempStoreMemoryMb", 0);
+    if (memoryMb <= 0) {
+      return jobStore;
+    }
+    int maxBlobKb = context.getSetting("tempStoreMemoryMaxBlobKb", 64);
+    monitor.info(
+        () ->
+            format("Keeping job store blobs up to %d KB in %d MB of memory", maxBlobKb, memoryMb));
+    return new TieredJobStore(jobStore, maxBlobKb * 1024, memoryMb * 1024L * 1024L, monitor);
+  }
+
+  /**
+   * Creates the manager of the temp files of importers from the {@code tempFileDir}, {@code
+   * tempFileJobQuotaMb} and {@code tempFileWorkerQuotaMb} settings, where a quota of zero means no
+   * quota.
+   */
+  private JobTempFileManager getTempFileManager(ExtensionContext context) {
+    String directory = context.getSetting("tempFileDir", null);
+    int jobQuotaMb = context.getSetting("tempFileJobQuotaMb", 0);
+    int workerQuotaMb = context.getSetting("tempFileWorkerQuotaMb", 0);
+    return new JobTempFileManager(
+        directory == null ? JobTempFileManager.DEFAULT_ROOT : Paths.get(directory),
+        toQuotaBytes(jobQuotaMb),
+        toQuotaBytes(workerQuotaMb),
+        monitor);
+  }
+
+  /**
+   * Sets the number of idle connections kept alive per host from the {@code
+   * httpMaxConnectionsPerHost} setting. The JVM reads it when the first connection is opened, so it
+   * has no effect if something already opened one, such as an earlier worker in the same JVM.
+   *
+   * <p>This is the JVM-wide {@code http.maxConnections} property: it sizes the keep-alive cache of
+   * every {@code HttpURLConnection} in the process, including the {@link NetHttpTransport} clients
+   * of extensions, not only the downloads of the {@link ConnectionProvider}.
+   */
+  private void configureConnectionPool(ExtensionContext context) {
+    int maxConnectionsPerHost = context.getSetting("httpMaxConnectionsPerHost", 0);
+    if (maxConnectionsPerHost <= 0) {
+      return;
+    }
+    String current = System.getProperty("http.maxConnections");
+    if (current != null) {
+      monitor.info(
+          () ->
+              format(
+                  "Ignoring httpMaxConnectionsPerHost as http.maxConnections is already %s",
+                  current));
+      return;
+    }
+    monitor.info(
+        () ->
+            format(
+                "Keeping up to %d idle connections per host for every HttpURLConnection",
+                maxConnectionsPerHost));
+    System.setProperty("http.maxConnections", Integer.toString(maxConnectionsPerHost));
+  }
+
+  /**
+   * Creates the provider of the downloads of importers, with the timeouts and resumes of the {@code
+   * http*} settings and the segmented downloads of large items of the {@code segmentedDownload*}
+   * settings, which stages what it downloads in {@code mediaCache}.
+   */
+  private static ConnectionProvider getConnectionProvider(
+      TemporaryPerJobDataStore jobStore,
+      JobTempFileManager tempFiles,
+      JobMediaCache mediaCache,
+      ExtensionContext context) {
+    return ConnectionProvider.Builder.newInstance(jobStore)
+        .timeouts(
+            context.getSetting("httpConnectTimeoutMillis", 30000),
+            context.getSetting("httpReadTimeoutMillis", 120000))
+        .maxResumes(context.getSetting("httpMaxResumes", 5))
+        .segmentedDownloads(
+            tempFiles,
+            context.getSetting("segmentedDownloadThresholdMb", 0) * 1024L * 1024L,
+            context.getSetting("segmentedDownloadSegments", 4),
+            context.getSetting("segmentedDownloadConnectionsPerJob", 8))
+        .mediaCache(mediaCache)
+        .build();
+  }
+
+  /** Creates the prefetcher of importers from the {@code downloadPrefetch*} settings. */
+  private static DownloadPrefetcher getDownloadPrefetcher(ExtensionContext context) {
+    return new DownloadPrefetcher(
+        context.getSetting("downloadPrefetchDepth", 0),
+        context.getSetting("downloadPrefetchBudgetMb", 64) * 1024L * 1024L);
+  }
+
+  private static long toQuotaBytes(int quotaMb) {
+    return quotaMb > 0 ? quotaMb * 1024L * 1024L : Long.MAX_VALUE;
+  }
+
+  /**
+   * Processes a single job, or keeps processing jobs until interrupted when either {@code
+   * workerLoop} or {@code workerJobConcurrency} is set.
+   */
   public void poll() {
-    worker.doWork();
+    if (jobConcurrency > 1) {
+      monitor.info(() -> "Processing up to " + jobConcurrency + " jobs concurrently");
+      new MultiJobWorker(this::createWorker, jobConcurrency, monitor).run();
+    } else if (workerLoop) {
+      monitor.info(() -> "Processing jobs one at a time until stopped");
+      new MultiJobWorker(this::createWorker, 1, monitor).run();
+    } else {
+      // A canceled job is stopped by exiting when it is the only job in the process
+      createWorker(() -> System.exit(0)).doWork();
+    }
+  }
+
+  /**
+   * Creates a {@link Worker} for a single job from a child injector, so that the job specific
+   * bindings in {@link JobScopedModule} are never shared with another job.
+   */
+  private Worker createWorker(Runnable jobAbandonedAction) {
+    return injector
+        .createChildInjector(
+            new JobScopedModule(
+                extensionContext,
+                idempotentImportExecutorExtension,
+                new TransferCompatibilityProvider(),
+                copierClass,
+                jobAbandonedAction))
+        .getInstance(Worker.class);
   }
 
   private static List<TransferExtension> getTransferExtensions(Monitor monitor) {
     // TODO: Next version should ideally not load every TransferExtension impl, look into
     // solutions where we selectively invoke class loader.
     ImmutableList.Builder<TransferExtension> extensionsBuilder = ImmutableList.builder();
-    // Note that initialization of the TransferExtension is done in the WorkerModule since they're
-    // initialized as they're requested.
+    // Note that initialization of the TransferExtension is done in the JobScopedModule since
+    // they're initialized as they're requested.
     ServiceLoader.load(TransferExtension.class)
         .iterator()
         .forEachRemaining(
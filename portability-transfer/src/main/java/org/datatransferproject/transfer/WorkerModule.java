@@ -16,7 +16,6 @@
 package org.datatransferproject.transfer;
 
 import static com.google.common.collect.MoreCollectors.onlyElement;
-import static java.lang.String.format;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.annotations.VisibleForTesting;
@@ -25,38 +24,29 @@ import com.google.common.util.concurrent.AbstractScheduledService;
 import com.google.common.util.concurrent.AbstractScheduledService.Scheduler;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
-import java.io.IOException;
-import java.io.InputStream;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.TimeUnit;
-import org.datatransferproject.api.launcher.DelegatingExtensionContext;
 import org.datatransferproject.api.launcher.DtpInternalMetricRecorder;
 import org.datatransferproject.api.launcher.ExtensionContext;
-import org.datatransferproject.api.launcher.MetricRecorder;
 import org.datatransferproject.api.launcher.Monitor;
 import org.datatransferproject.config.FlagBindingModule;
 import org.datatransferproject.launcher.metrics.LoggingDtpInternalMetricRecorder;
-import org.datatransferproject.launcher.metrics.ServiceAwareMetricRecorder;
 import org.datatransferproject.security.SymmetricKeyGenerator;
+import org.datatransferproject.spi.cloud.connection.ConnectionProvider;
 import org.datatransferproject.spi.cloud.extension.CloudExtension;
 import org.datatransferproject.spi.cloud.storage.AppCredentialStore;
+import org.datatransferproject.spi.cloud.storage.JobMediaCache;
 import org.datatransferproject.spi.cloud.storage.JobStore;
+import org.datatransferproject.spi.cloud.storage.JobTempFileManager;
 import org.datatransferproject.spi.transfer.extension.TransferExtension;
 import org.datatransferproject.spi.transfer.hooks.JobHooks;
-import org.datatransferproject.spi.transfer.idempotentexecutor.IdempotentImportExecutor;
-import org.datatransferproject.spi.transfer.idempotentexecutor.IdempotentImportExecutorExtension;
-import org.datatransferproject.spi.transfer.provider.Exporter;
-import org.datatransferproject.spi.transfer.provider.Importer;
-import org.datatransferproject.spi.transfer.provider.TransferCompatibilityProvider;
+import org.datatransferproject.spi.transfer.prefetch.DownloadPrefetcher;
 import org.datatransferproject.spi.transfer.security.AuthDataDecryptService;
 import org.datatransferproject.spi.transfer.security.PublicKeySerializer;
 import org.datatransferproject.spi.transfer.security.SecurityExtension;
 import org.datatransferproject.spi.transfer.security.TransferKeyGenerator;
-import org.datatransferproject.transfer.copier.InMemoryDataCopier;
-import org.datatransferproject.transfer.copier.InMemoryDataCopierClassLoader;
 import org.datatransferproject.types.transfer.retry.RetryStrategyLibrary;
-import org.datatransferproject.types.transfer.serviceconfig.TransferServiceConfig;
 
 final class WorkerModule extends FlagBindingModule {
 
@@ -64,28 +54,22 @@ final class WorkerModule extends FlagBindingModule {
   private final ExtensionContext context;
   private final List<TransferExtension> transferExtensions;
   private final SecurityExtension securityExtension;
-  private final IdempotentImportExecutorExtension idempotentImportExecutorExtension;
   private final SymmetricKeyGenerator symmetricKeyGenerator;
   private final JobHooks jobHooks;
-  private final TransferCompatibilityProvider compatibilityProvider;
 
   WorkerModule(
       ExtensionContext context,
       CloudExtension cloudExtension,
       List<TransferExtension> transferExtensions,
       SecurityExtension securityExtension,
-      IdempotentImportExecutorExtension idempotentImportExecutorExtension,
       SymmetricKeyGenerator symmetricKeyGenerator,
-      JobHooks jobHooks,
-      TransferCompatibilityProvider transferCompatibilityProvider) {
+      JobHooks jobHooks) {
     this.cloudExtension = cloudExtension;
     this.context = context;
     this.transferExtensions = transferExtensions;
     this.securityExtension = securityExtension;
-    this.idempotentImportExecutorExtension = idempotentImportExecutorExtension;
     this.symmetricKeyGenerator = symmetricKeyGenerator;
     this.jobHooks = jobHooks;
-    this.compatibilityProvider = transferCompatibilityProvider;
   }
 
   @VisibleForTesting
@@ -111,9 +95,6 @@ final class WorkerModule extends FlagBindingModule {
     bindFlags(context);
 
     bind(JobHooks.class).toInstance(jobHooks);
-    bind(InMemoryDataCopier.class).to(InMemoryDataCopierClassLoader.load());
-    getMonitor()
-        .info(() -> "Using InMemoryDataCopier: " + InMemoryDataCopierClassLoader.load().getName());
 
     bind(ObjectMapper.class).toInstance(context.getTypeManager().getMapper());
 
@@ -150,50 +131,38 @@ final class WorkerModule extends FlagBindingModule {
   @Provides
   @Singleton
   JobStore getJobStore() {
-    return cloudExtension.getJobStore();
+    // The store registered by WorkerMain, which may keep small blobs of importers in memory
+    return context.getService(JobStore.class);
   }
 
   @Provides
   @Singleton
-  AppCredentialStore getBucketStore() {
-    return cloudExtension.getAppCredentialStore();
+  JobTempFileManager getTempFileManager() {
+    return context.getService(JobTempFileManager.class);
   }
 
   @Provides
   @Singleton
-  Exporter getExporter(ImmutableList<TransferExtension> transferExtensions) {
-    TransferExtension extension =
-        findTransferExtension(transferExtensions, JobMetadata.getExportService());
-    DelegatingExtensionContext serviceSpecificContext = new DelegatingExtensionContext(context);
-    serviceSpecificContext.registerOverrideService(
-        MetricRecorder.class,
-        new ServiceAwareMetricRecorder(
-            extension.getServiceId(),
-            context.getService(DtpInternalMetricRecorder.class)));
-    serviceSpecificContext.registerOverrideService(
-        TransferServiceConfig.class,
-        getTransferServiceConfig(extension));
-    extension.initialize(serviceSpecificContext);
+  JobMediaCache getMediaCache() {
+    return context.getService(JobMediaCache.class);
+  }
 
-    return compatibilityProvider.getCompatibleExporter(extension, JobMetadata.getDataType());
+  @Provides
+  @Singleton
+  ConnectionProvider getConnectionProvider() {
+    return context.getService(ConnectionProvider.class);
   }
 
   @Provides
   @Singleton
-  Importer getImporter(ImmutableList<TransferExtension> transferExtensions) {
-    TransferExtension extension =
-        findTransferExtension(transferExtensions, JobMetadata.getImportService());
-    DelegatingExtensionContext serviceSpecificContext = new DelegatingExtensionContext(context);
-    serviceSpecificContext.registerOverrideService(
-        MetricRecorder.class,
-        new ServiceAwareMetricRecorder(
-            extension.getServiceId(),
-            context.getService(DtpInternalMetricRecorder.class)));
-    serviceSpecificContext.registerOverrideService(
-        TransferServiceConfig.class,
-        getTransferServiceConfig(extension));
-    extension.initialize(serviceSpecificContext);
-    return compatibilityProvider.getCompatibleImporter(extension, JobMetadata.getDataType());
+  DownloadPrefetcher getDownloadPrefetcher() {
+    return context.getService(DownloadPrefetcher.class);
+  }
+
+  @Provides
+  @Singleton
+  AppCredentialStore getBucketStore() {
+    return cloudExtension.getAppCredentialStore();
   }
 
   @Provides
@@ -239,36 +208,4 @@ final class WorkerModule extends FlagBindingModule {
   ExtensionContext getContext() {
     return context;
   }
-
-  private TransferServiceConfig getTransferServiceConfig(TransferExtension ext) {
-    String configFileName = "config/" + ext.getServiceId().toLowerCase() + ".yaml";
-    InputStream inputStream = this.getClass().getClassLoader().getResourceAsStream(configFileName);
-    getMonitor()
-        .info(
-            () ->
-                format(
-                    "Service %s has a config file: %s", ext.getServiceId(), (inputStream != null)));
-    if (inputStream == null) {
-      return TransferServiceConfig.getDefaultInstance();
-    } else {
-      try {
-        return TransferServiceConfig.create(inputStream);
-      } catch (IOException e) {
-        throw new RuntimeException("Couldn't create config for " + ext.getServiceId(), e);
-      }
-    }
-  }
-
-  @Provides
-  @Singleton
-  public IdempotentImportExecutor getIdempotentImportExecutor() {
-    return idempotentImportExecutorExtension.getIdempotentImportExecutor(context);
-  }
-
-  @Provides
-  @Singleton
-  @Annotations.RetryingExecutor
-  public IdempotentImportExecutor getRetryingIdempotentImportExecutor() {
-    return idempotentImportExecutorExtension.getRetryingIdempotentImportExecutor(context);
-  }
 }
@@ -35,4 +35,11 @@ public interface InMemoryDataCopier {
       throws IOException, CopyException;
 
   Collection<ErrorDetail> getErrors(UUID jobId);
+
+  /**
+   * Releases the state of the import executors, the exporter and the importer for {@code jobId}
+   * once its errors were read. What the executors stored is deleted only if the job {@code
+   * succeeded}.
+   */
+  default void releaseJob(UUID jobId, boolean succeeded) {}
 }
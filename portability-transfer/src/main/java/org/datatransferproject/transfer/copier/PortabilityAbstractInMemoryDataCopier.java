@@ -31,7 +31,6 @@ import org.datatransferproject.api.launcher.Monitor;
 import org.datatransferproject.launcher.monitor.events.EventCode;
 import org.datatransferproject.spi.cloud.connection.ConnectionProvider;
 import org.datatransferproject.spi.cloud.storage.JobStore;
-import org.datatransferproject.spi.cloud.types.PortabilityJob;
 import org.datatransferproject.spi.cloud.types.PortabilityJob.TransferMode;
 import org.datatransferproject.spi.transfer.idempotentexecutor.IdempotentImportExecutor;
 import org.datatransferproject.spi.transfer.provider.ExportResult;
@@ -102,6 +101,21 @@ public abstract class PortabilityAbstractInMemoryDataCopier implements InMemoryD
       Optional<ExportInformation> exportInfo)
       throws IOException, CopyException;
 
+  /**
+   * Points the executors at job {@code jobId} before it is copied, and at the service it imports
+   * into so that their retries consult that service's circuit breaker.
+   */
+  protected void setUpExecutors(UUID jobId) {
+    idempotentImportExecutor.setJobId(jobId);
+    retryingIdempotentImportExecutor.setJobId(jobId);
+    if (JobMetadata.isInitialized()) {
+      idempotentImportExecutor.setImportService(
+          JobMetadata.getDataType(), JobMetadata.getImportService());
+      retryingIdempotentImportExecutor.setImportService(
+          JobMetadata.getDataType(), JobMetadata.getImportService());
+    }
+  }
+
   @Override
   public Collection<ErrorDetail> getErrors(UUID jobId) {
     idempotentImportExecutor.setJobId(jobId);
@@ -109,6 +123,23 @@ public abstract class PortabilityAbstractInMemoryDataCopier implements InMemoryD
     return idempotentImportExecutor.getErrors();
   }
 
+  @Override
+  public void releaseJob(UUID jobId, boolean succeeded) {
+    idempotentImportExecutor.releaseJob(jobId);
+    retryingIdempotentImportExecutor.releaseJob(jobId);
+    if (succeeded) {
+      idempotentImportExecutor.deleteJob(jobId);
+      retryingIdempotentImportExecutor.deleteJob(jobId);
+    }
+    try {
+      exporterProvider.get().releaseJob(jobId);
+      importerProvider.get().releaseJob(jobId);
+    } catch (RuntimeException e) {
+      // The job may have failed before its exporter or importer could be created
+      monitor.info(() -> "Could not release the exporter and importer of job " + jobId, e);
+    }
+  }
+
   protected ExportResult<?> copyIteration(
       UUID jobId,
       AuthData exportAuthData,
@@ -122,11 +153,28 @@ public abstract class PortabilityAbstractInMemoryDataCopier implements InMemoryD
     ExportResult<?> exportResult =
         exportIteration(jobId, exportAuthData, exportInformation, jobIdPrefix, copyIteration);
 
+    importExportResult(jobId, importAuthData, exportResult, jobIdPrefix, copyIteration);
+
+    return exportResult;
+  }
+
+  /**
+   * Imports (or, depending on the job's transfer mode, sizes) the data exported by a single copy
+   * iteration. Subclasses that decouple exporting from importing call this directly with the
+   * result of {@link #exportIteration}.
+   */
+  protected void importExportResult(
+      UUID jobId,
+      AuthData importAuthData,
+      ExportResult<?> exportResult,
+      String jobIdPrefix,
+      int copyIteration)
+      throws CopyException {
     DataModel exportedData = exportResult.getExportedData();
     if (exportedData != null) {
-      PortabilityJob job = jobStore.findJob(jobId);
-      TransferMode transferMode =
-          job.transferMode() == null ? TransferMode.DATA_TRANSFER : job.transferMode();
+      // Read from the snapshot taken when the job was claimed rather than the JobStore, which
+      // would otherwise cost a round trip for every page
+      TransferMode transferMode = JobMetadata.getTransferMode();
       switch (transferMode) {
         case DATA_TRANSFER:
           importIteration(jobId, importAuthData, jobIdPrefix, copyIteration, exportedData);
@@ -140,11 +188,9 @@ public abstract class PortabilityAbstractInMemoryDataCopier implements InMemoryD
                   + getClass().getSimpleName());
       }
     }
-
-    return exportResult;
   }
 
-  private ExportResult<?> exportIteration(
+  protected ExportResult<?> exportIteration(
       UUID jobId,
       AuthData exportAuthData,
       Optional<ExportInformation> exportInformation,
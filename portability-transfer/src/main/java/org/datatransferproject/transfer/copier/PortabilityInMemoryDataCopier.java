@@ -76,8 +76,7 @@ public class PortabilityInMemoryDataCopier extends PortabilityAbstractInMemoryDa
       UUID jobId,
       Optional<ExportInformation> exportInfo)
       throws IOException, CopyException {
-    idempotentImportExecutor.setJobId(jobId);
-    retryingIdempotentImportExecutor.setJobId(jobId);
+    setUpExecutors(jobId);
     copyHelper(exportAuthData, importAuthData, jobId, exportInfo);
   }
 
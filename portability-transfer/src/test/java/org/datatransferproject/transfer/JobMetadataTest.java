@@ -0,0 +1,83 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.datatransferproject.transfer;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.base.Stopwatch;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import org.datatransferproject.spi.cloud.types.PortabilityJob.TransferMode;
+import org.datatransferproject.types.common.models.DataVertical;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class JobMetadataTest {
+
+  @AfterEach
+  public void cleanUp() {
+    JobMetadata.exitJobScope();
+    JobMetadata.reset();
+  }
+
+  @Test
+  public void jobScopeIsIsolatedFromGlobalMetadata() {
+    UUID globalJobId = UUID.randomUUID();
+    init(globalJobId, "global");
+
+    JobMetadata.enterJobScope();
+    assertThat(JobMetadata.isInitialized()).isFalse();
+    UUID scopedJobId = UUID.randomUUID();
+    init(scopedJobId, "scoped");
+    assertThat(JobMetadata.getJobId()).isEqualTo(scopedJobId);
+
+    JobMetadata.exitJobScope();
+    assertThat(JobMetadata.getJobId()).isEqualTo(globalJobId);
+    assertThat(JobMetadata.getExportService()).isEqualTo("global");
+  }
+
+  @Test
+  public void jobScopeIsOnlyCarriedToOtherThreadsExplicitly() throws InterruptedException {
+    JobMetadata.enterJobScope();
+    UUID jobId = UUID.randomUUID();
+    init(jobId, "scoped");
+    AtomicReference<Boolean> inheritedByChild = new AtomicReference<>();
+    AtomicReference<UUID> seenInScope = new AtomicReference<>();
+
+    Thread child = new Thread(() -> inheritedByChild.set(JobMetadata.isInitialized()));
+    child.start();
+    child.join();
+    Thread carrier =
+        new Thread(JobMetadata.inCurrentScope(() -> seenInScope.set(JobMetadata.getJobId())));
+    carrier.start();
+    carrier.join();
+
+    assertThat(inheritedByChild.get()).isFalse();
+    assertThat(seenInScope.get()).isEqualTo(jobId);
+    assertThat(JobMetadata.getJobIdIfInitialized()).isEqualTo(jobId.toString());
+  }
+
+  private static void init(UUID jobId, String service) {
+    JobMetadata.init(
+        jobId,
+        "key".getBytes(),
+        DataVertical.PHOTOS,
+        service,
+        service,
+        TransferMode.DATA_TRANSFER,
+        Stopwatch.createStarted());
+  }
+}
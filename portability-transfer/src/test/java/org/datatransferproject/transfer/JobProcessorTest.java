@@ -22,8 +22,13 @@ import java.util.Optional;
 import java.util.UUID;
 import org.datatransferproject.api.launcher.DtpInternalMetricRecorder;
 import org.datatransferproject.api.launcher.Monitor;
+import org.datatransferproject.spi.cloud.connection.ConnectionProvider;
+import org.datatransferproject.spi.cloud.storage.JobMediaCache;
 import org.datatransferproject.spi.cloud.storage.JobStore;
+import org.datatransferproject.spi.cloud.storage.JobTempFileManager;
+import org.datatransferproject.spi.cloud.types.PortabilityJob.TransferMode;
 import org.datatransferproject.spi.transfer.hooks.JobHooks;
+import org.datatransferproject.spi.transfer.prefetch.DownloadPrefetcher;
 import org.datatransferproject.spi.transfer.types.CopyException;
 import org.datatransferproject.transfer.copier.InMemoryDataCopier;
 import org.datatransferproject.types.common.ExportInformation;
@@ -41,13 +46,20 @@ public class JobProcessorTest {
   private AuthData exportAuthData;
   private AuthData importAuthData;
   private InMemoryDataCopier copier;
+  private JobHooks hooks;
+  private DownloadPrefetcher prefetcher;
 
   private static class TestJobProcessor extends JobProcessor {
 
-    public TestJobProcessor(InMemoryDataCopier copier) {
+    public TestJobProcessor(
+        InMemoryDataCopier copier, JobHooks hooks, DownloadPrefetcher prefetcher) {
       super(
           Mockito.mock(JobStore.class),
-          Mockito.mock(JobHooks.class),
+          Mockito.mock(JobTempFileManager.class),
+          Mockito.mock(JobMediaCache.class),
+          Mockito.mock(ConnectionProvider.class),
+          prefetcher,
+          hooks,
           null,
           copier,
           null,
@@ -65,7 +77,9 @@ public class JobProcessorTest {
     jobId = UUID.randomUUID();
     exportInfo = Mockito.mock(ExportInformation.class);
     copier = Mockito.mock(InMemoryDataCopier.class);
-    processor = Mockito.spy(new TestJobProcessor(copier));
+    hooks = Mockito.mock(JobHooks.class);
+    prefetcher = Mockito.mock(DownloadPrefetcher.class);
+    processor = Mockito.spy(new TestJobProcessor(copier, hooks, prefetcher));
     JobMetadata.reset();
     JobMetadata.init(
         jobId,
@@ -73,6 +87,7 @@ public class JobProcessorTest {
         DataVertical.BLOBS,
         "",
         "",
+        TransferMode.DATA_TRANSFER,
         Stopwatch.createStarted());
   }
 
@@ -88,4 +103,14 @@ public class JobProcessorTest {
     processor.processJob();
     Mockito.verify(copier).getErrors(jobId);
   }
+
+  @Test
+  public void processJobRunsLaterCleanupWhenACleanupStepThrows() {
+    Mockito.doThrow(new IllegalStateException("release failed"))
+        .when(copier)
+        .releaseJob(jobId, false);
+    processor.processJob();
+    Mockito.verify(hooks).jobFinished(jobId, false);
+    Mockito.verify(prefetcher).releaseJob(jobId);
+  }
 }
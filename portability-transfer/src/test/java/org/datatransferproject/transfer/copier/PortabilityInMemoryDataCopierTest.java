@@ -104,6 +104,34 @@ public class PortabilityInMemoryDataCopierTest {
     }
   }
 
+  private static class TestParallelPortabilityStackInMemoryDataCopier
+      extends PortabilityStackInMemoryDataCopier {
+
+    public TestParallelPortabilityStackInMemoryDataCopier() {
+      super(
+          null,
+          null,
+          null,
+          Mockito.mock(Monitor.class),
+          new FakeIdempotentImportExecutor(),
+          new FakeIdempotentImportExecutor(),
+          null,
+          (Mockito.mock(JobStore.class)),
+          2);
+    }
+
+    protected ExportResult<?> copyIteration(
+        UUID jobId,
+        AuthData exportAuthData,
+        AuthData importAuthData,
+        Optional<ExportInformation> exportInformation,
+        String jobIdPrefix,
+        int copyIteration)
+        throws CopyException {
+      return Mockito.mock(ExportResult.class);
+    }
+  }
+
   public static Iterable<PortabilityAbstractInMemoryDataCopier> data() {
     return Arrays.asList(
         (new PortabilityAbstractInMemoryDataCopier[]{
@@ -470,4 +498,81 @@ public class PortabilityInMemoryDataCopierTest {
             Mockito.anyString(),
             Mockito.anyInt());
   }
+
+  @Test
+  public void parallelStackCopierCopiesEverySubResource() throws CopyException, IOException {
+    PortabilityStackInMemoryDataCopier parallelCopier =
+        Mockito.spy(new TestParallelPortabilityStackInMemoryDataCopier());
+    parallelCopier.resetCopyIterationCounter();
+    ContainerResource subResource1 = Mockito.mock(ContainerResource.class);
+    ContainerResource subResource2 = Mockito.mock(ContainerResource.class);
+    ContainerResource subResource3 = Mockito.mock(ContainerResource.class);
+
+    Mockito.when(continuationData.getContainerResources())
+        .thenReturn(Arrays.asList(subResource1, subResource2, subResource3));
+    Mockito.when(initialExportResult.getContinuationData()).thenReturn(continuationData);
+    Mockito.doReturn(initialExportResult)
+        .when(parallelCopier)
+        .copyIteration(
+            jobId, exportAuthData, importAuthData, Optional.of(exportInfo), jobIdPrefix, 1);
+
+    parallelCopier.copy(exportAuthData, importAuthData, jobId, Optional.of(exportInfo));
+
+    for (ContainerResource subResource : Arrays.asList(subResource1, subResource2, subResource3)) {
+      Mockito.verify(parallelCopier)
+          .copyIteration(
+              Mockito.eq(jobId),
+              Mockito.eq(exportAuthData),
+              Mockito.eq(importAuthData),
+              Mockito.eq(Optional.of(new ExportInformation(null, subResource))),
+              Mockito.eq(jobIdPrefix),
+              Mockito.anyInt());
+    }
+    Mockito.verify(parallelCopier.jobStore, Mockito.atLeastOnce())
+        .storeJobStack(jobId, new Stack<>());
+  }
+
+  @Test
+  public void parallelStackCopierDrainsPagesBeforeSubResources() throws CopyException, IOException {
+    PortabilityStackInMemoryDataCopier parallelCopier =
+        Mockito.spy(new TestParallelPortabilityStackInMemoryDataCopier());
+    parallelCopier.resetCopyIterationCounter();
+    PaginationData paginationData = Mockito.mock(PaginationData.class);
+    ContainerResource subResource1 = Mockito.mock(ContainerResource.class);
+    ContainerResource subResource2 = Mockito.mock(ContainerResource.class);
+
+    Mockito.when(continuationData.getPaginationData()).thenReturn(paginationData);
+    Mockito.when(continuationData.getContainerResources())
+        .thenReturn(Arrays.asList(subResource1, subResource2));
+    Mockito.when(initialExportResult.getContinuationData()).thenReturn(continuationData);
+    Mockito.doReturn(initialExportResult)
+        .when(parallelCopier)
+        .copyIteration(
+            jobId, exportAuthData, importAuthData, Optional.of(exportInfo), jobIdPrefix, 1);
+
+    parallelCopier.copy(exportAuthData, importAuthData, jobId, Optional.of(exportInfo));
+
+    // The sub-resources may be copied in either order, but both only after the next page
+    for (ContainerResource subResource : Arrays.asList(subResource1, subResource2)) {
+      InOrder orderVerifier = Mockito.inOrder(parallelCopier);
+      orderVerifier
+          .verify(parallelCopier)
+          .copyIteration(
+              Mockito.eq(jobId),
+              Mockito.eq(exportAuthData),
+              Mockito.eq(importAuthData),
+              Mockito.eq(Optional.of(new ExportInformation(paginationData, null))),
+              Mockito.eq(jobIdPrefix),
+              Mockito.anyInt());
+      orderVerifier
+          .verify(parallelCopier)
+          .copyIteration(
+              Mockito.eq(jobId),
+              Mockito.eq(exportAuthData),
+              Mockito.eq(importAuthData),
+              Mockito.eq(Optional.of(new ExportInformation(null, subResource))),
+              Mockito.eq(jobIdPrefix),
+              Mockito.anyInt());
+    }
+  }
 }
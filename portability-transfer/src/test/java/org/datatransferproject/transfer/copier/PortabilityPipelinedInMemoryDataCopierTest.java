@@ -0,0 +1,177 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.datatransferproject.transfer.copier;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.UUID;
+import org.datatransferproject.api.launcher.ExtensionContext;
+import org.datatransferproject.api.launcher.Monitor;
+import org.datatransferproject.copier.pipelined.PortabilityPipelinedInMemoryDataCopier;
+import org.datatransferproject.spi.transfer.provider.ExportResult;
+import org.datatransferproject.spi.transfer.types.ContinuationData;
+import org.datatransferproject.spi.transfer.types.CopyException;
+import org.datatransferproject.test.types.FakeIdempotentImportExecutor;
+import org.datatransferproject.types.common.ExportInformation;
+import org.datatransferproject.types.common.PaginationData;
+import org.datatransferproject.types.common.models.ContainerResource;
+import org.datatransferproject.types.transfer.auth.AuthData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+public class PortabilityPipelinedInMemoryDataCopierTest {
+
+  private UUID jobId;
+  private String jobIdPrefix;
+  private ExportInformation exportInfo;
+  private AuthData exportAuthData;
+  private AuthData importAuthData;
+  private PortabilityPipelinedInMemoryDataCopier copier;
+
+  private static class TestPortabilityPipelinedInMemoryDataCopier
+      extends PortabilityPipelinedInMemoryDataCopier {
+
+    public TestPortabilityPipelinedInMemoryDataCopier(ExtensionContext context) {
+      super(
+          null,
+          null,
+          null,
+          Mockito.mock(Monitor.class),
+          new FakeIdempotentImportExecutor(),
+          new FakeIdempotentImportExecutor(),
+          null,
+          null,
+          context);
+    }
+  }
+
+  @BeforeEach
+  public void setUp() throws CopyException {
+    importAuthData = exportAuthData = Mockito.mock(AuthData.class);
+    jobId = UUID.randomUUID();
+    jobIdPrefix = "Job " + jobId + ": ";
+    exportInfo = Mockito.mock(ExportInformation.class);
+    ExtensionContext context = Mockito.mock(ExtensionContext.class);
+    Mockito.when(context.getSetting(Mockito.eq("pipelinedCopierPrefetchSize"), Mockito.any()))
+        .thenReturn(2);
+    copier = Mockito.spy(new TestPortabilityPipelinedInMemoryDataCopier(context));
+    copier.resetCopyIterationCounter();
+    Mockito.doReturn(Mockito.mock(ExportResult.class))
+        .when(copier)
+        .exportIteration(
+            Mockito.any(), Mockito.any(), Mockito.any(), Mockito.anyString(), Mockito.anyInt());
+    Mockito.doNothing()
+        .when(copier)
+        .importExportResult(
+            Mockito.any(), Mockito.any(), Mockito.any(), Mockito.anyString(), Mockito.anyInt());
+  }
+
+  @Test
+  public void importsPagesInSerialCopierOrder() throws CopyException {
+    PaginationData paginationData = Mockito.mock(PaginationData.class);
+    ContainerResource subResource1 = Mockito.mock(ContainerResource.class);
+    ContainerResource subResource2 = Mockito.mock(ContainerResource.class);
+    ContinuationData continuationData = Mockito.mock(ContinuationData.class);
+    Mockito.when(continuationData.getPaginationData()).thenReturn(paginationData);
+    Mockito.when(continuationData.getContainerResources())
+        .thenReturn(Arrays.asList(subResource1, subResource2));
+
+    ExportResult<?> initialExportResult = Mockito.mock(ExportResult.class);
+    Mockito.when(initialExportResult.getContinuationData()).thenReturn(continuationData);
+    ExportResult<?> paginationExportResult = Mockito.mock(ExportResult.class);
+    ExportResult<?> subResource1ExportResult = Mockito.mock(ExportResult.class);
+    ExportResult<?> subResource2ExportResult = Mockito.mock(ExportResult.class);
+
+    Mockito.doReturn(initialExportResult)
+        .when(copier)
+        .exportIteration(jobId, exportAuthData, Optional.of(exportInfo), jobIdPrefix, 1);
+    Mockito.doReturn(paginationExportResult)
+        .when(copier)
+        .exportIteration(
+            jobId,
+            exportAuthData,
+            Optional.of(new ExportInformation(paginationData, null)),
+            jobIdPrefix,
+            2);
+    Mockito.doReturn(subResource1ExportResult)
+        .when(copier)
+        .exportIteration(
+            jobId,
+            exportAuthData,
+            Optional.of(new ExportInformation(null, subResource1)),
+            jobIdPrefix,
+            3);
+    Mockito.doReturn(subResource2ExportResult)
+        .when(copier)
+        .exportIteration(
+            jobId,
+            exportAuthData,
+            Optional.of(new ExportInformation(null, subResource2)),
+            jobIdPrefix,
+            4);
+
+    copier.copy(exportAuthData, importAuthData, jobId, Optional.of(exportInfo));
+
+    InOrder orderVerifier = Mockito.inOrder(copier);
+    orderVerifier.verify(copier)
+        .importExportResult(jobId, importAuthData, initialExportResult, jobIdPrefix, 1);
+    orderVerifier.verify(copier)
+        .importExportResult(jobId, importAuthData, paginationExportResult, jobIdPrefix, 2);
+    orderVerifier.verify(copier)
+        .importExportResult(jobId, importAuthData, subResource1ExportResult, jobIdPrefix, 3);
+    orderVerifier.verify(copier)
+        .importExportResult(jobId, importAuthData, subResource2ExportResult, jobIdPrefix, 4);
+  }
+
+  @Test
+  public void exportFailureIsRethrownOnCopyingThread() throws CopyException {
+    CopyException failure = new CopyException("export failed", new Exception());
+    Mockito.doThrow(failure)
+        .when(copier)
+        .exportIteration(jobId, exportAuthData, Optional.of(exportInfo), jobIdPrefix, 1);
+
+    CopyException thrown =
+        assertThrows(
+            CopyException.class,
+            () -> copier.copy(exportAuthData, importAuthData, jobId, Optional.of(exportInfo)));
+
+    assertSame(failure, thrown);
+    Mockito.verify(copier, Mockito.never())
+        .importExportResult(
+            Mockito.any(), Mockito.any(), Mockito.any(), Mockito.anyString(), Mockito.anyInt());
+  }
+
+  @Test
+  public void importFailureIsRethrown() throws CopyException {
+    CopyException failure = new CopyException("import failed", new Exception());
+    Mockito.doThrow(failure)
+        .when(copier)
+        .importExportResult(
+            Mockito.any(), Mockito.any(), Mockito.any(), Mockito.anyString(), Mockito.anyInt());
+
+    CopyException thrown =
+        assertThrows(
+            CopyException.class,
+            () -> copier.copy(exportAuthData, importAuthData, jobId, Optional.of(exportInfo)));
+
+    assertSame(failure, thrown);
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.datatransferproject.types.transfer.retry;
+
+import java.time.Instant;
+
+/**
+ * Tracks the health of a single service, so that {@link RetryingCallable} stops calling a service
+ * that keeps failing, e.g. with rate limit errors, instead of every item using up its own retries.
+ *
+ * <p>The breaker is closed until {@link CircuitBreakerConfig#getFailureThreshold()} consecutive
+ * failures, then open for {@link CircuitBreakerConfig#getOpenMillis()}, then half open: a single
+ * trial call goes through, and closes the breaker if it succeeds or opens it again if it fails.
+ */
+public class CircuitBreaker {
+
+  private final String service;
+  private final CircuitBreakerConfig config;
+
+  // Guarded by this
+  private int consecutiveFailures;
+  private Instant openUntil;
+  private boolean trialInFlight;
+
+  CircuitBreaker(String service, CircuitBreakerConfig config) {
+    this.service = service;
+    this.config = config;
+  }
+
+  public String getService() {
+    return service;
+  }
+
+  /**
+   * Returns how many milliseconds calls are still short-circuited for, or zero if a call may go
+   * ahead, in which case its outcome must be recorded.
+   */
+  public synchronized long checkCallAllowed(Instant now) {
+    if (openUntil == null) {
+      return 0L;
+    }
+    if (now.isBefore(openUntil)) {
+      return Math.max(1L, openUntil.toEpochMilli() - now.toEpochMilli());
+    }
+    if (trialInFlight) {
+      return config.getOpenMillis();
+    }
+    trialInFlight = true;
+    return 0L;
+  }
+
+  public synchronized void recordSuccess() {
+    consecutiveFailures = 0;
+    openUntil = null;
+    trialInFlight = false;
+  }
+
+  public synchronized void recordFailure(Throwable throwable, Instant now) {
+    boolean trial = trialInFlight;
+    trialInFlight = false;
+    if (!config.counts(throwable)) {
+      if (trial) {
+        // The service answered, so the trial call lets the others through again
+        recordSuccess();
+      }
+      return;
+    }
+    consecutiveFailures++;
+    if (trial || consecutiveFailures >= config.getFailureThreshold()) {
+      openUntil = now.plusMillis(config.getOpenMillis());
+    }
+  }
+
+  public synchronized boolean isOpen(Instant now) {
+    return openUntil != null && now.isBefore(openUntil);
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "CircuitBreaker{" +
+        "service=" + service +
+        ", consecutiveFailures=" + consecutiveFailures +
+        ", openUntil=" + openUntil +
+        '}';
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.datatransferproject.types.transfer.retry;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Preconditions;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+/**
+ * Configures the {@link CircuitBreaker} that {@link RetryStrategyLibrary} keeps for each service.
+ * A breaker opens after failureThreshold consecutive failures, short-circuits calls for
+ * openMillis, and then lets a single trial call through. If regexes are set, only failures whose
+ * string matches one of them count, so that failures of single items do not open the breaker.
+ *
+ * <p>NOTE: Our core library only supports reading CircuitBreakerConfigs from JSON or YAML format.
+ */
+public class CircuitBreakerConfig {
+
+  @JsonProperty("failureThreshold")
+  private int failureThreshold;
+  @JsonProperty("openMillis")
+  private long openMillis;
+  @JsonProperty("regexes")
+  private String[] regexes;
+
+  private final Pattern[] patterns;
+
+  public CircuitBreakerConfig(
+      @JsonProperty("failureThreshold") int failureThreshold,
+      @JsonProperty("openMillis") long openMillis,
+      @JsonProperty("regexes") String[] regexes) {
+    Preconditions.checkArgument(failureThreshold > 0, "Failure threshold should be > 0");
+    Preconditions.checkArgument(openMillis > 0L, "Open interval should be > 0");
+    this.failureThreshold = failureThreshold;
+    this.openMillis = openMillis;
+    this.regexes = regexes;
+    this.patterns =
+        regexes == null
+            ? null
+            : Arrays.stream(regexes)
+                .map(regex -> Pattern.compile(regex, Pattern.DOTALL))
+                .toArray(Pattern[]::new);
+  }
+
+  public int getFailureThreshold() {
+    return failureThreshold;
+  }
+
+  public long getOpenMillis() {
+    return openMillis;
+  }
+
+  /** Whether a failure counts towards opening the breaker. */
+  boolean counts(Throwable throwable) {
+    if (patterns == null) {
+      return true;
+    }
+    String haystack = throwable.toString();
+    for (Pattern pattern : patterns) {
+      if (pattern.matcher(haystack).matches()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return "CircuitBreakerConfig{" +
+        "failureThreshold=" + failureThreshold +
+        ", openMillis=" + openMillis +
+        ", regexes=" + Arrays.toString(regexes) +
+        '}';
+  }
+}
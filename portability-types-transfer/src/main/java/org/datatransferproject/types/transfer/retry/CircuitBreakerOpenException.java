@@ -0,0 +1,31 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.datatransferproject.types.transfer.retry;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Thrown instead of calling a service while its {@link CircuitBreaker} is open. The delay is the
+ * time left until the breaker lets a trial call through.
+ */
+public class CircuitBreakerOpenException extends RetryAfterException {
+
+  public CircuitBreakerOpenException(String service, Duration retryAfter) {
+    super("Circuit breaker for " + service + " is open", Optional.of(retryAfter));
+  }
+}
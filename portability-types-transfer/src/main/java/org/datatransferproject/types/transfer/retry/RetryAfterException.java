@@ -0,0 +1,72 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.datatransferproject.types.transfer.retry;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Optional;
+
+/**
+ * An {@link IOException} for a call that the destination asked to be retried later, carrying the
+ * delay it asked for, if any, for {@link RetryAfterStrategy}.
+ */
+public class RetryAfterException extends IOException {
+
+  private final Duration retryAfter;
+
+  public RetryAfterException(String message, Optional<Duration> retryAfter) {
+    super(message);
+    this.retryAfter = retryAfter.orElse(null);
+  }
+
+  public RetryAfterException(String message, Optional<Duration> retryAfter, Throwable cause) {
+    super(message, cause);
+    this.retryAfter = retryAfter.orElse(null);
+  }
+
+  /** The delay asked for by the destination, if it gave one. */
+  public Optional<Duration> getRetryAfter() {
+    return Optional.ofNullable(retryAfter);
+  }
+
+  /**
+   * Parses the value of an HTTP {@code Retry-After} header, given either in seconds or as an HTTP
+   * date. Returns an empty delay if the value is missing or cannot be parsed.
+   */
+  public static Optional<Duration> parseRetryAfterHeader(String value, Clock clock) {
+    if (value == null || value.trim().isEmpty()) {
+      return Optional.empty();
+    }
+    String trimmed = value.trim();
+    try {
+      return Optional.of(Duration.ofSeconds(Math.max(0, Long.parseLong(trimmed))));
+    } catch (NumberFormatException e) {
+      // Not a number of seconds, so it should be a date
+    }
+    try {
+      ZonedDateTime date = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME);
+      Duration delay = Duration.between(clock.instant(), date.toInstant());
+      return Optional.of(delay.isNegative() ? Duration.ZERO : delay);
+    } catch (DateTimeException e) {
+      return Optional.empty();
+    }
+  }
+}
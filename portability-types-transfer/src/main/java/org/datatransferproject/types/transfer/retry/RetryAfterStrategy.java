@@ -0,0 +1,101 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.datatransferproject.types.transfer.retry;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * {@link RetryStrategy} that waits for as long as the destination asked for through a {@link
+ * RetryAfterException}, e.g. from a {@code Retry-After} header, capped at maxIntervalMillis if set.
+ * Failures that carry no delay are retried at a regular interval.
+ */
+public class RetryAfterStrategy implements RetryStrategy {
+
+  @JsonProperty("maxAttempts")
+  private int maxAttempts;
+  @JsonProperty("intervalMillis")
+  private long intervalMillis;
+  @JsonProperty("maxIntervalMillis")
+  private long maxIntervalMillis;
+  @JsonProperty("identifier")
+  private String identifier;
+
+  public RetryAfterStrategy(
+      @JsonProperty("maxAttempts") int maxAttempts,
+      @JsonProperty("intervalMillis") long intervalMillis,
+      @JsonProperty("maxIntervalMillis") long maxIntervalMillis,
+      @JsonProperty("identifier") String identifier) {
+    Preconditions.checkArgument(maxAttempts > 0, "Max attempts should be > 0");
+    Preconditions.checkArgument(intervalMillis > 0L, "Interval should be > 0");
+    Preconditions.checkArgument(maxIntervalMillis >= 0L, "Max interval should be >= 0");
+    this.maxAttempts = maxAttempts;
+    this.intervalMillis = intervalMillis;
+    this.maxIntervalMillis = maxIntervalMillis;
+    this.identifier = identifier;
+  }
+
+  @Override
+  public boolean canTryAgain(int tries) {
+    return tries <= maxAttempts;
+  }
+
+  @Override
+  public long getNextIntervalMillis(int tries) {
+    return intervalMillis;
+  }
+
+  @Override
+  public long getRemainingIntervalMillis(int tries, long elapsedMillis) {
+    Preconditions.checkArgument(tries <= maxAttempts, "No retries left");
+    return intervalMillis - elapsedMillis;
+  }
+
+  @Override
+  public long getRemainingIntervalMillis(int tries, long elapsedMillis, Throwable throwable) {
+    Preconditions.checkArgument(tries <= maxAttempts, "No retries left");
+    Optional<Duration> retryAfter = findRetryAfter(throwable);
+    if (!retryAfter.isPresent()) {
+      return getRemainingIntervalMillis(tries, elapsedMillis);
+    }
+    // The delay counts from the failed response, so the time spent on the attempt is not deducted
+    long retryAfterMillis = retryAfter.get().toMillis();
+    return maxIntervalMillis > 0L ? Math.min(retryAfterMillis, maxIntervalMillis) : retryAfterMillis;
+  }
+
+  private static Optional<Duration> findRetryAfter(Throwable throwable) {
+    for (Throwable cause : Throwables.getCausalChain(throwable)) {
+      if (cause instanceof RetryAfterException) {
+        return ((RetryAfterException) cause).getRetryAfter();
+      }
+    }
+    return Optional.empty();
+  }
+
+  @Override
+  public String toString() {
+    return "RetryAfterStrategy{" +
+        "maxAttempts=" + maxAttempts +
+        ", intervalMillis=" + intervalMillis +
+        ", maxIntervalMillis=" + maxIntervalMillis +
+        ", identifier=" + identifier +
+        '}';
+  }
+}
@@ -21,7 +21,7 @@ import static com.google.common.base.Throwables.getStackTraceAsString;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.util.Arrays;
-import java.util.regex.Matcher;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 
 /**
@@ -42,6 +42,10 @@ public class RetryMapping {
   @JsonProperty(value = "strategy", required = true)
   private RetryStrategy strategy;
 
+  // Compiled once, as a mapping is checked against every failure of a transfer
+  private final Pattern[] patterns;
+  private final Pattern[] stacktracePatterns;
+
   public RetryMapping(
       @JsonProperty("regexes") String[] regexes,
       @JsonProperty("stacktraceRegexes") String[] stacktraceRegexes,
@@ -52,6 +56,8 @@ public class RetryMapping {
     checkArgument(
         this.regexes != null || this.stacktraceRegexes != null,
         "either regexes or stacktraceRegexes must be set for a valid RetryMapping");
+    this.patterns = compile(regexes);
+    this.stacktracePatterns = compile(stacktraceRegexes);
   }
 
   public String[] getRegexes() {
@@ -90,16 +96,30 @@ public class RetryMapping {
     return matchesThrowableTop(throwable) || matchesThrowableStack(throwable);
   }
 
+  /**
+   * Same as {@link #matches(Throwable)}, but with the stack trace of throwable supplied by the
+   * caller, so that it is rendered at most once when checking several mappings.
+   */
+  boolean matches(Throwable throwable, Supplier<String> stackTrace) {
+    return matchesThrowableTop(throwable)
+        || (stacktracePatterns != null && matchesAny(stacktracePatterns, stackTrace.get()));
+  }
+
+  /** Whether this mapping can match a throwable based on its stack trace. */
+  boolean hasStacktraceRegexes() {
+    return stacktracePatterns != null;
+  }
+
   /**
    * Whether throwable matches the top-level (ie: most recent, or high-stack-level propogator) of
    * this stack trace.
    */
   public boolean matchesThrowableTop(Throwable throwable) {
-    if (regexes == null) {
+    if (patterns == null) {
       return false;
     }
 
-    return throwableMatchesExpressions(throwable.toString(), regexes);
+    return matchesAny(patterns, throwable.toString());
   }
 
   /**
@@ -108,30 +128,35 @@ public class RetryMapping {
    * full stack trace.
    */
   public boolean matchesThrowableStack(Throwable throwable) {
-    if (stacktraceRegexes == null) {
+    if (stacktracePatterns == null) {
       return false;
     }
 
-    return throwableMatchesExpressions(getStackTraceAsString(throwable), stacktraceRegexes);
+    return matchesAny(stacktracePatterns, getStackTraceAsString(throwable));
   }
 
-  private static boolean throwableMatchesExpressions(
-      String throwableHaystack, String[] expressions) {
-    for (String regex : expressions) {
-      if (isMultilineMatch(regex, throwableHaystack)) {
+  private static boolean matchesAny(Pattern[] patterns, String throwableHaystack) {
+    for (Pattern pattern : patterns) {
+      if (pattern.matcher(throwableHaystack).matches()) {
         return true;
       }
     }
     return false;
   }
 
-  /** Whether hayStack contains the regex, even if '.' operator needs to match linebreaks. */
-  private static boolean isMultilineMatch(String regex, String hayStack) {
+  /**
+   * Compiles regexes so that they match a whole hayStack, even if '.' operator needs to match
+   * linebreaks.
+   */
+  private static Pattern[] compile(String[] regexes) {
+    if (regexes == null) {
+      return null;
+    }
     // Identical to {@link String#matches} but utilizes {@link Pattern.DOTALL} for regex
     // compilation.
-    Pattern p = Pattern.compile(regex, Pattern.DOTALL);
-    Matcher m = p.matcher(hayStack);
-    return m.matches();
+    return Arrays.stream(regexes)
+        .map(regex -> Pattern.compile(regex, Pattern.DOTALL))
+        .toArray(Pattern[]::new);
   }
 
   @Override
@@ -36,7 +36,8 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo.Id;
     @JsonSubTypes.Type(value = NoRetryStrategy.class, name = "Fatal"),
     @JsonSubTypes.Type(value = SkipRetryStrategy.class, name = "Skip"),
     @JsonSubTypes.Type(value = ExponentialBackoffSkipStrategy.class, name = "ExponentialSkip"),
-    @JsonSubTypes.Type(value = UniformRetrySkipStrategy.class, name = "UniformSkip")
+    @JsonSubTypes.Type(value = UniformRetrySkipStrategy.class, name = "UniformSkip"),
+    @JsonSubTypes.Type(value = RetryAfterStrategy.class, name = "RetryAfter")
 })
 public interface RetryStrategy {
 
@@ -56,6 +57,14 @@ public interface RetryStrategy {
    */
   long getRemainingIntervalMillis(int tries, long elapsedMillis);
 
+  /**
+   * Gets milliseconds until the next retry, given elapsed time so far and the failure of the last
+   * attempt, for strategies that take their interval from the failure itself
+   */
+  default long getRemainingIntervalMillis(int tries, long elapsedMillis, Throwable throwable) {
+    return getRemainingIntervalMillis(tries, elapsedMillis);
+  }
+
   /** Shows whether exception should be skipped */
   default boolean canSkip() {
     return false;
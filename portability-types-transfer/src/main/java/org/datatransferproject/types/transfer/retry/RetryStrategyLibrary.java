@@ -16,9 +16,19 @@
 
 package org.datatransferproject.types.transfer.retry;
 
+import static com.google.common.base.Throwables.getStackTraceAsString;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Class used by {@link RetryingCallable} to determine which {@link RetryStrategy} to use given a
@@ -30,6 +40,13 @@ import java.util.List;
  *
  * If the Throwable does not match any RetryStrategy, then a default RetryStrategy is returned.
  *
+ * Strategies chosen from the top-level message alone are cached by the string of the Throwable, as
+ * the same failure tends to repeat many times during an outage. A stack trace is only rendered
+ * once a mapping with stacktraceRegexes is reached, and at most once per Throwable.
+ *
+ * If a circuitBreaker is configured, the library also keeps a {@link CircuitBreaker} per service,
+ * shared by every {@link RetryingCallable} for that service.
+ *
  * NOTE: Our core library only supports reading RetryStrategyLibraries from JSON or YAML format.
  * You are welcome to write your own parser for any other config languages you like, as long as it
  * can be ultimately parsed by Jackson.
@@ -42,11 +59,36 @@ public class RetryStrategyLibrary {
   @JsonProperty(value = "defaultRetryStrategy", required = true)
   private final RetryStrategy defaultRetryStrategy;
 
+  @JsonProperty("circuitBreaker")
+  private final CircuitBreakerConfig circuitBreakerConfig;
+
+  private static final int MAX_CACHED_STRATEGIES = 1000;
+
+  // Mappings before this index can only match on the string of a Throwable
+  private final int firstStacktraceMapping;
+  private final Cache<String, RetryStrategy> strategiesByThrowable =
+      CacheBuilder.newBuilder().maximumSize(MAX_CACHED_STRATEGIES).build();
+  private final ConcurrentMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+  public RetryStrategyLibrary(List<RetryMapping> retryMappings,
+      RetryStrategy defaultRetryStrategy) {
+    this(retryMappings, defaultRetryStrategy, null);
+  }
+
+  @JsonCreator
   public RetryStrategyLibrary(@JsonProperty("strategyMappings") List<RetryMapping> retryMappings,
-      @JsonProperty("defaultRetryStrategy") RetryStrategy defaultRetryStrategy) {
+      @JsonProperty("defaultRetryStrategy") RetryStrategy defaultRetryStrategy,
+      @JsonProperty("circuitBreaker") CircuitBreakerConfig circuitBreakerConfig) {
     Preconditions.checkArgument(defaultRetryStrategy != null, "Default retry strategy cannot be null");
-    this.retryMappings = retryMappings;
+    this.retryMappings = retryMappings == null ? ImmutableList.of() : retryMappings;
     this.defaultRetryStrategy = defaultRetryStrategy;
+    this.circuitBreakerConfig = circuitBreakerConfig;
+    int firstStacktraceMapping = 0;
+    while (firstStacktraceMapping < this.retryMappings.size()
+        && !this.retryMappings.get(firstStacktraceMapping).hasStacktraceRegexes()) {
+      firstStacktraceMapping++;
+    }
+    this.firstStacktraceMapping = firstStacktraceMapping;
   }
 
   /**
@@ -57,23 +99,55 @@ public class RetryStrategyLibrary {
    * its internal library.  Later on it will use more and more of the Throwable to make a decision.
    */
   public RetryStrategy checkoutRetryStrategy(Throwable throwable) {
-    for (RetryMapping mapping : retryMappings) {
-      if (mapping.matches(throwable)) {
-        return mapping.getStrategy();
+    String key = throwable.toString();
+    RetryStrategy cached = strategiesByThrowable.getIfPresent(key);
+    if (cached != null) {
+      return cached;
+    }
+    for (int i = 0; i < firstStacktraceMapping; i++) {
+      if (retryMappings.get(i).matchesThrowableTop(throwable)) {
+        return cache(key, retryMappings.get(i).getStrategy());
+      }
+    }
+    if (firstStacktraceMapping == retryMappings.size()) {
+      return cache(key, defaultRetryStrategy);
+    }
+    Supplier<String> stackTrace = Suppliers.memoize(() -> getStackTraceAsString(throwable));
+    for (int i = firstStacktraceMapping; i < retryMappings.size(); i++) {
+      if (retryMappings.get(i).matches(throwable, stackTrace)) {
+        return retryMappings.get(i).getStrategy();
       }
     }
     return defaultRetryStrategy;
   }
 
+  private RetryStrategy cache(String key, RetryStrategy strategy) {
+    strategiesByThrowable.put(key, strategy);
+    return strategy;
+  }
+
   public RetryStrategy getDefaultRetryStrategy() {
     return defaultRetryStrategy;
   }
 
+  /**
+   * Returns the circuit breaker of a service, or null if no circuitBreaker is configured or the
+   * service is unknown.
+   */
+  public CircuitBreaker getCircuitBreaker(String service) {
+    if (circuitBreakerConfig == null || service == null) {
+      return null;
+    }
+    return circuitBreakers.computeIfAbsent(
+        service, key -> new CircuitBreaker(key, circuitBreakerConfig));
+  }
+
   @Override
   public String toString() {
     return "RetryStrategyLibrary{" +
         "retryMappings=" + retryMappings +
         ", defaultRetryStrategy=" + defaultRetryStrategy +
+        ", circuitBreaker=" + circuitBreakerConfig +
         '}';
   }
 }
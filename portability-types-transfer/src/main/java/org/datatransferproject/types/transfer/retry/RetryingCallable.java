@@ -22,12 +22,19 @@ import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import org.datatransferproject.api.launcher.Monitor;
 import org.datatransferproject.types.common.models.DataVertical;
 
 /**
  * Class for retrying a {@link Callable} given a {@link RetryStrategyLibrary}.
  *
+ * <p>If the library has a {@link CircuitBreaker} for the service, attempts made while it is open
+ * fail with a {@link CircuitBreakerOpenException} without calling the {@link Callable}.
+ *
  * @param <T> The type that the inner {@link Callable} returns.
  */
 public class RetryingCallable<T> implements Callable<T> {
@@ -75,54 +82,132 @@ public class RetryingCallable<T> implements Callable<T> {
   public T call() throws RetryException {
     while (true) {
       Instant start = clock.instant();
-      attempts++;
       try {
-        monitor.debug(
-            () ->
-                String.format(
-                    "Attempt %d started, service: %s, dataType: %s",
-                    attempts, service, dataType));
-        return callable.call();
+        return attempt();
       } catch (Exception e) {
-        mostRecentException = e;
-        monitor.info(() -> "RetryingCallable caught an exception", e);
-        long elapsedMillis = Duration.between(start, clock.instant()).toMillis();
-        // TODO: do we want to reset anything (eg, number of retries) if we see a different
-        // RetryStrategy?
-        RetryStrategy strategy = retryStrategyLibrary.checkoutRetryStrategy(e);
-        monitor.debug(
-            () ->
-                String.format(
-                    "Attempt %d failed, using retry strategy: %s, service: %s, dataType: %s",
-                    attempts, strategy.toString(), service, dataType));
-        if (strategy.canTryAgain(attempts)) {
-          long nextAttemptIntervalMillis =
-              strategy.getRemainingIntervalMillis(attempts, elapsedMillis);
-          monitor.debug(
-              () ->
-                  String.format(
-                      "Strategy has %d remainingIntervalMillis after %d elapsedMillis",
-                      nextAttemptIntervalMillis, elapsedMillis));
-          if (nextAttemptIntervalMillis > 0L) {
-            try {
-              Thread.sleep(nextAttemptIntervalMillis);
-              // wait is now complete, retry
-            } catch (InterruptedException ie) {
-              currentThread().interrupt();
-              throw new RetryException(attempts, mostRecentException);
-            }
-          }
-        } else {
-          monitor.debug(
-              () ->
-                  String.format("Strategy canTryAgain returned false after %d retries", attempts));
-          if (strategy.canSkip()) {
-            throw new RetryException(attempts, mostRecentException, true);
-          } else {
+        long nextAttemptIntervalMillis = onFailure(e, start);
+        if (nextAttemptIntervalMillis > 0L) {
+          try {
+            Thread.sleep(nextAttemptIntervalMillis);
+            // wait is now complete, retry
+          } catch (InterruptedException ie) {
+            currentThread().interrupt();
             throw new RetryException(attempts, mostRecentException);
           }
         }
       }
     }
   }
+
+  /**
+   * Tries to call the {@link Callable} on {@code executor} given the class's {@link
+   * RetryStrategyLibrary}, without blocking a thread between attempts: each reattempt is scheduled
+   * on a shared scheduler and handed to {@code executor} once its interval has passed.
+   *
+   * <p>Cancelling the returned future stops further attempts.
+   *
+   * @return A future of whatever is returned by the {@link Callable}, completed exceptionally with
+   *     a {@link RetryException} once the strategy gives up.
+   */
+  public CompletableFuture<T> callAsync(Executor executor) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    schedule(executor, executor, result);
+    return result;
+  }
+
+  private void attemptAsync(Executor executor, CompletableFuture<T> result) {
+    if (result.isDone()) {
+      return;
+    }
+    Instant start = clock.instant();
+    try {
+      result.complete(attempt());
+    } catch (Exception e) {
+      long nextAttemptIntervalMillis;
+      try {
+        nextAttemptIntervalMillis = onFailure(e, start);
+      } catch (RetryException re) {
+        result.completeExceptionally(re);
+        return;
+      }
+      schedule(
+          nextAttemptIntervalMillis > 0L
+              ? CompletableFuture.delayedExecutor(
+                  nextAttemptIntervalMillis, TimeUnit.MILLISECONDS, executor)
+              : executor,
+          executor,
+          result);
+    }
+  }
+
+  private void schedule(Executor next, Executor executor, CompletableFuture<T> result) {
+    try {
+      next.execute(() -> attemptAsync(executor, result));
+    } catch (RejectedExecutionException e) {
+      result.completeExceptionally(
+          new RetryException(attempts, mostRecentException != null ? mostRecentException : e));
+    }
+  }
+
+  private T attempt() throws Exception {
+    attempts++;
+    monitor.debug(
+        () ->
+            String.format(
+                "Attempt %d started, service: %s, dataType: %s", attempts, service, dataType));
+    CircuitBreaker circuitBreaker = retryStrategyLibrary.getCircuitBreaker(service);
+    if (circuitBreaker == null) {
+      return callable.call();
+    }
+    long openMillis = circuitBreaker.checkCallAllowed(clock.instant());
+    if (openMillis > 0L) {
+      throw new CircuitBreakerOpenException(service, Duration.ofMillis(openMillis));
+    }
+    try {
+      T result = callable.call();
+      circuitBreaker.recordSuccess();
+      return result;
+    } catch (Throwable t) {
+      // Errors too, so that a failed half-open trial does not leave the breaker open for good
+      circuitBreaker.recordFailure(t, clock.instant());
+      throw t;
+    }
+  }
+
+  /**
+   * Returns how long to wait before the next attempt after the attempt that started at {@code
+   * start} failed with {@code e}.
+   *
+   * @throws RetryException if the strategy for {@code e} allows no further attempts
+   */
+  private long onFailure(Exception e, Instant start) throws RetryException {
+    mostRecentException = e;
+    monitor.info(() -> "RetryingCallable caught an exception", e);
+    long elapsedMillis = Duration.between(start, clock.instant()).toMillis();
+    // TODO: do we want to reset anything (eg, number of retries) if we see a different
+    // RetryStrategy?
+    RetryStrategy strategy = retryStrategyLibrary.checkoutRetryStrategy(e);
+    monitor.debug(
+        () ->
+            String.format(
+                "Attempt %d failed, using retry strategy: %s, service: %s, dataType: %s",
+                attempts, strategy.toString(), service, dataType));
+    if (strategy.canTryAgain(attempts)) {
+      long nextAttemptIntervalMillis =
+          strategy.getRemainingIntervalMillis(attempts, elapsedMillis, e);
+      monitor.debug(
+          () ->
+              String.format(
+                  "Strategy has %d remainingIntervalMillis after %d elapsedMillis",
+                  nextAttemptIntervalMillis, elapsedMillis));
+      return nextAttemptIntervalMillis;
+    }
+    monitor.debug(
+        () -> String.format("Strategy canTryAgain returned false after %d retries", attempts));
+    if (strategy.canSkip()) {
+      throw new RetryException(attempts, mostRecentException, true);
+    } else {
+      throw new RetryException(attempts, mostRecentException);
+    }
+  }
 }
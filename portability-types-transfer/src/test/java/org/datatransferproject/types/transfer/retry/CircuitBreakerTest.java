@@ -0,0 +1,104 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.datatransferproject.types.transfer.retry;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.datatransferproject.api.launcher.Monitor;
+import org.junit.jupiter.api.Test;
+
+public class CircuitBreakerTest {
+
+  private static final long OPEN_MILLIS = 30000;
+  private static final Instant NOW = Instant.parse("2024-01-01T00:00:00Z");
+
+  private final CircuitBreaker breaker =
+      new CircuitBreaker(
+          "service", new CircuitBreakerConfig(2, OPEN_MILLIS, new String[] {".*429.*"}));
+
+  @Test
+  public void opensAfterConsecutiveFailures() {
+    breaker.recordFailure(new IOException("429"), NOW);
+    breaker.recordSuccess();
+    breaker.recordFailure(new IOException("429"), NOW);
+    assertThat(breaker.checkCallAllowed(NOW)).isEqualTo(0L);
+
+    breaker.recordFailure(new IOException("429"), NOW);
+    assertThat(breaker.isOpen(NOW)).isTrue();
+    assertThat(breaker.checkCallAllowed(NOW.plusMillis(1000))).isEqualTo(OPEN_MILLIS - 1000);
+  }
+
+  @Test
+  public void ignoresFailuresThatDoNotMatch() {
+    for (int i = 0; i < 5; i++) {
+      breaker.recordFailure(new IOException("404"), NOW);
+    }
+    assertThat(breaker.isOpen(NOW)).isFalse();
+  }
+
+  @Test
+  public void halfOpensForASingleTrialCall() {
+    breaker.recordFailure(new IOException("429"), NOW);
+    breaker.recordFailure(new IOException("429"), NOW);
+    Instant later = NOW.plusMillis(OPEN_MILLIS);
+
+    assertThat(breaker.checkCallAllowed(later)).isEqualTo(0L);
+    assertThat(breaker.checkCallAllowed(later)).isGreaterThan(0L);
+
+    // A failed trial opens the breaker again straight away
+    breaker.recordFailure(new IOException("429"), later);
+    assertThat(breaker.isOpen(later)).isTrue();
+
+    Instant evenLater = later.plusMillis(OPEN_MILLIS);
+    assertThat(breaker.checkCallAllowed(evenLater)).isEqualTo(0L);
+    breaker.recordSuccess();
+    assertThat(breaker.checkCallAllowed(evenLater)).isEqualTo(0L);
+    assertThat(breaker.checkCallAllowed(evenLater)).isEqualTo(0L);
+  }
+
+  @Test
+  public void retryingCallableShortCircuitsWhileOpen() {
+    RetryStrategyLibrary library =
+        new RetryStrategyLibrary(
+            ImmutableList.of(),
+            new NoRetryStrategy(),
+            new CircuitBreakerConfig(1, OPEN_MILLIS, null));
+    AtomicInteger calls = new AtomicInteger();
+    RetryingCallable<String> failing =
+        new RetryingCallable<>(
+            () -> {
+              calls.incrementAndGet();
+              throw new IOException("429");
+            },
+            library,
+            Clock.systemUTC(),
+            new Monitor() {},
+            null,
+            "service");
+
+    assertThrows(RetryException.class, failing::call);
+    RetryException e = assertThrows(RetryException.class, failing::call);
+
+    assertThat(e).hasCauseThat().isInstanceOf(CircuitBreakerOpenException.class);
+    assertThat(calls.get()).isEqualTo(1);
+  }
+}
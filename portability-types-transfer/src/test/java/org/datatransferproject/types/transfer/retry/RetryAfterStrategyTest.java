@@ -0,0 +1,110 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.datatransferproject.types.transfer.retry;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+public class RetryAfterStrategyTest {
+
+  private static final String LIBRARY_YAML =
+      "strategyMappings:\n"
+          + "- regexes:\n"
+          + "  - \".*status code: 429.*\"\n"
+          + "  - \".*CircuitBreakerOpenException.*\"\n"
+          + "  strategy: !<RetryAfter>\n"
+          + "    maxAttempts: 5\n"
+          + "    intervalMillis: 1000\n"
+          + "    maxIntervalMillis: 60000\n"
+          + "defaultRetryStrategy: !<Fatal> {}\n"
+          + "circuitBreaker:\n"
+          + "  failureThreshold: 10\n"
+          + "  openMillis: 30000\n"
+          + "  regexes:\n"
+          + "  - \".*status code: 429.*\"\n";
+
+  private final RetryAfterStrategy strategy = new RetryAfterStrategy(3, 1000, 60000, "test");
+
+  @Test
+  public void usesTheDelayOfTheFailure() {
+    RetryAfterException e =
+        new RetryAfterException("Bad status code: 429", Optional.of(Duration.ofSeconds(5)));
+
+    assertThat(strategy.getRemainingIntervalMillis(1, 200, e)).isEqualTo(5000);
+    // Also when wrapped by another exception
+    assertThat(strategy.getRemainingIntervalMillis(1, 200, new IllegalStateException(e)))
+        .isEqualTo(5000);
+  }
+
+  @Test
+  public void capsTheDelayOfTheFailure() {
+    RetryAfterException e =
+        new RetryAfterException("Bad status code: 429", Optional.of(Duration.ofHours(1)));
+
+    assertThat(strategy.getRemainingIntervalMillis(1, 0, e)).isEqualTo(60000);
+  }
+
+  @Test
+  public void usesTheIntervalWithoutADelay() {
+    assertThat(
+            strategy.getRemainingIntervalMillis(
+                1, 200, new RetryAfterException("Bad status code: 429", Optional.empty())))
+        .isEqualTo(800);
+    assertThat(strategy.getRemainingIntervalMillis(1, 200, new IOException("other")))
+        .isEqualTo(800);
+  }
+
+  @Test
+  public void parsesRetryAfterHeaders() {
+    Clock clock = Clock.fixed(Instant.parse("2024-01-01T00:00:00Z"), ZoneOffset.UTC);
+
+    assertThat(RetryAfterException.parseRetryAfterHeader("120", clock))
+        .hasValue(Duration.ofSeconds(120));
+    assertThat(RetryAfterException.parseRetryAfterHeader("Mon, 1 Jan 2024 00:00:30 GMT", clock))
+        .hasValue(Duration.ofSeconds(30));
+    assertThat(RetryAfterException.parseRetryAfterHeader("Sun, 31 Dec 2023 00:00:00 GMT", clock))
+        .hasValue(Duration.ZERO);
+    assertThat(RetryAfterException.parseRetryAfterHeader("soon", clock)).isEmpty();
+    assertThat(RetryAfterException.parseRetryAfterHeader(null, clock)).isEmpty();
+  }
+
+  @Test
+  public void readsStrategyAndCircuitBreakerFromYaml() throws IOException {
+    RetryStrategyLibrary library =
+        new ObjectMapper(new YAMLFactory()).readValue(LIBRARY_YAML, RetryStrategyLibrary.class);
+
+    assertThat(
+            library.checkoutRetryStrategy(
+                new RetryAfterException("Bad status code: 429", Optional.empty())))
+        .isInstanceOf(RetryAfterStrategy.class);
+    assertThat(
+            library.checkoutRetryStrategy(
+                new CircuitBreakerOpenException("GOOGLE", Duration.ofSeconds(1))))
+        .isInstanceOf(RetryAfterStrategy.class);
+    assertThat(library.getCircuitBreaker("GOOGLE"))
+        .isSameInstanceAs(library.getCircuitBreaker("GOOGLE"));
+    assertThat(library.getCircuitBreaker(null)).isNull();
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.datatransferproject.types.transfer.retry;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import org.junit.jupiter.api.Test;
+
+public class RetryStrategyLibraryTest {
+
+  private final RetryStrategy rateLimited = new UniformRetryStrategy(5, 1000, "rateLimited");
+  private final RetryStrategy unavailable = new SkipRetryStrategy();
+  private final RetryStrategy defaultStrategy = new NoRetryStrategy();
+
+  @Test
+  public void topLevelMappingsAreMatchedAndCached() {
+    RetryStrategyLibrary library =
+        new RetryStrategyLibrary(
+            ImmutableList.of(
+                new RetryMapping(new String[] {".*rate limit.*"}, null, rateLimited)),
+            defaultStrategy);
+
+    for (int i = 0; i < 3; i++) {
+      assertThat(library.checkoutRetryStrategy(new IOException("Hit the\nrate limit")))
+          .isSameInstanceAs(rateLimited);
+      assertThat(library.checkoutRetryStrategy(new IOException("Not found")))
+          .isSameInstanceAs(defaultStrategy);
+    }
+  }
+
+  @Test
+  public void stacktraceMappingsSeeTheCauseOfEachThrowable() {
+    RetryStrategyLibrary library =
+        new RetryStrategyLibrary(
+            ImmutableList.of(
+                new RetryMapping(new String[] {".*rate limit.*"}, null, rateLimited),
+                new RetryMapping(null, new String[] {".*Service Unavailable.*"}, unavailable)),
+            defaultStrategy);
+
+    // Same message, so only the stack trace tells these apart
+    IOException withCause =
+        new IOException("Upload failed", new IllegalStateException("Service Unavailable"));
+    IOException withoutCause = new IOException("Upload failed");
+    for (int i = 0; i < 3; i++) {
+      assertThat(library.checkoutRetryStrategy(withCause)).isSameInstanceAs(unavailable);
+      assertThat(library.checkoutRetryStrategy(withoutCause)).isSameInstanceAs(defaultStrategy);
+      assertThat(library.checkoutRetryStrategy(new IOException("rate limit")))
+          .isSameInstanceAs(rateLimited);
+    }
+  }
+
+  @Test
+  public void mappingsMatchTheWholeString() {
+    RetryMapping mapping = new RetryMapping(new String[] {"rate limit"}, null, rateLimited);
+
+    assertThat(mapping.matches(new IOException("rate limit"))).isFalse();
+    assertThat(mapping.matchesThrowableTop(new RuntimeException())).isFalse();
+    assertThat(
+            new RetryMapping(new String[] {"java.io.IOException: rate limit"}, null, rateLimited)
+                .matches(new IOException("rate limit")))
+        .isTrue();
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2024 The Data Transfer Project Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.datatransferproject.types.transfer.retry;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.time.Clock;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.datatransferproject.api.launcher.Monitor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class RetryingCallableTest {
+
+  private static final long INTERVAL_MILLIS = 50;
+
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+  private final RetryStrategyLibrary library =
+      new RetryStrategyLibrary(
+          ImmutableList.of(
+              new RetryMapping(
+                  new String[] {".*skippable.*"},
+                  null,
+                  new UniformRetrySkipStrategy(2, INTERVAL_MILLIS, "skip"))),
+          new UniformRetryStrategy(2, INTERVAL_MILLIS, "default"));
+
+  @AfterEach
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void callRetriesUntilSuccess() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    assertThat(retrying(failTimes(calls, 2)).call()).isEqualTo("result");
+    assertThat(calls.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void callAsyncRetriesWithoutBlockingTheCaller() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    CompletableFuture<String> result = retrying(failTimes(calls, 2)).callAsync(executor);
+
+    // The caller returns right away, well before the two retry intervals have passed
+    assertThat(result.isDone()).isFalse();
+    assertThat(result.get()).isEqualTo("result");
+    assertThat(calls.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void callAsyncFailsOnceTheStrategyGivesUp() {
+    AtomicInteger calls = new AtomicInteger();
+    CompletableFuture<String> result = retrying(failTimes(calls, 10)).callAsync(executor);
+
+    ExecutionException e = assertThrows(ExecutionException.class, result::get);
+    assertThat(e).hasCauseThat().isInstanceOf(RetryException.class);
+    RetryException retryException = (RetryException) e.getCause();
+    assertThat(retryException.getTriesSoFar()).isEqualTo(3);
+    assertThat(retryException.canSkip()).isFalse();
+    assertThat(calls.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void callAsyncKeepsTheSkipOfTheStrategy() {
+    CompletableFuture<String> result =
+        retrying(
+                () -> {
+                  throw new IOException("skippable failure");
+                })
+            .callAsync(executor);
+
+    ExecutionException e = assertThrows(ExecutionException.class, result::get);
+    assertThat(((RetryException) e.getCause()).canSkip()).isTrue();
+  }
+
+  private RetryingCallable<String> retrying(Callable<String> callable) {
+    return new RetryingCallable<>(callable, library, Clock.systemUTC(), new Monitor() {});
+  }
+
+  private static Callable<String> failTimes(AtomicInteger calls, int times) {
+    return () -> {
+      if (calls.incrementAndGet() <= times) {
+        throw new IOException("Test failure " + calls.get());
+      }
+      return "result";
+    };
+  }
+}